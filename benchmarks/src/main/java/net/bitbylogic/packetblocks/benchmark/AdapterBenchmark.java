@@ -0,0 +1,86 @@
+package net.bitbylogic.packetblocks.benchmark;
+
+import com.github.retrooper.packetevents.protocol.player.ClientVersion;
+import com.github.retrooper.packetevents.protocol.world.chunk.BaseChunk;
+import com.github.retrooper.packetevents.protocol.world.chunk.impl.v_1_18.Chunk_v1_18;
+import com.github.retrooper.packetevents.protocol.world.states.WrappedBlockState;
+import com.github.retrooper.packetevents.wrapper.play.server.WrapperPlayServerMultiBlockChange;
+import net.bitbylogic.packetblocks.adapter.BlockUpdateAdapter;
+import net.bitbylogic.packetblocks.adapter.ChunkLoadAdapter;
+import org.bukkit.Location;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.entity.Player;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rewrites of synthetic CHUNK_DATA and MULTI_BLOCK_CHANGE payloads for a chunk that holds {@code blocks}
+ * viewed packet blocks in a group, starting at the bottom of section 4. The payloads are built directly,
+ * so the numbers exclude PacketEvents' packet decoding and encoding.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AdapterBenchmark {
+
+    private static final ClientVersion VERSION = ClientVersion.V_1_21_4;
+    private static final int SECTIONS = 24;
+
+    @Param({"64", "4096"})
+    public int blocks;
+
+    private Player player;
+
+    private ChunkLoadAdapter chunkLoadAdapter;
+    private BlockUpdateAdapter blockUpdateAdapter;
+
+    private BaseChunk[] sections;
+    private WrapperPlayServerMultiBlockChange.EncodedBlock[] encodedBlocks;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        BenchmarkScene scene = new BenchmarkScene();
+        player = Stubs.player("viewer", new Location(scene.world, 8.5, 65.62, 8.5));
+
+        Map<Location, BlockData> groupBlocks = new HashMap<>();
+
+        for (int i = 0; i < blocks; i++) {
+            groupBlocks.put(new Location(scene.world, i & 15, i >> 8, (i >> 4) & 15), scene.randomData());
+        }
+
+        scene.manager.createGroup(groupBlocks).addViewer(player);
+
+        chunkLoadAdapter = new ChunkLoadAdapter(scene.manager);
+        blockUpdateAdapter = new BlockUpdateAdapter(scene.manager);
+
+        sections = new BaseChunk[SECTIONS];
+
+        for (int i = 0; i < SECTIONS; i++) {
+            sections[i] = new Chunk_v1_18();
+        }
+
+        WrappedBlockState air = WrappedBlockState.getByString(VERSION, "minecraft:air");
+        encodedBlocks = new WrapperPlayServerMultiBlockChange.EncodedBlock[512];
+
+        for (int i = 0; i < encodedBlocks.length; i++) {
+            encodedBlocks[i] = new WrapperPlayServerMultiBlockChange.EncodedBlock(air, i & 15, i >> 8, (i >> 4) & 15);
+        }
+    }
+
+    @Benchmark
+    public int rewriteChunkData() {
+        return chunkLoadAdapter.rewriteChunk(player, VERSION, 0, 0, sections);
+    }
+
+    @Benchmark
+    public WrapperPlayServerMultiBlockChange.EncodedBlock[] rewriteMultiBlockChange() {
+        return blockUpdateAdapter.rewriteBlocks(player, VERSION, encodedBlocks);
+    }
+
+}
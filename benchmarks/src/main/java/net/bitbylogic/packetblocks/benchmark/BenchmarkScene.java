@@ -0,0 +1,59 @@
+package net.bitbylogic.packetblocks.benchmark;
+
+import net.bitbylogic.packetblocks.block.PacketBlockManager;
+import net.bitbylogic.packetblocks.util.BoundingBoxes;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Shared setup for the benchmark states: the stub server, a world, bounding boxes for the block
+ * states the benchmarks place, and a manager without a plugin or store.
+ */
+final class BenchmarkScene {
+
+    static final List<String> STATES = List.of(
+            "minecraft:stone",
+            "minecraft:glass",
+            "minecraft:oak_planks",
+            "minecraft:oak_slab[type=bottom,waterlogged=false]"
+    );
+
+    private static final String BOUNDING_BOXES = """
+            {
+              "minecraft:stone": [{"minX": 0, "minY": 0, "minZ": 0, "maxX": 1, "maxY": 1, "maxZ": 1}],
+              "minecraft:glass": [{"minX": 0, "minY": 0, "minZ": 0, "maxX": 1, "maxY": 1, "maxZ": 1}],
+              "minecraft:oak_planks": [{"minX": 0, "minY": 0, "minZ": 0, "maxX": 1, "maxY": 1, "maxZ": 1}],
+              "minecraft:oak_slab[type=bottom,waterlogged=false]": [{"minX": 0, "minY": 0, "minZ": 0, "maxX": 1, "maxY": 0.5, "maxZ": 1}]
+            }
+            """;
+
+    final World world;
+    final PacketBlockManager manager;
+
+    private final SplittableRandom random = new SplittableRandom(0x5EEDL);
+
+    BenchmarkScene() {
+        Stubs.installServer();
+        BoundingBoxes.init(new StringReader(BOUNDING_BOXES));
+
+        this.world = Stubs.world("benchmark");
+        this.manager = new PacketBlockManager(null);
+    }
+
+    BlockData randomData() {
+        return Stubs.blockData(STATES.get(random.nextInt(STATES.size())));
+    }
+
+    /**
+     * Returns a random block location in a square of the given radius around the origin, between y 0 and 63.
+     */
+    Location randomLocation(int radius) {
+        return new Location(world, random.nextInt(-radius, radius), random.nextInt(0, 64), random.nextInt(-radius, radius));
+    }
+
+}
@@ -0,0 +1,65 @@
+package net.bitbylogic.packetblocks.benchmark;
+
+import net.bitbylogic.packetblocks.group.PacketBlockGroup;
+import org.bukkit.Location;
+import org.bukkit.block.data.BlockData;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adds {@code size} blocks to a group that already holds a 16x16x16 cube, then removes them again,
+ * so every invocation starts from the same state.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GroupBenchmark {
+
+    @Param({"256", "4096"})
+    public int size;
+
+    private BenchmarkScene scene;
+    private PacketBlockGroup group;
+
+    private Map<Location, BlockData> added;
+    private List<Location> removed;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        scene = new BenchmarkScene();
+
+        Map<Location, BlockData> cube = new HashMap<>();
+
+        for (int x = 0; x < 16; x++) {
+            for (int y = 0; y < 16; y++) {
+                for (int z = 0; z < 16; z++) {
+                    cube.put(new Location(scene.world, x, y, z), scene.randomData());
+                }
+            }
+        }
+
+        group = scene.manager.createGroup(cube);
+        group.addViewer(Stubs.player("viewer", new Location(scene.world, 0.5, 17.62, 0.5)));
+
+        added = new LinkedHashMap<>(size);
+
+        for (int i = 0; i < size; i++) {
+            added.put(new Location(scene.world, 32 + (i & 63), 16 + (i >> 12), 32 + ((i >> 6) & 63)), scene.randomData());
+        }
+
+        removed = new ArrayList<>(added.keySet());
+    }
+
+    @Benchmark
+    public PacketBlockGroup addThenRemove() {
+        scene.manager.addBlocksToGroup(group, added, false);
+        scene.manager.removeBlocksFromGroup(group, removed);
+        return group;
+    }
+
+}
@@ -0,0 +1,459 @@
+package net.bitbylogic.packetblocks.benchmark;
+
+import com.github.retrooper.packetevents.PacketEvents;
+import com.github.retrooper.packetevents.event.EventManager;
+import com.github.retrooper.packetevents.event.PacketListenerPriority;
+import com.github.retrooper.packetevents.protocol.nbt.NBTCompound;
+import com.github.retrooper.packetevents.protocol.player.ClientVersion;
+import com.github.retrooper.packetevents.protocol.world.chunk.BaseChunk;
+import com.github.retrooper.packetevents.protocol.world.chunk.Column;
+import com.github.retrooper.packetevents.protocol.world.chunk.LightData;
+import com.github.retrooper.packetevents.protocol.world.chunk.TileEntity;
+import com.github.retrooper.packetevents.protocol.world.chunk.impl.v_1_18.Chunk_v1_18;
+import com.github.retrooper.packetevents.protocol.world.states.WrappedBlockState;
+import com.github.retrooper.packetevents.util.Vector3i;
+import com.github.retrooper.packetevents.wrapper.play.server.WrapperPlayServerBlockChange;
+import com.github.retrooper.packetevents.wrapper.play.server.WrapperPlayServerChunkData;
+import net.bitbylogic.packetblocks.adapter.BlockUpdateAdapter;
+import net.bitbylogic.packetblocks.adapter.ChunkLoadAdapter;
+import net.bitbylogic.packetblocks.block.PacketBlock;
+import net.bitbylogic.packetblocks.block.PacketBlockHolder;
+import net.bitbylogic.packetblocks.group.PacketBlockGroup;
+import net.bitbylogic.packetblocks.listener.PacketBlockListener;
+import net.bitbylogic.packetblocks.metrics.Histogram;
+import net.bitbylogic.packetblocks.metrics.PacketBlockMetrics;
+import net.bitbylogic.packetblocks.task.PlayerSnapshotTask;
+import net.bitbylogic.packetblocks.task.ViewerSyncTask;
+import net.bitbylogic.packetblocks.util.PacketBlockUtil;
+import net.kyori.adventure.text.Component;
+import org.bukkit.Location;
+import org.bukkit.block.Block;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.util.RayTraceResult;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+/**
+ * A headless load simulation. Virtual players join through {@link ViewerSyncTask}, walk around a
+ * field of packet blocks and groups, are sent chunks, ray trace, dig blocks that are then replaced
+ * for every viewer, are sent the server's block change for the dug block, and occasionally quit
+ * through {@link PacketBlockListener} and are replaced by a new player. A join is prepared and
+ * ordered on the spot and delivered over the following ticks, as the plugin does across threads.
+ * <p>
+ * Every player has a stub PacketEvents user from {@link PacketStubs}. Chunks and server block changes
+ * are written to it as encoded packets, so {@link ChunkLoadAdapter} and {@link BlockUpdateAdapter}
+ * rewrite them as registered packet listeners, and PacketBlocks' own block changes are written to it
+ * the same way. Their timings include PacketEvents decoding and encoding the packets.
+ * <p>
+ * Everything runs on the calling thread against the real {@link net.bitbylogic.packetblocks.block.PacketBlockManager},
+ * as fast as it can. The report lists latency percentiles per operation, tick times against the 50ms
+ * budget, the allocation rate of the simulation thread and the measured traffic per player.
+ * <p>
+ * Options are passed as {@code --name=value}; see {@link Options} for the names and defaults.
+ */
+public final class LoadSimulation {
+
+    private static final ClientVersion VERSION = ClientVersion.V_1_21_4;
+    private static final int SECTIONS = 24;
+    private static final long TICK_BUDGET_NANOS = 50_000_000L;
+
+    private final Options options;
+    private final BenchmarkScene scene = new BenchmarkScene();
+    private final SplittableRandom random;
+
+    private final ViewerSyncTask viewerSync;
+    private final PacketBlockListener listener;
+    private final ChunkLoadAdapter chunkLoadAdapter;
+    private final BlockUpdateAdapter blockUpdateAdapter;
+
+    private final List<SimulatedPlayer> players = new ArrayList<>();
+    private final List<SimulatedPlayer> departed = new ArrayList<>();
+    private final Map<SimulatedPlayer, ViewerSyncTask.Sync> syncs = new HashMap<>();
+    private final Map<Operation, Histogram> latencies = new EnumMap<>(Operation.class);
+    private final Histogram tickNanos = new Histogram();
+
+    private final BaseChunk[] sections = new BaseChunk[SECTIONS];
+    private final LightData light = new LightData();
+    private final int airId = WrappedBlockState.getByString(VERSION, "minecraft:air").getGlobalId();
+
+    private int joined;
+
+    private LoadSimulation(Options options) {
+        this.options = options;
+        this.random = new SplittableRandom(options.seed);
+
+        this.viewerSync = new ViewerSyncTask(scene.manager, options.syncBudget);
+        this.listener = new PacketBlockListener(scene.manager, viewerSync, new PlayerSnapshotTask());
+        this.chunkLoadAdapter = new ChunkLoadAdapter(scene.manager);
+        this.blockUpdateAdapter = new BlockUpdateAdapter(scene.manager);
+
+        PacketStubs.install();
+
+        EventManager eventManager = PacketEvents.getAPI().getEventManager();
+        eventManager.registerListener(chunkLoadAdapter, PacketListenerPriority.LOWEST);
+        eventManager.registerListener(blockUpdateAdapter, PacketListenerPriority.LOWEST);
+
+        for (int i = 0; i < SECTIONS; i++) {
+            sections[i] = new Chunk_v1_18();
+        }
+
+        light.setSkyLightMask(new BitSet());
+        light.setBlockLightMask(new BitSet());
+        light.setEmptySkyLightMask(new BitSet());
+        light.setEmptyBlockLightMask(new BitSet());
+        light.setSkyLightArray(new byte[0][]);
+        light.setBlockLightArray(new byte[0][]);
+
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new Histogram());
+        }
+    }
+
+    public static void main(String[] args) {
+        new LoadSimulation(Options.parse(args)).run();
+    }
+
+    private void run() {
+        populate();
+
+        for (int i = 0; i < options.players; i++) {
+            players.add(join());
+        }
+
+        for (int tick = 0; tick < options.warmup; tick++) {
+            tick();
+        }
+
+        resetStats();
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocatedStart = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        int ticksOverBudget = 0;
+
+        for (int tick = 0; tick < options.ticks; tick++) {
+            long tickStart = System.nanoTime();
+            tick();
+
+            long tickTime = System.nanoTime() - tickStart;
+            tickNanos.record(tickTime);
+
+            if (tickTime > TICK_BUDGET_NANOS) {
+                ticksOverBudget++;
+            }
+        }
+
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedStart;
+
+        report(elapsed, allocated, ticksOverBudget);
+    }
+
+    private void populate() {
+        for (int i = 0; i < options.blocks; i++) {
+            scene.manager.createBlock(randomLocation(), scene.randomData()).setAddViewerOnJoin(true);
+        }
+
+        int side = Math.max(1, (int) Math.ceil(Math.sqrt(options.groupSize / 4D)));
+
+        for (int i = 0; i < options.groups; i++) {
+            Location origin = randomLocation();
+            Map<Location, BlockData> groupBlocks = new HashMap<>();
+
+            for (int index = 0; index < options.groupSize; index++) {
+                groupBlocks.put(origin.clone().add(index % side, (index / (side * side)) % 4, (index / side) % side), scene.randomData());
+            }
+
+            scene.manager.createGroup(groupBlocks).setAddViewerOnJoin(true);
+        }
+    }
+
+    private Location randomLocation() {
+        return new Location(scene.world, random.nextInt(-options.radius, options.radius), random.nextInt(62, 66),
+                random.nextInt(-options.radius, options.radius));
+    }
+
+    private void tick() {
+        for (int i = 0; i < players.size(); i++) {
+            SimulatedPlayer player = players.get(i);
+
+            if (random.nextDouble() < options.churn) {
+                quit(player);
+                player = join();
+                players.set(i, player);
+            }
+
+            deliverSync(player);
+            simulate(player);
+        }
+
+        PacketBlockMetrics.get().sampleTick();
+    }
+
+    private void simulate(SimulatedPlayer player) {
+        if (player.move(random)) {
+            sendChunks(player);
+        }
+
+        if (random.nextDouble() < options.interact) {
+            time(Operation.RAY_TRACE, () -> PacketBlockUtil.rayTrace(scene.manager, player.handle, 5));
+        }
+
+        if (random.nextDouble() < options.dig) {
+            dig(player);
+        }
+    }
+
+    private SimulatedPlayer join() {
+        SimulatedPlayer player = new SimulatedPlayer("sim-" + joined++, scene.world, options.radius, random);
+
+        time(Operation.JOIN, () -> {
+            ViewerSyncTask.Sync sync = viewerSync.prepare(player.handle);
+
+            if (sync != null) {
+                sync.order();
+                syncs.put(player, sync);
+            }
+        });
+
+        sendChunks(player);
+        return player;
+    }
+
+    private void deliverSync(SimulatedPlayer player) {
+        ViewerSyncTask.Sync sync = syncs.get(player);
+
+        if (sync == null) {
+            return;
+        }
+
+        time(Operation.JOIN_SYNC, () -> {
+            if (viewerSync.deliver(player.handle, sync)) {
+                syncs.remove(player);
+            }
+        });
+    }
+
+    private void quit(SimulatedPlayer player) {
+        time(Operation.QUIT, () -> listener.onQuit(new PlayerQuitEvent(player.handle, (Component) null,
+                PlayerQuitEvent.QuitReason.DISCONNECTED)));
+
+        Stubs.removePlayer(player.handle.getUniqueId());
+        PacketStubs.disconnect(player.handle.getUniqueId());
+        syncs.remove(player);
+        departed.add(player);
+    }
+
+    /**
+     * Sends the chunks that came into view and forgets the ones that went out of view. The chunks are
+     * empty, so their size is mostly the packet blocks {@link ChunkLoadAdapter} writes into them.
+     */
+    private void sendChunks(SimulatedPlayer player) {
+        int centerX = player.chunkX();
+        int centerZ = player.chunkZ();
+        int viewDistance = options.viewDistance;
+
+        player.sentChunks.removeIf(key -> Math.abs((int) (long) key - centerX) > viewDistance
+                || Math.abs((int) (key >> 32) - centerZ) > viewDistance);
+
+        for (int chunkX = centerX - viewDistance; chunkX <= centerX + viewDistance; chunkX++) {
+            for (int chunkZ = centerZ - viewDistance; chunkZ <= centerZ + viewDistance; chunkZ++) {
+                if (!player.sentChunks.add(((long) chunkZ << 32) | (chunkX & 0xFFFFFFFFL))) {
+                    continue;
+                }
+
+                Column column = new Column(chunkX, chunkZ, true, sections, new TileEntity[0], new NBTCompound());
+
+                time(Operation.CHUNK, () -> player.user.writePacket(new WrapperPlayServerChunkData(column, light)));
+            }
+        }
+    }
+
+    /**
+     * Ray traces from the player and, if a single packet block is hit, replaces it for every viewer
+     * and sends the server's block change at that position, as a block that regenerates would.
+     * <p>
+     * The dig itself is not sent as a dig packet, as {@link net.bitbylogic.packetblocks.adapter.BlockBreakAdapter}
+     * needs the plugin instance for its scheduler and events.
+     */
+    private void dig(SimulatedPlayer player) {
+        long start = System.nanoTime();
+        RayTraceResult result = PacketBlockUtil.rayTrace(scene.manager, player.handle, 5);
+        latencies.get(Operation.RAY_TRACE).record(System.nanoTime() - start);
+
+        Block hitBlock = result == null ? null : result.getHitBlock();
+
+        if (hitBlock == null) {
+            return;
+        }
+
+        PacketBlockHolder<?, ?> holder = scene.manager.getBlock(hitBlock.getLocation()).orElse(null);
+
+        if (!(holder instanceof PacketBlock block) || !block.isViewer(player.handle)) {
+            return;
+        }
+
+        time(Operation.DIG, () -> block.setDataForAll(scene.randomData()));
+
+        Vector3i position = new Vector3i(hitBlock.getX(), hitBlock.getY(), hitBlock.getZ());
+
+        time(Operation.BLOCK_UPDATE, () -> player.user.writePacket(new WrapperPlayServerBlockChange(position, airId)));
+    }
+
+    private void time(Operation operation, Runnable action) {
+        long start = System.nanoTime();
+        action.run();
+        latencies.get(operation).record(System.nanoTime() - start);
+    }
+
+    private void resetStats() {
+        latencies.values().forEach(Histogram::reset);
+        tickNanos.reset();
+        departed.clear();
+
+        for (SimulatedPlayer player : players) {
+            player.blockChangePackets = 0;
+            player.blockChangeBytes = 0;
+            player.chunkBytes = 0;
+        }
+
+        PacketBlockMetrics.get().reset();
+    }
+
+    private void report(long elapsedNanos, long allocatedBytes, int ticksOverBudget) {
+        double seconds = elapsedNanos / 1_000_000_000D;
+        long groupCount = scene.manager.getBlocks(scene.world).stream().filter(PacketBlockGroup.class::isInstance).distinct().count();
+
+        System.out.printf(Locale.ROOT, "PacketBlocks load simulation: %d players, %d blocks, %d groups of %d, view distance %d%n",
+                options.players, options.blocks, groupCount, options.groupSize, options.viewDistance);
+        System.out.printf(Locale.ROOT, "%d ticks in %.2fs (%.1f ticks/s), %d players joined in total%n%n",
+                options.ticks, seconds, options.ticks / seconds, joined);
+
+        System.out.printf(Locale.ROOT, "%-14s %10s %12s %10s %10s %10s %10s%n", "Operation", "Count", "Ops/s", "Mean", "p50", "p99", "Max");
+
+        for (Operation operation : Operation.values()) {
+            printLatencies(operation.label, latencies.get(operation).snapshot(), seconds);
+        }
+
+        printLatencies("Tick", tickNanos.snapshot(), seconds);
+
+        System.out.printf(Locale.ROOT, "%nTicks over the 50ms budget: %d%n", ticksOverBudget);
+        System.out.printf(Locale.ROOT, "Allocated: %.1f MB, %.1f MB/s, %.1f KB/tick%n",
+                allocatedBytes / 1_048_576D, allocatedBytes / 1_048_576D / seconds, allocatedBytes / 1024D / options.ticks);
+
+        List<SimulatedPlayer> measured = new ArrayList<>(players);
+        measured.addAll(departed);
+
+        Histogram packets = new Histogram();
+        Histogram bytes = new Histogram();
+        Histogram chunkBytes = new Histogram();
+
+        for (SimulatedPlayer player : measured) {
+            packets.record(player.blockChangePackets);
+            bytes.record(player.blockChangeBytes);
+            chunkBytes.record(player.chunkBytes);
+        }
+
+        System.out.printf(Locale.ROOT, "%nPer player over %d players (mean / p99 / max):%n", measured.size());
+        printDistribution("Block change packets", packets.snapshot());
+        printDistribution("Block change bytes", bytes.snapshot());
+        printDistribution("Chunk bytes", chunkBytes.snapshot());
+    }
+
+    private static void printLatencies(String label, Histogram.Snapshot snapshot, double seconds) {
+        System.out.printf(Locale.ROOT, "%-14s %10d %12.1f %10s %10s %10s %10s%n", label, snapshot.count(), snapshot.count() / seconds,
+                formatNanos((long) snapshot.mean()), formatNanos(snapshot.percentile(50)), formatNanos(snapshot.percentile(99)),
+                formatNanos(snapshot.max()));
+    }
+
+    private static void printDistribution(String label, Histogram.Snapshot snapshot) {
+        System.out.printf(Locale.ROOT, "  %-22s %.1f / %d / %d%n", label, snapshot.mean(), snapshot.percentile(99), snapshot.max());
+    }
+
+    private static String formatNanos(long nanos) {
+        if (nanos < 1_000) {
+            return nanos + "ns";
+        }
+
+        if (nanos < 1_000_000) {
+            return String.format(Locale.ROOT, "%.1fus", nanos / 1_000D);
+        }
+
+        return String.format(Locale.ROOT, "%.2fms", nanos / 1_000_000D);
+    }
+
+    private enum Operation {
+
+        JOIN("Join"),
+        JOIN_SYNC("Join sync"),
+        QUIT("Quit"),
+        CHUNK("Chunk send"),
+        RAY_TRACE("Ray trace"),
+        DIG("Dig fan-out"),
+        BLOCK_UPDATE("Block update");
+
+        private final String label;
+
+        Operation(String label) {
+            this.label = label;
+        }
+
+    }
+
+    /**
+     * Simulation options. Probabilities are per player per tick.
+     */
+    private static final class Options {
+
+        int players = 100;
+        int blocks = 5_000;
+        int groups = 50;
+        int groupSize = 64;
+        int syncBudget = 2048;
+        int radius = 256;
+        int viewDistance = 8;
+        int ticks = 1_200;
+        int warmup = 200;
+        double interact = 0.05;
+        double dig = 0.02;
+        double churn = 0.0005;
+        long seed = 0x5EEDL;
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+
+            for (String arg : args) {
+                int separator = arg.indexOf('=');
+
+                if (!arg.startsWith("--") || separator < 0) {
+                    throw new IllegalArgumentException("Expected --name=value but got " + arg);
+                }
+
+                String value = arg.substring(separator + 1);
+
+                switch (arg.substring(2, separator)) {
+                    case "players" -> options.players = Integer.parseInt(value);
+                    case "blocks" -> options.blocks = Integer.parseInt(value);
+                    case "groups" -> options.groups = Integer.parseInt(value);
+                    case "group-size" -> options.groupSize = Integer.parseInt(value);
+                    case "sync-budget" -> options.syncBudget = Integer.parseInt(value);
+                    case "radius" -> options.radius = Integer.parseInt(value);
+                    case "view-distance" -> options.viewDistance = Integer.parseInt(value);
+                    case "ticks" -> options.ticks = Integer.parseInt(value);
+                    case "warmup" -> options.warmup = Integer.parseInt(value);
+                    case "interact" -> options.interact = Double.parseDouble(value);
+                    case "dig" -> options.dig = Double.parseDouble(value);
+                    case "churn" -> options.churn = Double.parseDouble(value);
+                    case "seed" -> options.seed = Long.parseLong(value);
+                    default -> throw new IllegalArgumentException("Unknown option " + arg);
+                }
+            }
+
+            return options;
+        }
+
+    }
+
+}
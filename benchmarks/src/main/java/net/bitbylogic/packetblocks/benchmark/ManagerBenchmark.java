@@ -0,0 +1,105 @@
+package net.bitbylogic.packetblocks.benchmark;
+
+import net.bitbylogic.packetblocks.block.PacketBlock;
+import net.bitbylogic.packetblocks.block.PacketBlockHolder;
+import net.bitbylogic.packetblocks.group.PacketBlockGroup;
+import org.bukkit.Location;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.entity.Player;
+import org.bukkit.util.BoundingBox;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups against a manager holding {@code blocks} single blocks scattered around the origin, plus one
+ * 16x16x16 group. Half of the single blocks and the group are viewed by the benchmark player.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ManagerBenchmark {
+
+    private static final int PROBES = 1024;
+
+    @Param({"1000", "100000"})
+    public int blocks;
+
+    private BenchmarkScene scene;
+    private Player player;
+
+    private Location[] hits;
+    private Location[] misses;
+    private BoundingBox hitBox;
+
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        scene = new BenchmarkScene();
+        player = Stubs.player("viewer", new Location(scene.world, 0.5, 65.62, 0.5));
+
+        int radius = (int) Math.max(32, Math.sqrt(blocks));
+
+        for (int i = 0; i < blocks; i++) {
+            PacketBlock block = scene.manager.createBlock(scene.randomLocation(radius), scene.randomData());
+
+            if (i % 2 == 0) {
+                block.addViewer(player);
+            }
+        }
+
+        Map<Location, BlockData> groupBlocks = new HashMap<>();
+
+        for (int x = 0; x < 16; x++) {
+            for (int y = 64; y < 80; y++) {
+                for (int z = 0; z < 16; z++) {
+                    groupBlocks.put(new Location(scene.world, x, y, z), scene.randomData());
+                }
+            }
+        }
+
+        PacketBlockGroup group = scene.manager.createGroup(groupBlocks);
+        group.addViewer(player);
+
+        List<Location> groupLocations = List.copyOf(groupBlocks.keySet());
+
+        hits = new Location[PROBES];
+        misses = new Location[PROBES];
+
+        for (int i = 0; i < PROBES; i++) {
+            hits[i] = groupLocations.get(i * 7 % groupLocations.size());
+            misses[i] = new Location(scene.world, radius + 64 + i, 100, radius + 64 + i);
+        }
+
+        hitBox = new BoundingBox(-4, 60, -4, 4, 68, 4);
+    }
+
+    @Benchmark
+    public Optional<PacketBlockHolder<?, ?>> getBlockHit() {
+        return scene.manager.getBlock(hits[index++ & (PROBES - 1)]);
+    }
+
+    @Benchmark
+    public Optional<PacketBlockHolder<?, ?>> getBlockMiss() {
+        return scene.manager.getBlock(misses[index++ & (PROBES - 1)]);
+    }
+
+    @Benchmark
+    public List<PacketBlockHolder<?, ?>> getHitBlocks() {
+        return scene.manager.getHitBlocks(scene.world, hitBox);
+    }
+
+    @Benchmark
+    public List<PacketBlockHolder<?, ?>> getBlocksByViewer() {
+        return scene.manager.getBlocksByViewer(player);
+    }
+
+}
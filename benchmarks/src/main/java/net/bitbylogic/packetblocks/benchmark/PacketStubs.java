@@ -0,0 +1,531 @@
+package net.bitbylogic.packetblocks.benchmark;
+
+import com.github.retrooper.packetevents.PacketEvents;
+import com.github.retrooper.packetevents.PacketEventsAPI;
+import com.github.retrooper.packetevents.event.PacketSendEvent;
+import com.github.retrooper.packetevents.exception.PacketProcessException;
+import com.github.retrooper.packetevents.injector.ChannelInjector;
+import com.github.retrooper.packetevents.manager.player.PlayerManager;
+import com.github.retrooper.packetevents.manager.protocol.ProtocolManager;
+import com.github.retrooper.packetevents.manager.server.ServerManager;
+import com.github.retrooper.packetevents.manager.server.ServerVersion;
+import com.github.retrooper.packetevents.netty.NettyManager;
+import com.github.retrooper.packetevents.netty.buffer.ByteBufAllocationOperator;
+import com.github.retrooper.packetevents.netty.buffer.ByteBufOperator;
+import com.github.retrooper.packetevents.netty.channel.ChannelOperator;
+import com.github.retrooper.packetevents.protocol.ConnectionState;
+import com.github.retrooper.packetevents.protocol.player.User;
+import com.github.retrooper.packetevents.protocol.player.UserProfile;
+import com.github.retrooper.packetevents.util.EventCreationUtil;
+import com.github.retrooper.packetevents.wrapper.PacketWrapper;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Method;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Minimal stand-ins for the PacketEvents runtime, so packets written to stub players are encoded,
+ * passed through the registered packet listeners and measured the way a server's pipeline would.
+ * <p>
+ * Netty is replaced by {@link Buffer heap buffers} behind a proxied {@link ByteBufOperator}. Writing a
+ * packet to a stub user encodes it, fires a {@link PacketSendEvent} unless it was written silently,
+ * encodes it again if a listener changed it, and reports the final size to the user's {@link PacketSink}.
+ * Compression and encryption are not simulated, so sizes are those of uncompressed frames.
+ */
+final class PacketStubs {
+
+    private static final ServerVersion SERVER_VERSION = ServerVersion.V_1_21_4;
+    private static final Map<UUID, User> USERS = new ConcurrentHashMap<>();
+
+    private PacketStubs() {
+    }
+
+    /**
+     * Installs the stub PacketEvents API. Listeners are registered on its event manager as usual.
+     */
+    static synchronized void install() {
+        if (PacketEvents.getAPI() != null) {
+            return;
+        }
+
+        PacketEvents.setAPI(new StubPacketEventsAPI());
+    }
+
+    /**
+     * Connects a stub player, so PacketEvents returns a user for them whose packets are reported to the sink.
+     */
+    static User connect(Player player, PacketSink sink) {
+        Connection connection = new Connection(player, sink);
+        User user = new User(connection, ConnectionState.PLAY, SERVER_VERSION.toClientVersion(),
+                new UserProfile(player.getUniqueId(), player.getName()));
+
+        user.setMinWorldHeight(player.getWorld().getMinHeight());
+        user.setTotalWorldHeight(player.getWorld().getMaxHeight() - player.getWorld().getMinHeight());
+
+        USERS.put(player.getUniqueId(), user);
+        return user;
+    }
+
+    /**
+     * Disconnects a stub player, so PacketEvents no longer returns a user for them.
+     */
+    static void disconnect(UUID uuid) {
+        USERS.remove(uuid);
+    }
+
+    private static void send(Object channel, PacketWrapper<?> packet, boolean silently) {
+        if (!(channel instanceof Connection connection)) {
+            return;
+        }
+
+        packet.prepareForSend(channel, true);
+        Buffer buffer = (Buffer) packet.buffer;
+
+        if (!silently) {
+            PacketSendEvent event;
+
+            try {
+                event = EventCreationUtil.createSendEvent(channel, USERS.get(connection.player().getUniqueId()),
+                        connection.player(), buffer, true);
+            } catch (PacketProcessException e) {
+                throw new IllegalStateException("Unable to read back " + packet.getClass().getSimpleName(), e);
+            }
+
+            PacketEvents.getAPI().getEventManager().callEvent(event);
+
+            if (event.isCancelled()) {
+                return;
+            }
+
+            PacketWrapper<?> rewritten = event.getLastUsedWrapper();
+
+            if (event.needsReEncode() && rewritten != null) {
+                buffer.clear();
+                rewritten.writeVarInt(event.getPacketId());
+                rewritten.write();
+            }
+        }
+
+        int length = buffer.writerIndex;
+        connection.sink().packet(packet, varIntSize(length) + length);
+    }
+
+    private static int varIntSize(int value) {
+        return value < 1 << 7 ? 1 : value < 1 << 14 ? 2 : value < 1 << 21 ? 3 : value < 1 << 28 ? 4 : 5;
+    }
+
+    private static @Nullable Object operate(Method method, Object[] args) {
+        if (args == null || !(args[0] instanceof Buffer buffer)) {
+            return null;
+        }
+
+        int arguments = args.length;
+
+        Object result = switch (method.getName()) {
+            case "capacity" -> arguments == 1 ? buffer.data.length : buffer.ensureWritable((int) args[1] - buffer.writerIndex);
+            case "readerIndex" -> arguments == 1 ? buffer.readerIndex : buffer.readerIndex((int) args[1]);
+            case "writerIndex" -> arguments == 1 ? buffer.writerIndex : buffer.writerIndex((int) args[1]);
+            case "readableBytes" -> buffer.writerIndex - buffer.readerIndex;
+            case "writableBytes" -> Integer.MAX_VALUE - buffer.writerIndex;
+            case "isReadable" -> buffer.writerIndex - buffer.readerIndex >= (arguments == 1 ? 1 : (int) args[1]);
+            case "isWritable", "hasArray" -> true;
+            case "isDirect" -> false;
+            case "ensureWritable" -> buffer.ensureWritable((int) args[1]);
+            case "clear" -> buffer.clear();
+            case "markReaderIndex" -> buffer.mark(true);
+            case "resetReaderIndex" -> buffer.reset(true);
+            case "markWriterIndex" -> buffer.mark(false);
+            case "resetWriterIndex" -> buffer.reset(false);
+            case "skipBytes" -> buffer.skip((int) args[1]);
+            case "readBoolean" -> buffer.read(1) != 0;
+            case "readByte", "readUnsignedByte" -> buffer.read(1);
+            case "readShort", "readUnsignedShort", "readChar" -> buffer.read(2);
+            case "readMedium" -> buffer.read(3) << 40 >> 40;
+            case "readUnsignedMedium" -> buffer.read(3);
+            case "readInt", "readUnsignedInt" -> buffer.read(4);
+            case "readLong" -> buffer.read(8);
+            case "readFloat" -> Float.intBitsToFloat((int) buffer.read(4));
+            case "readDouble" -> Double.longBitsToDouble(buffer.read(8));
+            case "writeBoolean", "writeByte" -> buffer.write(bits(args[1]), 1);
+            case "writeShort", "writeChar" -> buffer.write(bits(args[1]), 2);
+            case "writeMedium" -> buffer.write(bits(args[1]), 3);
+            case "writeInt", "writeFloat" -> buffer.write(bits(args[1]), 4);
+            case "writeLong", "writeDouble" -> buffer.write(bits(args[1]), 8);
+            case "getBoolean" -> buffer.get((int) args[1], 1) != 0;
+            case "getByte", "getUnsignedByte" -> buffer.get((int) args[1], 1);
+            case "getShort", "getUnsignedShort" -> buffer.get((int) args[1], 2);
+            case "getInt", "getUnsignedInt" -> buffer.get((int) args[1], 4);
+            case "getLong" -> buffer.get((int) args[1], 8);
+            case "setByte" -> buffer.set((int) args[1], bits(args[2]), 1);
+            case "setShort" -> buffer.set((int) args[1], bits(args[2]), 2);
+            case "setInt" -> buffer.set((int) args[1], bits(args[2]), 4);
+            case "setLong" -> buffer.set((int) args[1], bits(args[2]), 8);
+            case "readBytes", "readSlice", "readRetainedSlice" -> {
+                if (args[1] instanceof byte[] target) {
+                    int offset = arguments == 4 ? (int) args[2] : 0;
+                    int length = arguments == 4 ? (int) args[3] : target.length;
+
+                    System.arraycopy(buffer.data, buffer.skip(length).readerIndex - length, target, offset, length);
+                    yield buffer;
+                }
+
+                int length = (int) args[1];
+                yield Buffer.copyOf(buffer.data, buffer.skip(length).readerIndex - length, length);
+            }
+            case "writeBytes" -> {
+                if (args[1] instanceof byte[] source) {
+                    yield buffer.writeBytes(source, arguments == 4 ? (int) args[2] : 0, arguments == 4 ? (int) args[3] : source.length);
+                }
+
+                Buffer source = (Buffer) args[1];
+                int length = arguments == 3 ? (int) args[2] : source.writerIndex - source.readerIndex;
+
+                buffer.writeBytes(source.data, source.readerIndex, length);
+                source.readerIndex += length;
+                yield buffer;
+            }
+            case "getBytes" -> {
+                byte[] target = (byte[]) args[2];
+                int offset = arguments == 5 ? (int) args[3] : 0;
+                int length = arguments == 5 ? (int) args[4] : target.length;
+
+                buffer.check((int) args[1], length);
+                System.arraycopy(buffer.data, (int) args[1], target, offset, length);
+                yield buffer;
+            }
+            case "copy", "duplicate", "retainedDuplicate" -> {
+                Buffer copy = Buffer.copyOf(buffer.data, 0, buffer.writerIndex);
+                copy.readerIndex = buffer.readerIndex;
+                yield copy;
+            }
+            case "array" -> buffer.data;
+            case "arrayOffset" -> 0;
+            case "retain" -> buffer;
+            case "release" -> false;
+            case "refCnt" -> 1;
+            case "toString" -> {
+                if (arguments == 1) {
+                    yield buffer.toString();
+                }
+
+                buffer.check((int) args[1], (int) args[2]);
+                yield new String(buffer.data, (int) args[1], (int) args[2], (Charset) args[3]);
+            }
+            default -> throw new UnsupportedOperationException("ByteBufOperator#" + method.getName());
+        };
+
+        return narrow(method.getReturnType(), result);
+    }
+
+    private static long bits(Object value) {
+        if (value instanceof Boolean bool) {
+            return bool ? 1 : 0;
+        }
+
+        if (value instanceof Character character) {
+            return character;
+        }
+
+        if (value instanceof Float number) {
+            return Float.floatToRawIntBits(number);
+        }
+
+        if (value instanceof Double number) {
+            return Double.doubleToRawLongBits(number);
+        }
+
+        return ((Number) value).longValue();
+    }
+
+    /**
+     * Converts a raw big-endian read to the operator method's declared return type, the way the
+     * matching netty method would: a signed or unsigned byte, short, medium, int or long.
+     */
+    private static @Nullable Object narrow(Class<?> type, @Nullable Object result) {
+        if (!(result instanceof Long value)) {
+            return type == void.class ? null : result;
+        }
+
+        if (type == byte.class) {
+            return (byte) (long) value;
+        }
+
+        if (type == short.class) {
+            return (short) (long) value;
+        }
+
+        if (type == char.class) {
+            return (char) (long) value;
+        }
+
+        if (type == int.class) {
+            return (int) (long) value;
+        }
+
+        return value;
+    }
+
+    /**
+     * Receives the size of every packet written to a stub user, after the packet listeners ran.
+     */
+    interface PacketSink {
+
+        void packet(PacketWrapper<?> packet, int bytes);
+
+    }
+
+    /**
+     * The channel of a stub user.
+     */
+    private record Connection(Player player, PacketSink sink) {
+    }
+
+    /**
+     * A growable big-endian heap buffer standing in for a netty {@code ByteBuf}.
+     */
+    static final class Buffer {
+
+        private byte[] data;
+        private int readerIndex;
+        private int writerIndex;
+        private int markedReaderIndex;
+        private int markedWriterIndex;
+
+        Buffer() {
+            this.data = new byte[256];
+        }
+
+        private static Buffer copyOf(byte[] source, int offset, int length) {
+            Buffer buffer = new Buffer();
+            buffer.writeBytes(source, offset, length);
+            return buffer;
+        }
+
+        private Buffer readerIndex(int readerIndex) {
+            check(readerIndex, 0);
+            this.readerIndex = readerIndex;
+            return this;
+        }
+
+        private Buffer skip(int length) {
+            return readerIndex(readerIndex + length);
+        }
+
+        private Buffer mark(boolean reader) {
+            if (reader) {
+                markedReaderIndex = readerIndex;
+            } else {
+                markedWriterIndex = writerIndex;
+            }
+
+            return this;
+        }
+
+        private Buffer reset(boolean reader) {
+            if (reader) {
+                readerIndex = markedReaderIndex;
+            } else {
+                writerIndex = markedWriterIndex;
+            }
+
+            return this;
+        }
+
+        private Buffer writerIndex(int writerIndex) {
+            ensureWritable(writerIndex - this.writerIndex);
+            this.writerIndex = writerIndex;
+            return this;
+        }
+
+        private Buffer ensureWritable(int length) {
+            if (writerIndex + length > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, writerIndex + length));
+            }
+
+            return this;
+        }
+
+        private Buffer clear() {
+            readerIndex = 0;
+            writerIndex = 0;
+            return this;
+        }
+
+        private void check(int index, int length) {
+            if (index < 0 || length < 0 || index + length > writerIndex) {
+                throw new IndexOutOfBoundsException("Index " + index + " and length " + length + " exceed writer index " + writerIndex);
+            }
+        }
+
+        private long get(int index, int length) {
+            check(index, length);
+            long value = 0;
+
+            for (int i = 0; i < length; i++) {
+                value = value << 8 | data[index + i] & 0xFF;
+            }
+
+            return value;
+        }
+
+        private long read(int length) {
+            long value = get(readerIndex, length);
+            readerIndex += length;
+            return value;
+        }
+
+        private Buffer set(int index, long value, int length) {
+            check(index, length);
+
+            for (int i = length - 1; i >= 0; i--, value >>>= 8) {
+                data[index + i] = (byte) value;
+            }
+
+            return this;
+        }
+
+        private Buffer write(long value, int length) {
+            ensureWritable(length);
+            writerIndex += length;
+            return set(writerIndex - length, value, length);
+        }
+
+        private Buffer writeBytes(byte[] source, int offset, int length) {
+            ensureWritable(length);
+            System.arraycopy(source, offset, data, writerIndex, length);
+            writerIndex += length;
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return "Buffer{readerIndex=" + readerIndex + ", writerIndex=" + writerIndex + "}";
+        }
+
+    }
+
+    private static final class StubPacketEventsAPI extends PacketEventsAPI<Object> {
+
+        private final ServerManager serverManager = Stubs.proxy(ServerManager.class, (method, args) ->
+                method.getName().equals("getVersion") ? SERVER_VERSION : null);
+
+        private final PlayerManager playerManager = Stubs.proxy(PlayerManager.class, (method, args) -> {
+            if (args == null || !(args[0] instanceof Player player)) {
+                return null;
+            }
+
+            User user = USERS.get(player.getUniqueId());
+
+            return switch (method.getName()) {
+                case "getUser" -> user;
+                case "getClientVersion" -> user == null ? null : user.getClientVersion();
+                case "getChannel" -> user == null ? null : user.getChannel();
+                default -> null;
+            };
+        });
+
+        private final ProtocolManager protocolManager = Stubs.proxy(ProtocolManager.class, (method, args) -> {
+            if (args == null || args.length != 2 || !(args[1] instanceof PacketWrapper<?> packet)) {
+                return null;
+            }
+
+            switch (method.getName()) {
+                case "writePacket", "sendPacket" -> send(args[0], packet, false);
+                case "writePacketSilently", "sendPacketSilently" -> send(args[0], packet, true);
+                default -> {
+                }
+            }
+
+            return null;
+        });
+
+        private final ByteBufOperator byteBufOperator = Stubs.proxy(ByteBufOperator.class, PacketStubs::operate);
+
+        private final ByteBufAllocationOperator allocationOperator = Stubs.proxy(ByteBufAllocationOperator.class, (method, args) -> {
+            if (args != null && args.length > 0 && args[0] instanceof byte[] source) {
+                return Buffer.copyOf(source, 0, source.length);
+            }
+
+            return new Buffer();
+        });
+
+        private final ChannelOperator channelOperator = Stubs.proxy(ChannelOperator.class, (method, args) -> switch (method.getName()) {
+            case "isOpen", "isActive" -> true;
+            case "pooledByteBuf" -> new Buffer();
+            default -> null;
+        });
+
+        private final NettyManager nettyManager = Stubs.proxy(NettyManager.class, (method, args) -> switch (method.getName()) {
+            case "getByteBufOperator" -> byteBufOperator;
+            case "getByteBufAllocationOperator" -> allocationOperator;
+            case "getChannelOperator" -> channelOperator;
+            default -> null;
+        });
+
+        private final ChannelInjector injector = Stubs.proxy(ChannelInjector.class, (method, args) -> null);
+
+        @Override
+        public void load() {
+        }
+
+        @Override
+        public boolean isLoaded() {
+            return true;
+        }
+
+        @Override
+        public void init() {
+        }
+
+        @Override
+        public boolean isInitialized() {
+            return true;
+        }
+
+        @Override
+        public void terminate() {
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public Object getPlugin() {
+            return null;
+        }
+
+        @Override
+        public ServerManager getServerManager() {
+            return serverManager;
+        }
+
+        @Override
+        public ProtocolManager getProtocolManager() {
+            return protocolManager;
+        }
+
+        @Override
+        public PlayerManager getPlayerManager() {
+            return playerManager;
+        }
+
+        @Override
+        public ChannelInjector getInjector() {
+            return injector;
+        }
+
+        @Override
+        public NettyManager getNettyManager() {
+            return nettyManager;
+        }
+
+    }
+
+}
@@ -0,0 +1,85 @@
+package net.bitbylogic.packetblocks.benchmark;
+
+import net.bitbylogic.packetblocks.util.BoundingBoxes;
+import net.bitbylogic.packetblocks.util.PacketBlockUtil;
+import org.bukkit.Location;
+import org.bukkit.block.Block;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.entity.Player;
+import org.bukkit.util.BoundingBox;
+import org.bukkit.util.RayTraceResult;
+import org.bukkit.util.Vector;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounding box lookups and ray traces. The player stands at the origin looking along +Z at a wall of
+ * packet blocks {@code distance} blocks away, and a second player looks straight up into open air.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RayTraceBenchmark {
+
+    @Param({"1", "4"})
+    public int distance;
+
+    private BenchmarkScene scene;
+
+    private Player lookingAtWall;
+    private Player lookingAtSky;
+
+    private BlockData slab;
+    private Block wallBlock;
+    private Vector start;
+    private Vector direction;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        scene = new BenchmarkScene();
+        slab = Stubs.blockData(BenchmarkScene.STATES.getLast());
+
+        Location wallEye = new Location(scene.world, 0.5, 65.62, 0.5, 0, 0);
+        Location skyEye = new Location(scene.world, 0.5, 65.62, 0.5, 0, -90);
+
+        lookingAtWall = Stubs.player("wall", wallEye);
+        lookingAtSky = Stubs.player("sky", skyEye);
+
+        for (int x = -2; x <= 2; x++) {
+            for (int y = 63; y <= 66; y++) {
+                scene.manager.createBlock(new Location(scene.world, x, y, distance), Stubs.blockData("minecraft:stone"))
+                        .addViewer(lookingAtWall);
+            }
+        }
+
+        wallBlock = scene.world.getBlockAt(0, 65, distance);
+        start = wallEye.toVector();
+        direction = wallEye.getDirection();
+    }
+
+    @Benchmark
+    public List<BoundingBox> getBoxes() {
+        return BoundingBoxes.getBoxes(slab);
+    }
+
+    @Benchmark
+    public RayTraceResult rayTraceAt() {
+        return BoundingBoxes.rayTraceAt(wallBlock, slab, start, direction, 8);
+    }
+
+    @Benchmark
+    public RayTraceResult rayTraceHit() {
+        return PacketBlockUtil.rayTrace(scene.manager, lookingAtWall, 5);
+    }
+
+    @Benchmark
+    public RayTraceResult rayTraceMiss() {
+        return PacketBlockUtil.rayTrace(scene.manager, lookingAtSky, 5);
+    }
+
+}
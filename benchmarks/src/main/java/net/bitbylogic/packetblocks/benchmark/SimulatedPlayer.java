@@ -0,0 +1,94 @@
+package net.bitbylogic.packetblocks.benchmark;
+
+import com.github.retrooper.packetevents.protocol.player.User;
+import com.github.retrooper.packetevents.wrapper.PacketWrapper;
+import com.github.retrooper.packetevents.wrapper.play.server.WrapperPlayServerChunkData;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * A virtual player for {@link LoadSimulation}: a stub {@link Player} with a stub PacketEvents
+ * {@link User} that walks around at roughly walking speed, remembers which chunks it was sent, and
+ * tallies the packets written to it.
+ * <p>
+ * Sizes are the encoded frames measured by {@link PacketStubs}, after PacketBlocks' packet listeners
+ * rewrote them.
+ */
+final class SimulatedPlayer implements PacketStubs.PacketSink {
+
+    final String name;
+    final Player handle;
+    final User user;
+
+    final Set<Long> sentChunks = new HashSet<>();
+
+    private final int radius;
+    private Location eye;
+    private double heading;
+
+    long blockChangePackets;
+    long blockChangeBytes;
+    long chunkBytes;
+
+    SimulatedPlayer(String name, World world, int radius, SplittableRandom random) {
+        this.name = name;
+        this.radius = radius;
+        this.eye = new Location(world, random.nextDouble(-radius, radius), 65.62, random.nextDouble(-radius, radius));
+        this.heading = random.nextDouble(Math.PI * 2);
+        this.handle = Stubs.player(name, () -> eye);
+        this.user = PacketStubs.connect(handle, this);
+    }
+    /**
+     * Moves the player one tick along its heading, turning a little every tick and turning back
+     * when it reaches the edge of the area. The pitch is randomised so ray traces hit blocks at
+     * different heights.
+     *
+     * @return whether the player entered another chunk
+     */
+    boolean move(SplittableRandom random) {
+        heading += random.nextDouble(-0.3, 0.3);
+
+        double speed = random.nextInt(4) == 0 ? 0.28 : 0.215;
+        double x = eye.getX() - Math.sin(heading) * speed;
+        double z = eye.getZ() + Math.cos(heading) * speed;
+
+        if (Math.abs(x) > radius || Math.abs(z) > radius) {
+            heading += Math.PI;
+            return false;
+        }
+
+        int previousChunkX = eye.getBlockX() >> 4;
+        int previousChunkZ = eye.getBlockZ() >> 4;
+
+        float yaw = (float) Math.toDegrees(heading);
+        float pitch = (float) random.nextDouble(-10, 60);
+
+        eye = new Location(eye.getWorld(), x, eye.getY(), z, yaw, pitch);
+        return previousChunkX != eye.getBlockX() >> 4 || previousChunkZ != eye.getBlockZ() >> 4;
+    }
+
+    int chunkX() {
+        return eye.getBlockX() >> 4;
+    }
+
+    int chunkZ() {
+        return eye.getBlockZ() >> 4;
+    }
+
+    @Override
+    public void packet(PacketWrapper<?> packet, int bytes) {
+        if (packet instanceof WrapperPlayServerChunkData) {
+            chunkBytes += bytes;
+            return;
+        }
+
+        blockChangePackets++;
+        blockChangeBytes += bytes;
+    }
+
+}
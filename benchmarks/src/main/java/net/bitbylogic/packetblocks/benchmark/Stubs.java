@@ -0,0 +1,283 @@
+package net.bitbylogic.packetblocks.benchmark;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockState;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Minimal stand-ins for the Bukkit objects PacketBlocks touches, so the benchmarks run without a server.
+ * <p>
+ * Every stub is a dynamic proxy that answers the handful of methods the library calls and returns
+ * the default value for everything else, which keeps the stub overhead to a single reflective dispatch.
+ */
+final class Stubs {
+
+    private static final Map<String, BlockData> BLOCK_DATA = new ConcurrentHashMap<>();
+    private static final Map<String, World> WORLDS = new ConcurrentHashMap<>();
+    private static final Map<UUID, Player> PLAYERS = new ConcurrentHashMap<>();
+
+    private static final Logger LOGGER = Logger.getLogger("PacketBlocksBenchmark");
+
+    private Stubs() {
+    }
+
+    /**
+     * Installs the stub server. {@link Bukkit#setServer(Server)} is bypassed because it prints
+     * build information that only exists in a real server jar.
+     */
+    static synchronized void installServer() {
+        if (Bukkit.getServer() != null) {
+            return;
+        }
+
+        Server server = proxy(Server.class, (method, args) -> switch (method.getName()) {
+            case "getLogger" -> LOGGER;
+            case "getName", "getVersion", "getBukkitVersion" -> "Benchmark";
+            case "isPrimaryThread" -> true;
+            case "getWorld" -> args[0] instanceof String name ? WORLDS.get(name) : null;
+            case "getWorlds" -> new ArrayList<>(WORLDS.values());
+            case "getPlayer" -> args[0] instanceof UUID uuid ? PLAYERS.get(uuid) : null;
+            case "getOnlinePlayers" -> List.copyOf(PLAYERS.values());
+            case "createBlockData" -> args[0] instanceof Material material
+                    ? blockData("minecraft:" + material.name().toLowerCase(Locale.ROOT))
+                    : blockData((String) args[0]);
+            default -> null;
+        });
+
+        try {
+            Field field = Bukkit.class.getDeclaredField("server");
+            field.setAccessible(true);
+            field.set(null, server);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to install the stub server", e);
+        }
+    }
+
+    static BlockData blockData(String state) {
+        return BLOCK_DATA.computeIfAbsent(state, key -> {
+            Material material = Material.matchMaterial(key.contains("[") ? key.substring(0, key.indexOf('[')) : key);
+
+            return proxy(BlockData.class, (method, args) -> switch (method.getName()) {
+                case "getAsString" -> key;
+                case "getMaterial" -> material;
+                case "createBlockState" -> blockState(BLOCK_DATA.get(key), null);
+                case "clone" -> BLOCK_DATA.get(key);
+                case "matches" -> args[0] instanceof BlockData other && key.equals(other.getAsString());
+                case "equals" -> args[0] instanceof BlockData other && key.equals(other.getAsString());
+                case "hashCode" -> key.hashCode();
+                case "toString" -> key;
+                default -> null;
+            });
+        });
+    }
+
+    static World world(String name) {
+        return WORLDS.computeIfAbsent(name, key -> {
+            UUID uuid = UUID.nameUUIDFromBytes(key.getBytes());
+            Map<Long, Chunk> chunks = new ConcurrentHashMap<>();
+            World[] self = new World[1];
+
+            self[0] = proxy(World.class, (method, args) -> switch (method.getName()) {
+                case "getName" -> key;
+                case "getUID" -> uuid;
+                case "isChunkLoaded" -> true;
+                case "getMinHeight" -> -64;
+                case "getMaxHeight" -> 320;
+                case "getChunkAt" -> {
+                    int chunkX;
+                    int chunkZ;
+
+                    if (args[0] instanceof Location location) {
+                        chunkX = location.getBlockX() >> 4;
+                        chunkZ = location.getBlockZ() >> 4;
+                    } else if (args[0] instanceof Block block) {
+                        chunkX = block.getX() >> 4;
+                        chunkZ = block.getZ() >> 4;
+                    } else if (args[0] instanceof Long chunkKey) {
+                        chunkX = (int) (long) chunkKey;
+                        chunkZ = (int) (chunkKey >> 32);
+                    } else {
+                        chunkX = (int) args[0];
+                        chunkZ = (int) args[1];
+                    }
+
+                    yield chunks.computeIfAbsent(((long) chunkZ << 32) | (chunkX & 0xFFFFFFFFL),
+                            ignored -> chunk(self[0], chunkX, chunkZ));
+                }
+                case "getBlockAt" -> args[0] instanceof Location location
+                        ? block(self[0], location.getBlockX(), location.getBlockY(), location.getBlockZ())
+                        : block(self[0], (int) args[0], (int) args[1], (int) args[2]);
+                case "hashCode" -> uuid.hashCode();
+                case "toString" -> "World{" + key + "}";
+                default -> null;
+            });
+
+            return self[0];
+        });
+    }
+
+    static Player player(String name, Location eyeLocation) {
+        return player(name, () -> eyeLocation);
+    }
+
+    /**
+     * Creates an online player whose eye location is read from the given supplier on every call,
+     * so it can move.
+     */
+    static Player player(String name, Supplier<Location> eyeLocation) {
+        UUID uuid = UUID.nameUUIDFromBytes(name.getBytes());
+
+        Player player = proxy(Player.class, (method, args) -> switch (method.getName()) {
+            case "getUniqueId" -> uuid;
+            case "getName" -> name;
+            case "getWorld" -> eyeLocation.get().getWorld();
+            case "getEyeLocation" -> eyeLocation.get().clone();
+            case "getLocation" -> eyeLocation.get().clone().subtract(0, 1.62, 0);
+            case "isOnline", "isValid" -> PLAYERS.containsKey(uuid);
+            case "hashCode" -> uuid.hashCode();
+            case "toString" -> "Player{" + name + "}";
+            default -> null;
+        });
+
+        PLAYERS.put(uuid, player);
+        return player;
+    }
+
+    /**
+     * Takes a player offline, so {@link Bukkit#getPlayer(UUID)} no longer returns them.
+     */
+    static void removePlayer(UUID uuid) {
+        PLAYERS.remove(uuid);
+    }
+
+    private static BlockState blockState(BlockData data, @Nullable Location location) {
+        return proxy(BlockState.class, (method, args) -> switch (method.getName()) {
+            case "getBlockData" -> data;
+            case "getType" -> data.getMaterial();
+            case "getWorld" -> location == null ? null : location.getWorld();
+            case "getLocation" -> location == null ? null : location.clone();
+            case "getX" -> location == null ? 0 : location.getBlockX();
+            case "getY" -> location == null ? 0 : location.getBlockY();
+            case "getZ" -> location == null ? 0 : location.getBlockZ();
+            case "copy" -> args != null && args[0] instanceof Location target ? blockState(data, target.clone()) : blockState(data, location);
+            default -> null;
+        });
+    }
+
+    private static Chunk chunk(World world, int chunkX, int chunkZ) {
+        return proxy(Chunk.class, (method, args) -> switch (method.getName()) {
+            case "getX" -> chunkX;
+            case "getZ" -> chunkZ;
+            case "getWorld" -> world;
+            case "hashCode" -> 31 * chunkX + chunkZ;
+            default -> null;
+        });
+    }
+
+    private static Block block(World world, int x, int y, int z) {
+        return proxy(Block.class, (method, args) -> switch (method.getName()) {
+            case "getX" -> x;
+            case "getY" -> y;
+            case "getZ" -> z;
+            case "getWorld" -> world;
+            case "getChunk" -> world.getChunkAt(x >> 4, z >> 4);
+            case "getLocation" -> {
+                if (args == null || args[0] == null) {
+                    yield new Location(world, x, y, z);
+                }
+
+                Location location = (Location) args[0];
+                location.setWorld(world);
+                location.set(x, y, z);
+                yield location;
+            }
+            case "getType" -> Material.AIR;
+            case "getBlockData" -> blockData("minecraft:air");
+            default -> null;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> T proxy(Class<T> type, StubHandler handler) {
+        InvocationHandler invocationHandler = (proxy, method, args) -> {
+            if (method.getName().equals("equals") && method.getParameterCount() == 1 && type != BlockData.class) {
+                return proxy == args[0];
+            }
+
+            Object result = handler.handle(method, args);
+
+            if (result == null && method.getName().equals("hashCode") && method.getParameterCount() == 0) {
+                return System.identityHashCode(proxy);
+            }
+
+            if (result == null && method.getName().equals("toString") && method.getParameterCount() == 0) {
+                return type.getSimpleName() + "Stub";
+            }
+
+            return result != null ? result : defaultValue(method.getReturnType());
+        };
+
+        return (T) Proxy.newProxyInstance(Stubs.class.getClassLoader(), new Class<?>[]{type}, invocationHandler);
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (!type.isPrimitive() || type == void.class) {
+            return null;
+        }
+
+        if (type == boolean.class) {
+            return false;
+        }
+
+        if (type == char.class) {
+            return '\0';
+        }
+
+        if (type == long.class) {
+            return 0L;
+        }
+
+        if (type == float.class) {
+            return 0F;
+        }
+
+        if (type == double.class) {
+            return 0D;
+        }
+
+        if (type == byte.class) {
+            return (byte) 0;
+        }
+
+        if (type == short.class) {
+            return (short) 0;
+        }
+
+        return 0;
+    }
+
+    @FunctionalInterface
+    interface StubHandler {
+
+        Object handle(Method method, Object[] args);
+
+    }
+
+}
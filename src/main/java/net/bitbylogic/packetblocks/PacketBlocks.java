@@ -11,10 +11,20 @@ import net.bitbylogic.packetblocks.adapter.BlockPlaceAdapter;
 import net.bitbylogic.packetblocks.adapter.BlockUpdateAdapter;
 import net.bitbylogic.packetblocks.adapter.ChunkLoadAdapter;
 import net.bitbylogic.packetblocks.block.PacketBlockManager;
+import net.bitbylogic.packetblocks.block.WorldPartition;
+import net.bitbylogic.packetblocks.command.PacketBlocksCommand;
 import net.bitbylogic.packetblocks.listener.PacketBlockListener;
+import net.bitbylogic.packetblocks.metrics.PacketBlockMetrics;
+import net.bitbylogic.packetblocks.storage.PacketBlockStore;
+import net.bitbylogic.packetblocks.task.PlayerSnapshotTask;
+import net.bitbylogic.packetblocks.task.ViewerSyncTask;
 import net.bitbylogic.packetblocks.util.BoundingBoxes;
+import org.bukkit.command.PluginCommand;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import java.io.IOException;
+import java.util.logging.Level;
+
 @Getter
 public final class PacketBlocks extends JavaPlugin {
 
@@ -22,6 +32,10 @@ public final class PacketBlocks extends JavaPlugin {
     private static PacketBlocks instance;
 
     private PacketBlockManager blockManager;
+    private PacketBlockStore blockStore;
+    private PacketBlockMetrics metrics;
+    private ViewerSyncTask viewerSync;
+    private PlayerSnapshotTask playerSnapshots;
     private FoliaLib foliaLib;
 
     @Override
@@ -40,22 +54,89 @@ public final class PacketBlocks extends JavaPlugin {
         PacketEvents.getAPI().init();
         BoundingBoxes.init(this);
 
-        this.blockManager = new PacketBlockManager(this);
+        this.blockManager = new PacketBlockManager(this, foliaLib.isFolia() && getConfig().getBoolean("Registry.Region-Sharded"));
+
+        if (getConfig().getBoolean("Persistence.Enabled")) {
+            enablePersistence();
+        }
+
+        this.viewerSync = new ViewerSyncTask(blockManager, getConfig().getInt("Viewer-Sync.Blocks-Per-Tick", 2048));
+        this.playerSnapshots = new PlayerSnapshotTask();
+
+        getServer().getOnlinePlayers().forEach(player -> foliaLib.getScheduler().runAtEntity(player, task -> playerSnapshots.update(player)));
+
+        enableMetrics();
 
         foliaLib.getScheduler().runAsync(task -> {
             EventManager eventManager = PacketEvents.getAPI().getEventManager();
+            BlockBreakAdapter blockBreakAdapter = new BlockBreakAdapter(this);
 
             eventManager.registerListener(new ChunkLoadAdapter(blockManager), PacketListenerPriority.LOWEST);
-            eventManager.registerListener(new BlockPlaceAdapter(blockManager), PacketListenerPriority.LOWEST);
-            eventManager.registerListener(new BlockBreakAdapter(this), PacketListenerPriority.LOWEST);
+            eventManager.registerListener(new BlockPlaceAdapter(blockManager, foliaLib, playerSnapshots), PacketListenerPriority.LOWEST);
+            eventManager.registerListener(blockBreakAdapter, PacketListenerPriority.LOWEST);
             eventManager.registerListener(new BlockUpdateAdapter(blockManager), PacketListenerPriority.LOWEST);
+
+            metrics.registerGauge("Active break animations", () -> blockBreakAdapter.getTask().getActiveEntries());
+        });
+
+        getServer().getPluginManager().registerEvents(new PacketBlockListener(blockManager, viewerSync, playerSnapshots), this);
+
+        PluginCommand command = getCommand("packetblocks");
+
+        if (command != null) {
+            PacketBlocksCommand executor = new PacketBlocksCommand(metrics, blockManager);
+            command.setExecutor(executor);
+            command.setTabCompleter(executor);
+        }
+    }
+
+    private void enableMetrics() {
+        this.metrics = PacketBlockMetrics.get();
+        metrics.setEnabled(getConfig().getBoolean("Metrics.Enabled", true));
+
+        metrics.registerGauge("Indexed worlds", () -> blockManager.getPartitions().size());
+        metrics.registerGauge("Indexed chunks", () -> blockManager.getPartitions().values().stream().mapToLong(WorldPartition::getChunkCount).sum());
+        metrics.registerGauge("Indexed block positions", () -> blockManager.getPartitions().values().stream().mapToLong(WorldPartition::getPositionCount).sum());
+        metrics.registerGauge("Pending viewer syncs", () -> viewerSync.getPendingSyncs());
+        metrics.registerGauge("Player snapshots", () -> playerSnapshots.getTrackedPlayers());
+        metrics.registerGauge("Instances", () -> {
+            long[] instances = new long[1];
+            blockManager.forEachInstance(instance -> instances[0]++);
+            return instances[0];
         });
 
-        getServer().getPluginManager().registerEvents(new PacketBlockListener(blockManager), this);
+        foliaLib.getScheduler().runTimer(metrics::sampleTick, 1, 1);
+    }
+
+    private void enablePersistence() {
+        try {
+            this.blockStore = new PacketBlockStore(blockManager, getDataFolder().toPath().resolve("data"), getLogger());
+            blockManager.setStore(blockStore);
+
+            int replayed = blockStore.replayJournal();
+
+            if (replayed > 0) {
+                getLogger().info("Replayed " + replayed + " packet block journal entries.");
+            }
+        } catch (IOException e) {
+            getLogger().log(Level.SEVERE, "Unable to open the packet block store, persistence is disabled!", e);
+
+            blockManager.setStore(null);
+            this.blockStore = null;
+            return;
+        }
+
+        long saveInterval = Math.max(20, getConfig().getLong("Persistence.Save-Interval", 6000));
+        foliaLib.getScheduler().runTimer(() -> blockStore.save(), saveInterval, saveInterval);
     }
 
     @Override
     public void onDisable() {
+        if (blockStore != null) {
+            blockStore.save().join();
+            blockStore.close();
+        }
+
         PacketEvents.getAPI().terminate();
     }
 
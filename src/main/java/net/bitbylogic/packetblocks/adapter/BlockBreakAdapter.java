@@ -2,9 +2,12 @@ package net.bitbylogic.packetblocks.adapter;
 
 import com.github.retrooper.packetevents.event.PacketListener;
 import com.github.retrooper.packetevents.event.PacketReceiveEvent;
+import com.github.retrooper.packetevents.event.UserDisconnectEvent;
 import com.github.retrooper.packetevents.protocol.packettype.PacketType;
+import com.github.retrooper.packetevents.protocol.player.DiggingAction;
 import com.github.retrooper.packetevents.util.Vector3i;
 import com.github.retrooper.packetevents.wrapper.play.client.WrapperPlayClientPlayerDigging;
+import lombok.Getter;
 import lombok.NonNull;
 import net.bitbylogic.packetblocks.PacketBlocks;
 import net.bitbylogic.packetblocks.block.PacketBlock;
@@ -13,69 +16,115 @@ import net.bitbylogic.packetblocks.block.PacketBlockManager;
 import net.bitbylogic.packetblocks.event.PacketBlockBreakEvent;
 import net.bitbylogic.packetblocks.event.PacketBlockStartBreakEvent;
 import net.bitbylogic.packetblocks.group.PacketBlockGroup;
+import net.bitbylogic.packetblocks.group.PacketBlockInstance;
+import net.bitbylogic.packetblocks.metrics.AdapterType;
+import net.bitbylogic.packetblocks.metrics.PacketBlockMetrics;
 import net.bitbylogic.packetblocks.task.PacketBlockAnimationTask;
+import net.bitbylogic.packetblocks.task.PlayerSnapshotTask;
+import net.bitbylogic.packetblocks.util.BreakTimes;
 import net.bitbylogic.packetblocks.util.PacketBlockUtil;
 import org.bukkit.Bukkit;
 import org.bukkit.GameMode;
 import org.bukkit.Location;
+import org.bukkit.World;
 import org.bukkit.block.data.BlockData;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
 
-import java.util.HashSet;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
-
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Drives breaking of packet blocks from the client's dig packets.
+ * <p>
+ * Only the start, cancel and finish actions are handled; every other action of the dig packet, such
+ * as dropping or swapping items, returns before the block position is even read. The netty thread
+ * takes the player's world from the {@link PlayerSnapshotTask} and first checks the primitive chunk
+ * index, so digs outside chunks with packet blocks never build a {@link Location}. Hardness and
+ * break times are read on the player's thread from the per-state tables in {@link BreakTimes}.
+ */
 public class BlockBreakAdapter implements PacketListener {
 
     private final PacketBlocks plugin;
     private final PacketBlockManager manager;
+    @Getter
     private final PacketBlockAnimationTask task;
+    private final PlayerSnapshotTask snapshots;
     private final Set<UUID> cancelledBreaks;
 
     public BlockBreakAdapter(@NonNull PacketBlocks plugin) {
         this.plugin = plugin;
         this.manager = plugin.getBlockManager();
+        this.snapshots = plugin.getPlayerSnapshots();
         this.task = new PacketBlockAnimationTask();
-        this.cancelledBreaks = new HashSet<>();
+        this.cancelledBreaks = ConcurrentHashMap.newKeySet();
 
-        plugin.getFoliaLib().getScheduler().runTimerAsync(task, 1, 1);
+        task.start(plugin.getFoliaLib());
     }
 
     @Override
     public void onPacketReceive(PacketReceiveEvent event) {
         if (event.getPacketType() != PacketType.Play.Client.PLAYER_DIGGING) return;
 
-        Player player = event.getPlayer();
+        PacketBlockMetrics metrics = PacketBlockMetrics.get();
+        long startTime = metrics.startTiming();
+
+        boolean handled = handleDigging(event);
+        metrics.recordPacket(AdapterType.BLOCK_BREAK, startTime, handled);
+    }
+
+    @Override
+    public void onUserDisconnect(UserDisconnectEvent event) {
+        UUID uuid = event.getUser().getUUID();
+
+        if (uuid == null) return;
+
+        cancelledBreaks.remove(uuid);
+        task.forgetPlayer(uuid);
+    }
+
+    private boolean handleDigging(@NonNull PacketReceiveEvent event) {
         WrapperPlayClientPlayerDigging packet = new WrapperPlayClientPlayerDigging(event);
+        DiggingAction action = packet.getAction();
 
+        if (action != DiggingAction.START_DIGGING && action != DiggingAction.CANCELLED_DIGGING
+                && action != DiggingAction.FINISHED_DIGGING) return false;
+
+        Player player = event.getPlayer();
+        PlayerSnapshotTask.PlayerSnapshot snapshot = snapshots.get(player.getUniqueId());
+        if (snapshot == null) return false;
+
+        World world = snapshot.world();
         Vector3i position = packet.getBlockPosition();
-        Location location = new Location(player.getWorld(), position.getX(), position.getY(), position.getZ());
+        if (!manager.hasBlocksInChunk(world, position.getX() >> 4, position.getZ() >> 4)) return false;
+
+        Location location = new Location(world, position.getX(), position.getY(), position.getZ());
         Optional<PacketBlockHolder<?, ?>> optionalBlock = manager.getBlock(location);
-        if (optionalBlock.isEmpty()) return;
+        if (optionalBlock.isEmpty()) return false;
 
         PacketBlockHolder<?, ?> packetBlock = optionalBlock.get();
-        if (!packetBlock.isViewer(player)) return;
+        if (!packetBlock.isViewer(player)) return false;
 
         int breakSpeed = packetBlock.getBreakSpeed(player);
-        float vanillaHardness = PacketBlockUtil.getBlockType(player, location).getHardness();
 
-        switch (packet.getAction()) {
-            case START_DIGGING -> handleStartDestroy(player, packetBlock, location, packet, breakSpeed, vanillaHardness);
+        switch (action) {
+            case START_DIGGING -> handleStartDestroy(player, packetBlock, location, position, breakSpeed);
             case CANCELLED_DIGGING -> {
                 if (breakSpeed != -1) task.removeEntry(player);
             }
-            case FINISHED_DIGGING -> handleStopDestroy(player, packetBlock, location);
+            default -> handleStopDestroy(player, packetBlock, location);
         }
+
+        return true;
     }
 
     private void handleStartDestroy(@NonNull Player player,
                                     @NonNull PacketBlockHolder<?, ?> packetBlock,
                                     @NonNull Location location,
-                                    @NonNull WrapperPlayClientPlayerDigging packet,
-                                    int breakSpeed,
-                                    float vanillaHardness) {
+                                    @NonNull Vector3i position,
+                                    int breakSpeed) {
 
         plugin.getFoliaLib().getScheduler().runAtEntity(player, wrappedTask -> {
             PacketBlockStartBreakEvent breakStartEvent = new PacketBlockStartBreakEvent(player, packetBlock, location);
@@ -87,12 +136,25 @@ public class BlockBreakAdapter implements PacketListener {
                 return;
             }
 
-            if (player.getGameMode() == GameMode.CREATIVE || (breakSpeed == -1 && vanillaHardness == 0)) {
+            boolean instantBreak = switch (breakSpeed) {
+                case -1 -> {
+                    // Without data of its own at this block, the holder breaks like the real block it covers.
+                    BlockData blockData = PacketBlockUtil.getHolderData(packetBlock, player, location);
+                    yield BreakTimes.getHardness(blockData == null ? location.getBlock().getBlockData() : blockData) == 0;
+                }
+                case BreakTimes.VANILLA_BREAK_SPEED -> {
+                    BlockData blockData = PacketBlockUtil.getHolderData(packetBlock, player, location);
+                    yield blockData != null && BreakTimes.getBreakTicks(player, blockData) == 0;
+                }
+                default -> false;
+            };
+
+            if (player.getGameMode() == GameMode.CREATIVE || instantBreak) {
                 handleStopDestroy(player, packetBlock, location);
                 return;
             }
 
-            if (breakSpeed != -1) task.addEntry(player, packetBlock);
+            if (breakSpeed != -1) task.addEntry(player, packetBlock, position);
         });
     }
 
@@ -119,12 +181,16 @@ public class BlockBreakAdapter implements PacketListener {
                     return;
                 }
 
-                if(!(packetBlock instanceof PacketBlockGroup group)) {
+                Optional<BlockData> optionalBlockData;
+
+                if (packetBlock instanceof PacketBlockInstance instance) {
+                    optionalBlockData = instance.getDataAt(player, location);
+                } else if (packetBlock instanceof PacketBlockGroup group) {
+                    optionalBlockData = group.getDataAt(player, location);
+                } else {
                     return;
                 }
 
-                Optional<BlockData> optionalBlockData = group.getDataAt(player, location);
-
                 if (optionalBlockData.isEmpty()) {
                     return;
                 }
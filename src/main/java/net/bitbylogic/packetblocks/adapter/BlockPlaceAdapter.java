@@ -3,25 +3,54 @@ package net.bitbylogic.packetblocks.adapter;
 import com.github.retrooper.packetevents.event.PacketListener;
 import com.github.retrooper.packetevents.event.PacketReceiveEvent;
 import com.github.retrooper.packetevents.protocol.packettype.PacketType;
+import com.github.retrooper.packetevents.protocol.player.User;
 import com.github.retrooper.packetevents.protocol.world.BlockFace;
 import com.github.retrooper.packetevents.util.Vector3i;
 import com.github.retrooper.packetevents.wrapper.play.client.WrapperPlayClientPlayerBlockPlacement;
+import com.github.retrooper.packetevents.wrapper.play.server.WrapperPlayServerAcknowledgeBlockChanges;
+import com.tcoded.folialib.FoliaLib;
+import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import net.bitbylogic.packetblocks.block.PacketBlockHolder;
 import net.bitbylogic.packetblocks.block.PacketBlockManager;
-import net.bitbylogic.packetblocks.block.PacketBlock;
+import net.bitbylogic.packetblocks.metrics.AdapterType;
+import net.bitbylogic.packetblocks.metrics.PacketBlockMetrics;
+import net.bitbylogic.packetblocks.task.PlayerSnapshotTask;
+import net.bitbylogic.packetblocks.util.BlockChangeBatch;
+import net.bitbylogic.packetblocks.util.BoundingBoxes;
 import net.bitbylogic.packetblocks.util.PacketBlockUtil;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.block.BlockSupport;
+import org.bukkit.block.data.BlockData;
 import org.bukkit.entity.Player;
+import org.bukkit.inventory.PlayerInventory;
+import org.bukkit.util.BoundingBox;
 
 import java.util.Optional;
 
+/**
+ * Stops players from placing blocks into packet blocks they see, and redirects placements against
+ * them to the block in front.
+ * <p>
+ * The netty thread never reads the live player or world. It takes the world from the
+ * {@link PlayerSnapshotTask} and only checks the block index, which is safe to read from any thread.
+ * Placements whose clicked block and the block in front are not packet blocks the player views pass
+ * straight through, whatever the player holds. Only those that are get deferred: they are cancelled
+ * and resolved on the player's thread, where the held items and the world can be read.
+ * <p>
+ * A deferred placement that goes through is received again silently, rewritten if needed, about a
+ * tick later. It is therefore handled after any packets the player sent in between, such as a
+ * further use or a hotbar change, and is acknowledged when the server handles it then. A deferred
+ * placement that is blocked is acknowledged here instead, and the affected blocks are sent again so
+ * the client drops the block it predicted.
+ */
 @RequiredArgsConstructor
 public class BlockPlaceAdapter implements PacketListener {
 
     private final PacketBlockManager manager;
+    private final FoliaLib foliaLib;
+    private final PlayerSnapshotTask snapshots;
 
     @Override
     public void onPacketReceive(PacketReceiveEvent event) {
@@ -29,30 +58,77 @@ public class BlockPlaceAdapter implements PacketListener {
             return;
         }
 
-        Player player = event.getPlayer();
+        PacketBlockMetrics metrics = PacketBlockMetrics.get();
+        long startTime = metrics.startTiming();
 
-        Material mainHandType = player.getInventory().getItemInMainHand().getType();
-        Material offHandType = player.getInventory().getItemInOffHand().getType();
+        boolean rewritten = handlePlacement(event);
+        metrics.recordPacket(AdapterType.BLOCK_PLACE, startTime, rewritten);
+    }
 
-        Material blockType = mainHandType.isBlock() ? mainHandType : offHandType.isBlock() ? offHandType : Material.AIR;
+    private boolean handlePlacement(@NonNull PacketReceiveEvent event) {
+        Player player = event.getPlayer();
+        PlayerSnapshotTask.PlayerSnapshot snapshot = snapshots.get(player.getUniqueId());
 
-        if (blockType == Material.AIR) {
-            return;
+        if (snapshot == null) {
+            return false;
         }
 
         WrapperPlayClientPlayerBlockPlacement wrapper = new WrapperPlayClientPlayerBlockPlacement(event);
-
         BlockFace direction = wrapper.getFace();
+
+        if (direction == BlockFace.OTHER) {
+            return false;
+        }
+
         Vector3i position = wrapper.getBlockPosition();
+        org.bukkit.block.BlockFace bukkitFace = org.bukkit.block.BlockFace.valueOf(direction.name());
 
-        Location originalLoc = new Location(player.getWorld(), position.getX(), position.getY(), position.getZ());
+        Location clickedLoc = new Location(snapshot.world(), position.getX(), position.getY(), position.getZ());
+        Location targetLoc = clickedLoc.clone().add(bukkitFace.getDirection());
 
-        if (originalLoc.getBlock().getType().isInteractable()) {
-            return;
+        if (!isViewedPacketBlock(player, clickedLoc) && !isViewedPacketBlock(player, targetLoc)) {
+            return false;
+        }
+
+        event.setCancelled(true);
+        User user = event.getUser();
+
+        foliaLib.getScheduler().runAtEntity(player, task -> {
+            if (resolvePlacement(player, wrapper, clickedLoc, bukkitFace)) {
+                user.receivePacketSilently(wrapper);
+                return;
+            }
+
+            if (player.isOnline() && player.getWorld().getName().equals(clickedLoc.getWorld().getName())) {
+                rejectPlacement(player, user, wrapper.getSequence(), clickedLoc, targetLoc);
+            }
+        });
+
+        return true;
+    }
+
+    /**
+     * Resolves a placement that involves a packet block. Must be called from the player's thread.
+     *
+     * @return whether the placement should go through, with its block position rewritten if needed
+     */
+    private boolean resolvePlacement(@NonNull Player player, @NonNull WrapperPlayClientPlayerBlockPlacement wrapper,
+                                     @NonNull Location originalLoc, @NonNull org.bukkit.block.BlockFace bukkitFace) {
+        if (!player.isOnline() || !player.getWorld().getName().equals(originalLoc.getWorld().getName())) {
+            return false;
+        }
+
+        PlayerInventory inventory = player.getInventory();
+        Material mainHandType = inventory.getItemInMainHand().getType();
+        Material offHandType = inventory.getItemInOffHand().getType();
+
+        Material blockType = mainHandType.isBlock() ? mainHandType : offHandType.isBlock() ? offHandType : Material.AIR;
+
+        if (blockType == Material.AIR || originalLoc.getBlock().getType().isInteractable()) {
+            return true;
         }
 
         Location location = originalLoc.clone();
-        org.bukkit.block.BlockFace bukkitFace = org.bukkit.block.BlockFace.valueOf(direction.name());
         Material currentBlockType = PacketBlockUtil.getBlockType(player, location);
         boolean shifted = false;
 
@@ -61,20 +137,14 @@ public class BlockPlaceAdapter implements PacketListener {
             shifted = true;
         }
 
-        if (blockType.createBlockData().getCollisionShape(location).overlaps(player.getBoundingBox()) && blockType.isCollidable()) {
-            return;
+        if (blockType.isCollidable() && overlaps(blockType, location, player.getBoundingBox())) {
+            return true;
         }
 
         Optional<PacketBlockHolder<?, ?>> optionalBlock = manager.getBlock(location);
 
-        if (optionalBlock.isEmpty()) {
-            return;
-        }
-
-        PacketBlockHolder<?, ?> packetBlock = optionalBlock.get();
-
-        if (!packetBlock.isViewer(player)) {
-            return;
+        if (optionalBlock.isEmpty() || !optionalBlock.get().isViewer(player)) {
+            return true;
         }
 
         location.add(bukkitFace.getDirection());
@@ -82,11 +152,51 @@ public class BlockPlaceAdapter implements PacketListener {
         Material newCurrentBlockType = PacketBlockUtil.getBlockType(player, location);
 
         if(shifted || !newCurrentBlockType.isAir()) {
-            event.setCancelled(true);
-            return;
+            return false;
         }
 
         wrapper.setBlockPosition(new Vector3i(location.getBlockX(), location.getBlockY(), location.getBlockZ()));
+        return true;
+    }
+
+    /**
+     * Acknowledges a blocked placement and sends the player their view of the clicked block and the
+     * block in front, replacing the block the client predicted.
+     */
+    private void rejectPlacement(@NonNull Player player, @NonNull User user, int sequence, @NonNull Location... locations) {
+        BlockChangeBatch changes = new BlockChangeBatch();
+
+        for (Location location : locations) {
+            Optional<BlockData> packetData = manager.getBlockData(player, location);
+
+            if (packetData.isPresent() && isViewedPacketBlock(player, location)) {
+                changes.add(location, packetData.get());
+            } else {
+                changes.addReal(location);
+            }
+        }
+
+        changes.send(player, user);
+        user.sendPacket(new WrapperPlayServerAcknowledgeBlockChanges(sequence));
+    }
+
+    private boolean isViewedPacketBlock(@NonNull Player player, @NonNull Location location) {
+        Optional<PacketBlockHolder<?, ?>> optionalBlock = manager.getBlock(location);
+        return optionalBlock.isPresent() && optionalBlock.get().isViewer(player);
+    }
+
+    /**
+     * Checks the default state of the block type against the player's bounding box, using the
+     * precomputed shape table rather than building a collision shape.
+     */
+    private static boolean overlaps(@NonNull Material blockType, @NonNull Location location, @NonNull BoundingBox boundingBox) {
+        for (BoundingBox box : BoundingBoxes.getBoxesAt(blockType.createBlockData(), location)) {
+            if (box.overlaps(boundingBox)) {
+                return true;
+            }
+        }
+
+        return false;
     }
 
-}
\ No newline at end of file
+}
@@ -1,17 +1,23 @@
 package net.bitbylogic.packetblocks.adapter;
 
+import com.github.retrooper.packetevents.PacketEvents;
 import com.github.retrooper.packetevents.event.PacketListener;
 import com.github.retrooper.packetevents.event.PacketSendEvent;
 import com.github.retrooper.packetevents.protocol.packettype.PacketType;
+import com.github.retrooper.packetevents.protocol.player.ClientVersion;
 import com.github.retrooper.packetevents.protocol.world.states.WrappedBlockState;
 import com.github.retrooper.packetevents.util.Vector3i;
 import com.github.retrooper.packetevents.wrapper.play.server.WrapperPlayServerBlockChange;
 import com.github.retrooper.packetevents.wrapper.play.server.WrapperPlayServerMultiBlockChange;
+import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import net.bitbylogic.packetblocks.block.PacketBlock;
 import net.bitbylogic.packetblocks.block.PacketBlockHolder;
 import net.bitbylogic.packetblocks.block.PacketBlockManager;
 import net.bitbylogic.packetblocks.group.PacketBlockGroup;
+import net.bitbylogic.packetblocks.group.PacketBlockInstance;
+import net.bitbylogic.packetblocks.metrics.AdapterType;
+import net.bitbylogic.packetblocks.metrics.PacketBlockMetrics;
 import org.bukkit.Location;
 import org.bukkit.block.data.BlockData;
 import org.bukkit.entity.Player;
@@ -30,83 +36,123 @@ public class BlockUpdateAdapter implements PacketListener {
         Player player = event.getPlayer();
 
         if (event.getPacketType() == PacketType.Play.Server.BLOCK_CHANGE) {
-            WrapperPlayServerBlockChange packet = new WrapperPlayServerBlockChange(event);
-            Vector3i position = packet.getBlockPosition();
-            Location blockPos = new Location(player.getWorld(), position.getX(), position.getY(), position.getZ());
+            PacketBlockMetrics metrics = PacketBlockMetrics.get();
+            long startTime = metrics.startTiming();
 
-            Location bukkitLoc = new Location(
-                    player.getWorld(),
-                    blockPos.getX(),
-                    blockPos.getY(),
-                    blockPos.getZ()
-            );
+            boolean rewritten = rewriteBlockChange(player, new WrapperPlayServerBlockChange(event));
+            metrics.recordPacket(AdapterType.BLOCK_UPDATE, startTime, rewritten);
+        }
 
-            Optional<PacketBlockHolder<?, ?>> optionalBlock = manager.getBlock(bukkitLoc);
+        else if (event.getPacketType() == PacketType.Play.Server.MULTI_BLOCK_CHANGE) {
+            PacketBlockMetrics metrics = PacketBlockMetrics.get();
+            long startTime = metrics.startTiming();
 
-            if (optionalBlock.isPresent() && optionalBlock.get().isViewer(player)) {
-                PacketBlockHolder<?, ?> block = optionalBlock.get();
+            WrapperPlayServerMultiBlockChange packet = new WrapperPlayServerMultiBlockChange(event);
+            ClientVersion version = PacketEvents.getAPI().getServerManager().getVersion().toClientVersion();
 
-                if(block instanceof PacketBlock singleBlock) {
-                    packet.setBlockState(WrappedBlockState.getByString(singleBlock.getData(player).getAsString()));
-                    return;
-                }
+            WrapperPlayServerMultiBlockChange.EncodedBlock[] blocks = packet.getBlocks();
+            WrapperPlayServerMultiBlockChange.EncodedBlock[] rewrittenBlocks = rewriteBlocks(player, version, blocks);
+            packet.setBlocks(rewrittenBlocks);
 
-                if(!(block instanceof PacketBlockGroup group)) {
-                    return;
-                }
+            boolean rewritten = false;
 
-                Optional<BlockData> optionalBlockData = group.getDataAt(player, bukkitLoc);
+            for (int i = 0; i < blocks.length && !rewritten; i++) {
+                rewritten = blocks[i] != rewrittenBlocks[i];
+            }
 
-                if (optionalBlockData.isEmpty()) {
-                    return;
-                }
+            metrics.recordPacket(AdapterType.BLOCK_UPDATE, startTime, rewritten);
+        }
+    }
 
-                BlockData blockData = optionalBlockData.get();
-                packet.setBlockState(WrappedBlockState.getByString(blockData.getAsString()));
-            }
+    private boolean rewriteBlockChange(@NonNull Player player, @NonNull WrapperPlayServerBlockChange packet) {
+        Vector3i position = packet.getBlockPosition();
+        Location bukkitLoc = new Location(player.getWorld(), position.getX(), position.getY(), position.getZ());
+
+        Optional<PacketBlockHolder<?, ?>> optionalBlock = manager.getBlock(bukkitLoc);
+
+        if (optionalBlock.isEmpty() || !optionalBlock.get().isViewer(player)) {
+            return false;
         }
 
-        else if (event.getPacketType() == PacketType.Play.Server.MULTI_BLOCK_CHANGE) {
-            WrapperPlayServerMultiBlockChange packet = new WrapperPlayServerMultiBlockChange(event);
+        PacketBlockHolder<?, ?> block = optionalBlock.get();
 
-            WrapperPlayServerMultiBlockChange.EncodedBlock[] blocks = packet.getBlocks();
-            List<WrapperPlayServerMultiBlockChange.EncodedBlock> modifiedBlocks = new ArrayList<>();
-
-            for (WrapperPlayServerMultiBlockChange.EncodedBlock encodedBlock : blocks) {
-                Location loc = new Location(player.getWorld(), encodedBlock.getX(), encodedBlock.getY(), encodedBlock.getZ());
-                Optional<PacketBlockHolder<?, ?>> pb = manager.getBlock(loc);
-
-                if (pb.isPresent() && pb.get().isViewer(player)) {
-                    PacketBlockHolder<?, ?> block = pb.get();
-
-                    if(block instanceof PacketBlock singleBlock) {
-                        modifiedBlocks.add(new WrapperPlayServerMultiBlockChange.EncodedBlock(
-                                WrappedBlockState.getByString(singleBlock.getData(player).getAsString()),
-                                encodedBlock.getX(), encodedBlock.getY(), encodedBlock.getZ()));
-                        return;
-                    }
-
-                    if(!(block instanceof PacketBlockGroup group)) {
-                        return;
-                    }
-
-                    Optional<BlockData> optionalBlockData = group.getDataAt(player, loc);
-
-                    if (optionalBlockData.isEmpty()) {
-                        return;
-                    }
-
-                    BlockData blockData = optionalBlockData.get();
-                    modifiedBlocks.add(new WrapperPlayServerMultiBlockChange.EncodedBlock(
-                            WrappedBlockState.getByString(blockData.getAsString()),
-                            encodedBlock.getX(), encodedBlock.getY(), encodedBlock.getZ()));
-                } else {
-                    modifiedBlocks.add(encodedBlock);
-                }
+        if(block instanceof PacketBlock singleBlock) {
+            packet.setBlockState(WrappedBlockState.getByString(singleBlock.getData(player).getAsString()));
+            return true;
+        }
+
+        Optional<BlockData> optionalBlockData;
+
+        if (block instanceof PacketBlockInstance instance) {
+            optionalBlockData = instance.getDataAt(player, bukkitLoc);
+        } else if (block instanceof PacketBlockGroup group) {
+            optionalBlockData = group.getDataAt(player, bukkitLoc);
+        } else {
+            return false;
+        }
+
+        if (optionalBlockData.isEmpty()) {
+            return false;
+        }
+
+        BlockData blockData = optionalBlockData.get();
+        packet.setBlockState(WrappedBlockState.getByString(blockData.getAsString()));
+        return true;
+    }
+
+    /**
+     * Replaces every block the player views a packet block at with the packet block's state.
+     * Blocks without a packet block, or whose packet block has no data there, are kept as is.
+     *
+     * @param player  the player the blocks are sent to; must not be null
+     * @param version the version the block states are encoded for; must not be null
+     * @param blocks  the blocks of the multi block change; must not be null
+     * @return the rewritten blocks
+     */
+    public WrapperPlayServerMultiBlockChange.EncodedBlock[] rewriteBlocks(@NonNull Player player, @NonNull ClientVersion version,
+                                                                          WrapperPlayServerMultiBlockChange.EncodedBlock[] blocks) {
+        List<WrapperPlayServerMultiBlockChange.EncodedBlock> modifiedBlocks = new ArrayList<>(blocks.length);
+
+        for (WrapperPlayServerMultiBlockChange.EncodedBlock encodedBlock : blocks) {
+            Location loc = new Location(player.getWorld(), encodedBlock.getX(), encodedBlock.getY(), encodedBlock.getZ());
+            Optional<PacketBlockHolder<?, ?>> pb = manager.getBlock(loc);
+
+            if (pb.isEmpty() || !pb.get().isViewer(player)) {
+                modifiedBlocks.add(encodedBlock);
+                continue;
             }
 
-            packet.setBlocks(modifiedBlocks.toArray(new WrapperPlayServerMultiBlockChange.EncodedBlock[0]));
+            PacketBlockHolder<?, ?> block = pb.get();
+
+            if(block instanceof PacketBlock singleBlock) {
+                modifiedBlocks.add(new WrapperPlayServerMultiBlockChange.EncodedBlock(
+                        WrappedBlockState.getByString(version, singleBlock.getData(player).getAsString()),
+                        encodedBlock.getX(), encodedBlock.getY(), encodedBlock.getZ()));
+                continue;
+            }
+
+            Optional<BlockData> optionalBlockData;
+
+            if (block instanceof PacketBlockInstance instance) {
+                optionalBlockData = instance.getDataAt(player, loc);
+            } else if (block instanceof PacketBlockGroup group) {
+                optionalBlockData = group.getDataAt(player, loc);
+            } else {
+                optionalBlockData = Optional.empty();
+            }
+
+            if (optionalBlockData.isEmpty()) {
+                modifiedBlocks.add(encodedBlock);
+                continue;
+            }
+
+            BlockData blockData = optionalBlockData.get();
+            modifiedBlocks.add(new WrapperPlayServerMultiBlockChange.EncodedBlock(
+                    WrappedBlockState.getByString(version, blockData.getAsString()),
+                    encodedBlock.getX(), encodedBlock.getY(), encodedBlock.getZ()));
         }
+
+        return modifiedBlocks.toArray(new WrapperPlayServerMultiBlockChange.EncodedBlock[0]);
     }
 
 }
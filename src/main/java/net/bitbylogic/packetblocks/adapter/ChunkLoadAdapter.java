@@ -4,20 +4,27 @@ import com.github.retrooper.packetevents.PacketEvents;
 import com.github.retrooper.packetevents.event.PacketListener;
 import com.github.retrooper.packetevents.event.PacketSendEvent;
 import com.github.retrooper.packetevents.protocol.packettype.PacketType;
+import com.github.retrooper.packetevents.protocol.player.ClientVersion;
 import com.github.retrooper.packetevents.protocol.world.chunk.BaseChunk;
+import com.github.retrooper.packetevents.protocol.world.chunk.Column;
 import com.github.retrooper.packetevents.protocol.world.states.WrappedBlockState;
 import com.github.retrooper.packetevents.wrapper.play.server.WrapperPlayServerChunkData;
+import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import net.bitbylogic.packetblocks.block.PacketBlock;
 import net.bitbylogic.packetblocks.block.PacketBlockHolder;
 import net.bitbylogic.packetblocks.block.PacketBlockManager;
 import net.bitbylogic.packetblocks.group.PacketBlockGroup;
+import net.bitbylogic.packetblocks.group.PacketBlockInstance;
+import net.bitbylogic.packetblocks.metrics.AdapterType;
+import net.bitbylogic.packetblocks.metrics.PacketBlockMetrics;
+import net.bitbylogic.packetblocks.metrics.jfr.ChunkOverlayEvent;
 import net.bitbylogic.utils.location.WorldPosition;
 import org.bukkit.Location;
 import org.bukkit.block.data.BlockData;
 import org.bukkit.entity.Player;
 
-import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -30,100 +37,117 @@ public class ChunkLoadAdapter implements PacketListener {
     public void onPacketSend(PacketSendEvent event) {
         if (event.getPacketType() != PacketType.Play.Server.CHUNK_DATA) return;
 
-        Player player = event.getPlayer();
-        WrapperPlayServerChunkData packet = new WrapperPlayServerChunkData(event);
+        PacketBlockMetrics metrics = PacketBlockMetrics.get();
+        long startTime = metrics.startTiming();
 
-        int chunkX = packet.getColumn().getX();
-        int chunkZ = packet.getColumn().getZ();
+        ChunkOverlayEvent overlayEvent = new ChunkOverlayEvent();
+        overlayEvent.begin();
 
-        List<PacketBlockHolder<?, ?>> blocks = new ArrayList<>(manager.getBlocks(player.getWorld(), chunkX, chunkZ).values());
-        if (blocks.isEmpty()) return;
+        WrapperPlayServerChunkData packet = new WrapperPlayServerChunkData(event);
+        Column column = packet.getColumn();
+        Player player = event.getPlayer();
 
-        BaseChunk[] sections = packet.getColumn().getChunks();
-        int absMinHeight = Math.abs(player.getWorld().getMinHeight());
+        int written = rewriteChunk(player, PacketEvents.getAPI().getServerManager().getVersion().toClientVersion(),
+                column.getX(), column.getZ(), column.getChunks());
 
-        for (PacketBlockHolder<?, ?> packetBlock : blocks) {
-            if (!packetBlock.isViewer(player)) continue;
+        if (written > 0) {
+            metrics.recordChunkMerge(written);
 
-            if(packetBlock instanceof PacketBlock singleBlock) {
-                Location loc = singleBlock.getLocation();
+            overlayEvent.end();
 
-                int blockX = loc.getBlockX();
-                int blockZ = loc.getBlockZ();
+            if (overlayEvent.shouldCommit()) {
+                overlayEvent.setPlayer(player.getName());
+                overlayEvent.setWorld(player.getWorld().getName());
+                overlayEvent.setChunkX(column.getX());
+                overlayEvent.setChunkZ(column.getZ());
+                overlayEvent.setBlocksMerged(written);
+                overlayEvent.commit();
+            }
+        }
 
-                int blockChunkX = blockX >> 4;
-                int blockChunkZ = blockZ >> 4;
+        metrics.recordPacket(AdapterType.CHUNK_LOAD, startTime, written > 0);
+    }
 
-                if (blockChunkX != chunkX || blockChunkZ != chunkZ) {
-                    continue;
-                }
+    /**
+     * Writes every packet block the player views in the given chunk into the chunk's sections. Each
+     * holder's viewer check runs once, however many blocks it has in the chunk, and each block is
+     * written and counted once.
+     *
+     * @param player   the player the chunk is sent to; must not be null
+     * @param version  the version the block states are encoded for; must not be null
+     * @param chunkX   the X-coordinate of the chunk
+     * @param chunkZ   the Z-coordinate of the chunk
+     * @param sections the sections of the chunk, from the bottom of the world up; must not be null
+     * @return the number of blocks written
+     */
+    public int rewriteChunk(@NonNull Player player, @NonNull ClientVersion version, int chunkX, int chunkZ, @NonNull BaseChunk[] sections) {
+        Map<WorldPosition, PacketBlockHolder<?, ?>> blocks = manager.getBlocks(player.getWorld(), chunkX, chunkZ);
+        List<PacketBlockInstance> instances = manager.getInstances(player.getWorld(), chunkX, chunkZ);
+        if (blocks.isEmpty() && instances.isEmpty()) return 0;
 
-                int xInChunk = loc.getBlockX() & 0xF;
-                int y = loc.getBlockY();
-                int zInChunk = loc.getBlockZ() & 0xF;
+        int absMinHeight = Math.abs(player.getWorld().getMinHeight());
+        int[] written = new int[1];
 
-                int sectionIndex = (y >> 4) + (absMinHeight >> 4);
-                int yInSection = y & 0xF;
+        for (PacketBlockInstance instance : instances) {
+            if (!instance.isViewer(player)) continue;
 
-                if (sectionIndex < 0 || sectionIndex >= sections.length) continue;
+            instance.forEachBlockInChunk(player, chunkX, chunkZ, (x, y, z, blockData) -> {
+                if (writeBlock(version, sections, absMinHeight, x, y, z, blockData)) {
+                    written[0]++;
+                }
+            });
+        }
 
-                BaseChunk section = sections[sectionIndex];
-                if (section == null) continue;
+        Map<PacketBlockHolder<?, ?>, Boolean> viewing = new IdentityHashMap<>();
 
-                BlockData bukkitData = singleBlock.getData(player);
-                WrappedBlockState wrappedState = WrappedBlockState.getByString(bukkitData.getAsString());
+        for (Map.Entry<WorldPosition, PacketBlockHolder<?, ?>> entry : blocks.entrySet()) {
+            PacketBlockHolder<?, ?> packetBlock = entry.getValue();
 
-                section.set(
-                        PacketEvents.getAPI().getServerManager().getVersion().toClientVersion(),
-                        xInChunk,
-                        yInSection,
-                        zInChunk,
-                        wrappedState.getGlobalId()
-                );
+            if (!viewing.computeIfAbsent(packetBlock, holder -> holder.isViewer(player))) continue;
 
-                continue;
-            }
+            Location loc;
+            BlockData bukkitData;
 
-            if(!(packetBlock instanceof PacketBlockGroup group)) {
+            if (packetBlock instanceof PacketBlock singleBlock) {
+                loc = singleBlock.getLocation();
+                bukkitData = singleBlock.getData(player);
+            } else if (packetBlock instanceof PacketBlockGroup group) {
+                loc = group.getCachedLocations().get(entry.getKey());
+                bukkitData = group.getData().get(entry.getKey());
+            } else {
                 continue;
             }
 
-            for (Map.Entry<WorldPosition, BlockData> entry : group.getData().entrySet()) {
-                Location loc = group.getCachedLocations().get(entry.getKey());
+            if (loc == null || bukkitData == null) continue;
+            if (loc.getBlockX() >> 4 != chunkX || loc.getBlockZ() >> 4 != chunkZ) continue;
 
-                int blockX = loc.getBlockX();
-                int blockZ = loc.getBlockZ();
-
-                int blockChunkX = blockX >> 4;
-                int blockChunkZ = blockZ >> 4;
-
-                if (blockChunkX != chunkX || blockChunkZ != chunkZ) {
-                    continue;
-                }
+            if (writeBlock(version, sections, absMinHeight, loc.getBlockX(), loc.getBlockY(), loc.getBlockZ(), bukkitData)) {
+                written[0]++;
+            }
+        }
 
-                int xInChunk = loc.getBlockX() & 0xF;
-                int y = loc.getBlockY();
-                int zInChunk = loc.getBlockZ() & 0xF;
+        return written[0];
+    }
 
-                int sectionIndex = (y >> 4) + (absMinHeight >> 4);
-                int yInSection = y & 0xF;
+    private static boolean writeBlock(@NonNull ClientVersion version, @NonNull BaseChunk[] sections, int absMinHeight,
+                                      int x, int y, int z, @NonNull BlockData blockData) {
+        int sectionIndex = (y >> 4) + (absMinHeight >> 4);
 
-                if (sectionIndex < 0 || sectionIndex >= sections.length) continue;
+        if (sectionIndex < 0 || sectionIndex >= sections.length) return false;
 
-                BaseChunk section = sections[sectionIndex];
-                if (section == null) continue;
+        BaseChunk section = sections[sectionIndex];
+        if (section == null) return false;
 
-                WrappedBlockState wrappedState = WrappedBlockState.getByString(entry.getValue().getAsString());
+        WrappedBlockState wrappedState = WrappedBlockState.getByString(version, blockData.getAsString());
 
-                section.set(
-                        PacketEvents.getAPI().getServerManager().getVersion().toClientVersion(),
-                        xInChunk,
-                        yInSection,
-                        zInChunk,
-                        wrappedState.getGlobalId()
-                );
-            }
-        }
+        section.set(
+                version,
+                x & 0xF,
+                y & 0xF,
+                z & 0xF,
+                wrappedState.getGlobalId()
+        );
+        return true;
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,86 @@
+package net.bitbylogic.packetblocks.block;
+
+import lombok.NonNull;
+import net.bitbylogic.packetblocks.util.BlockPositions;
+import net.bitbylogic.utils.location.ChunkPosition;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * A read-only view of one chunk index of every {@link WorldPartition}, keyed by {@link ChunkPosition}
+ * like the manager's indexes were before they were partitioned by world. Backs the deprecated
+ * {@link PacketBlockManager#getBlockLocations()} and {@link PacketBlockManager#getInstanceLocations()}.
+ * <p>
+ * The view reads through to the partitions, so it always reflects the current index. Values are
+ * wrapped read-only as they are handed out.
+ *
+ * @param <V> the type of the values of the index
+ */
+final class ChunkIndexView<V> extends AbstractMap<ChunkPosition, V> {
+
+    private final Map<String, WorldPartition> partitions;
+    private final Function<WorldPartition, Map<Long, V>> index;
+    private final UnaryOperator<V> readOnly;
+
+    ChunkIndexView(@NonNull Map<String, WorldPartition> partitions, @NonNull Function<WorldPartition, Map<Long, V>> index,
+                   @NonNull UnaryOperator<V> readOnly) {
+        this.partitions = partitions;
+        this.index = index;
+        this.readOnly = readOnly;
+    }
+
+    @Override
+    public @Nullable V get(Object key) {
+        if (!(key instanceof ChunkPosition chunkPosition)) {
+            return null;
+        }
+
+        WorldPartition partition = partitions.get(chunkPosition.worldName());
+        V value = partition == null ? null : index.apply(partition).get(BlockPositions.chunkKey(chunkPosition.x(), chunkPosition.z()));
+
+        return value == null ? null : readOnly.apply(value);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+
+        for (WorldPartition partition : partitions.values()) {
+            size += index.apply(partition).size();
+        }
+
+        return size;
+    }
+
+    @Override
+    public Set<Entry<ChunkPosition, V>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<ChunkPosition, V>> iterator() {
+                return partitions.values().stream()
+                        .flatMap(partition -> index.apply(partition).entrySet().stream().map(entry -> Map.entry(
+                                new ChunkPosition(partition.getWorldName(), BlockPositions.chunkKeyX(entry.getKey()), BlockPositions.chunkKeyZ(entry.getKey())),
+                                readOnly.apply(entry.getValue()))))
+                        .iterator();
+            }
+
+            @Override
+            public int size() {
+                return ChunkIndexView.this.size();
+            }
+        };
+    }
+
+}
@@ -6,6 +6,8 @@ import net.bitbylogic.packetblocks.PacketBlocks;
 import net.bitbylogic.packetblocks.data.DataHandler;
 import net.bitbylogic.packetblocks.event.PacketBlockBreakEvent;
 import net.bitbylogic.packetblocks.metadata.MetadataHandler;
+import net.bitbylogic.packetblocks.metrics.PacketBlockMetrics;
+import net.bitbylogic.packetblocks.util.BlockChangeBatch;
 import net.bitbylogic.packetblocks.util.BoundingBoxes;
 import net.bitbylogic.packetblocks.viewer.ViewerHandler;
 import net.bitbylogic.packetblocks.viewer.impl.SinglePacketBlockViewer;
@@ -62,7 +64,10 @@ public class PacketBlock implements PacketBlockHolder<BlockData, SinglePacketBlo
         this.viewerHandler = new ViewerHandler<>(
                 player -> getData(),
                 this::sendUpdate,
-                player -> player.sendBlockChange(this.location, location.getBlock().getBlockData()),
+                player -> {
+                    new BlockChangeBatch().addReal(this.location).send(player);
+                    PacketBlockMetrics.get().recordUpdate(player);
+                },
                 () -> new SinglePacketBlockViewer(getData(), this::getData, breakSpeed)
         );
 
@@ -94,7 +99,8 @@ public class PacketBlock implements PacketBlockHolder<BlockData, SinglePacketBlo
      */
     @Override
     public void sendUpdate(@NonNull Player player) {
-        player.sendBlockChange(location, getData(player));
+        new BlockChangeBatch().add(location, getData(player)).markResolved().send(player, getUser(player));
+        PacketBlockMetrics.get().recordUpdate(player);
     }
 
     /**
@@ -1,34 +1,260 @@
 package net.bitbylogic.packetblocks.block;
 
+import com.tcoded.folialib.impl.PlatformScheduler;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NonNull;
-import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 import net.bitbylogic.packetblocks.PacketBlocks;
 import net.bitbylogic.packetblocks.data.DataHolder;
 import net.bitbylogic.packetblocks.group.PacketBlockGroup;
+import net.bitbylogic.packetblocks.group.PacketBlockInstance;
+import net.bitbylogic.packetblocks.group.PacketBlockTemplate;
+import net.bitbylogic.packetblocks.group.TemplateTransform;
+import net.bitbylogic.packetblocks.metrics.FootprintTracker;
+import net.bitbylogic.packetblocks.metrics.MemoryFootprint;
+import net.bitbylogic.packetblocks.metrics.PacketBlockMetrics;
+import net.bitbylogic.packetblocks.storage.PacketBlockStore;
+import net.bitbylogic.packetblocks.util.BlockChangeBatch;
+import net.bitbylogic.packetblocks.util.BlockPositions;
+import net.bitbylogic.packetblocks.util.RegionShardedMap;
+import net.bitbylogic.packetblocks.viewer.ViewerListener;
 import net.bitbylogic.utils.location.ChunkPosition;
 import net.bitbylogic.utils.location.WorldPosition;
-import org.bukkit.Bukkit;
 import org.bukkit.Chunk;
 import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.block.data.BlockData;
+import org.bukkit.block.structure.StructureRotation;
 import org.bukkit.entity.Player;
 import org.bukkit.util.BoundingBox;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 import java.util.logging.Level;
 
-@RequiredArgsConstructor
+/**
+ * Registers packet blocks, groups and instances and indexes them by chunk and block position.
+ * <p>
+ * <b>Worlds.</b> The index is partitioned per world, see {@link WorldPartition}. Every world a block
+ * is registered in gets a small int id, and queries scoped to a world, such as {@link #getBlocks(World)}
+ * or {@link #getBlocks(World, int, int)}, only touch that world's partition.
+ * <p>
+ * <b>Concurrency.</b> The indexes are written from main and region threads and read from
+ * PacketEvents' netty threads for every chunk, block change, placement and dig packet. Every level
+ * of the index is a lock-free concurrent structure: each partition is a concurrent map of per-chunk
+ * {@link ConcurrentHashMap}s for blocks and of {@link CopyOnWriteArrayList}s for instances. Readers
+ * never block writers, never see a half-written entry and never get a
+ * {@link java.util.ConcurrentModificationException}; iteration is weakly consistent, so a reader may
+ * or may not see a holder that is registered while it iterates. Holders follow the same model for
+ * their viewers and data, see {@link net.bitbylogic.packetblocks.viewer.ViewerHandler} and
+ * {@link PacketBlockGroup}.
+ * <p>
+ * Operations that touch several entries, such as creating a group or {@link #removeIf(Predicate)},
+ * are not atomic to readers. They are safe to run from any thread, but two writers changing the same
+ * holder at the same time must be serialised by the caller, for example by running both on the
+ * region that owns the holder.
+ * <p>
+ * <b>Region sharding.</b> On Folia, the chunk level of every partition can be split into one shard per
+ * region section with {@link #PacketBlockManager(PacketBlocks, boolean)}, see {@link RegionShardedMap}.
+ * Region threads then only contend on the shards of the chunks they own. Chunk lookups cost one extra
+ * hash lookup and world-wide queries walk every shard, so the single table stays the default.
+ */
 @Getter
 public class PacketBlockManager {
 
-    private final ConcurrentHashMap<ChunkPosition, Map<WorldPosition, PacketBlockHolder<?, ?>>> blockLocations = new ConcurrentHashMap<>();
+    /**
+     * The partition of every world a block has been registered in, by world name.
+     */
+    private final Map<String, WorldPartition> partitions = new ConcurrentHashMap<>();
+
+    @Getter(AccessLevel.NONE)
+    private final Map<String, Integer> worldIds = new ConcurrentHashMap<>();
+
+    @Getter(AccessLevel.NONE)
+    private final AtomicInteger nextWorldId = new AtomicInteger();
+
+    @Getter(AccessLevel.NONE)
+    private volatile WorldPartition[] partitionsById = new WorldPartition[0];
+
+    /**
+     * The registered holders each player views, kept up to date by every holder's {@link ViewerListener}.
+     */
+    @Getter(AccessLevel.NONE)
+    private final Map<UUID, Set<PacketBlockHolder<?, ?>>> viewedHolders = new ConcurrentHashMap<>();
 
     private final PacketBlocks plugin;
+    private final boolean regionSharded;
+
+    /**
+     * Estimates the memory retained by registered holders. See {@link #getMemoryFootprint()}.
+     */
+    private final FootprintTracker footprintTracker = new FootprintTracker();
+
+    /**
+     * The store chunks are lazily loaded from, or null if packet blocks are not persisted. While a store
+     * is set, every lookup and mutation of a chunk first loads that chunk's stored blocks, so world-wide
+     * queries such as {@link #getBlocks(World)} only cover chunks that have been loaded.
+     */
+    @Setter
+    private @Nullable PacketBlockStore store;
+
+    public PacketBlockManager(PacketBlocks plugin) {
+        this(plugin, false);
+    }
+
+    /**
+     * @param plugin        the owning plugin
+     * @param regionSharded whether the chunk indexes are sharded by Folia region section
+     */
+    public PacketBlockManager(PacketBlocks plugin, boolean regionSharded) {
+        this.plugin = plugin;
+        this.regionSharded = regionSharded;
+    }
+
+    /**
+     * Gets the id of the specified world, assigning the next free id if the world has none yet. Ids
+     * are small, dense and never reused, and a world keeps its id when it is unloaded and loaded again.
+     *
+     * @param world the world; must not be null
+     * @return the world's id
+     */
+    public int getWorldId(@NonNull World world) {
+        return getWorldId(world.getName());
+    }
+
+    /**
+     * Gets the id of the world with the specified name. See {@link #getWorldId(World)}.
+     *
+     * @param worldName the name of the world; must not be null
+     * @return the world's id
+     */
+    public int getWorldId(@NonNull String worldName) {
+        Integer worldId = worldIds.get(worldName);
+        return worldId != null ? worldId : worldIds.computeIfAbsent(worldName, name -> nextWorldId.getAndIncrement());
+    }
+
+    /**
+     * @param world the world; must not be null
+     * @return the partition of the specified world, or null if no blocks were registered in it
+     */
+    public @Nullable WorldPartition getPartition(@NonNull World world) {
+        return partitions.get(world.getName());
+    }
+
+    /**
+     * @param worldId the id of the world, see {@link #getWorldId(World)}
+     * @return the partition of the world with the specified id, or null if no blocks were registered in it
+     */
+    public @Nullable WorldPartition getPartition(int worldId) {
+        WorldPartition[] byId = partitionsById;
+        return worldId >= 0 && worldId < byId.length ? byId[worldId] : null;
+    }
+
+    private WorldPartition partition(@NonNull String worldName) {
+        WorldPartition partition = partitions.get(worldName);
+
+        if (partition != null) {
+            return partition;
+        }
+
+        synchronized (partitions) {
+            return partitions.computeIfAbsent(worldName, name -> {
+                WorldPartition created = new WorldPartition(getWorldId(name), name, regionSharded);
+                WorldPartition[] byId = Arrays.copyOf(partitionsById, Math.max(partitionsById.length, created.getWorldId() + 1));
+
+                byId[created.getWorldId()] = created;
+                partitionsById = byId;
+                return created;
+            });
+        }
+    }
+
+    private Map<WorldPosition, PacketBlockHolder<?, ?>> blocksFor(@NonNull ChunkPosition chunkPosition) {
+        return partition(chunkPosition.worldName()).getBlockLocations()
+                .computeIfAbsent(BlockPositions.chunkKey(chunkPosition.x(), chunkPosition.z()), k -> new ConcurrentHashMap<>());
+    }
+
+    private @Nullable Map<WorldPosition, PacketBlockHolder<?, ?>> blocksAt(@NonNull ChunkPosition chunkPosition) {
+        WorldPartition partition = partitions.get(chunkPosition.worldName());
+        return partition == null ? null : partition.getBlocks(chunkPosition.x(), chunkPosition.z());
+    }
+
+    /**
+     * Starts indexing a newly registered holder: its join view, see {@link #indexJoinView}, and its
+     * viewers in the reverse viewer index.
+     */
+    private void watch(@NonNull PacketBlockHolder<?, ?> holder) {
+        holder.getViewerHandler().setViewerListener(new ViewerListener() {
+            @Override
+            public void viewerAdded(@NonNull UUID uuid) {
+                viewedHolders.computeIfAbsent(uuid, k -> ConcurrentHashMap.newKeySet()).add(holder);
+            }
+
+            @Override
+            public void viewerRemoved(@NonNull UUID uuid) {
+                unindexViewer(uuid, holder);
+            }
+        });
+
+        holder.getViewers().keySet().forEach(uuid -> viewedHolders.computeIfAbsent(uuid, k -> ConcurrentHashMap.newKeySet()).add(holder));
+        indexJoinView(holder);
+    }
+
+    private void unwatch(@NonNull PacketBlockHolder<?, ?> holder) {
+        holder.getViewerHandler().setViewerListener(null);
+        holder.getViewers().keySet().forEach(uuid -> unindexViewer(uuid, holder));
+        unindexJoinView(holder);
+    }
+
+    private void unindexViewer(@NonNull UUID uuid, @NonNull PacketBlockHolder<?, ?> holder) {
+        viewedHolders.computeIfPresent(uuid, (k, holders) -> {
+            holders.remove(holder);
+            return holders.isEmpty() ? null : holders;
+        });
+    }
+
+    /**
+     * Adds the holder to the join index of every world it has blocks in if it is shown on join, and
+     * removes it from every other world's join index. Called again whenever the holder's flag changes.
+     */
+    private void indexJoinView(@NonNull PacketBlockHolder<?, ?> holder) {
+        holder.getDataHandler().setAddViewerOnJoinListener(() -> indexJoinView(holder));
+
+        boolean addViewerOnJoin = holder.isAddViewerOnJoin();
+
+        for (WorldPartition partition : partitions.values()) {
+            if (addViewerOnJoin && isIn(holder, partition.getWorldName())) {
+                partition.getJoinHolders().add(holder);
+            } else {
+                partition.getJoinHolders().remove(holder);
+            }
+        }
+    }
+
+    private void unindexJoinView(@NonNull PacketBlockHolder<?, ?> holder) {
+        holder.getDataHandler().setAddViewerOnJoinListener(null);
+        partitions.values().forEach(partition -> partition.getJoinHolders().remove(holder));
+    }
+
+    private static boolean isIn(@NonNull PacketBlockHolder<?, ?> holder, @NonNull String worldName) {
+        if (holder instanceof PacketBlock singleBlock) {
+            return singleBlock.getPosition().worldName().equals(worldName);
+        }
+
+        if (holder instanceof PacketBlockInstance instance) {
+            return instance.getWorldName().equals(worldName);
+        }
+
+        return holder instanceof PacketBlockGroup group && group.getWorldNames().contains(worldName);
+    }
 
     /**
      * Creates a new {@link PacketBlock} instance at the specified location with the given block data.
@@ -51,47 +277,88 @@ public class PacketBlockManager {
             return null;
         }
 
-        Chunk chunk = location.getChunk();
-        PacketBlock packetBlock = new PacketBlock(location, blockData);
-        ChunkPosition identifier = new ChunkPosition(location.getWorld().getName(), chunk.getX(), chunk.getZ());
-
-        if (blockLocations.containsKey(identifier)) {
-            Map<WorldPosition, PacketBlockHolder<?, ?>> blocks = blockLocations.get(identifier);
+        loadChunk(location);
 
-            if (blocks.containsValue(packetBlock)) {
-                return packetBlock;
-            }
+        PacketBlock packetBlock = new PacketBlock(location, blockData);
+        Map<WorldPosition, PacketBlockHolder<?, ?>> blocks = blocksFor(packetBlock.getChunk());
 
-            blocks.put(packetBlock.getPosition(), packetBlock);
-            blockLocations.put(identifier, blocks);
+        if (blocks.containsValue(packetBlock)) {
             return packetBlock;
         }
 
-        Map<WorldPosition, PacketBlockHolder<?, ?>> newBlocks = new HashMap<>();
-        newBlocks.put(packetBlock.getPosition(), packetBlock);
-
-        blockLocations.put(identifier, newBlocks);
+        blocks.put(packetBlock.getPosition(), packetBlock);
+        watch(packetBlock);
+        footprintTracker.track(packetBlock);
+        recordCreated(packetBlock);
         return packetBlock;
     }
 
     public PacketBlockGroup createGroup(@NonNull Map<Location, BlockData> groupBlocks) {
+        groupBlocks.keySet().forEach(this::loadChunk);
+
         PacketBlockGroup packetGroup = new PacketBlockGroup(groupBlocks);
 
         for (Map.Entry<ChunkPosition, List<WorldPosition>> entry : packetGroup.getChunkPositions().entrySet()) {
             ChunkPosition chunkPosition = entry.getKey();
             List<WorldPosition> worldPositions = entry.getValue();
 
-            Map<WorldPosition, PacketBlockHolder<?, ?>> blocks = blockLocations.computeIfAbsent(chunkPosition, k -> new HashMap<>());
+            Map<WorldPosition, PacketBlockHolder<?, ?>> blocks = blocksFor(chunkPosition);
 
             for (WorldPosition worldPosition : worldPositions) {
                 blocks.put(worldPosition, packetGroup);
-                blockLocations.put(chunkPosition, blocks);
             }
         }
 
+        watch(packetGroup);
+        footprintTracker.track(packetGroup);
+
+        if (store != null) {
+            store.recordGroupCreated(packetGroup);
+        }
+
         return packetGroup;
     }
 
+    /**
+     * Places a new {@link PacketBlockInstance} of the given template at the specified origin.
+     *
+     * @param template the template to place; must not be null
+     * @param origin   the location the template's offsets are measured from; must not be null
+     * @return the created instance, or null if the origin's world is null
+     */
+    public PacketBlockInstance createInstance(@NonNull PacketBlockTemplate template, @NonNull Location origin) {
+        return createInstance(template, origin, TemplateTransform.NONE);
+    }
+
+    /**
+     * Places a new {@link PacketBlockInstance} of the given template at the specified origin, rotated
+     * and mirrored according to the given transform. Only the chunks the instance covers are indexed;
+     * no per-block entries are created.
+     *
+     * @param template  the template to place; must not be null
+     * @param origin    the location the template's offsets are measured from; must not be null
+     * @param transform the rotation and mirror to place the template with; must not be null
+     * @return the created instance, or null if the origin's world is null
+     */
+    public PacketBlockInstance createInstance(@NonNull PacketBlockTemplate template, @NonNull Location origin, @NonNull TemplateTransform transform) {
+        if (origin.getWorld() == null) {
+            plugin.getLogger().log(Level.WARNING, "Unable to create packet block instance, null world!: " + origin);
+            return null;
+        }
+
+        PacketBlockInstance instance = new PacketBlockInstance(template, origin, transform);
+
+        for (ChunkPosition chunkPosition : instance.getChunkPositions()) {
+            partition(chunkPosition.worldName()).getInstanceLocations()
+                    .computeIfAbsent(BlockPositions.chunkKey(chunkPosition.x(), chunkPosition.z()), k -> new CopyOnWriteArrayList<>())
+                    .add(instance);
+        }
+
+        watch(instance);
+        footprintTracker.track(instance);
+        return instance;
+    }
+
     /**
      * Adds a collection of blocks to the specified group and updates the internal block location mappings.
      *
@@ -99,11 +366,30 @@ public class PacketBlockManager {
      * @param locations A map containing block locations and their associated block data. Must not be null.
      */
     public void addBlocksToGroup(@NonNull PacketBlockGroup group, @NonNull Map<Location, BlockData> locations) {
-        group.addLocations(locations);
+        addBlocksToGroup(group, locations, true);
+    }
 
-        for (Map.Entry<Location, BlockData> entry : locations.entrySet()) {
-            ChunkPosition chunkPosition = ChunkPosition.of(entry.getKey().getChunk());
-            blockLocations.get(chunkPosition).put(WorldPosition.ofBlock(entry.getKey()), group);
+    /**
+     * Adds a collection of blocks to the specified group and updates the internal block location mappings.
+     *
+     * @param group       The group to which the blocks will be added. Must not be null.
+     * @param locations   A map containing block locations and their associated block data. Must not be null.
+     * @param sendUpdates Whether the group's viewers should be sent the added blocks.
+     */
+    public void addBlocksToGroup(@NonNull PacketBlockGroup group, @NonNull Map<Location, BlockData> locations, boolean sendUpdates) {
+        locations.keySet().forEach(this::loadChunk);
+        group.addLocations(locations, sendUpdates);
+
+        for (Location location : locations.keySet()) {
+            WorldPosition worldPosition = WorldPosition.ofBlock(location);
+            blocksFor(worldPosition.toChunkPosition()).put(worldPosition, group);
+        }
+
+        indexJoinView(group);
+        footprintTracker.update(group);
+
+        if (store != null) {
+            store.recordGroupBlocksAdded(group, locations);
         }
     }
 
@@ -115,10 +401,17 @@ public class PacketBlockManager {
      * @param blockData The data representing the block to be added. Must not be null.
      */
     public void addBlockToGroup(@NonNull PacketBlockGroup group, @NonNull Location location, @NonNull BlockData blockData) {
+        loadChunk(location);
         group.addLocation(location, blockData);
 
-        ChunkPosition chunkPosition = ChunkPosition.of(location.getChunk());
-        blockLocations.get(chunkPosition).put(WorldPosition.ofBlock(location), group);
+        WorldPosition worldPosition = WorldPosition.ofBlock(location);
+        blocksFor(worldPosition.toChunkPosition()).put(worldPosition, group);
+        indexJoinView(group);
+        footprintTracker.update(group);
+
+        if (store != null) {
+            store.recordGroupBlocksAdded(group, Map.of(location, blockData));
+        }
     }
 
     /**
@@ -131,8 +424,19 @@ public class PacketBlockManager {
         group.removeLocations(locations);
 
         for (Location location : locations) {
-            ChunkPosition chunkPosition = ChunkPosition.of(location.getChunk());
-            blockLocations.get(chunkPosition).remove(WorldPosition.ofBlock(location));
+            WorldPosition worldPosition = WorldPosition.ofBlock(location);
+            Map<WorldPosition, PacketBlockHolder<?, ?>> blocks = blocksAt(worldPosition.toChunkPosition());
+
+            if (blocks != null) {
+                blocks.remove(worldPosition);
+            }
+        }
+
+        indexJoinView(group);
+        footprintTracker.update(group);
+
+        if (store != null) {
+            store.recordGroupBlocksRemoved(group, locations);
         }
     }
 
@@ -145,8 +449,163 @@ public class PacketBlockManager {
     public void removeBlockFromGroup(@NonNull PacketBlockGroup group, @NonNull Location location) {
         group.removeLocation(location);
 
-        ChunkPosition chunkPosition = ChunkPosition.of(location.getChunk());
-        blockLocations.get(chunkPosition).remove(WorldPosition.ofBlock(location));
+        WorldPosition worldPosition = WorldPosition.ofBlock(location);
+        Map<WorldPosition, PacketBlockHolder<?, ?>> blocks = blocksAt(worldPosition.toChunkPosition());
+
+        if (blocks != null) {
+            blocks.remove(worldPosition);
+        }
+
+        indexJoinView(group);
+        footprintTracker.update(group);
+
+        if (store != null) {
+            store.recordGroupBlocksRemoved(group, List.of(location));
+        }
+    }
+
+    /**
+     * Moves the specified group by the given offset. See {@link #transformGroup(PacketBlockGroup, UnaryOperator, UnaryOperator)}.
+     *
+     * @param group the group to move; must not be null
+     * @param dx    the offset along the X axis
+     * @param dy    the offset along the Y axis
+     * @param dz    the offset along the Z axis
+     * @return true if the group was moved, false if another holder occupies one of the target positions
+     */
+    public boolean translateGroup(@NonNull PacketBlockGroup group, int dx, int dy, int dz) {
+        return transformGroup(group, location -> location.add(dx, dy, dz), UnaryOperator.identity());
+    }
+
+    /**
+     * Rotates the specified group around the Y axis of a pivot block. Directional block data is
+     * rotated along with the positions. See {@link #transformGroup(PacketBlockGroup, UnaryOperator, UnaryOperator)}.
+     *
+     * @param group    the group to rotate; must not be null
+     * @param pivot    the block the group is rotated around; must not be null
+     * @param rotation the rotation to apply; must not be null
+     * @return true if the group was rotated, false if another holder occupies one of the target positions
+     */
+    public boolean rotateGroup(@NonNull PacketBlockGroup group, @NonNull Location pivot, @NonNull StructureRotation rotation) {
+        TemplateTransform transform = TemplateTransform.of(rotation);
+
+        int pivotX = pivot.getBlockX();
+        int pivotZ = pivot.getBlockZ();
+
+        return transformGroup(group, location -> {
+            int x = location.getBlockX() - pivotX;
+            int z = location.getBlockZ() - pivotZ;
+
+            location.setX(pivotX + transform.transformX(x, z));
+            location.setZ(pivotZ + transform.transformZ(x, z));
+            return location;
+        }, transform::apply);
+    }
+
+    /**
+     * Atomically moves the blocks of the specified group and updates its viewers with a single merged
+     * batch of changes per viewer. Only positions that were vacated or newly occupied are re-indexed;
+     * positions the group occupies both before and after the move keep their index entry.
+     * <p>
+     * Each viewer receives the real world state for every vacated position together with their view
+     * of the group at its new location, so the client never sees the group disappear in between.
+     * <p>
+     * The move is rejected, and nothing changes, if any target position is already indexed for another
+     * holder. A holder registered at a target position while the group is being moved is kept, and the
+     * collision is logged. Stored chunks at the target positions are loaded first; if that restores more
+     * of the group, those blocks move along with it.
+     *
+     * @param group          the group to transform; must not be null
+     * @param locationMapper maps each current block location to its new location; must not be null
+     * @param dataMapper     maps each block's data to its data after the move; must not be null
+     * @return true if the group was moved, false if another holder occupies one of the target positions
+     */
+    public boolean transformGroup(@NonNull PacketBlockGroup group, @NonNull UnaryOperator<Location> locationMapper, @NonNull UnaryOperator<BlockData> dataMapper) {
+        Map<WorldPosition, Location> previousLocations;
+        Map<WorldPosition, Location> targets;
+
+        do {
+            previousLocations = new HashMap<>(group.getCachedLocations());
+            targets = new HashMap<>(previousLocations.size());
+
+            for (Map.Entry<WorldPosition, Location> entry : previousLocations.entrySet()) {
+                Location target = locationMapper.apply(entry.getValue().clone()).toBlockLocation();
+
+                loadChunk(target);
+                targets.put(entry.getKey(), target);
+            }
+        } while (group.getCachedLocations().size() != previousLocations.size());
+
+        for (Location target : targets.values()) {
+            WorldPosition position = WorldPosition.ofBlock(target);
+
+            if (previousLocations.containsKey(position)) {
+                continue;
+            }
+
+            Map<WorldPosition, PacketBlockHolder<?, ?>> blocks = blocksAt(position.toChunkPosition());
+            PacketBlockHolder<?, ?> occupant = blocks == null ? null : blocks.get(position);
+
+            if (occupant != null && occupant != group) {
+                return false;
+            }
+        }
+
+        Map<WorldPosition, Location> mappedTargets = targets;
+        Map<WorldPosition, BlockData> previousData = store == null ? Map.of() : new HashMap<>(group.getData());
+        Map<BlockData, BlockData> transformedData = new HashMap<>();
+
+        group.relocate(location -> mappedTargets.get(WorldPosition.ofBlock(location)).clone(),
+                blockData -> transformedData.computeIfAbsent(blockData, dataMapper));
+
+        Map<WorldPosition, Location> currentLocations = group.getCachedLocations();
+        BlockChangeBatch vacated = new BlockChangeBatch();
+
+        Map<WorldPosition, Location> vacatedLocations = previousLocations;
+
+        vacatedLocations.forEach((position, location) -> {
+            if (currentLocations.containsKey(position)) {
+                return;
+            }
+
+            Map<WorldPosition, PacketBlockHolder<?, ?>> blocks = blocksAt(position.toChunkPosition());
+
+            if (blocks != null) {
+                blocks.remove(position, group);
+            }
+
+            vacated.addReal(location);
+        });
+
+        currentLocations.forEach((position, location) -> {
+            if (vacatedLocations.containsKey(position)) {
+                return;
+            }
+
+            PacketBlockHolder<?, ?> occupant = blocksFor(position.toChunkPosition()).putIfAbsent(position, group);
+
+            if (occupant != null && occupant != group) {
+                plugin.getLogger().warning("Packet block group moved onto " + location + ", which is already taken by another holder");
+            }
+        });
+
+        indexJoinView(group);
+
+        group.forEachOnlineViewer((player, viewer) -> {
+            new BlockChangeBatch().addAll(vacated).addAll(group.getBlockChanges(player))
+                    .send(player, viewer.getHandle().getUser(player));
+            PacketBlockMetrics.get().recordUpdate(player);
+        });
+
+        if (store != null) {
+            store.recordGroupChanged(group, previousLocations, previousData);
+            store.relocateOfflineViewers(group, location -> {
+                Location target = mappedTargets.get(WorldPosition.ofBlock(location));
+                return target == null ? null : target.clone();
+            }, blockData -> transformedData.computeIfAbsent(blockData, dataMapper));
+        }
+
+        return true;
     }
 
     /**
@@ -167,6 +626,10 @@ public class PacketBlockManager {
             return Optional.of(singleBlock.getData(player));
         }
 
+        if (packetBlock instanceof PacketBlockInstance instance) {
+            return instance.getDataAt(player, location);
+        }
+
         if (!(packetBlock instanceof PacketBlockGroup group)) {
             return Optional.empty();
         }
@@ -175,7 +638,7 @@ public class PacketBlockManager {
     }
 
     /**
-     * Removes the specified {@link PacketBlock} from the blockLocations map and updates its visual
+     * Removes the specified {@link PacketBlock} from the index and updates its visual
      * state for all associated viewers. If the {@link PacketBlock} exists in any chunk's block list,
      * it is removed from that list, and its associated viewers are sent a block update to reset the
      * affected block's state.
@@ -183,24 +646,48 @@ public class PacketBlockManager {
      * @param packetBlock the {@link PacketBlock} to be removed; must not be null
      */
     public void removeBlock(@NonNull PacketBlockHolder<?, ?> packetBlock) {
-        for (UUID uuid : new ArrayList<>(packetBlock.getViewers().keySet())) {
-            Player player = Bukkit.getPlayer(uuid);
+        packetBlock.forEachOnlineViewer((player, viewer) -> packetBlock.removeViewer(player));
 
-            if (player != null) {
-                packetBlock.removeViewer(player);
-            }
-        }
+        unwatch(packetBlock);
+        footprintTracker.untrack(packetBlock);
 
         if(packetBlock instanceof PacketBlock singleBlock) {
-            ChunkPosition chunk = singleBlock.getChunk();
-
-            Map<WorldPosition, PacketBlockHolder<?, ?>> blocks = blockLocations.get(chunk);
+            Map<WorldPosition, PacketBlockHolder<?, ?>> blocks = blocksAt(singleBlock.getChunk());
 
             if (blocks == null) {
                 return;
             }
 
             blocks.remove(singleBlock.getPosition());
+
+            if (store != null) {
+                store.recordBlockRemoved(singleBlock);
+            }
+            return;
+        }
+
+        if (packetBlock instanceof PacketBlockInstance instance) {
+            WorldPartition partition = partitions.get(instance.getWorldName());
+
+            if (partition == null) {
+                return;
+            }
+
+            for (ChunkPosition chunkPosition : instance.getChunkPositions()) {
+                long chunkKey = BlockPositions.chunkKey(chunkPosition.x(), chunkPosition.z());
+                List<PacketBlockInstance> instances = partition.getInstanceLocations().get(chunkKey);
+
+                if (instances == null) {
+                    continue;
+                }
+
+                instances.remove(instance);
+
+                if (instances.isEmpty()) {
+                    partition.getInstanceLocations().remove(chunkKey, instances);
+                }
+            }
+
             return;
         }
 
@@ -208,11 +695,15 @@ public class PacketBlockManager {
             return;
         }
 
+        if (store != null) {
+            store.recordGroupRemoved(group);
+        }
+
         for (Map.Entry<ChunkPosition, List<WorldPosition>> entry : group.getChunkPositions().entrySet()) {
             ChunkPosition chunkPosition = entry.getKey();
             List<WorldPosition> worldPositions = entry.getValue();
 
-            Map<WorldPosition, PacketBlockHolder<?, ?>> blocks = blockLocations.get(chunkPosition);
+            Map<WorldPosition, PacketBlockHolder<?, ?>> blocks = blocksAt(chunkPosition);
 
             if (blocks == null) {
                 return;
@@ -228,38 +719,247 @@ public class PacketBlockManager {
      * Removes {@link PacketBlock} instances from the managed collection if they satisfy a specified condition.
      * The condition is defined by the provided {@link Predicate}.
      * Additionally, it schedules a visual update for players viewing the affected blocks.
+     * <p>
+     * The predicate is tested once per holder, and every position of a removed group is dropped from
+     * the index, not only the first one found in each chunk. Viewers are restored in bulk: each online
+     * viewer gets a single task on their own scheduler that forgets them on every removed holder they
+     * viewed and sends the real blocks as one section-batched update. Real blocks are read once per
+     * position, on the region owning each affected chunk, and the per-viewer tasks are only scheduled
+     * once every chunk has been read, with each holder's restore batch shared between its viewers.
      *
      * @param removePredicate the condition used to determine which {@link PacketBlock} instances should be removed;
      *                        must not be null.
      */
     public void removeIf(Predicate<PacketBlockHolder<?, ?>> removePredicate) {
-        List<Map.Entry<ChunkPosition, Map<WorldPosition, PacketBlockHolder<?, ?>>>> chunkEntries =
-                new ArrayList<>(blockLocations.entrySet());
+        Map<PacketBlockHolder<?, ?>, Boolean> tested = new IdentityHashMap<>();
+        List<PacketBlockHolder<?, ?>> removed = new ArrayList<>();
+
+        partitions.values().forEach(partition -> partition.getBlockLocations().values().forEach(blocks ->
+                blocks.entrySet().removeIf(entry -> tested.computeIfAbsent(entry.getValue(), holder -> {
+                    boolean remove = removePredicate.test(holder);
+
+                    if (remove) {
+                        removed.add(holder);
+                    }
+
+                    return remove;
+                }))));
+
+        forEachInstance(instance -> {
+            if (removePredicate.test(instance)) {
+                removed.add(instance);
+            }
+        });
+
+        Map<Player, List<PacketBlockHolder<?, ?>>> viewed = new HashMap<>();
+
+        for (PacketBlockHolder<?, ?> packetBlock : removed) {
+            packetBlock.forEachOnlineViewer((player, viewer) -> viewed.computeIfAbsent(player, k -> new ArrayList<>()).add(packetBlock));
 
-        for (Map.Entry<ChunkPosition, Map<WorldPosition, PacketBlockHolder<?, ?>>> entry : chunkEntries) {
-            Map<WorldPosition, PacketBlockHolder<?, ?>> blocks = entry.getValue();
+            if (packetBlock instanceof PacketBlockInstance instance) {
+                WorldPartition partition = partitions.get(instance.getWorldName());
 
-            List<PacketBlockHolder<?, ?>> toRemove = new ArrayList<>();
+                if (partition != null) {
+                    instance.getChunkPositions().forEach(chunkPosition -> {
+                        List<PacketBlockInstance> instances = partition.getInstances(chunkPosition.x(), chunkPosition.z());
 
-            for (PacketBlockHolder<?, ?> block : blocks.values()) {
-                if (removePredicate.test(block)) {
-                    toRemove.add(block);
+                        if (instances != null) {
+                            instances.remove(instance);
+                        }
+                    });
                 }
             }
 
-            for (PacketBlockHolder<?, ?> packetBlock : toRemove) {
-                for (UUID uuid : new ArrayList<>(packetBlock.getViewers().keySet())) {
-                    Player player = Bukkit.getPlayer(uuid);
-                    if (player != null) {
-                        plugin.getFoliaLib().getScheduler().runAtEntityLater(player, () -> packetBlock.removeViewer(player), 1);
+            unwatch(packetBlock);
+            footprintTracker.untrack(packetBlock);
+
+            if (store != null && packetBlock instanceof PacketBlock singleBlock) {
+                store.recordBlockRemoved(singleBlock);
+            } else if (store != null && packetBlock instanceof PacketBlockGroup group) {
+                store.recordGroupRemoved(group);
+            }
+        }
+
+        if (viewed.isEmpty()) {
+            return;
+        }
+
+        Map<PacketBlockHolder<?, ?>, List<Location>> positions = new IdentityHashMap<>();
+        Map<ChunkPosition, Set<Location>> chunks = new HashMap<>();
+
+        viewed.values().forEach(holders -> holders.forEach(holder -> positions.computeIfAbsent(holder, key -> {
+            List<Location> locations = restorePositions(key);
+
+            locations.forEach(location -> chunks.computeIfAbsent(new ChunkPosition(location.getWorld().getName(),
+                    location.getBlockX() >> 4, location.getBlockZ() >> 4), chunk -> new HashSet<>()).add(location));
+            return locations;
+        })));
+
+        PlatformScheduler scheduler = plugin.getFoliaLib().getScheduler();
+        Map<Location, BlockData> realBlocks = new ConcurrentHashMap<>();
+        List<CompletableFuture<Void>> reads = new ArrayList<>(chunks.size());
+
+        chunks.values().forEach(locations -> {
+            CompletableFuture<Void> read = new CompletableFuture<>();
+            reads.add(read);
+
+            scheduler.runAtLocation(locations.iterator().next(), task -> {
+                try {
+                    locations.forEach(location -> realBlocks.put(location, location.getBlock().getBlockData()));
+                    read.complete(null);
+                } catch (Throwable e) {
+                    read.completeExceptionally(e);
+                }
+            });
+        });
+
+        CompletableFuture.allOf(reads.toArray(new CompletableFuture[0])).whenComplete((ignored, error) -> {
+            if (error != null) {
+                plugin.getLogger().log(Level.WARNING, "Unable to read the real blocks of removed packet blocks", error);
+            }
+
+            Map<PacketBlockHolder<?, ?>, BlockChangeBatch> restores = new IdentityHashMap<>();
+
+            positions.forEach((holder, locations) -> {
+                BlockChangeBatch restore = new BlockChangeBatch();
+
+                for (Location location : locations) {
+                    BlockData blockData = realBlocks.get(location);
+
+                    if (blockData != null) {
+                        restore.add(location, blockData);
                     }
                 }
 
-                blocks.values().remove(packetBlock);
+                restores.put(holder, restore);
+            });
+
+            viewed.forEach((player, holders) -> scheduler.runAtEntity(player, task -> {
+                BlockChangeBatch changes = new BlockChangeBatch();
+
+                for (PacketBlockHolder<?, ?> holder : holders) {
+                    if (holder.forgetViewer(player.getUniqueId())) {
+                        changes.addAll(restores.get(holder));
+                    }
+                }
+
+                if (changes.isEmpty()) {
+                    return;
+                }
+
+                changes.send(player);
+                PacketBlockMetrics.get().recordUpdate(player);
+            }));
+        });
+    }
+
+    /**
+     * @return the block locations a holder's viewers are restored at when it is removed
+     */
+    private static List<Location> restorePositions(@NonNull PacketBlockHolder<?, ?> holder) {
+        if (holder instanceof PacketBlock singleBlock) {
+            return List.of(singleBlock.getLocation());
+        }
+
+        if (holder instanceof PacketBlockGroup group) {
+            return new ArrayList<>(group.getCachedLocations().values());
+        }
+
+        if (!(holder instanceof PacketBlockInstance instance)) {
+            return List.of();
+        }
+
+        World world = instance.getOrigin().getWorld();
+        List<Location> locations = new ArrayList<>();
+
+        instance.forEachBlock(null, (x, y, z, blockData) -> locations.add(new Location(world, x, y, z)));
+        return locations;
+    }
+
+    /**
+     * Drops the partition of a world that is being unloaded, so its blocks and the world they
+     * reference can be garbage collected. Only that world's partition is touched; groups that also
+     * have blocks in other worlds stay registered there.
+     * <p>
+     * When a store is set, the world is saved before its partition is dropped and the store then
+     * forgets the world, see {@link PacketBlockStore#unloadWorld(String, java.util.Collection)}.
+     *
+     * @param world the world being unloaded; must not be null
+     * @return whether the world's partition was dropped
+     */
+    public boolean unloadWorld(@NonNull World world) {
+        if (store != null) {
+            store.save();
+        }
+
+        WorldPartition partition = partitions.remove(world.getName());
+
+        if (partition == null) {
+            if (store != null) {
+                store.unloadWorld(world.getName(), List.of());
+            }
+
+            return false;
+        }
+
+        synchronized (partitions) {
+            WorldPartition[] byId = partitionsById.clone();
+            byId[partition.getWorldId()] = null;
+            partitionsById = byId;
+        }
+
+        Set<PacketBlockHolder<?, ?>> dropped = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        partition.forEachBlock(holder -> {
+            if ((!(holder instanceof PacketBlockGroup group) || group.getWorldNames().size() <= 1) && dropped.add(holder)) {
+                unwatch(holder);
+                footprintTracker.untrack(holder);
             }
+        });
 
-            blockLocations.put(entry.getKey(), blocks);
+        partition.forEachInstance(instance -> {
+            unwatch(instance);
+            footprintTracker.untrack(instance);
+        });
+
+        if (store != null) {
+            store.unloadWorld(world.getName(), dropped);
         }
+
+        return true;
+    }
+
+    /**
+     * Estimates the memory retained by every registered holder, broken down by category, world and
+     * the plugin that created each holder. Holders that were created before the owning plugin could
+     * be determined, such as blocks loaded from the store, are attributed to
+     * {@link FootprintTracker#UNKNOWN_OWNER} unless re-attributed with {@link FootprintTracker#track(PacketBlockHolder, org.bukkit.plugin.Plugin)}.
+     * <p>
+     * This does not walk the heap; see {@link FootprintTracker} for how the estimate is kept.
+     *
+     * @return the estimated footprint
+     */
+    public MemoryFootprint getMemoryFootprint() {
+        return footprintTracker.snapshot(partitions.values());
+    }
+
+    /**
+     * Checks whether any packet block or instance is indexed in a chunk, loading the chunk from the
+     * store first. Only primitive chunk keys are used, so packet adapters can call this before they
+     * build a {@link Location} for {@link #getBlock(Location)}. Safe to call from any thread.
+     *
+     * @param world  the world; must not be null
+     * @param chunkX the chunk X coordinate
+     * @param chunkZ the chunk Z coordinate
+     * @return whether {@link #getBlock(Location)} can find anything in the chunk
+     */
+    public boolean hasBlocksInChunk(@NonNull World world, int chunkX, int chunkZ) {
+        if (store != null) {
+            store.ensureLoaded(world, chunkX, chunkZ);
+        }
+
+        WorldPartition partition = partitions.get(world.getName());
+        return partition != null && partition.hasChunk(chunkX, chunkZ);
     }
 
     /**
@@ -276,38 +976,59 @@ public class PacketBlockManager {
             return Optional.empty();
         }
 
-        Chunk chunk = location.getChunk();
-        ChunkPosition chunkPosition = ChunkPosition.of(chunk);
+        loadChunk(location);
 
-        Map<WorldPosition, PacketBlockHolder<?, ?>> blocks = blockLocations.get(chunkPosition);
+        WorldPartition partition = partitions.get(world.getName());
 
-        if (blocks == null) {
+        if (partition == null) {
             return Optional.empty();
         }
 
-        return Optional.ofNullable(blocks.get(WorldPosition.ofBlock(location)));
+        int chunkX = location.getBlockX() >> 4;
+        int chunkZ = location.getBlockZ() >> 4;
+
+        Map<WorldPosition, PacketBlockHolder<?, ?>> blocks = partition.getBlocks(chunkX, chunkZ);
+
+        if (blocks != null) {
+            PacketBlockHolder<?, ?> block = blocks.get(WorldPosition.ofBlock(location));
+
+            if (block != null) {
+                return Optional.of(block);
+            }
+        }
+
+        List<PacketBlockInstance> instances = partition.getInstances(chunkX, chunkZ);
+
+        if (instances == null) {
+            return Optional.empty();
+        }
+
+        for (PacketBlockInstance instance : instances) {
+            if (instance.existsAt(location)) {
+                return Optional.of(instance);
+            }
+        }
+
+        return Optional.empty();
     }
 
     /**
      * Retrieves a list of {@link PacketBlock} instances associated with the specified world.
-     * Only blocks that belong to the given world will be included in the returned list.
+     * Only the world's partition is scanned.
      *
      * @param world the world for which the packet blocks are being queried; must not be null
      * @return a list of {@link PacketBlock} instances that exist in the specified world
      */
     public List<PacketBlockHolder<?, ?>> getBlocks(@NonNull World world) {
         List<PacketBlockHolder<?, ?>> blocks = new ArrayList<>();
+        WorldPartition partition = partitions.get(world.getName());
 
-        blockLocations.values().forEach(packetBlocks -> {
-            packetBlocks.values().forEach(block -> {
-                if (!block.existsIn(world)) {
-                    return;
-                }
-
-                blocks.add(block);
-            });
-        });
+        if (partition == null) {
+            return blocks;
+        }
 
+        partition.forEachBlock(blocks::add);
+        partition.forEachInstance(blocks::add);
         return blocks;
     }
 
@@ -322,8 +1043,66 @@ public class PacketBlockManager {
      *         or an empty list if no blocks are found
      */
     public Map<WorldPosition, PacketBlockHolder<?, ?>> getBlocks(@NonNull World world, int chunkX, int chunkZ) {
-        ChunkPosition chunkIdentifier = new ChunkPosition(world.getName(), chunkX, chunkZ);
-        return blockLocations.getOrDefault(chunkIdentifier, new HashMap<>());
+        if (store != null) {
+            store.ensureLoaded(world, chunkX, chunkZ);
+        }
+
+        WorldPartition partition = partitions.get(world.getName());
+        Map<WorldPosition, PacketBlockHolder<?, ?>> blocks = partition == null ? null : partition.getBlocks(chunkX, chunkZ);
+
+        return blocks != null ? blocks : new HashMap<>();
+    }
+
+    /**
+     * Retrieves a read-only view of the blocks of every world, keyed by chunk. The view reads through
+     * to the world partitions, so it stays current, but each lookup resolves the chunk's world first.
+     *
+     * @return a read-only view of the block index of every world
+     * @deprecated the block index is partitioned by world; use {@link #getPartitions()} and
+     * {@link WorldPartition#getBlockLocations()}, or {@link #getBlocks(World, int, int)}
+     */
+    @Deprecated
+    public Map<ChunkPosition, Map<WorldPosition, PacketBlockHolder<?, ?>>> getBlockLocations() {
+        return new ChunkIndexView<>(partitions, WorldPartition::getBlockLocations, Collections::unmodifiableMap);
+    }
+
+    /**
+     * Retrieves a read-only view of the instances of every world, keyed by chunk. The view reads
+     * through to the world partitions, so it stays current, but each lookup resolves the chunk's
+     * world first.
+     *
+     * @return a read-only view of the instance index of every world
+     * @deprecated the instance index is partitioned by world; use {@link #getPartitions()} and
+     * {@link WorldPartition#getInstanceLocations()}, or {@link #getInstances(World, int, int)}
+     */
+    @Deprecated
+    public Map<ChunkPosition, List<PacketBlockInstance>> getInstanceLocations() {
+        return new ChunkIndexView<>(partitions, WorldPartition::getInstanceLocations, Collections::unmodifiableList);
+    }
+
+    /**
+     * Retrieves the {@link PacketBlockInstance}s that cover at least one block of the specified chunk.
+     *
+     * @param world the world in which the instances are being queried; must not be null
+     * @param chunkX the X-coordinate of the chunk
+     * @param chunkZ the Z-coordinate of the chunk
+     * @return the instances overlapping the chunk, or an empty list if there are none
+     */
+    public List<PacketBlockInstance> getInstances(@NonNull World world, int chunkX, int chunkZ) {
+        WorldPartition partition = partitions.get(world.getName());
+        List<PacketBlockInstance> instances = partition == null ? null : partition.getInstances(chunkX, chunkZ);
+
+        return instances != null ? instances : Collections.emptyList();
+    }
+
+    /**
+     * Runs the given action once for every registered {@link PacketBlockInstance}, even
+     * if it spans multiple chunks.
+     *
+     * @param action the action to run; must not be null
+     */
+    public void forEachInstance(@NonNull Consumer<PacketBlockInstance> action) {
+        partitions.values().forEach(partition -> partition.forEachInstance(action));
     }
 
     /**
@@ -334,19 +1113,83 @@ public class PacketBlockManager {
      * @return a list of {@link PacketBlock} instances that the specified player can view
      */
     public List<PacketBlockHolder<?, ?>> getBlocksByViewer(@NonNull Player player) {
-        List<PacketBlockHolder<?, ?>> blocks = new ArrayList<>();
+        Set<PacketBlockHolder<?, ?>> holders = viewedHolders.get(player.getUniqueId());
+        return holders == null ? new ArrayList<>() : new ArrayList<>(holders);
+    }
 
-        blockLocations.forEach((identifier, value) -> {
-            value.values().forEach(block -> {
-                if (!block.getViewers().containsKey(player.getUniqueId())) {
-                    return;
-                }
+    /**
+     * Removes a player that disconnected from every registered holder they view, without sending
+     * them anything. Uses the reverse viewer index, so it only touches the holders the player viewed.
+     * <p>
+     * While a store is set, the persisted state of each viewer is handed to the store before the
+     * viewer is removed, and given back by {@link #rejoinViewer(Player)} on the player's next join.
+     *
+     * @param uuid the unique id of the player; must not be null
+     * @return the number of holders the player was removed from
+     */
+    public int releaseViewer(@NonNull UUID uuid) {
+        Set<PacketBlockHolder<?, ?>> holders = viewedHolders.remove(uuid);
 
-                blocks.add(block);
-            });
-        });
+        if (holders == null) {
+            return 0;
+        }
 
-        return blocks;
+        int released = 0;
+
+        for (PacketBlockHolder<?, ?> holder : holders) {
+            if (store != null) {
+                store.releaseViewer(holder, uuid);
+            }
+
+            if (holder.forgetViewer(uuid)) {
+                released++;
+            }
+        }
+
+        return released;
+    }
+
+    /**
+     * Removes a player that changed worlds from every holder they view in the world they left,
+     * without sending them anything, since their client already dropped that world's chunks. Uses
+     * the reverse viewer index, so it only touches the holders the player viewed. Groups that also
+     * have blocks in the player's new world keep them as a viewer.
+     *
+     * @param player the player that changed worlds; must not be null
+     * @param from   the world the player left; must not be null
+     * @return the number of holders the player was removed from
+     */
+    public int leaveWorld(@NonNull Player player, @NonNull World from) {
+        UUID uuid = player.getUniqueId();
+        Set<PacketBlockHolder<?, ?>> holders = viewedHolders.get(uuid);
+
+        if (holders == null) {
+            return 0;
+        }
+
+        String currentWorld = player.getWorld().getName();
+        int removed = 0;
+
+        for (PacketBlockHolder<?, ?> holder : new ArrayList<>(holders)) {
+            if (isIn(holder, from.getName()) && !isIn(holder, currentWorld) && holder.forgetViewer(uuid)) {
+                removed++;
+            }
+        }
+
+        return removed;
+    }
+
+    /**
+     * Adds a joining player back to the holders the store kept their viewer state for while they
+     * were offline, see {@link #releaseViewer(UUID)}. Does nothing while no store is set. Must be
+     * called on the player's thread.
+     *
+     * @param player the player that joined; must not be null
+     */
+    public void rejoinViewer(@NonNull Player player) {
+        if (store != null) {
+            store.restoreOfflineViewers(player);
+        }
     }
 
     /**
@@ -359,18 +1202,8 @@ public class PacketBlockManager {
      *         and contain the specified metadata key.
      */
     public List<PacketBlockHolder<?, ?>> getBlocksByViewerWithMeta(@NonNull Player player, @NonNull String metaKey) {
-        List<PacketBlockHolder<?, ?>> blocks = new ArrayList<>();
-
-        blockLocations.forEach((identifier, value) -> {
-            value.values().forEach(block -> {
-                if (!block.getViewers().containsKey(player.getUniqueId()) || !block.hasMetadata(metaKey)) {
-                    return;
-                }
-
-                blocks.add(block);
-            });
-        });
-
+        List<PacketBlockHolder<?, ?>> blocks = getBlocksByViewer(player);
+        blocks.removeIf(block -> !block.hasMetadata(metaKey));
         return blocks;
     }
 
@@ -383,8 +1216,8 @@ public class PacketBlockManager {
     public List<PacketBlockHolder<?, ?>> getBlocksByMetadata(@NonNull String key) {
         List<PacketBlockHolder<?, ?>> blocks = new ArrayList<>();
 
-        blockLocations.forEach((identifier, value) -> {
-            value.values().forEach(block -> {
+        partitions.values().forEach(partition -> {
+            partition.forEachBlock(block -> {
                 if (!block.hasMetadata(key)) {
                     return;
                 }
@@ -393,6 +1226,12 @@ public class PacketBlockManager {
             });
         });
 
+        forEachInstance(instance -> {
+            if (instance.hasMetadata(key)) {
+                blocks.add(instance);
+            }
+        });
+
         return blocks;
     }
 
@@ -418,6 +1257,21 @@ public class PacketBlockManager {
                     break;
                 }
             });
+
+            getInstances(world, chunk.getX(), chunk.getZ()).forEach(instance -> {
+                if (blocks.contains(instance)) {
+                    return;
+                }
+
+                for (BoundingBox box : instance.getBoundingBoxes()) {
+                    if(!box.overlaps(boundingBox)) {
+                        continue;
+                    }
+
+                    blocks.add(instance);
+                    break;
+                }
+            });
         });
 
         return blocks;
@@ -460,8 +1314,8 @@ public class PacketBlockManager {
     public List<PacketBlockHolder<?, ?>> getHitBlocksByViewer(@NonNull Player player, @NonNull BoundingBox boundingBox) {
         List<PacketBlockHolder<?, ?>> blocks = new ArrayList<>();
 
-        blockLocations.forEach((identifier, value) -> {
-            value.values().forEach(block -> {
+        partitions.values().forEach(partition -> {
+            partition.forEachBlock(block -> {
                 if (!block.getViewers().containsKey(player.getUniqueId())) {
                     return;
                 }
@@ -484,6 +1338,19 @@ public class PacketBlockManager {
             });
         });
 
+        forEachInstance(instance -> {
+            if (!instance.getViewers().containsKey(player.getUniqueId())) {
+                return;
+            }
+
+            for (BoundingBox box : instance.getBoundingBoxes()) {
+                if (box.overlaps(boundingBox)) {
+                    blocks.add(instance);
+                    return;
+                }
+            }
+        });
+
         return blocks;
     }
 
@@ -500,8 +1367,8 @@ public class PacketBlockManager {
     public List<PacketBlockHolder<?, ?>> getHitBlocksByViewerWithMeta(@NonNull Player player, @NonNull BoundingBox boundingBox, @NonNull String metaKey) {
         List<PacketBlockHolder<?, ?>> blocks = new ArrayList<>();
 
-        blockLocations.forEach((identifier, value) -> {
-            value.values().forEach(block -> {
+        partitions.values().forEach(partition -> {
+            partition.forEachBlock(block -> {
                 if (!block.getViewers().containsKey(player.getUniqueId())) {
                     return;
                 }
@@ -528,9 +1395,38 @@ public class PacketBlockManager {
             });
         });
 
+        forEachInstance(instance -> {
+            if (!instance.getViewers().containsKey(player.getUniqueId()) || !instance.hasMetadata(metaKey)) {
+                return;
+            }
+
+            for (BoundingBox box : instance.getBoundingBoxes()) {
+                if (box.overlaps(boundingBox)) {
+                    blocks.add(instance);
+                    return;
+                }
+            }
+        });
+
         return blocks;
     }
 
+    private void recordCreated(@NonNull PacketBlock packetBlock) {
+        if (store == null) {
+            return;
+        }
+
+        store.recordBlockCreated(packetBlock);
+    }
+
+    private void loadChunk(@NonNull Location location) {
+        if (store == null) {
+            return;
+        }
+
+        store.ensureLoaded(location);
+    }
+
     /**
      * Updates all visually modified blocks for the specified player in their visible region.
      * This method uses the player's current view to determine which blocks to update.
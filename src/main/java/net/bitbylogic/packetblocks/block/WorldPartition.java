@@ -0,0 +1,118 @@
+package net.bitbylogic.packetblocks.block;
+
+import lombok.Getter;
+import lombok.NonNull;
+import net.bitbylogic.packetblocks.group.PacketBlockInstance;
+import net.bitbylogic.packetblocks.util.BlockPositions;
+import net.bitbylogic.packetblocks.util.RegionShardedMap;
+import net.bitbylogic.utils.location.WorldPosition;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+/**
+ * The packet blocks and instances registered in one world, indexed by chunk.
+ * <p>
+ * Chunks are keyed by {@link BlockPositions#chunkKey(int, int)}, so lookups within a partition
+ * never hash or compare world names. Partitions are created by the {@link PacketBlockManager} the
+ * first time a block is registered in a world and are identified by a small world id that stays
+ * the same for as long as the manager exists, even if the world is unloaded and loaded again.
+ */
+@Getter
+public class WorldPartition {
+
+    private final int worldId;
+    private final String worldName;
+
+    private final ConcurrentMap<Long, Map<WorldPosition, PacketBlockHolder<?, ?>>> blockLocations;
+    private final ConcurrentMap<Long, List<PacketBlockInstance>> instanceLocations;
+
+    /**
+     * The distinct holders in this world that are shown to players when they join or enter the world.
+     */
+    private final Set<PacketBlockHolder<?, ?>> joinHolders = ConcurrentHashMap.newKeySet();
+
+    WorldPartition(int worldId, @NonNull String worldName, boolean regionSharded) {
+        this.worldId = worldId;
+        this.worldName = worldName;
+        this.blockLocations = regionSharded ? new RegionShardedMap<>() : new ConcurrentHashMap<>();
+        this.instanceLocations = regionSharded ? new RegionShardedMap<>() : new ConcurrentHashMap<>();
+    }
+
+    /**
+     * @param chunkX the chunk X coordinate
+     * @param chunkZ the chunk Z coordinate
+     * @return the blocks indexed in the chunk, or null if there are none
+     */
+    public @Nullable Map<WorldPosition, PacketBlockHolder<?, ?>> getBlocks(int chunkX, int chunkZ) {
+        return blockLocations.get(BlockPositions.chunkKey(chunkX, chunkZ));
+    }
+
+    /**
+     * @param chunkX the chunk X coordinate
+     * @param chunkZ the chunk Z coordinate
+     * @return the instances overlapping the chunk, or null if there are none
+     */
+    public @Nullable List<PacketBlockInstance> getInstances(int chunkX, int chunkZ) {
+        return instanceLocations.get(BlockPositions.chunkKey(chunkX, chunkZ));
+    }
+
+    /**
+     * @param chunkX the chunk X coordinate
+     * @param chunkZ the chunk Z coordinate
+     * @return whether any block or instance is indexed in the chunk
+     */
+    public boolean hasChunk(int chunkX, int chunkZ) {
+        long chunkKey = BlockPositions.chunkKey(chunkX, chunkZ);
+        return blockLocations.containsKey(chunkKey) || instanceLocations.containsKey(chunkKey);
+    }
+
+    /**
+     * Runs the given action once for every block holder indexed in this world. A group is visited
+     * once for every block it has in this world.
+     *
+     * @param action the action to run; must not be null
+     */
+    public void forEachBlock(@NonNull Consumer<PacketBlockHolder<?, ?>> action) {
+        blockLocations.values().forEach(blocks -> blocks.values().forEach(action));
+    }
+
+    /**
+     * Runs the given action once for every instance in this world, even if it spans multiple chunks.
+     *
+     * @param action the action to run; must not be null
+     */
+    public void forEachInstance(@NonNull Consumer<PacketBlockInstance> action) {
+        Set<PacketBlockInstance> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        instanceLocations.values().forEach(instances -> instances.forEach(instance -> {
+            if (visited.add(instance)) {
+                action.accept(instance);
+            }
+        }));
+    }
+
+    /**
+     * @return the number of chunks indexed in this world
+     */
+    public int getChunkCount() {
+        return blockLocations.size();
+    }
+
+    /**
+     * @return the number of block positions indexed in this world
+     */
+    public long getPositionCount() {
+        long positions = 0;
+
+        for (Map<WorldPosition, PacketBlockHolder<?, ?>> blocks : blockLocations.values()) {
+            positions += blocks.size();
+        }
+
+        return positions;
+    }
+
+}
@@ -0,0 +1,174 @@
+package net.bitbylogic.packetblocks.command;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import net.bitbylogic.packetblocks.block.PacketBlockManager;
+import net.bitbylogic.packetblocks.metrics.*;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+import org.bukkit.Bukkit;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabExecutor;
+import org.bukkit.entity.Player;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+@RequiredArgsConstructor
+public class PacketBlocksCommand implements TabExecutor {
+
+    private static final int MEMORY_TOP = 5;
+
+    private final PacketBlockMetrics metrics;
+    private final PacketBlockManager manager;
+
+    @Override
+    public boolean onCommand(@NonNull CommandSender sender, @NonNull Command command, @NonNull String label, @NonNull String[] args) {
+        if (args.length > 0 && args[0].equalsIgnoreCase("memory")) {
+            sendMemory(sender);
+            return true;
+        }
+
+        if (args.length == 0 || !args[0].equalsIgnoreCase("stats")) {
+            sender.sendMessage(Component.text("Usage: /" + label + " <stats [reset]|memory>", NamedTextColor.RED));
+            return true;
+        }
+
+        if (args.length > 1 && args[1].equalsIgnoreCase("reset")) {
+            metrics.reset();
+            sender.sendMessage(Component.text("PacketBlocks stats have been reset.", NamedTextColor.GREEN));
+            return true;
+        }
+
+        sendStats(sender);
+        return true;
+    }
+
+    @Override
+    public List<String> onTabComplete(@NonNull CommandSender sender, @NonNull Command command, @NonNull String label, @NonNull String[] args) {
+        if (args.length == 1) {
+            return List.of("stats", "memory");
+        }
+
+        if (args.length == 2 && args[0].equalsIgnoreCase("stats")) {
+            return List.of("reset");
+        }
+
+        return List.of();
+    }
+
+    private void sendStats(@NonNull CommandSender sender) {
+        Duration elapsed = Duration.ofMillis(System.currentTimeMillis() - metrics.getResetTime());
+
+        sender.sendMessage(Component.text("PacketBlocks stats", NamedTextColor.GOLD)
+                .append(Component.text(" (last " + formatDuration(elapsed) + (metrics.isEnabled() ? "" : ", disabled") + ")", NamedTextColor.GRAY)));
+
+        sender.sendMessage(Component.text("Adapters (inspected / rewritten, p50 / p99 / max):", NamedTextColor.YELLOW));
+
+        for (AdapterType type : AdapterType.values()) {
+            AdapterMetrics adapter = metrics.getAdapter(type);
+            Histogram.Snapshot nanos = adapter.getHandleNanos().snapshot();
+
+            sendLine(sender, "  " + type.name().toLowerCase(Locale.ROOT),
+                    adapter.getInspected().sum() + " / " + adapter.getRewritten().sum() + ", "
+                            + formatNanos(nanos.percentile(50)) + " / " + formatNanos(nanos.percentile(99)) + " / " + formatNanos(nanos.max()));
+        }
+
+        Histogram.Snapshot merged = metrics.getChunkBlocksMerged().snapshot();
+        sendLine(sender, "Chunk merges", merged.count() + ", " + String.format(Locale.ROOT, "%.1f", merged.mean())
+                + " blocks avg, " + merged.percentile(99) + " p99, " + merged.max() + " max");
+
+        Histogram.Snapshot perTick = metrics.getUpdatesPerTick().snapshot();
+        sendLine(sender, "Updates sent", metrics.getUpdatesSent().sum() + ", per tick "
+                + perTick.percentile(50) + " p50, " + perTick.percentile(99) + " p99, " + perTick.max() + " max");
+
+        List<Map.Entry<UUID, Long>> topPlayers = metrics.getTopPlayers(5);
+
+        if (!topPlayers.isEmpty()) {
+            sendLine(sender, "Top players", topPlayers.stream()
+                    .map(entry -> formatPlayer(entry.getKey()) + " " + entry.getValue())
+                    .collect(Collectors.joining(", ")));
+        }
+
+        metrics.readGauges().forEach((name, value) -> sendLine(sender, name, String.valueOf(value)));
+    }
+
+    private void sendMemory(@NonNull CommandSender sender) {
+        MemoryFootprint footprint = manager.getMemoryFootprint();
+        MemoryFootprint.Breakdown total = footprint.getTotal();
+
+        sender.sendMessage(Component.text("PacketBlocks memory", NamedTextColor.GOLD)
+                .append(Component.text(" (estimated, " + formatBytes(total.getTotal()) + " total)", NamedTextColor.GRAY)));
+
+        for (FootprintCategory category : FootprintCategory.values()) {
+            sendLine(sender, "  " + category.name().toLowerCase(Locale.ROOT).replace('_', ' '), formatBytes(total.get(category)));
+        }
+
+        sendLine(sender, "Worlds", formatTop(footprint.getByWorld()));
+        sendLine(sender, "Plugins", formatTop(footprint.getByOwner()));
+    }
+
+    private String formatTop(@NonNull Map<String, MemoryFootprint.Breakdown> breakdowns) {
+        if (breakdowns.isEmpty()) {
+            return "none";
+        }
+
+        return breakdowns.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, MemoryFootprint.Breakdown> entry) -> entry.getValue().getTotal()).reversed())
+                .limit(MEMORY_TOP)
+                .map(entry -> entry.getKey() + " " + formatBytes(entry.getValue().getTotal()))
+                .collect(Collectors.joining(", "));
+    }
+
+    private void sendLine(@NonNull CommandSender sender, @NonNull String label, @NonNull String value) {
+        sender.sendMessage(Component.text(label + ": ", NamedTextColor.YELLOW).append(Component.text(value, NamedTextColor.WHITE)));
+    }
+
+    private String formatPlayer(@NonNull UUID uuid) {
+        Player player = Bukkit.getPlayer(uuid);
+        return player == null ? uuid.toString() : player.getName();
+    }
+
+    private String formatNanos(long nanos) {
+        if (nanos < 1_000) {
+            return nanos + "ns";
+        }
+
+        if (nanos < 1_000_000) {
+            return String.format(Locale.ROOT, "%.1f\u00B5s", nanos / 1_000D);
+        }
+
+        return String.format(Locale.ROOT, "%.1fms", nanos / 1_000_000D);
+    }
+
+    private String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + "B";
+        }
+
+        if (bytes < 1024 * 1024) {
+            return String.format(Locale.ROOT, "%.1fKB", bytes / 1024D);
+        }
+
+        return String.format(Locale.ROOT, "%.1fMB", bytes / (1024D * 1024D));
+    }
+
+    private String formatDuration(@NonNull Duration duration) {
+        if (duration.toHours() > 0) {
+            return duration.toHours() + "h " + duration.toMinutesPart() + "m";
+        }
+
+        if (duration.toMinutes() > 0) {
+            return duration.toMinutes() + "m " + duration.toSecondsPart() + "s";
+        }
+
+        return duration.toSeconds() + "s";
+    }
+
+}
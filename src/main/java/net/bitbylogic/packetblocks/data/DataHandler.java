@@ -3,32 +3,54 @@ package net.bitbylogic.packetblocks.data;
 import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NonNull;
+import lombok.Setter;
+import net.bitbylogic.packetblocks.metrics.jfr.BlockUpdateFanOutEvent;
 import net.bitbylogic.packetblocks.viewer.PacketBlockViewer;
 import net.bitbylogic.packetblocks.viewer.ViewerHolder;
-import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.util.BoundingBox;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
 public class DataHandler<T, V extends PacketBlockViewer<T>> {
 
-    private final List<BoundingBox> boundingBoxes = new ArrayList<>();
+    /**
+     * Replaced with a new immutable list on every recompute, so callers on other threads can keep
+     * iterating the list they were given.
+     */
+    private volatile List<BoundingBox> boundingBoxes = List.of();
 
     @Getter(AccessLevel.NONE)
     private final ViewerHolder<T, V> viewerHandler;
     private final Consumer<Player> updateConsumer;
     private final Function<T, List<BoundingBox>> boundingBoxProvider;
 
-    public T data;
+    /**
+     * The data shown to viewers without data of their own. Volatile so a replacement is seen by netty threads straight away.
+     */
+    public volatile T data;
 
     private int breakSpeed = -1;
 
     private boolean addViewerOnJoin;
     private boolean globalBreakAnimation;
+    private int breakAnimationRadius;
+
+    /**
+     * Notified with the previous and the new data whenever the data is replaced for all viewers.
+     */
+    @Setter
+    private @Nullable BiConsumer<T, T> dataListener;
+
+    /**
+     * Notified whenever the holder starts or stops being shown to players on join.
+     */
+    @Setter
+    private @Nullable Runnable addViewerOnJoinListener;
 
     public DataHandler(ViewerHolder<T, V> viewerHandler, Consumer<Player> updateConsumer, Function<T, List<BoundingBox>> boundingBoxProvider, T data, int breakSpeed) {
         this.viewerHandler = viewerHandler;
@@ -37,9 +59,8 @@ public class DataHandler<T, V extends PacketBlockViewer<T>> {
         this.breakSpeed = breakSpeed;
 
         this.boundingBoxProvider = t -> {
-            boundingBoxes.clear();
-
-            boundingBoxes.addAll(boundingBoxProvider.apply(t));
+            List<BoundingBox> boxes = boundingBoxProvider.apply(t);
+            boundingBoxes = boxes == null ? List.of() : List.copyOf(boxes);
 
             return boundingBoxes;
         };
@@ -51,6 +72,7 @@ public class DataHandler<T, V extends PacketBlockViewer<T>> {
      * @param data the block data to be set for all viewers
      */
     protected void setDataForAll(@NonNull T data) {
+        T previous = this.data;
         this.data = data;
 
         for (V viewer : viewerHandler.getViewers().values()) {
@@ -60,6 +82,10 @@ public class DataHandler<T, V extends PacketBlockViewer<T>> {
         sendUpdates();
 
         boundingBoxProvider.apply(data);
+
+        if (dataListener != null) {
+            dataListener.accept(previous, data);
+        }
     }
 
     /**
@@ -69,6 +95,7 @@ public class DataHandler<T, V extends PacketBlockViewer<T>> {
      * @param data the BlockData object to be supplied to all viewers
      */
     protected void setDataSupplierForAll(@NonNull T data) {
+        T previous = this.data;
         this.data = data;
 
         for (V viewer : viewerHandler.getViewers().values()) {
@@ -78,6 +105,10 @@ public class DataHandler<T, V extends PacketBlockViewer<T>> {
         sendUpdates();
 
         boundingBoxProvider.apply(data);
+
+        if (dataListener != null) {
+            dataListener.accept(previous, data);
+        }
     }
 
     /**
@@ -137,25 +168,52 @@ public class DataHandler<T, V extends PacketBlockViewer<T>> {
      * Sends block updates to all the viewers currently tracking the block at the specified location.
      * <p>
      * This method iterates through all viewers stored in the `viewers` map and attempts to send a
-     * block update to each. If a viewer no longer exists or is offline, they are removed from the
-     * `viewers` map.
+     * block update to each, using the player cached in the viewer's handle. If a viewer no longer
+     * exists or is offline, they are forgotten, which also drops them from the manager's reverse
+     * viewer index.
      * <p>
      * The block state sent to each viewer is dependent on the `getBlockState(Player)` implementation,
      * which determines the block's appearance based on the specific viewer.
      */
     protected void sendUpdates() {
-        Iterator<UUID> viewerIterator = viewerHandler.getViewers().keySet().iterator();
+        BlockUpdateFanOutEvent fanOutEvent = new BlockUpdateFanOutEvent();
+        fanOutEvent.begin();
 
-        while (viewerIterator.hasNext()) {
-            Player viewer = Bukkit.getPlayer(viewerIterator.next());
+        int updates = 0;
+        int removed = 0;
+
+        for (Map.Entry<UUID, V> entry : viewerHandler.getViewers().entrySet()) {
+            UUID uuid = entry.getKey();
+            Player viewer = entry.getValue().getHandle().resolve(uuid);
 
             if (viewer == null) {
-                viewerIterator.remove();
+                if (viewerHandler.forgetViewer(uuid)) {
+                    removed++;
+                }
                 continue;
             }
 
             updateConsumer.accept(viewer);
+            updates++;
         }
+
+        fanOutEvent.end();
+
+        if (fanOutEvent.shouldCommit()) {
+            fanOutEvent.setHolderType(viewerHandler.getClass().getSimpleName());
+            fanOutEvent.setHolderId(System.identityHashCode(viewerHandler));
+            fanOutEvent.setViewers(updates + removed);
+            fanOutEvent.setUpdates(updates);
+            fanOutEvent.setRemoved(removed);
+            fanOutEvent.commit();
+        }
+    }
+
+    /**
+     * Recomputes the cached bounding boxes from the current data without sending any updates.
+     */
+    protected void refreshBoundingBoxes() {
+        boundingBoxProvider.apply(data);
     }
 
     protected List<BoundingBox> getBoundingBoxes() {
@@ -192,18 +250,34 @@ public class DataHandler<T, V extends PacketBlockViewer<T>> {
         return globalBreakAnimation;
     }
 
+    protected int getBreakAnimationRadius() {
+        return breakAnimationRadius;
+    }
+
     protected void setBreakSpeed(int breakSpeed) {
         this.breakSpeed = breakSpeed;
     }
 
     protected void setAddViewerOnJoin(boolean addViewerOnJoin) {
+        if (this.addViewerOnJoin == addViewerOnJoin) {
+            return;
+        }
+
         this.addViewerOnJoin = addViewerOnJoin;
+
+        if (addViewerOnJoinListener != null) {
+            addViewerOnJoinListener.run();
+        }
     }
 
     protected void setGlobalBreakAnimation(boolean globalBreakAnimation) {
         this.globalBreakAnimation = globalBreakAnimation;
     }
 
+    protected void setBreakAnimationRadius(int breakAnimationRadius) {
+        this.breakAnimationRadius = breakAnimationRadius;
+    }
+
     protected void setData(T data) {
         this.data = data;
     }
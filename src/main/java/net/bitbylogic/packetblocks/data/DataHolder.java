@@ -85,6 +85,13 @@ public interface DataHolder<T, V extends PacketBlockViewer<T>> {
         getDataHandler().sendUpdates();
     }
 
+    /**
+     * Recomputes the cached bounding boxes from the current data without sending any updates.
+     */
+    default void refreshBoundingBoxes() {
+        getDataHandler().refreshBoundingBoxes();
+    }
+
     default List<BoundingBox> getBoundingBoxes() {
         return getDataHandler().getBoundingBoxes();
     }
@@ -105,10 +112,27 @@ public interface DataHolder<T, V extends PacketBlockViewer<T>> {
         return getDataHandler().isGlobalBreakAnimation();
     }
 
+    /**
+     * Retrieves the radius, in blocks, around the dug block that the break animation is shown on.
+     * A radius of 0 or less only animates the block actually being dug.
+     *
+     * @return the break animation radius
+     */
+    default int getBreakAnimationRadius() {
+        return getDataHandler().getBreakAnimationRadius();
+    }
+
     default int getBreakSpeed() {
         return getDataHandler().getBreakSpeed();
     }
 
+    /**
+     * Sets the number of ticks it takes to break this holder. Use -1 to let the client break it
+     * with vanilla timings, or {@link net.bitbylogic.packetblocks.util.BreakTimes#VANILLA_BREAK_SPEED}
+     * to animate it server-side with a vanilla-accurate duration.
+     *
+     * @param breakSpeed the break speed in ticks
+     */
     default void setBreakSpeed(int breakSpeed) {
         getDataHandler().setBreakSpeed(breakSpeed);
     }
@@ -121,6 +145,17 @@ public interface DataHolder<T, V extends PacketBlockViewer<T>> {
         getDataHandler().setGlobalBreakAnimation(globalBreakAnimation);
     }
     
+    /**
+     * Sets the radius, in blocks, around the dug block that the break animation is shown on.
+     * This only affects holders made of multiple blocks; a radius of 0 or less only animates
+     * the block actually being dug.
+     *
+     * @param breakAnimationRadius the break animation radius
+     */
+    default void setBreakAnimationRadius(int breakAnimationRadius) {
+        getDataHandler().setBreakAnimationRadius(breakAnimationRadius);
+    }
+
     default void setData(T data) {
         getDataHandler().setData(data);
     }
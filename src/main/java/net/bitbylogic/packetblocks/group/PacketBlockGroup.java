@@ -6,12 +6,13 @@ import net.bitbylogic.packetblocks.block.PacketBlockHolder;
 import net.bitbylogic.packetblocks.block.PacketBlockManager;
 import net.bitbylogic.packetblocks.data.DataHandler;
 import net.bitbylogic.packetblocks.metadata.MetadataHandler;
+import net.bitbylogic.packetblocks.metrics.PacketBlockMetrics;
+import net.bitbylogic.packetblocks.util.BlockChangeBatch;
 import net.bitbylogic.packetblocks.util.BoundingBoxes;
 import net.bitbylogic.packetblocks.viewer.ViewerHandler;
 import net.bitbylogic.packetblocks.viewer.impl.GroupPacketBlockViewer;
 import net.bitbylogic.utils.location.ChunkPosition;
 import net.bitbylogic.utils.location.WorldPosition;
-import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.block.BlockState;
@@ -21,11 +22,26 @@ import org.bukkit.util.BoundingBox;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
-
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.UnaryOperator;
+
+/**
+ * A set of packet blocks that share viewers, metadata and settings.
+ * <p>
+ * The group's data, every viewer's data and the cached locations are {@link ConcurrentHashMap}s, as
+ * the packet adapters read them from netty threads while they are changed from main or region
+ * threads. Each entry is always readable on its own: a location is cached before its data is added
+ * and its data is removed before the location is dropped. Changes made of several entries, such as
+ * adding many blocks or {@link #relocate moving the group}, are not atomic to readers, which is why
+ * they are always followed by an update to the viewers.
+ * <p>
+ * {@link #getChunkPositions()} is only read and written on the thread that changes the group.
+ */
 @Getter
 public class PacketBlockGroup implements PacketBlockHolder<Map<WorldPosition, BlockData>, GroupPacketBlockViewer> {
 
-    private final List<String> worldNames = new ArrayList<>();
+    private final List<String> worldNames = new CopyOnWriteArrayList<>();
     private final Map<ChunkPosition, List<WorldPosition>> chunkPositions;
     private final Map<WorldPosition, Location> cachedLocations;
 
@@ -41,9 +57,9 @@ public class PacketBlockGroup implements PacketBlockHolder<Map<WorldPosition, Bl
         int size = blockLocations.size();
 
         this.chunkPositions = new HashMap<>(size);
-        this.cachedLocations = new HashMap<>(size);
+        this.cachedLocations = new ConcurrentHashMap<>(size);
 
-        Map<WorldPosition, BlockData> positions = new HashMap<>(size);
+        Map<WorldPosition, BlockData> positions = new ConcurrentHashMap<>(size);
 
         for (Map.Entry<Location, BlockData> entry : blockLocations.entrySet()) {
             Location location = entry.getKey().toBlockLocation();
@@ -56,22 +72,22 @@ public class PacketBlockGroup implements PacketBlockHolder<Map<WorldPosition, Bl
 
             chunkPositions.computeIfAbsent(chunkPosition, k -> new ArrayList<>()).add(worldPosition);
 
-            positions.put(worldPosition, entry.getValue());
             cachedLocations.put(worldPosition, location);
+            positions.put(worldPosition, entry.getValue());
         }
 
         this.viewerHandler = new ViewerHandler<>(
                 player -> getData(),
                 this::sendUpdate,
                 player -> {
-                    List<BlockState> states = new ArrayList<>();
+                    BlockChangeBatch changes = new BlockChangeBatch();
 
                     for (Map.Entry<WorldPosition, BlockData> entry : getData().entrySet()) {
-                        Location location = cachedLocations.get(entry.getKey());
-                        states.add(location.getBlock().getState());
+                        changes.addReal(cachedLocations.get(entry.getKey()));
                     }
 
-                    player.sendBlockChanges(states);
+                    changes.send(player);
+                    PacketBlockMetrics.get().recordUpdate(player);
                 },
                 () -> new GroupPacketBlockViewer(getData(), this::getData, breakSpeed)
         );
@@ -101,6 +117,47 @@ public class PacketBlockGroup implements PacketBlockHolder<Map<WorldPosition, Bl
         locations.forEach(this::addLocation);
     }
 
+    /**
+     * Adds multiple block locations along with their corresponding block data to the internal data structure,
+     * optionally sending a single update containing only the added blocks to every viewer.
+     * <p>
+     * NOTE: Do not call this yourself, use {@link PacketBlockManager#addBlocksToGroup(PacketBlockGroup, Map, boolean)}
+     *
+     * @param locations   a map containing the {@link Location} of each block and its associated {@link BlockData}; must not be null
+     * @param sendUpdates whether viewers should be sent the added blocks
+     */
+    public void addLocations(@NonNull Map<Location, BlockData> locations, boolean sendUpdates) {
+        for (Map.Entry<Location, BlockData> entry : locations.entrySet()) {
+            addLocation(entry.getKey(), entry.getValue(), false);
+        }
+
+        if (!sendUpdates) {
+            return;
+        }
+
+        getViewers().forEach((uuid, viewer) -> {
+            Player player = viewer.getHandle().resolve(uuid);
+
+            if (player == null) {
+                return;
+            }
+
+            Map<WorldPosition, BlockData> data = viewer.getSuppliedData();
+            BlockChangeBatch changes = new BlockChangeBatch();
+
+            for (Location location : locations.keySet()) {
+                BlockData blockData = data.get(WorldPosition.ofBlock(location));
+
+                if (blockData != null) {
+                    changes.add(location, blockData);
+                }
+            }
+
+            changes.markResolved().send(player, viewer.getHandle().getUser(player));
+            PacketBlockMetrics.get().recordUpdate(player);
+        });
+    }
+
     /**
      * Adds a specific block location along with its corresponding block data to the internal data structure.
      * Updates are sent to all viewers tracking the block group, and necessary metadata is updated accordingly.
@@ -111,9 +168,14 @@ public class PacketBlockGroup implements PacketBlockHolder<Map<WorldPosition, Bl
      * @param blockData the {@link BlockData} associated with the block at the given location; must not be null
      */
     public void addLocation(@NonNull Location location, @NonNull BlockData blockData) {
+        addLocation(location, blockData, true);
+    }
+
+    protected void addLocation(@NonNull Location location, @NonNull BlockData blockData, boolean sendUpdate) {
+        location = location.toBlockLocation();
         WorldPosition position = WorldPosition.ofBlock(location);
-        getData().put(position, blockData);
         cachedLocations.put(position, location);
+        getData().put(position, blockData);
 
         ChunkPosition chunkPosition = position.toChunkPosition();
         chunkPositions.computeIfAbsent(chunkPosition, k -> new ArrayList<>()).add(position);
@@ -123,7 +185,10 @@ public class PacketBlockGroup implements PacketBlockHolder<Map<WorldPosition, Bl
         }
 
         getViewers().forEach((uuid, viewer) -> viewer.getData().put(position, blockData));
-        sendUpdates();
+
+        if (sendUpdate) {
+            sendUpdates();
+        }
     }
 
     /**
@@ -140,17 +205,18 @@ public class PacketBlockGroup implements PacketBlockHolder<Map<WorldPosition, Bl
             removeLocation(location, false);
         }
 
-        List<BlockState> states = new ArrayList<>();
-        locations.forEach(location -> states.add(location.getBlock().getState()));
+        BlockChangeBatch changes = new BlockChangeBatch();
+        locations.forEach(changes::addReal);
 
         getViewers().forEach((uuid, viewer) -> {
-            Player player = Bukkit.getPlayer(uuid);
+            Player player = viewer.getHandle().resolve(uuid);
 
             if(player == null) {
                 return;
             }
 
-            player.sendBlockChanges(states);
+            changes.send(player, viewer.getHandle().getUser(player));
+            PacketBlockMetrics.get().recordUpdate(player);
         });
     }
 
@@ -185,14 +251,128 @@ public class PacketBlockGroup implements PacketBlockHolder<Map<WorldPosition, Bl
                 return;
             }
 
-            Player player = Bukkit.getPlayer(uuid);
+            Player player = viewer.getHandle().resolve(uuid);
 
             if(player == null) {
                 return;
             }
 
-            player.sendBlockChange(location, location.getBlock().getBlockData());
+            new BlockChangeBatch().addReal(location).send(player, viewer.getHandle().getUser(player));
+            PacketBlockMetrics.get().recordUpdate(player);
+        });
+    }
+
+    /**
+     * Moves every block of this group to a new location, carrying both the default data and every
+     * viewer's data along with it. No updates are sent; the caller is responsible for re-indexing
+     * and notifying viewers.
+     * <p>
+     * NOTE: Do not call this yourself, use {@link PacketBlockManager#transformGroup(PacketBlockGroup, UnaryOperator, UnaryOperator)}
+     *
+     * @param locationMapper maps each current block location to its new location; must not be null
+     * @param dataMapper     maps each block's data to its data after the move; must not be null
+     * @return a map of each previous position to the position it was moved to
+     */
+    public Map<WorldPosition, WorldPosition> relocate(@NonNull UnaryOperator<Location> locationMapper, @NonNull UnaryOperator<BlockData> dataMapper) {
+        Map<WorldPosition, WorldPosition> moved = new HashMap<>(cachedLocations.size());
+        Map<WorldPosition, Location> newLocations = new HashMap<>(cachedLocations.size());
+
+        for (Map.Entry<WorldPosition, Location> entry : cachedLocations.entrySet()) {
+            Location location = locationMapper.apply(entry.getValue().clone()).toBlockLocation();
+            WorldPosition position = WorldPosition.ofBlock(location);
+
+            moved.put(entry.getKey(), position);
+            newLocations.put(position, location);
+        }
+
+        cachedLocations.putAll(newLocations);
+
+        remap(getData(), moved, dataMapper);
+
+        getViewers().values().forEach(viewer -> {
+            if (viewer.getData() == null || viewer.getData() == getData()) {
+                return;
+            }
+
+            remap(viewer.getData(), moved, dataMapper);
+        });
+
+        cachedLocations.keySet().retainAll(newLocations.keySet());
+
+        chunkPositions.clear();
+        worldNames.clear();
+
+        for (WorldPosition position : newLocations.keySet()) {
+            chunkPositions.computeIfAbsent(position.toChunkPosition(), k -> new ArrayList<>()).add(position);
+
+            if (!worldNames.contains(position.worldName())) {
+                worldNames.add(position.worldName());
+            }
+        }
+
+        refreshBoundingBoxes();
+        return moved;
+    }
+
+    /**
+     * Moves the entries of a data map in place. New positions are added before vacated ones are
+     * removed, so concurrent readers never see an empty map.
+     */
+    private static void remap(@NonNull Map<WorldPosition, BlockData> data, @NonNull Map<WorldPosition, WorldPosition> moved,
+                              @NonNull UnaryOperator<BlockData> dataMapper) {
+        Map<WorldPosition, BlockData> remapped = new HashMap<>(data.size());
+
+        data.forEach((position, blockData) -> {
+            WorldPosition target = moved.get(position);
+
+            if (target == null) {
+                return;
+            }
+
+            remapped.put(target, dataMapper.apply(blockData));
         });
+
+        data.putAll(remapped);
+        data.keySet().retainAll(remapped.keySet());
+    }
+
+    /*
+     * The data setters below copy the given map into a concurrent map unless it already is one,
+     * so maps handed in by callers are safe to read from netty threads.
+     */
+
+    @Override
+    public void setDataForAll(@NonNull Map<WorldPosition, BlockData> data) {
+        PacketBlockHolder.super.setDataForAll(concurrent(data));
+    }
+
+    @Override
+    public void setDataSupplierForAll(@NonNull Map<WorldPosition, BlockData> data) {
+        PacketBlockHolder.super.setDataSupplierForAll(concurrent(data));
+    }
+
+    @Override
+    public void setData(@NonNull Player player, @Nullable Map<WorldPosition, BlockData> data) {
+        PacketBlockHolder.super.setData(player, data == null ? null : concurrent(data));
+    }
+
+    @Override
+    public void setBlockDataAndUpdate(@NonNull Player player, @Nullable Map<WorldPosition, BlockData> data) {
+        PacketBlockHolder.super.setBlockDataAndUpdate(player, data == null ? null : concurrent(data));
+    }
+
+    @Override
+    public void setDataSupplier(@NonNull Player player, @NonNull Map<WorldPosition, BlockData> data) {
+        PacketBlockHolder.super.setDataSupplier(player, concurrent(data));
+    }
+
+    @Override
+    public void setData(Map<WorldPosition, BlockData> data) {
+        PacketBlockHolder.super.setData(data == null ? null : concurrent(data));
+    }
+
+    private static Map<WorldPosition, BlockData> concurrent(@NonNull Map<WorldPosition, BlockData> data) {
+        return data instanceof ConcurrentHashMap<WorldPosition, BlockData> ? data : new ConcurrentHashMap<>(data);
     }
 
     public List<BlockState> getBlockStates(@NonNull Player player) {
@@ -219,6 +399,30 @@ public class PacketBlockGroup implements PacketBlockHolder<Map<WorldPosition, Bl
         return states;
     }
 
+    /**
+     * Collects the blocks the given player sees in this group as block changes, without creating
+     * Bukkit block states.
+     *
+     * @param player the player to resolve the data for; must not be null
+     * @return the block changes for every block of the group
+     */
+    public BlockChangeBatch getBlockChanges(@NonNull Player player) {
+        BlockChangeBatch changes = new BlockChangeBatch();
+        GroupPacketBlockViewer viewer = getViewer(player).orElse(null);
+        Map<WorldPosition, BlockData> data = viewer == null ? getData()
+                : viewer.getData() == null ? viewer.getDataSupplier().get() : viewer.getData();
+
+        for (Map.Entry<WorldPosition, BlockData> entry : data.entrySet()) {
+            Location location = cachedLocations.get(entry.getKey());
+
+            if (location != null) {
+                changes.add(location, entry.getValue());
+            }
+        }
+
+        return changes;
+    }
+
     public Optional<BlockData> getDataAt(@Nullable Player player, @NonNull Location location) {
         if (player == null) {
             return Optional.ofNullable(getData().get(WorldPosition.ofBlock(location)));
@@ -240,7 +444,8 @@ public class PacketBlockGroup implements PacketBlockHolder<Map<WorldPosition, Bl
      */
     @Override
     public void sendUpdate(@NonNull Player player) {
-        player.sendBlockChanges(getBlockStates(player));
+        getBlockChanges(player).markResolved().send(player, getUser(player));
+        PacketBlockMetrics.get().recordUpdate(player);
     }
 
     @Override
@@ -0,0 +1,207 @@
+package net.bitbylogic.packetblocks.group;
+
+import lombok.Getter;
+import lombok.NonNull;
+import net.bitbylogic.packetblocks.block.PacketBlockHolder;
+import net.bitbylogic.packetblocks.block.PacketBlockManager;
+import net.bitbylogic.packetblocks.data.DataHandler;
+import net.bitbylogic.packetblocks.group.PacketBlockTemplate.BlockVisitor;
+import net.bitbylogic.packetblocks.metadata.MetadataHandler;
+import net.bitbylogic.packetblocks.metrics.PacketBlockMetrics;
+import net.bitbylogic.packetblocks.util.BlockChangeBatch;
+import net.bitbylogic.packetblocks.util.BlockPositions;
+import net.bitbylogic.packetblocks.util.BoundingBoxes;
+import net.bitbylogic.packetblocks.viewer.ViewerHandler;
+import net.bitbylogic.packetblocks.viewer.impl.InstancePacketBlockViewer;
+import net.bitbylogic.utils.location.ChunkPosition;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.BlockState;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.entity.Player;
+import org.bukkit.util.BoundingBox;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * A placed copy of a {@link PacketBlockTemplate}.
+ * <p>
+ * Unlike a {@link PacketBlockGroup}, an instance does not copy any block data. It only stores its
+ * origin, its {@link TemplateTransform} and the chunks it covers; every lookup is resolved through
+ * the shared template. Viewers hold a reference to a template rather than a copy of it, so a
+ * player can be shown a different template by using {@link #setData(Player, Object)}.
+ * <p>
+ * Templates swapped in for all or individual viewers are expected to fit within the footprint of
+ * the template the instance was created with, since only that footprint is indexed by the
+ * {@link PacketBlockManager}.
+ */
+@Getter
+public class PacketBlockInstance implements PacketBlockHolder<PacketBlockTemplate, InstancePacketBlockViewer> {
+
+    private final Location origin;
+    private final String worldName;
+    private final int originX;
+    private final int originY;
+    private final int originZ;
+
+    private final TemplateTransform transform;
+    private final Set<ChunkPosition> chunkPositions;
+
+    private final DataHandler<PacketBlockTemplate, InstancePacketBlockViewer> dataHandler;
+    private final ViewerHandler<PacketBlockTemplate, InstancePacketBlockViewer> viewerHandler;
+    private final MetadataHandler metadataHandler;
+
+    public PacketBlockInstance(@NonNull PacketBlockTemplate template, @NonNull Location origin, @NonNull TemplateTransform transform) {
+        this(template, origin, transform, -1);
+    }
+
+    public PacketBlockInstance(@NonNull PacketBlockTemplate template, @NonNull Location origin, @NonNull TemplateTransform transform, int breakSpeed) {
+        if (origin.getWorld() == null) {
+            throw new IllegalArgumentException("Instance origin must have a world");
+        }
+
+        this.origin = origin.toBlockLocation();
+        this.worldName = origin.getWorld().getName();
+        this.originX = origin.getBlockX();
+        this.originY = origin.getBlockY();
+        this.originZ = origin.getBlockZ();
+        this.transform = transform;
+
+        Set<Long> chunkKeys = new HashSet<>();
+        template.forEach(transform, (x, y, z, blockData) ->
+                chunkKeys.add(BlockPositions.chunkKey((originX + x) >> 4, (originZ + z) >> 4)));
+
+        Set<ChunkPosition> chunks = new HashSet<>(chunkKeys.size());
+        chunkKeys.forEach(key -> chunks.add(new ChunkPosition(worldName, BlockPositions.chunkKeyX(key), BlockPositions.chunkKeyZ(key))));
+        this.chunkPositions = Collections.unmodifiableSet(chunks);
+
+        this.viewerHandler = new ViewerHandler<>(
+                player -> getData(),
+                this::sendUpdate,
+                player -> {
+                    World world = this.origin.getWorld();
+                    BlockChangeBatch changes = new BlockChangeBatch();
+
+                    getData().forEach(transform, (x, y, z, blockData) -> changes.add(originX + x, originY + y, originZ + z,
+                            world.getBlockAt(originX + x, originY + y, originZ + z).getBlockData()));
+
+                    changes.send(player);
+                    PacketBlockMetrics.get().recordUpdate(player);
+                },
+                () -> new InstancePacketBlockViewer(getData(), this::getData, breakSpeed)
+        );
+
+        this.dataHandler = new DataHandler<>(this, this::sendUpdate, data -> {
+            List<BoundingBox> boundingBoxes = new ArrayList<>();
+
+            forEachBlock(data, (x, y, z, blockData) ->
+                    boundingBoxes.addAll(BoundingBoxes.getBoxesAt(blockData, new Location(this.origin.getWorld(), x, y, z))));
+
+            return boundingBoxes;
+        }, template, breakSpeed);
+
+        this.metadataHandler = new MetadataHandler();
+    }
+
+    /**
+     * Retrieves the block data shown to the given player at a world location.
+     *
+     * @param player   the player to resolve the data for; can be null to use the default template
+     * @param location the world location to look up; must not be null
+     * @return the transformed block data at the location, or an empty optional if the instance has no block there
+     */
+    public Optional<BlockData> getDataAt(@Nullable Player player, @NonNull Location location) {
+        if (location.getWorld() == null || !location.getWorld().getName().equals(worldName)) {
+            return Optional.empty();
+        }
+
+        return Optional.ofNullable(getData(player).getData(transform,
+                location.getBlockX() - originX,
+                location.getBlockY() - originY,
+                location.getBlockZ() - originZ));
+    }
+
+    /**
+     * Visits every block the given player sees in this instance, in world coordinates.
+     *
+     * @param player  the player to resolve the template for; can be null to use the default template
+     * @param visitor the visitor receiving world coordinates and transformed block data; must not be null
+     */
+    public void forEachBlock(@Nullable Player player, @NonNull BlockVisitor visitor) {
+        forEachBlock(getData(player), visitor);
+    }
+
+    /**
+     * Visits every block the given player sees within a single chunk, in world coordinates.
+     *
+     * @param player  the player to resolve the template for; can be null to use the default template
+     * @param chunkX  the chunk X coordinate
+     * @param chunkZ  the chunk Z coordinate
+     * @param visitor the visitor receiving world coordinates and transformed block data; must not be null
+     */
+    public void forEachBlockInChunk(@Nullable Player player, int chunkX, int chunkZ, @NonNull BlockVisitor visitor) {
+        forEachBlock(getData(player), (x, y, z, blockData) -> {
+            if (x >> 4 != chunkX || z >> 4 != chunkZ) {
+                return;
+            }
+
+            visitor.accept(x, y, z, blockData);
+        });
+    }
+
+    private void forEachBlock(@NonNull PacketBlockTemplate template, @NonNull BlockVisitor visitor) {
+        template.forEach(transform, (x, y, z, blockData) -> visitor.accept(originX + x, originY + y, originZ + z, blockData));
+    }
+
+    public List<BlockState> getBlockStates(@NonNull Player player) {
+        World world = origin.getWorld();
+        List<BlockState> states = new ArrayList<>();
+
+        forEachBlock(player, (x, y, z, blockData) -> states.add(blockData.createBlockState().copy(new Location(world, x, y, z))));
+
+        return states;
+    }
+
+    /**
+     * Collects the blocks the given player sees in this instance as block changes, without creating
+     * Bukkit block states.
+     *
+     * @param player the player to resolve the template for; must not be null
+     * @return the block changes for every block of the instance
+     */
+    public BlockChangeBatch getBlockChanges(@NonNull Player player) {
+        BlockChangeBatch changes = new BlockChangeBatch();
+        forEachBlock(player, changes::add);
+        return changes;
+    }
+
+    /**
+     * Sends a block update to the specified player at the current location.
+     *
+     * @param player the player to whom the block update will be sent
+     */
+    @Override
+    public void sendUpdate(@NonNull Player player) {
+        getBlockChanges(player).markResolved().send(player, getUser(player));
+        PacketBlockMetrics.get().recordUpdate(player);
+    }
+
+    @Override
+    public boolean existsIn(@NonNull World world) {
+        return worldName.equals(world.getName());
+    }
+
+    @Override
+    public boolean existsAt(@NonNull Location location) {
+        if (location.getWorld() == null || !location.getWorld().getName().equals(worldName)) {
+            return false;
+        }
+
+        int x = location.getBlockX() - originX;
+        int z = location.getBlockZ() - originZ;
+
+        return getData().contains(transform.inverseX(x, z), location.getBlockY() - originY, transform.inverseZ(x, z));
+    }
+
+}
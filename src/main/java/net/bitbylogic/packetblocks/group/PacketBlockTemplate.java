@@ -0,0 +1,204 @@
+package net.bitbylogic.packetblocks.group;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+import net.bitbylogic.packetblocks.util.BlockPositions;
+import org.bukkit.Location;
+import org.bukkit.block.data.BlockData;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An immutable structure definition made of relative block offsets and a shared palette.
+ * <p>
+ * A single template can back any number of {@link PacketBlockInstance}s, each of which only
+ * stores its own origin and {@link TemplateTransform}. Offsets are kept as a sorted array of
+ * packed longs so lookups are a binary search and no per-block objects are retained.
+ */
+@Getter
+public class PacketBlockTemplate {
+
+    private final BlockData[] palette;
+    private final long[] offsets;
+    private final int[] paletteIndices;
+
+    private final int minX;
+    private final int minY;
+    private final int minZ;
+    private final int maxX;
+    private final int maxY;
+    private final int maxZ;
+
+    @Getter(AccessLevel.NONE)
+    private final Map<TemplateTransform, BlockData[]> transformedPalettes = new ConcurrentHashMap<>();
+
+    private PacketBlockTemplate(@NonNull BlockData[] palette, @NonNull long[] offsets, @NonNull int[] paletteIndices) {
+        this.palette = palette;
+        this.offsets = offsets;
+        this.paletteIndices = paletteIndices;
+
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+
+        for (long offset : offsets) {
+            int x = BlockPositions.unpackX(offset);
+            int y = BlockPositions.unpackY(offset);
+            int z = BlockPositions.unpackZ(offset);
+
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            minZ = Math.min(minZ, z);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+            maxZ = Math.max(maxZ, z);
+        }
+
+        this.minX = offsets.length == 0 ? 0 : minX;
+        this.minY = offsets.length == 0 ? 0 : minY;
+        this.minZ = offsets.length == 0 ? 0 : minZ;
+        this.maxX = offsets.length == 0 ? 0 : maxX;
+        this.maxY = offsets.length == 0 ? 0 : maxY;
+        this.maxZ = offsets.length == 0 ? 0 : maxZ;
+
+        transformedPalettes.put(TemplateTransform.NONE, palette);
+    }
+
+    /**
+     * Creates a template from absolute block locations, storing every block relative to the given origin.
+     *
+     * @param origin the location that offsets are measured from; must not be null
+     * @param blocks the blocks making up the template; must not be null
+     * @return the created template
+     */
+    public static PacketBlockTemplate of(@NonNull Location origin, @NonNull Map<Location, BlockData> blocks) {
+        int originX = origin.getBlockX();
+        int originY = origin.getBlockY();
+        int originZ = origin.getBlockZ();
+
+        TreeMap<Long, BlockData> sorted = new TreeMap<>();
+
+        for (Map.Entry<Location, BlockData> entry : blocks.entrySet()) {
+            Location location = entry.getKey();
+
+            sorted.put(BlockPositions.pack(
+                    location.getBlockX() - originX,
+                    location.getBlockY() - originY,
+                    location.getBlockZ() - originZ
+            ), entry.getValue());
+        }
+
+        List<BlockData> palette = new ArrayList<>();
+        Map<BlockData, Integer> paletteLookup = new HashMap<>();
+
+        long[] offsets = new long[sorted.size()];
+        int[] paletteIndices = new int[sorted.size()];
+        int index = 0;
+
+        for (Map.Entry<Long, BlockData> entry : sorted.entrySet()) {
+            offsets[index] = entry.getKey();
+            paletteIndices[index] = paletteLookup.computeIfAbsent(entry.getValue(), data -> {
+                palette.add(data);
+                return palette.size() - 1;
+            });
+
+            index++;
+        }
+
+        return new PacketBlockTemplate(palette.toArray(new BlockData[0]), offsets, paletteIndices);
+    }
+
+    /**
+     * Creates a template from the current default data of a {@link PacketBlockGroup}.
+     *
+     * @param group  the group to copy; must not be null
+     * @param origin the location that offsets are measured from; must not be null
+     * @return the created template
+     */
+    public static PacketBlockTemplate of(@NonNull PacketBlockGroup group, @NonNull Location origin) {
+        Map<Location, BlockData> blocks = new HashMap<>();
+
+        group.getData().forEach((position, blockData) -> blocks.put(group.getCachedLocations().get(position), blockData));
+
+        return of(origin, blocks);
+    }
+
+    public int size() {
+        return offsets.length;
+    }
+
+    public boolean contains(int x, int y, int z) {
+        return Arrays.binarySearch(offsets, BlockPositions.pack(x, y, z)) >= 0;
+    }
+
+    /**
+     * Retrieves the untransformed block data at a template-relative offset.
+     *
+     * @return the block data at the offset, or null if the template has no block there
+     */
+    public @Nullable BlockData getData(int x, int y, int z) {
+        int index = Arrays.binarySearch(offsets, BlockPositions.pack(x, y, z));
+        return index < 0 ? null : palette[paletteIndices[index]];
+    }
+
+    /**
+     * Retrieves the block data at a placed offset, mapping the offset back into template space
+     * and returning the palette entry with the transform applied.
+     *
+     * @param transform the transform the template is placed with; must not be null
+     * @return the transformed block data at the offset, or null if the template has no block there
+     */
+    public @Nullable BlockData getData(@NonNull TemplateTransform transform, int x, int y, int z) {
+        int index = Arrays.binarySearch(offsets, BlockPositions.pack(transform.inverseX(x, z), y, transform.inverseZ(x, z)));
+        return index < 0 ? null : getPalette(transform)[paletteIndices[index]];
+    }
+
+    /**
+     * Retrieves the palette with the given transform applied. Transformed palettes are
+     * computed once and shared between every instance placed with the same transform.
+     *
+     * @param transform the transform to apply; must not be null
+     * @return the transformed palette
+     */
+    public BlockData[] getPalette(@NonNull TemplateTransform transform) {
+        return transformedPalettes.computeIfAbsent(transform, t -> {
+            BlockData[] transformed = new BlockData[palette.length];
+
+            for (int i = 0; i < palette.length; i++) {
+                transformed[i] = t.apply(palette[i]);
+            }
+
+            return transformed;
+        });
+    }
+
+    /**
+     * Visits every block in the template with the given transform applied.
+     *
+     * @param transform the transform to apply to offsets and block data; must not be null
+     * @param visitor   the visitor receiving placed offsets and transformed block data; must not be null
+     */
+    public void forEach(@NonNull TemplateTransform transform, @NonNull BlockVisitor visitor) {
+        BlockData[] transformedPalette = getPalette(transform);
+
+        for (int i = 0; i < offsets.length; i++) {
+            long offset = offsets[i];
+
+            int x = BlockPositions.unpackX(offset);
+            int y = BlockPositions.unpackY(offset);
+            int z = BlockPositions.unpackZ(offset);
+
+            visitor.accept(transform.transformX(x, z), y, transform.transformZ(x, z), transformedPalette[paletteIndices[i]]);
+        }
+    }
+
+    @FunctionalInterface
+    public interface BlockVisitor {
+
+        void accept(int x, int y, int z, @NonNull BlockData blockData);
+
+    }
+
+}
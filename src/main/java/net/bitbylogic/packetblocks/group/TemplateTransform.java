@@ -0,0 +1,104 @@
+package net.bitbylogic.packetblocks.group;
+
+import lombok.NonNull;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.block.structure.Mirror;
+import org.bukkit.block.structure.StructureRotation;
+
+/**
+ * Describes how a {@link PacketBlockTemplate} is placed relative to its origin.
+ * <p>
+ * The mirror is applied first and the rotation second, matching vanilla structure placement.
+ *
+ * @param rotation the rotation around the origin's Y axis
+ * @param mirror   the mirror applied before rotating
+ */
+public record TemplateTransform(@NonNull StructureRotation rotation, @NonNull Mirror mirror) {
+
+    public static final TemplateTransform NONE = new TemplateTransform(StructureRotation.NONE, Mirror.NONE);
+
+    public static TemplateTransform of(@NonNull StructureRotation rotation) {
+        return new TemplateTransform(rotation, Mirror.NONE);
+    }
+
+    public boolean isIdentity() {
+        return rotation == StructureRotation.NONE && mirror == Mirror.NONE;
+    }
+
+    /**
+     * Transforms a template-relative X/Z offset into a placed offset and returns the X component.
+     */
+    public int transformX(int x, int z) {
+        int mirroredX = mirror == Mirror.FRONT_BACK ? -x : x;
+        int mirroredZ = mirror == Mirror.LEFT_RIGHT ? -z : z;
+
+        return switch (rotation) {
+            case NONE -> mirroredX;
+            case CLOCKWISE_90 -> -mirroredZ;
+            case CLOCKWISE_180 -> -mirroredX;
+            case COUNTERCLOCKWISE_90 -> mirroredZ;
+        };
+    }
+
+    /**
+     * Transforms a template-relative X/Z offset into a placed offset and returns the Z component.
+     */
+    public int transformZ(int x, int z) {
+        int mirroredX = mirror == Mirror.FRONT_BACK ? -x : x;
+        int mirroredZ = mirror == Mirror.LEFT_RIGHT ? -z : z;
+
+        return switch (rotation) {
+            case NONE -> mirroredZ;
+            case CLOCKWISE_90 -> mirroredX;
+            case CLOCKWISE_180 -> -mirroredZ;
+            case COUNTERCLOCKWISE_90 -> -mirroredX;
+        };
+    }
+
+    /**
+     * Maps a placed X/Z offset back into template space and returns the X component.
+     */
+    public int inverseX(int x, int z) {
+        int rotatedX = switch (rotation) {
+            case NONE -> x;
+            case CLOCKWISE_90 -> z;
+            case CLOCKWISE_180 -> -x;
+            case COUNTERCLOCKWISE_90 -> -z;
+        };
+
+        return mirror == Mirror.FRONT_BACK ? -rotatedX : rotatedX;
+    }
+
+    /**
+     * Maps a placed X/Z offset back into template space and returns the Z component.
+     */
+    public int inverseZ(int x, int z) {
+        int rotatedZ = switch (rotation) {
+            case NONE -> z;
+            case CLOCKWISE_90 -> -x;
+            case CLOCKWISE_180 -> -z;
+            case COUNTERCLOCKWISE_90 -> x;
+        };
+
+        return mirror == Mirror.LEFT_RIGHT ? -rotatedZ : rotatedZ;
+    }
+
+    /**
+     * Returns a copy of the given block data with this transform's mirror and rotation applied,
+     * so directional blocks such as stairs and doors keep facing the right way.
+     *
+     * @param blockData the block data to transform; must not be null
+     * @return the transformed copy, or the same instance if this transform is the identity
+     */
+    public BlockData apply(@NonNull BlockData blockData) {
+        if (isIdentity()) {
+            return blockData;
+        }
+
+        BlockData transformed = blockData.clone();
+        transformed.mirror(mirror);
+        transformed.rotate(rotation);
+        return transformed;
+    }
+
+}
@@ -1,31 +1,34 @@
 package net.bitbylogic.packetblocks.listener;
 
+import com.destroystokyo.paper.event.player.PlayerPostRespawnEvent;
 import lombok.RequiredArgsConstructor;
-import net.bitbylogic.packetblocks.block.PacketBlock;
-import net.bitbylogic.packetblocks.block.PacketBlockHolder;
 import net.bitbylogic.packetblocks.block.PacketBlockManager;
 import net.bitbylogic.packetblocks.event.PacketBlockInteractEvent;
-import net.bitbylogic.packetblocks.group.PacketBlockGroup;
+import net.bitbylogic.packetblocks.metrics.PacketBlockMetrics;
+import net.bitbylogic.packetblocks.task.PlayerSnapshotTask;
+import net.bitbylogic.packetblocks.task.ViewerSyncTask;
 import net.bitbylogic.packetblocks.util.PacketBlockUtil;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
+import org.bukkit.World;
 import org.bukkit.attribute.Attribute;
-import org.bukkit.block.BlockState;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.block.BlockBreakEvent;
 import org.bukkit.event.player.*;
+import org.bukkit.event.world.WorldUnloadEvent;
 import org.bukkit.util.RayTraceResult;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.UUID;
 
 @RequiredArgsConstructor
 public class PacketBlockListener implements Listener {
 
     private final PacketBlockManager manager;
+    private final ViewerSyncTask viewerSync;
+    private final PlayerSnapshotTask playerSnapshots;
 
     @EventHandler
     public void onKick(PlayerKickEvent event) {
@@ -50,63 +53,49 @@ public class PacketBlockListener implements Listener {
 
     @EventHandler
     public void onJoin(PlayerJoinEvent event) {
-        Player player = event.getPlayer();
-        Set<BlockState> states = new HashSet<>();
-
-        manager.getBlocks(player.getWorld()).stream()
-                .filter(PacketBlockHolder::isAddViewerOnJoin)
-                .forEach(packetBlock -> {
-                    if (packetBlock instanceof PacketBlock singleBlock) {
-                        singleBlock.attemptAddViewer(player, false)
-                                .ifPresent(pd -> states.add(((PacketBlock) packetBlock).getBlockState(player)));
-                        return;
-                    }
+        playerSnapshots.update(event.getPlayer());
+        manager.rejoinViewer(event.getPlayer());
+        viewerSync.sync(event.getPlayer());
+    }
 
-                    if (!(packetBlock instanceof PacketBlockGroup group)) {
-                        return;
-                    }
+    @EventHandler
+    public void onRespawn(PlayerPostRespawnEvent event) {
+        playerSnapshots.update(event.getPlayer());
+        viewerSync.sync(event.getPlayer());
+    }
 
-                    group.attemptAddViewer(player, false).ifPresent(pd -> states.addAll(group.getBlockStates(player)));
-                });
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onTeleport(PlayerTeleportEvent event) {
+        World world = event.getTo().getWorld();
 
-        player.sendBlockChanges(states);
+        if (world != null) {
+            playerSnapshots.update(event.getPlayer().getUniqueId(), world);
+        }
     }
 
     @EventHandler
     public void onWorldChange(PlayerChangedWorldEvent event) {
         Player player = event.getPlayer();
-        Set<BlockState> states = new HashSet<>();
-
-        manager.getBlocks(event.getFrom()).stream()
-                .filter(packetBlockHolder -> packetBlockHolder.isViewer(player))
-                .forEach(packetBlock -> packetBlock.removeViewer(player));
 
-        manager.getBlocks(event.getPlayer().getWorld()).stream()
-                .filter(PacketBlockHolder::isAddViewerOnJoin)
-                .forEach(packetBlock -> {
-                    if (packetBlock instanceof PacketBlock singleBlock) {
-                        singleBlock.attemptAddViewer(player, false)
-                                .ifPresent(pd -> states.add(((PacketBlock) packetBlock).getBlockState(player)));
-                        return;
-                    }
-
-                    if (!(packetBlock instanceof PacketBlockGroup group)) {
-                        return;
-                    }
-
-                    group.attemptAddViewer(player, false).ifPresent(pd -> states.addAll(group.getBlockStates(player)));
-                });
-
-        player.sendBlockChanges(states);
+        playerSnapshots.update(player);
+        manager.leaveWorld(player, event.getFrom());
+        viewerSync.sync(player);
     }
 
     @EventHandler
     public void onQuit(PlayerQuitEvent event) {
-        Player player = event.getPlayer();
+        UUID uuid = event.getPlayer().getUniqueId();
+
+        viewerSync.cancel(uuid);
+        playerSnapshots.forget(uuid);
+        manager.releaseViewer(uuid);
+
+        PacketBlockMetrics.get().forgetPlayer(uuid);
+    }
 
-        manager.getBlocks(player.getWorld()).stream()
-                .filter(PacketBlockHolder::isAddViewerOnJoin)
-                .forEach(packetBlock -> packetBlock.removeViewer(player));
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onWorldUnload(WorldUnloadEvent event) {
+        manager.unloadWorld(event.getWorld());
     }
 
     @EventHandler
@@ -3,11 +3,77 @@ package net.bitbylogic.packetblocks.metadata;
 import lombok.NonNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
+/**
+ * Stores metadata in an array indexed by {@link MetadataKey#getSlot()}.
+ * <p>
+ * Handlers without metadata share a single empty array, and the array is only grown to the highest
+ * slot actually used. Typed reads are an array access and a type check. Values stored through the
+ * String API under names that have no registered key go into a small map that is only created when
+ * first needed.
+ */
 public class MetadataHandler {
 
-    private final HashMap<String, Object> metadata = new HashMap<>();
+    private static final Object[] EMPTY = new Object[0];
+
+    private Object[] values = EMPTY;
+    private @Nullable Map<String, Object> unregistered;
+    private int count;
+
+    /**
+     * Adds a metadata entry under the specified key.
+     * If the key already has a value, the method does nothing.
+     *
+     * @param key   the key to store the value under; must not be null
+     * @param value the value to store; must not be null
+     * @throws IllegalArgumentException if the value is not of the key's type
+     */
+    protected <T> void addMetadata(@NonNull MetadataKey<T> key, @NonNull T value) {
+        put(key, value);
+    }
+
+    /**
+     * Removes the value stored under the specified key.
+     *
+     * @param key the key whose value is to be removed. Must not be null.
+     */
+    protected void removeMetadata(@NonNull MetadataKey<?> key) {
+        int slot = key.getSlot();
+
+        if (slot < values.length && values[slot] != null) {
+            values[slot] = null;
+            count--;
+        }
+
+        removeUnregistered(key.getName());
+    }
+
+    /**
+     * Checks if a value is stored under the specified key.
+     *
+     * @param key the key to check, must not be null
+     * @return true if a value is stored under the key, false otherwise
+     */
+    protected boolean hasMetadata(@NonNull MetadataKey<?> key) {
+        return getValue(key) != null;
+    }
+
+    /**
+     * Retrieves the value stored under the specified key, or the fallback if there is none.
+     *
+     * @param key      the key to look up; must not be null
+     * @param fallback the value to return if nothing is stored under the key; may be null
+     * @return the stored value, or the fallback
+     * @throws ClassCastException if the value was stored through the String API and is not of the key's type
+     */
+    protected <T> T getMetadata(@NonNull MetadataKey<T> key, @Nullable T fallback) {
+        Object value = getValue(key);
+        return value == null ? fallback : key.getType().cast(value);
+    }
 
     /**
      * Adds a metadata entry with the specified key and object.
@@ -17,11 +83,20 @@ public class MetadataHandler {
      * @param object the object to be associated with the key; must not be null
      */
     protected void addMetadata(@NonNull String key, @NonNull Object object) {
-        if (metadata.containsKey(key)) {
+        MetadataKey<?> metadataKey = MetadataKey.find(key);
+
+        if (metadataKey != null) {
+            put(metadataKey, object);
             return;
         }
 
-        metadata.put(key, object);
+        if (unregistered == null) {
+            unregistered = new LinkedHashMap<>(4);
+        }
+
+        if (unregistered.putIfAbsent(key, object) == null) {
+            count++;
+        }
     }
 
     /**
@@ -30,7 +105,14 @@ public class MetadataHandler {
      * @param key the key whose associated metadata is to be removed. Must not be null.
      */
     protected void removeMetadata(@NonNull String key) {
-        metadata.remove(key);
+        MetadataKey<?> metadataKey = MetadataKey.find(key);
+
+        if (metadataKey != null) {
+            removeMetadata(metadataKey);
+            return;
+        }
+
+        removeUnregistered(key);
     }
 
     /**
@@ -40,7 +122,7 @@ public class MetadataHandler {
      * @return true if metadata with the given key exists, false otherwise
      */
     protected boolean hasMetadata(@NonNull String key) {
-        return metadata.containsKey(key);
+        return getMetadata(key, null) != null;
     }
 
     /**
@@ -75,7 +157,91 @@ public class MetadataHandler {
      * @return the metadata associated with the specified key, or the fallback value if no metadata is found.
      */
     protected Object getMetadata(@NonNull String key, @Nullable Object fallback) {
-        return metadata.getOrDefault(key, fallback);
+        MetadataKey<?> metadataKey = MetadataKey.find(key);
+        Object value = metadataKey != null ? getValue(metadataKey) : unregistered == null ? null : unregistered.get(key);
+
+        return value == null ? fallback : value;
+    }
+
+    /**
+     * @return the number of metadata entries stored
+     */
+    protected int getMetadataCount() {
+        return count;
+    }
+
+    /**
+     * Retrieves a read-only copy of every metadata entry, keyed by name.
+     *
+     * @return an unmodifiable map of the metadata
+     */
+    protected Map<String, Object> getMetadataView() {
+        if (count == 0) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, Object> view = new LinkedHashMap<>();
+
+        for (int slot = 0; slot < values.length; slot++) {
+            if (values[slot] != null) {
+                view.put(MetadataKey.bySlot(slot).getName(), values[slot]);
+            }
+        }
+
+        if (unregistered != null) {
+            unregistered.forEach(view::putIfAbsent);
+        }
+
+        return Collections.unmodifiableMap(view);
+    }
+
+    /**
+     * Reads the value stored for a key, falling back to a value stored under its name before the key
+     * was registered.
+     */
+    private @Nullable Object getValue(@NonNull MetadataKey<?> key) {
+        int slot = key.getSlot();
+        Object value = slot < values.length ? values[slot] : null;
+
+        if (value == null && unregistered != null) {
+            value = unregistered.get(key.getName());
+        }
+
+        return value;
+    }
+
+    private void removeUnregistered(@NonNull String name) {
+        if (unregistered == null || unregistered.remove(name) == null) {
+            return;
+        }
+
+        count--;
+
+        if (unregistered.isEmpty()) {
+            unregistered = null;
+        }
+    }
+
+    private void put(@NonNull MetadataKey<?> key, @NonNull Object value) {
+        if (!key.getType().isInstance(value)) {
+            throw new IllegalArgumentException("Metadata " + key.getName() + " expects " + key.getType().getName()
+                    + " but got " + value.getClass().getName());
+        }
+
+        if (unregistered != null && unregistered.containsKey(key.getName())) {
+            return;
+        }
+
+        int slot = key.getSlot();
+
+        if (slot >= values.length) {
+            values = Arrays.copyOf(values, (slot + 4) & ~3);
+        } else if (values[slot] != null) {
+            return;
+        }
+
+        values[slot] = value;
+        count++;
     }
 
 }
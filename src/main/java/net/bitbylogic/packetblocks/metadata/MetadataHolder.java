@@ -3,6 +3,8 @@ package net.bitbylogic.packetblocks.metadata;
 import lombok.NonNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Map;
+
 public interface MetadataHolder {
 
     @NonNull MetadataHandler getMetadataHandler();
@@ -72,4 +74,72 @@ public interface MetadataHolder {
         return getMetadataHandler().getMetadata(key, fallback);
     }
 
+    /**
+     * Retrieves a read-only view of every metadata entry.
+     *
+     * @return an unmodifiable view of the metadata map
+     */
+    default Map<String, Object> getAllMetadata() {
+        return getMetadataHandler().getMetadataView();
+    }
+
+    /**
+     * @return the number of metadata entries stored
+     */
+    default int getMetadataCount() {
+        return getMetadataHandler().getMetadataCount();
+    }
+
+    /**
+     * Adds a typed metadata entry under the specified key.
+     * If the key already has a value, the method does nothing.
+     *
+     * @param key   the key to store the value under; must not be null
+     * @param value the value to store; must not be null
+     * @throws IllegalArgumentException if the value is not of the key's type
+     */
+    default <T> void addMetadata(@NonNull MetadataKey<T> key, @NonNull T value) {
+        getMetadataHandler().addMetadata(key, value);
+    }
+
+    /**
+     * Removes the value stored under the specified key.
+     *
+     * @param key the key whose value is to be removed. Must not be null.
+     */
+    default void removeMetadata(@NonNull MetadataKey<?> key) {
+        getMetadataHandler().removeMetadata(key);
+    }
+
+    /**
+     * Checks if a value is stored under the specified key.
+     *
+     * @param key the key to check, must not be null
+     * @return true if a value is stored under the key, false otherwise
+     */
+    default boolean hasMetadata(@NonNull MetadataKey<?> key) {
+        return getMetadataHandler().hasMetadata(key);
+    }
+
+    /**
+     * Retrieves the value stored under the specified key.
+     *
+     * @param key the key to look up; must not be null
+     * @return the stored value, or null if nothing is stored under the key
+     */
+    default <T> @Nullable T getMetadata(@NonNull MetadataKey<T> key) {
+        return getMetadataHandler().getMetadata(key, null);
+    }
+
+    /**
+     * Retrieves the value stored under the specified key, or the fallback if there is none.
+     *
+     * @param key      the key to look up; must not be null
+     * @param fallback the value to return if nothing is stored under the key; may be null
+     * @return the stored value, or the fallback
+     */
+    default <T> T getMetadata(@NonNull MetadataKey<T> key, @Nullable T fallback) {
+        return getMetadataHandler().getMetadata(key, fallback);
+    }
+
 }
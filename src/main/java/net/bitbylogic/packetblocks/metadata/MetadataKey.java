@@ -0,0 +1,96 @@
+package net.bitbylogic.packetblocks.metadata;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A typed metadata key.
+ * <p>
+ * Every key name is registered once and assigned a dense slot index, which {@link MetadataHandler}
+ * uses to index its storage array. Keys are meant to be created once and kept in a constant:
+ * <pre>{@code
+ * public static final MetadataKey<Integer> OWNER_LEVEL = MetadataKey.of("owner_level", Integer.class);
+ * }</pre>
+ * The String based metadata methods use the slot of the registered key with the same name, if there
+ * is one. Names that were never registered are kept in a small map on each handler instead, so
+ * dynamically built names never take a slot that every handler would have to make room for.
+ *
+ * @param <T> the type of the values stored under this key
+ */
+@Getter
+public final class MetadataKey<T> {
+
+    private static final Map<String, MetadataKey<?>> KEYS = new ConcurrentHashMap<>();
+    private static final List<MetadataKey<?>> SLOTS = new CopyOnWriteArrayList<>();
+
+    private final String name;
+    private final Class<T> type;
+    private final int slot;
+
+    private MetadataKey(@NonNull String name, @NonNull Class<T> type, int slot) {
+        this.name = name;
+        this.type = type;
+        this.slot = slot;
+    }
+
+    /**
+     * Retrieves the key with the given name, registering it if it does not exist yet.
+     * <p>
+     * Values stored under the name through the String based API before the key was registered stay
+     * readable through the key, and are checked against the type when read.
+     *
+     * @param name the name of the key; must not be null
+     * @param type the type of the values stored under the key; must not be null
+     * @param <T>  the type of the values stored under the key
+     * @return the key
+     * @throws IllegalArgumentException if the name is already registered with a different type
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> MetadataKey<T> of(@NonNull String name, @NonNull Class<T> type) {
+        MetadataKey<?> key = register(name, type);
+
+        if (key.type == type) {
+            return (MetadataKey<T>) key;
+        }
+
+        throw new IllegalArgumentException("Metadata key " + name + " is already registered with type " + key.type.getName());
+    }
+
+    /**
+     * Retrieves the key registered under the given name without registering anything.
+     */
+    static @Nullable MetadataKey<?> find(@NonNull String name) {
+        return KEYS.get(name);
+    }
+
+    static MetadataKey<?> bySlot(int slot) {
+        return SLOTS.get(slot);
+    }
+
+    private static synchronized MetadataKey<?> register(@NonNull String name, @NonNull Class<?> type) {
+        MetadataKey<?> existing = KEYS.get(name);
+
+        if (existing != null) {
+            return existing;
+        }
+
+        MetadataKey<?> key = new MetadataKey<>(name, type, SLOTS.size());
+
+        SLOTS.add(key);
+        KEYS.put(name, key);
+
+        return key;
+    }
+
+    @Override
+    public String toString() {
+        return "MetadataKey{" + name + ", " + type.getSimpleName() + "}";
+    }
+
+}
@@ -0,0 +1,43 @@
+package net.bitbylogic.packetblocks.metrics;
+
+import lombok.Getter;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and handling time for a single {@link AdapterType}.
+ */
+@Getter
+public class AdapterMetrics {
+
+    /**
+     * Packets of the adapter's type that were inspected.
+     */
+    private final LongAdder inspected = new LongAdder();
+
+    /**
+     * Inspected packets that involved a viewed packet block and were rewritten, cancelled or acted upon.
+     */
+    private final LongAdder rewritten = new LongAdder();
+
+    /**
+     * Nanoseconds spent handling each inspected packet.
+     */
+    private final Histogram handleNanos = new Histogram();
+
+    void record(long nanos, boolean rewritten) {
+        inspected.increment();
+        handleNanos.record(nanos);
+
+        if (rewritten) {
+            this.rewritten.increment();
+        }
+    }
+
+    void reset() {
+        inspected.reset();
+        rewritten.reset();
+        handleNanos.reset();
+    }
+
+}
@@ -0,0 +1,13 @@
+package net.bitbylogic.packetblocks.metrics;
+
+/**
+ * The packet listeners PacketBlocks registers, as tracked by {@link PacketBlockMetrics}.
+ */
+public enum AdapterType {
+
+    CHUNK_LOAD,
+    BLOCK_UPDATE,
+    BLOCK_PLACE,
+    BLOCK_BREAK
+
+}
@@ -0,0 +1,43 @@
+package net.bitbylogic.packetblocks.metrics;
+
+/**
+ * The parts of a {@link MemoryFootprint}.
+ */
+public enum FootprintCategory {
+
+    /**
+     * Single packet blocks: the block, its location and its handlers.
+     */
+    SINGLES,
+
+    /**
+     * Packet block groups: the group, its handlers and every block's data and cached location.
+     */
+    GROUPS,
+
+    /**
+     * Template instances and, counted once each, the templates they place.
+     */
+    INSTANCES,
+
+    /**
+     * Viewer entries, including per-player data that is not shared with the holder.
+     */
+    VIEWERS,
+
+    /**
+     * Metadata of holders and their viewers.
+     */
+    METADATA,
+
+    /**
+     * Cached bounding boxes.
+     */
+    BOUNDING_BOXES,
+
+    /**
+     * The manager's chunk and block position indexes.
+     */
+    INDEX
+
+}
@@ -0,0 +1,246 @@
+package net.bitbylogic.packetblocks.metrics;
+
+import lombok.NonNull;
+import net.bitbylogic.packetblocks.block.PacketBlock;
+import net.bitbylogic.packetblocks.block.PacketBlockHolder;
+import net.bitbylogic.packetblocks.block.WorldPartition;
+import net.bitbylogic.packetblocks.group.PacketBlockGroup;
+import net.bitbylogic.packetblocks.group.PacketBlockInstance;
+import net.bitbylogic.packetblocks.group.PacketBlockTemplate;
+import net.bitbylogic.packetblocks.viewer.PacketBlockViewer;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps a running estimate of the memory retained by registered packet blocks, attributed to the
+ * world they are in and the plugin that created them.
+ * <p>
+ * The size of each holder's structure and index entries is estimated when it is registered and
+ * whenever blocks are added to or removed from it, so taking a {@link #snapshot} never walks group
+ * data. Viewers, metadata and bounding boxes change without the manager being involved; they are
+ * sized from their counts when the snapshot is taken.
+ * <p>
+ * The creating plugin is found by walking the stack for the first class loaded by another plugin.
+ */
+public class FootprintTracker {
+
+    /**
+     * The owner of holders that were not created by another plugin, such as blocks loaded from the store.
+     */
+    public static final String UNKNOWN_OWNER = "unknown";
+
+    private static final long SINGLE_BYTES = 360;
+    private static final long GROUP_BYTES = 400;
+    private static final long GROUP_BLOCK_BYTES = 152;
+    private static final long INSTANCE_BYTES = 380;
+    private static final long TEMPLATE_BYTES = 96;
+    private static final long TEMPLATE_BLOCK_BYTES = 12;
+    private static final long VIEWER_BYTES = 120;
+    private static final long VIEWER_BLOCK_BYTES = 40;
+    private static final long METADATA_BYTES = 16;
+    private static final long METADATA_ENTRY_BYTES = 20;
+    private static final long BOUNDING_BOX_BYTES = 68;
+    private static final long POSITION_INDEX_BYTES = 40;
+    private static final long INSTANCE_INDEX_BYTES = 8;
+    private static final long CHUNK_INDEX_BYTES = 160;
+
+    private static final StackWalker STACK_WALKER = StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+
+    private final Map<PacketBlockHolder<?, ?>, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Starts tracking a newly registered holder, attributed to the plugin that is registering it.
+     *
+     * @param holder the holder to track; must not be null
+     */
+    public void track(@NonNull PacketBlockHolder<?, ?> holder) {
+        track(holder, resolveOwner());
+    }
+
+    /**
+     * Starts tracking a newly registered holder, or re-attributes an already tracked holder.
+     *
+     * @param holder the holder to track; must not be null
+     * @param owner  the plugin the holder belongs to; must not be null
+     */
+    public void track(@NonNull PacketBlockHolder<?, ?> holder, @NonNull Plugin owner) {
+        track(holder, owner.getName());
+    }
+
+    /**
+     * Re-estimates the structure of a tracked holder after blocks were added to or removed from it.
+     *
+     * @param holder the holder that changed; must not be null
+     */
+    public void update(@NonNull PacketBlockHolder<?, ?> holder) {
+        Entry entry = entries.get(holder);
+
+        if (entry != null) {
+            entry.estimate(holder);
+        }
+    }
+
+    /**
+     * Stops tracking a holder that was removed from the manager.
+     *
+     * @param holder the removed holder; must not be null
+     */
+    public void untrack(@NonNull PacketBlockHolder<?, ?> holder) {
+        entries.remove(holder);
+    }
+
+    /**
+     * @return the number of holders being tracked
+     */
+    public int getTrackedHolders() {
+        return entries.size();
+    }
+
+    /**
+     * Takes a snapshot of the current footprint.
+     *
+     * @param partitions the manager's world partitions, whose chunk index entries are included; must not be null
+     * @return the estimated footprint
+     */
+    public MemoryFootprint snapshot(@NonNull Collection<WorldPartition> partitions) {
+        MemoryFootprint.Breakdown total = new MemoryFootprint.Breakdown();
+        Map<String, MemoryFootprint.Breakdown> byWorld = new TreeMap<>();
+        Map<String, MemoryFootprint.Breakdown> byOwner = new TreeMap<>();
+        Set<PacketBlockTemplate> templates = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        entries.forEach((holder, entry) -> {
+            MemoryFootprint.Breakdown world = byWorld.computeIfAbsent(entry.world, name -> new MemoryFootprint.Breakdown());
+            MemoryFootprint.Breakdown owner = byOwner.computeIfAbsent(entry.owner, name -> new MemoryFootprint.Breakdown());
+
+            addTo(entry.category, entry.holderBytes, total, world, owner);
+            addTo(FootprintCategory.INDEX, entry.indexBytes, total, world, owner);
+
+            if (holder instanceof PacketBlockInstance instance && templates.add(instance.getData())) {
+                addTo(FootprintCategory.INSTANCES, TEMPLATE_BYTES + instance.getData().size() * TEMPLATE_BLOCK_BYTES, total, world, owner);
+            }
+
+            long viewerBytes = 0;
+            long metadataBytes = holder.getMetadataCount() == 0 ? 0 : METADATA_BYTES + holder.getMetadataCount() * METADATA_ENTRY_BYTES;
+
+            for (PacketBlockViewer<?> viewer : holder.getViewers().values()) {
+                viewerBytes += VIEWER_BYTES;
+
+                if (viewer.getData() != holder.getData() && viewer.getData() instanceof Map<?, ?> viewerData) {
+                    viewerBytes += viewerData.size() * VIEWER_BLOCK_BYTES;
+                }
+
+                if (viewer.getMetadataCount() > 0) {
+                    metadataBytes += METADATA_BYTES + viewer.getMetadataCount() * METADATA_ENTRY_BYTES;
+                }
+            }
+
+            addTo(FootprintCategory.VIEWERS, viewerBytes, total, world, owner);
+            addTo(FootprintCategory.METADATA, metadataBytes, total, world, owner);
+            addTo(FootprintCategory.BOUNDING_BOXES, holder.getBoundingBoxes().size() * BOUNDING_BOX_BYTES, total, world, owner);
+        });
+
+        for (WorldPartition partition : partitions) {
+            long chunks = partition.getBlockLocations().size() + partition.getInstanceLocations().size();
+            addTo(FootprintCategory.INDEX, chunks * CHUNK_INDEX_BYTES, total, byWorld.computeIfAbsent(partition.getWorldName(), name -> new MemoryFootprint.Breakdown()));
+        }
+
+        return new MemoryFootprint(total, byWorld, byOwner);
+    }
+
+    private void track(@NonNull PacketBlockHolder<?, ?> holder, @NonNull String owner) {
+        Entry entry = new Entry(worldOf(holder), owner);
+        entry.estimate(holder);
+
+        entries.put(holder, entry);
+    }
+
+    private static void addTo(@NonNull FootprintCategory category, long bytes, MemoryFootprint.Breakdown... breakdowns) {
+        if (bytes == 0) {
+            return;
+        }
+
+        for (MemoryFootprint.Breakdown breakdown : breakdowns) {
+            breakdown.add(category, bytes);
+        }
+    }
+
+    private static String worldOf(@NonNull PacketBlockHolder<?, ?> holder) {
+        if (holder instanceof PacketBlock singleBlock) {
+            return singleBlock.getPosition().worldName();
+        }
+
+        if (holder instanceof PacketBlockInstance instance) {
+            return instance.getWorldName();
+        }
+
+        if (holder instanceof PacketBlockGroup group && !group.getWorldNames().isEmpty()) {
+            return group.getWorldNames().getFirst();
+        }
+
+        return UNKNOWN_OWNER;
+    }
+
+    private static String resolveOwner() {
+        ClassLoader ownLoader = FootprintTracker.class.getClassLoader();
+
+        return STACK_WALKER.walk(frames -> frames
+                .map(StackWalker.StackFrame::getDeclaringClass)
+                .filter(type -> type.getClassLoader() != ownLoader)
+                .map(FootprintTracker::pluginOf)
+                .filter(Objects::nonNull)
+                .findFirst()
+                .orElse(UNKNOWN_OWNER));
+    }
+
+    private static String pluginOf(@NonNull Class<?> type) {
+        try {
+            return JavaPlugin.getProvidingPlugin(type).getName();
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            return null;
+        }
+    }
+
+    private static final class Entry {
+
+        private final String world;
+        private final String owner;
+
+        private volatile FootprintCategory category = FootprintCategory.SINGLES;
+        private volatile long holderBytes;
+        private volatile long indexBytes;
+
+        private Entry(@NonNull String world, @NonNull String owner) {
+            this.world = world;
+            this.owner = owner;
+        }
+
+        private void estimate(@NonNull PacketBlockHolder<?, ?> holder) {
+            if (holder instanceof PacketBlock) {
+                category = FootprintCategory.SINGLES;
+                holderBytes = SINGLE_BYTES;
+                indexBytes = POSITION_INDEX_BYTES;
+                return;
+            }
+
+            if (holder instanceof PacketBlockInstance instance) {
+                category = FootprintCategory.INSTANCES;
+                holderBytes = INSTANCE_BYTES;
+                indexBytes = instance.getChunkPositions().size() * INSTANCE_INDEX_BYTES;
+                return;
+            }
+
+            if (holder instanceof PacketBlockGroup group) {
+                int blocks = group.getCachedLocations().size();
+
+                category = FootprintCategory.GROUPS;
+                holderBytes = GROUP_BYTES + blocks * GROUP_BLOCK_BYTES;
+                indexBytes = blocks * POSITION_INDEX_BYTES;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,139 @@
+package net.bitbylogic.packetblocks.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of non-negative values with log-linear buckets, in the style of HdrHistogram.
+ * <p>
+ * Values below 16 get a bucket each; above that, every power of two is split into 16 buckets, so a
+ * recorded value is off by at most 1/16th of itself. Recording is a few bit operations and one
+ * atomic increment, and the whole {@code long} range fits in under a thousand buckets.
+ */
+public class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records a value. Negative values are recorded as zero.
+     *
+     * @param value the value to record
+     */
+    public void record(long value) {
+        value = Math.max(0, value);
+
+        buckets.incrementAndGet(bucketOf(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * Clears every recorded value. Values recorded concurrently with a reset may be partially kept.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    /**
+     * Takes a snapshot of the recorded values.
+     *
+     * @return the snapshot
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+        }
+
+        return new Snapshot(count.sum(), sum.sum(), max.get(), counts);
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long highestValueOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+
+        return lowest + (1L << shift) - 1;
+    }
+
+    /**
+     * A point in time copy of a {@link Histogram}.
+     *
+     * @param count  the number of recorded values
+     * @param sum    the sum of every recorded value
+     * @param max    the highest recorded value
+     * @param counts the number of values recorded in each bucket
+     */
+    public record Snapshot(long count, long sum, long max, long[] counts) {
+
+        /**
+         * @return the mean of the recorded values, or 0 if nothing was recorded
+         */
+        public double mean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * Returns the value at the given percentile, rounded up to the highest value of its bucket.
+         *
+         * @param percentile the percentile, between 0 and 100
+         * @return the value at the percentile, or 0 if nothing was recorded
+         */
+        public long percentile(double percentile) {
+            long total = 0;
+
+            for (long bucketCount : counts) {
+                total += bucketCount;
+            }
+
+            if (total == 0) {
+                return 0;
+            }
+
+            long target = Math.max(1, (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100));
+            long seen = 0;
+
+            for (int bucket = 0; bucket < counts.length; bucket++) {
+                seen += counts[bucket];
+
+                if (seen >= target) {
+                    return Math.min(max, highestValueOf(bucket));
+                }
+            }
+
+            return max;
+        }
+
+    }
+
+}
@@ -0,0 +1,77 @@
+package net.bitbylogic.packetblocks.metrics;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * An estimate of the memory retained by the packet blocks registered in a
+ * {@link net.bitbylogic.packetblocks.block.PacketBlockManager}, as taken by {@link FootprintTracker#snapshot}.
+ * <p>
+ * Sizes are estimates for a 64-bit JVM with compressed references. They are meant to show which world
+ * or plugin is responsible for most of the registry, not to match a heap dump byte for byte. Chunk
+ * level index overhead is shared by every owner, so it is part of the world and total breakdowns but
+ * not of the owner breakdowns.
+ */
+@Getter
+public class MemoryFootprint {
+
+    /**
+     * The footprint of every registered holder.
+     */
+    private final Breakdown total;
+
+    /**
+     * The footprint of each world, keyed by world name.
+     */
+    private final Map<String, Breakdown> byWorld;
+
+    /**
+     * The footprint of each plugin that created packet blocks, keyed by plugin name. Holders whose
+     * creator could not be determined are listed under {@link FootprintTracker#UNKNOWN_OWNER}.
+     */
+    private final Map<String, Breakdown> byOwner;
+
+    MemoryFootprint(@NonNull Breakdown total, @NonNull Map<String, Breakdown> byWorld, @NonNull Map<String, Breakdown> byOwner) {
+        this.total = total;
+        this.byWorld = Collections.unmodifiableMap(byWorld);
+        this.byOwner = Collections.unmodifiableMap(byOwner);
+    }
+
+    /**
+     * Estimated bytes per {@link FootprintCategory}.
+     */
+    public static class Breakdown {
+
+        private final long[] bytes = new long[FootprintCategory.values().length];
+
+        /**
+         * @param category the category to look up; must not be null
+         * @return the estimated bytes retained by the category
+         */
+        public long get(@NonNull FootprintCategory category) {
+            return bytes[category.ordinal()];
+        }
+
+        /**
+         * @return the estimated bytes retained by every category together
+         */
+        public long getTotal() {
+            long total = 0;
+
+            for (long categoryBytes : bytes) {
+                total += categoryBytes;
+            }
+
+            return total;
+        }
+
+        void add(@NonNull FootprintCategory category, long amount) {
+            bytes[category.ordinal()] += amount;
+        }
+
+    }
+
+}
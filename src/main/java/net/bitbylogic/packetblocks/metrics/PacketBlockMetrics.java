@@ -0,0 +1,237 @@
+package net.bitbylogic.packetblocks.metrics;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Setter;
+import org.bukkit.entity.Player;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Runtime instrumentation for PacketBlocks.
+ * <p>
+ * Counters are {@link LongAdder}s and distributions are {@link Histogram}s, so recording from packet
+ * threads never contends on a lock. Gauges such as registry sizes are only evaluated when read.
+ * Everything recorded here can be inspected in game with {@code /packetblocks stats}.
+ */
+@Getter
+public class PacketBlockMetrics {
+
+    private static final PacketBlockMetrics INSTANCE = new PacketBlockMetrics();
+
+    @Getter(AccessLevel.NONE)
+    private final AdapterMetrics[] adapters = new AdapterMetrics[AdapterType.values().length];
+
+    /**
+     * Packet blocks written into each rewritten CHUNK_DATA packet.
+     */
+    private final Histogram chunkBlocksMerged = new Histogram();
+
+    /**
+     * Block change packets sent to players.
+     */
+    private final LongAdder updatesSent = new LongAdder();
+
+    /**
+     * Block change packets sent per server tick, sampled by {@link #sampleTick()}.
+     */
+    private final Histogram updatesPerTick = new Histogram();
+
+    @Getter(AccessLevel.NONE)
+    private final Map<UUID, LongAdder> playerUpdates = new ConcurrentHashMap<>();
+
+    @Getter(AccessLevel.NONE)
+    private final Map<String, LongSupplier> gauges = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    /**
+     * Whether anything is recorded. Disabling metrics makes every record method return immediately.
+     */
+    @Setter
+    private volatile boolean enabled = true;
+
+    /**
+     * When the metrics were last reset, in epoch milliseconds.
+     */
+    private volatile long resetTime = System.currentTimeMillis();
+
+    @Getter(AccessLevel.NONE)
+    private long lastTickUpdates;
+
+    private PacketBlockMetrics() {
+        for (int i = 0; i < adapters.length; i++) {
+            adapters[i] = new AdapterMetrics();
+        }
+    }
+
+    /**
+     * @return the metrics shared by every PacketBlocks component
+     */
+    public static PacketBlockMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Retrieves the counters of the given adapter.
+     *
+     * @param type the adapter; must not be null
+     * @return the adapter's counters
+     */
+    public AdapterMetrics getAdapter(@NonNull AdapterType type) {
+        return adapters[type.ordinal()];
+    }
+
+    /**
+     * Starts timing a packet. Pass the result to {@link #recordPacket(AdapterType, long, boolean)}.
+     *
+     * @return the start time, or 0 if metrics are disabled
+     */
+    public long startTiming() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records a packet inspected by an adapter.
+     *
+     * @param type      the adapter that inspected the packet; must not be null
+     * @param startTime the value returned by {@link #startTiming()}
+     * @param rewritten whether the packet was rewritten, cancelled or acted upon
+     */
+    public void recordPacket(@NonNull AdapterType type, long startTime, boolean rewritten) {
+        if (!enabled || startTime == 0) {
+            return;
+        }
+
+        adapters[type.ordinal()].record(System.nanoTime() - startTime, rewritten);
+    }
+
+    /**
+     * Records the number of packet blocks written into a CHUNK_DATA packet.
+     *
+     * @param blocks the number of blocks written
+     */
+    public void recordChunkMerge(int blocks) {
+        if (!enabled) {
+            return;
+        }
+
+        chunkBlocksMerged.record(blocks);
+    }
+
+    /**
+     * Records a block change packet sent to a player.
+     *
+     * @param player the player the update was sent to; must not be null
+     */
+    public void recordUpdate(@NonNull Player player) {
+        if (!enabled) {
+            return;
+        }
+
+        updatesSent.increment();
+        playerUpdates.computeIfAbsent(player.getUniqueId(), uuid -> new LongAdder()).increment();
+    }
+
+    /**
+     * Records the updates sent since the previous call as one tick. Called once per tick by the plugin.
+     */
+    public void sampleTick() {
+        if (!enabled) {
+            return;
+        }
+
+        long total = updatesSent.sum();
+        updatesPerTick.record(total - lastTickUpdates);
+        lastTickUpdates = total;
+    }
+
+    /**
+     * Retrieves the number of block change packets sent to a player since the last reset.
+     *
+     * @param uuid the player's unique id; must not be null
+     * @return the number of updates sent
+     */
+    public long getPlayerUpdates(@NonNull UUID uuid) {
+        LongAdder updates = playerUpdates.get(uuid);
+        return updates == null ? 0 : updates.sum();
+    }
+
+    /**
+     * Retrieves the players that were sent the most block change packets since the last reset.
+     *
+     * @param limit the maximum number of players to return
+     * @return the players' unique ids and update counts, highest first
+     */
+    public List<Map.Entry<UUID, Long>> getTopPlayers(int limit) {
+        List<Map.Entry<UUID, Long>> entries = new ArrayList<>(playerUpdates.size());
+        playerUpdates.forEach((uuid, updates) -> entries.add(Map.entry(uuid, updates.sum())));
+
+        entries.sort(Map.Entry.<UUID, Long>comparingByValue().reversed());
+        return entries.subList(0, Math.min(limit, entries.size()));
+    }
+
+    /**
+     * Stops tracking a player's updates, for example when they quit.
+     *
+     * @param uuid the player's unique id; must not be null
+     */
+    public void forgetPlayer(@NonNull UUID uuid) {
+        playerUpdates.remove(uuid);
+    }
+
+    /**
+     * Registers a gauge, a value that is computed whenever metrics are read. A gauge registered
+     * under an existing name replaces it.
+     *
+     * @param name     the name of the gauge; must not be null
+     * @param supplier computes the gauge's value; must not be null
+     */
+    public void registerGauge(@NonNull String name, @NonNull LongSupplier supplier) {
+        gauges.put(name, supplier);
+    }
+
+    /**
+     * Removes a gauge.
+     *
+     * @param name the name of the gauge; must not be null
+     */
+    public void unregisterGauge(@NonNull String name) {
+        gauges.remove(name);
+    }
+
+    /**
+     * Evaluates every registered gauge.
+     *
+     * @return each gauge's name and current value, in registration order
+     */
+    public Map<String, Long> readGauges() {
+        Map<String, Long> values = new LinkedHashMap<>();
+
+        synchronized (gauges) {
+            gauges.forEach((name, supplier) -> values.put(name, supplier.getAsLong()));
+        }
+
+        return values;
+    }
+
+    /**
+     * Clears every counter and histogram. Gauges are kept.
+     */
+    public void reset() {
+        for (AdapterMetrics adapter : adapters) {
+            adapter.reset();
+        }
+
+        chunkBlocksMerged.reset();
+        updatesSent.reset();
+        updatesPerTick.reset();
+        playerUpdates.clear();
+
+        lastTickUpdates = 0;
+        resetTime = System.currentTimeMillis();
+    }
+
+}
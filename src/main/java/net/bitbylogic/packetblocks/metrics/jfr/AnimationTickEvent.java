@@ -0,0 +1,26 @@
+package net.bitbylogic.packetblocks.metrics.jfr;
+
+import jdk.jfr.*;
+import lombok.Setter;
+
+/**
+ * Emitted for every tick of a break animation shard that had work to do.
+ */
+@Name("net.bitbylogic.packetblocks.AnimationTick")
+@Label("Animation Tick")
+@Category({"PacketBlocks", "Animation"})
+@Description("One tick of a break animation shard")
+@StackTrace(false)
+@Setter
+public class AnimationTickEvent extends Event {
+
+    @Label("Shard")
+    private int shard;
+
+    @Label("Contexts Processed")
+    private int processed;
+
+    @Label("Stages Sent")
+    private int stagesSent;
+
+}
@@ -0,0 +1,34 @@
+package net.bitbylogic.packetblocks.metrics.jfr;
+
+import jdk.jfr.*;
+import lombok.Setter;
+
+/**
+ * Emitted when a packet block holder sends its current data to every viewer, for example after
+ * its data was replaced for all viewers.
+ */
+@Name("net.bitbylogic.packetblocks.BlockUpdateFanOut")
+@Label("Block Update Fan-Out")
+@Category({"PacketBlocks", "Updates"})
+@Description("Block updates sent to every viewer of a holder")
+@StackTrace(false)
+@Setter
+public class BlockUpdateFanOutEvent extends Event {
+
+    @Label("Holder Type")
+    private String holderType;
+
+    @Label("Holder Id")
+    @Description("Identity hash code of the holder, to tell holders of the same type apart")
+    private int holderId;
+
+    @Label("Viewers")
+    private int viewers;
+
+    @Label("Updates Sent")
+    private int updates;
+
+    @Label("Offline Viewers Removed")
+    private int removed;
+
+}
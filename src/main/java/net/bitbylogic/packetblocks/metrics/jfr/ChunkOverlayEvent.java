@@ -0,0 +1,33 @@
+package net.bitbylogic.packetblocks.metrics.jfr;
+
+import jdk.jfr.*;
+import lombok.Setter;
+
+/**
+ * Emitted when {@link net.bitbylogic.packetblocks.adapter.ChunkLoadAdapter} writes packet blocks into
+ * an outgoing CHUNK_DATA packet. The event's duration covers decoding the packet and merging the blocks.
+ */
+@Name("net.bitbylogic.packetblocks.ChunkOverlay")
+@Label("Chunk Overlay")
+@Category({"PacketBlocks", "Packets"})
+@Description("Packet blocks merged into an outgoing chunk packet")
+@StackTrace(false)
+@Setter
+public class ChunkOverlayEvent extends Event {
+
+    @Label("Player")
+    private String player;
+
+    @Label("World")
+    private String world;
+
+    @Label("Chunk X")
+    private int chunkX;
+
+    @Label("Chunk Z")
+    private int chunkZ;
+
+    @Label("Blocks Merged")
+    private int blocksMerged;
+
+}
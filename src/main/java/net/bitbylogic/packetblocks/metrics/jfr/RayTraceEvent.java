@@ -0,0 +1,29 @@
+package net.bitbylogic.packetblocks.metrics.jfr;
+
+import jdk.jfr.*;
+import lombok.Setter;
+
+/**
+ * Emitted for every ray trace done by {@link net.bitbylogic.packetblocks.util.PacketBlockUtil}.
+ */
+@Name("net.bitbylogic.packetblocks.RayTrace")
+@Label("Ray Trace")
+@Category({"PacketBlocks", "Interaction"})
+@Description("A ray trace through packet blocks and the real world")
+@StackTrace(false)
+@Setter
+public class RayTraceEvent extends Event {
+
+    @Label("Player")
+    private String player;
+
+    @Label("Range")
+    private double range;
+
+    @Label("Hit")
+    private boolean hit;
+
+    @Label("Packet Block Hit")
+    private boolean packetBlockHit;
+
+}
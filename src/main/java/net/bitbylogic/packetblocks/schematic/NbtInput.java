@@ -0,0 +1,132 @@
+package net.bitbylogic.packetblocks.schematic;
+
+import lombok.NonNull;
+
+import java.io.*;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Minimal streaming reader for gzip compressed NBT.
+ * <p>
+ * Nothing is materialized: callers walk the tag structure themselves, reading the values they care
+ * about and {@link #skip(byte) skipping} the rest, so large arrays can be decoded straight from the
+ * stream.
+ */
+class NbtInput implements Closeable {
+
+    static final byte END = 0;
+    static final byte BYTE = 1;
+    static final byte SHORT = 2;
+    static final byte INT = 3;
+    static final byte LONG = 4;
+    static final byte FLOAT = 5;
+    static final byte DOUBLE = 6;
+    static final byte BYTE_ARRAY = 7;
+    static final byte STRING = 8;
+    static final byte LIST = 9;
+    static final byte COMPOUND = 10;
+    static final byte INT_ARRAY = 11;
+    static final byte LONG_ARRAY = 12;
+
+    private final DataInputStream input;
+
+    NbtInput(@NonNull InputStream inputStream) throws IOException {
+        this.input = new DataInputStream(new BufferedInputStream(new GZIPInputStream(inputStream, 1 << 16), 1 << 16));
+    }
+
+    DataInputStream raw() {
+        return input;
+    }
+
+    byte readType() throws IOException {
+        return input.readByte();
+    }
+
+    String readName() throws IOException {
+        return input.readUTF();
+    }
+
+    int readInt() throws IOException {
+        return input.readInt();
+    }
+
+    int readShort() throws IOException {
+        return input.readShort();
+    }
+
+    String readString() throws IOException {
+        return input.readUTF();
+    }
+
+    /**
+     * Reads a numeric tag of any integral type as an int.
+     *
+     * @param type the type of the tag being read
+     * @return the tag's value
+     */
+    int readIntegral(byte type) throws IOException {
+        return switch (type) {
+            case BYTE -> input.readByte();
+            case SHORT -> input.readShort();
+            case INT -> input.readInt();
+            case LONG -> (int) input.readLong();
+            default -> throw new IOException("Expected a numeric tag but found type " + type);
+        };
+    }
+
+    /**
+     * Skips the payload of a tag whose type and name have already been read.
+     *
+     * @param type the type of the tag to skip
+     */
+    void skip(byte type) throws IOException {
+        switch (type) {
+            case END -> {
+            }
+            case BYTE -> skipBytes(1);
+            case SHORT -> skipBytes(2);
+            case INT, FLOAT -> skipBytes(4);
+            case LONG, DOUBLE -> skipBytes(8);
+            case BYTE_ARRAY -> skipBytes(input.readInt());
+            case STRING -> skipBytes(input.readUnsignedShort());
+            case INT_ARRAY -> skipBytes(input.readInt() * 4L);
+            case LONG_ARRAY -> skipBytes(input.readInt() * 8L);
+            case LIST -> {
+                byte elementType = input.readByte();
+                int length = input.readInt();
+
+                for (int i = 0; i < length; i++) {
+                    skip(elementType);
+                }
+            }
+            case COMPOUND -> {
+                byte childType;
+
+                while ((childType = input.readByte()) != END) {
+                    skipBytes(input.readUnsignedShort());
+                    skip(childType);
+                }
+            }
+            default -> throw new IOException("Unknown NBT tag type " + type);
+        }
+    }
+
+    void skipBytes(long length) throws IOException {
+        while (length > 0) {
+            int skipped = input.skipBytes((int) Math.min(length, Integer.MAX_VALUE));
+
+            if (skipped <= 0) {
+                input.readByte();
+                skipped = 1;
+            }
+
+            length -= skipped;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+
+}
@@ -0,0 +1,75 @@
+package net.bitbylogic.packetblocks.schematic;
+
+import lombok.NonNull;
+
+import java.io.*;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Minimal streaming writer for gzip compressed NBT, the counterpart of {@link NbtInput}.
+ */
+class NbtOutput implements Closeable {
+
+    private final DataOutputStream output;
+
+    NbtOutput(@NonNull OutputStream outputStream) throws IOException {
+        this.output = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(outputStream, 1 << 16), 1 << 16));
+    }
+
+    DataOutputStream raw() {
+        return output;
+    }
+
+    void startCompound(@NonNull String name) throws IOException {
+        writeHeader(NbtInput.COMPOUND, name);
+    }
+
+    void endCompound() throws IOException {
+        output.writeByte(NbtInput.END);
+    }
+
+    void writeInt(@NonNull String name, int value) throws IOException {
+        writeHeader(NbtInput.INT, name);
+        output.writeInt(value);
+    }
+
+    void writeShort(@NonNull String name, int value) throws IOException {
+        writeHeader(NbtInput.SHORT, name);
+        output.writeShort(value);
+    }
+
+    void writeIntArray(@NonNull String name, int... values) throws IOException {
+        writeHeader(NbtInput.INT_ARRAY, name);
+        output.writeInt(values.length);
+
+        for (int value : values) {
+            output.writeInt(value);
+        }
+    }
+
+    /**
+     * Writes the header of a byte array tag. Exactly {@code length} bytes must be written to
+     * {@link #raw()} afterwards.
+     */
+    void startByteArray(@NonNull String name, int length) throws IOException {
+        writeHeader(NbtInput.BYTE_ARRAY, name);
+        output.writeInt(length);
+    }
+
+    void writeEmptyList(@NonNull String name, byte elementType) throws IOException {
+        writeHeader(NbtInput.LIST, name);
+        output.writeByte(elementType);
+        output.writeInt(0);
+    }
+
+    private void writeHeader(byte type, @NonNull String name) throws IOException {
+        output.writeByte(type);
+        output.writeUTF(name);
+    }
+
+    @Override
+    public void close() throws IOException {
+        output.close();
+    }
+
+}
@@ -0,0 +1,383 @@
+package net.bitbylogic.packetblocks.schematic;
+
+import com.tcoded.folialib.impl.PlatformScheduler;
+import lombok.NonNull;
+import net.bitbylogic.packetblocks.block.PacketBlock;
+import net.bitbylogic.packetblocks.block.PacketBlockHolder;
+import net.bitbylogic.packetblocks.block.PacketBlockManager;
+import net.bitbylogic.packetblocks.group.PacketBlockGroup;
+import net.bitbylogic.packetblocks.group.PacketBlockInstance;
+import net.bitbylogic.utils.location.WorldPosition;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Writes packet blocks to Sponge schematics (version 3).
+ * <p>
+ * Either a {@link PacketBlockGroup} is exported, as seen by everyone or by one player, or a region of
+ * the world as one player sees it: the real blocks with every packet block that player views on top.
+ * <p>
+ * Exports are streamed. The region is read in horizontal layers of at most {@value #MAX_LAYER_BLOCKS}
+ * blocks on the threads that own the data, while palette building, encoding and all I/O run off-thread.
+ * Encoded block data is spooled to a temporary file next to the target, since the schematic needs
+ * the complete palette and the encoded length before the block data, so no map or array covering
+ * the whole region is ever built.
+ */
+public class SchematicExporter {
+
+    private static final int SCHEMATIC_VERSION = 3;
+    private static final int MAX_LAYER_BLOCKS = 1 << 18;
+    private static final int MAX_DIMENSION = 0xFFFF;
+
+    private static final BlockData AIR = Material.AIR.createBlockData();
+
+    private final PacketBlockManager manager;
+
+    public SchematicExporter(@NonNull PacketBlockManager manager) {
+        this.manager = manager;
+    }
+
+    /**
+     * Exports a group. Positions within the group's bounds that it has no block at are written as air.
+     *
+     * @param group    the group to export; must not be null
+     * @param player   the player whose view of the group is exported, or null for the group's default data
+     * @param file     the schematic file to write; must not be null
+     * @param progress notified after every exported layer; can be null
+     * @return a future completing once the file has been written
+     */
+    public CompletableFuture<Void> export(@NonNull PacketBlockGroup group, @Nullable Player player, @NonNull Path file,
+                                          @Nullable SchematicProgress progress) {
+        Collection<Location> locations = group.getCachedLocations().values();
+
+        if (locations.isEmpty()) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Cannot export an empty group"));
+        }
+
+        int[] bounds = {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE};
+        World world = null;
+
+        for (Location location : locations) {
+            world = location.getWorld();
+
+            bounds[0] = Math.min(bounds[0], location.getBlockX());
+            bounds[1] = Math.min(bounds[1], location.getBlockY());
+            bounds[2] = Math.min(bounds[2], location.getBlockZ());
+            bounds[3] = Math.max(bounds[3], location.getBlockX());
+            bounds[4] = Math.max(bounds[4], location.getBlockY());
+            bounds[5] = Math.max(bounds[5], location.getBlockZ());
+        }
+
+        Region region = new Region(world, bounds[0], bounds[1], bounds[2], bounds[3], bounds[4], bounds[5]);
+        PlatformScheduler scheduler = manager.getPlugin().getFoliaLib().getScheduler();
+
+        return write(region, file, progress, (minY, maxY, cells) -> {
+            CompletableFuture<Void> read = new CompletableFuture<>();
+
+            scheduler.runNextTick(task -> {
+                try {
+                    Map<WorldPosition, BlockData> data = group.getData(player);
+                    Location cursor = new Location(region.world(), 0, 0, 0);
+                    int index = 0;
+
+                    for (int y = minY; y <= maxY; y++) {
+                        for (int z = region.minZ(); z <= region.maxZ(); z++) {
+                            for (int x = region.minX(); x <= region.maxX(); x++) {
+                                cursor.set(x, y, z);
+                                cells[index++] = data.get(WorldPosition.ofBlock(cursor));
+                            }
+                        }
+                    }
+
+                    read.complete(null);
+                } catch (Throwable e) {
+                    read.completeExceptionally(e);
+                }
+            });
+
+            read.join();
+        });
+    }
+
+    /**
+     * Exports a region of the world as the given player sees it. Real blocks are read on the thread
+     * owning each chunk, which may load chunks that are not loaded yet.
+     *
+     * @param player   the player whose view is exported; must not be null
+     * @param corner   one corner of the region; must not be null
+     * @param opposite the opposite corner of the region, in the same world; must not be null
+     * @param file     the schematic file to write; must not be null
+     * @param progress notified after every exported layer; can be null
+     * @return a future completing once the file has been written
+     */
+    public CompletableFuture<Void> exportView(@NonNull Player player, @NonNull Location corner, @NonNull Location opposite,
+                                              @NonNull Path file, @Nullable SchematicProgress progress) {
+        World world = corner.getWorld();
+
+        if (world == null || !world.equals(opposite.getWorld())) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Both corners must be in the same world"));
+        }
+
+        Region region = new Region(world,
+                Math.min(corner.getBlockX(), opposite.getBlockX()), Math.min(corner.getBlockY(), opposite.getBlockY()),
+                Math.min(corner.getBlockZ(), opposite.getBlockZ()), Math.max(corner.getBlockX(), opposite.getBlockX()),
+                Math.max(corner.getBlockY(), opposite.getBlockY()), Math.max(corner.getBlockZ(), opposite.getBlockZ()));
+
+        PlatformScheduler scheduler = manager.getPlugin().getFoliaLib().getScheduler();
+
+        return write(region, file, progress, (minY, maxY, cells) -> {
+            List<CompletableFuture<Void>> columns = new ArrayList<>();
+
+            for (int chunkX = region.minX() >> 4; chunkX <= region.maxX() >> 4; chunkX++) {
+                for (int chunkZ = region.minZ() >> 4; chunkZ <= region.maxZ() >> 4; chunkZ++) {
+                    CompletableFuture<Void> column = new CompletableFuture<>();
+                    columns.add(column);
+
+                    int finalChunkX = chunkX;
+                    int finalChunkZ = chunkZ;
+
+                    scheduler.runAtLocation(new Location(world, chunkX << 4, minY, chunkZ << 4), task -> {
+                        try {
+                            readColumn(player, region, finalChunkX, finalChunkZ, minY, maxY, cells);
+                            column.complete(null);
+                        } catch (Throwable e) {
+                            column.completeExceptionally(e);
+                        }
+                    });
+                }
+            }
+
+            CompletableFuture.allOf(columns.toArray(new CompletableFuture[0])).join();
+        });
+    }
+
+    private void readColumn(@NonNull Player player, @NonNull Region region, int chunkX, int chunkZ, int minY, int maxY, BlockData[] cells) {
+        World world = region.world();
+
+        int fromX = Math.max(region.minX(), chunkX << 4);
+        int toX = Math.min(region.maxX(), (chunkX << 4) + 15);
+        int fromZ = Math.max(region.minZ(), chunkZ << 4);
+        int toZ = Math.min(region.maxZ(), (chunkZ << 4) + 15);
+
+        for (int y = minY; y <= maxY; y++) {
+            for (int z = fromZ; z <= toZ; z++) {
+                for (int x = fromX; x <= toX; x++) {
+                    cells[region.index(x, y, z, minY)] = world.getBlockAt(x, y, z).getBlockData();
+                }
+            }
+        }
+
+        for (Map.Entry<WorldPosition, PacketBlockHolder<?, ?>> entry : new ArrayList<>(manager.getBlocks(world, chunkX, chunkZ).entrySet())) {
+            PacketBlockHolder<?, ?> holder = entry.getValue();
+
+            if (!holder.isViewer(player)) {
+                continue;
+            }
+
+            Location location;
+            BlockData blockData;
+
+            if (holder instanceof PacketBlock singleBlock) {
+                location = singleBlock.getLocation();
+                blockData = singleBlock.getData(player);
+            } else if (holder instanceof PacketBlockGroup group) {
+                location = group.getCachedLocations().get(entry.getKey());
+                blockData = group.getData(player).get(entry.getKey());
+            } else {
+                continue;
+            }
+
+            if (location == null || blockData == null) {
+                continue;
+            }
+
+            int x = location.getBlockX();
+            int y = location.getBlockY();
+            int z = location.getBlockZ();
+
+            if (y >= minY && y <= maxY && region.contains(x, y, z)) {
+                cells[region.index(x, y, z, minY)] = blockData;
+            }
+        }
+
+        for (PacketBlockInstance instance : manager.getInstances(world, chunkX, chunkZ)) {
+            if (!instance.isViewer(player)) {
+                continue;
+            }
+
+            instance.forEachBlockInChunk(player, chunkX, chunkZ, (x, y, z, blockData) -> {
+                if (y >= minY && y <= maxY && region.contains(x, y, z)) {
+                    cells[region.index(x, y, z, minY)] = blockData;
+                }
+            });
+        }
+    }
+
+    private CompletableFuture<Void> write(@NonNull Region region, @NonNull Path file, @Nullable SchematicProgress progress,
+                                          @NonNull LayerReader reader) {
+        if (region.width() > MAX_DIMENSION || region.height() > MAX_DIMENSION || region.length() > MAX_DIMENSION) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Region is too large for a schematic"));
+        }
+
+        CompletableFuture<Void> future = new CompletableFuture<>();
+
+        manager.getPlugin().getFoliaLib().getScheduler().runAsync(task -> {
+            Path spool = null;
+
+            try {
+                Path parent = file.toAbsolutePath().getParent();
+                Files.createDirectories(parent);
+                spool = Files.createTempFile(parent, file.getFileName().toString(), ".blocks");
+
+                Map<BlockData, Integer> palette = new LinkedHashMap<>();
+                long dataLength = spoolBlocks(region, reader, palette, spool, progress);
+
+                if (dataLength > Integer.MAX_VALUE) {
+                    throw new IOException("Encoded block data is too large for a schematic");
+                }
+
+                writeSchematic(region, palette, spool, (int) dataLength, file);
+                future.complete(null);
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            } finally {
+                if (spool != null) {
+                    try {
+                        Files.deleteIfExists(spool);
+                    } catch (IOException ignored) {
+                    }
+                }
+            }
+        });
+
+        return future;
+    }
+
+    private long spoolBlocks(@NonNull Region region, @NonNull LayerReader reader, @NonNull Map<BlockData, Integer> palette,
+                             @NonNull Path spool, @Nullable SchematicProgress progress) throws IOException {
+        int layerArea = region.width() * region.length();
+        int layerHeight = Math.max(1, Math.min(16, MAX_LAYER_BLOCKS / Math.max(1, layerArea)));
+        long volume = (long) layerArea * region.height();
+
+        BlockData[] cells = new BlockData[layerArea * layerHeight];
+        long written = 0;
+        long processed = 0;
+
+        try (OutputStream fileOutput = Files.newOutputStream(spool);
+             BufferedOutputStream output = new BufferedOutputStream(fileOutput, 1 << 16)) {
+            for (int minY = region.minY(); minY <= region.maxY(); minY += layerHeight) {
+                int maxY = Math.min(region.maxY(), minY + layerHeight - 1);
+                int count = layerArea * (maxY - minY + 1);
+
+                Arrays.fill(cells, 0, count, null);
+                reader.read(minY, maxY, cells);
+
+                for (int i = 0; i < count; i++) {
+                    BlockData blockData = cells[i] == null ? AIR : cells[i];
+                    int id = palette.computeIfAbsent(blockData, data -> palette.size());
+
+                    while ((id & ~0x7F) != 0) {
+                        output.write((id & 0x7F) | 0x80);
+                        id >>>= 7;
+                        written++;
+                    }
+
+                    output.write(id);
+                    written++;
+                }
+
+                processed += count;
+
+                if (progress != null) {
+                    progress.onProgress(processed, volume);
+                }
+            }
+        }
+
+        return written;
+    }
+
+    @SuppressWarnings("deprecation")
+    private void writeSchematic(@NonNull Region region, @NonNull Map<BlockData, Integer> palette, @NonNull Path spool,
+                                int dataLength, @NonNull Path file) throws IOException {
+        try (OutputStream fileOutput = Files.newOutputStream(file);
+             NbtOutput output = new NbtOutput(fileOutput)) {
+            output.startCompound("");
+            output.startCompound("Schematic");
+
+            output.writeInt("Version", SCHEMATIC_VERSION);
+            output.writeInt("DataVersion", Bukkit.getUnsafe().getDataVersion());
+            output.writeShort("Width", region.width());
+            output.writeShort("Height", region.height());
+            output.writeShort("Length", region.length());
+            output.writeIntArray("Offset", 0, 0, 0);
+
+            output.startCompound("Blocks");
+            output.startCompound("Palette");
+
+            for (Map.Entry<BlockData, Integer> entry : palette.entrySet()) {
+                output.writeInt(entry.getKey().getAsString(), entry.getValue());
+            }
+
+            output.endCompound();
+            output.startByteArray("Data", dataLength);
+
+            try (InputStream spoolInput = Files.newInputStream(spool)) {
+                spoolInput.transferTo(output.raw());
+            }
+
+            output.writeEmptyList("BlockEntities", NbtInput.COMPOUND);
+            output.endCompound();
+
+            output.endCompound();
+            output.endCompound();
+        }
+    }
+
+    @FunctionalInterface
+    private interface LayerReader {
+
+        /**
+         * Fills the cells of the layer spanning {@code minY} to {@code maxY}, ordered by Y, then Z, then X.
+         * Cells left null are written as air. Called from the export thread.
+         */
+        void read(int minY, int maxY, BlockData[] cells);
+
+    }
+
+    private record Region(World world, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+
+        private int width() {
+            return maxX - minX + 1;
+        }
+
+        private int height() {
+            return maxY - minY + 1;
+        }
+
+        private int length() {
+            return maxZ - minZ + 1;
+        }
+
+        private boolean contains(int x, int y, int z) {
+            return x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ;
+        }
+
+        private int index(int x, int y, int z, int layerMinY) {
+            return ((y - layerMinY) * length() + (z - minZ)) * width() + (x - minX);
+        }
+
+    }
+
+}
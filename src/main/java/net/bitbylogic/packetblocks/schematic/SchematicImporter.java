@@ -0,0 +1,529 @@
+package net.bitbylogic.packetblocks.schematic;
+
+import lombok.NonNull;
+import net.bitbylogic.packetblocks.block.PacketBlockManager;
+import net.bitbylogic.packetblocks.group.PacketBlockGroup;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
+
+/**
+ * Streams Sponge ({@code .schem}, versions 2 and 3) and Litematica ({@code .litematic}) schematics
+ * into a {@link PacketBlockGroup}.
+ * <p>
+ * The file is decoded off-thread straight from the compressed stream. Blocks are collected one
+ * section layer (16 blocks of height) at a time; each finished layer is added to the group on the
+ * next tick and sent to the group's viewers before the next one is decoded. Memory use is therefore
+ * bounded by a single layer rather than by the size of the schematic. Should the block array come
+ * before the palette or dimensions in the file, only its compact encoded form is buffered until
+ * they are known.
+ * <p>
+ * The schematic's minimum corner is placed at the given origin; for Litematica schematics each
+ * region keeps its position relative to the schematic origin. Air is skipped.
+ */
+public class SchematicImporter {
+
+    private static final int MAX_LAYER_SIZE = 1 << 16;
+
+    private final PacketBlockManager manager;
+
+    public SchematicImporter(@NonNull PacketBlockManager manager) {
+        this.manager = manager;
+    }
+
+    /**
+     * Creates an empty group and streams the schematic into it. The group is created on the calling
+     * thread, so viewers can be added to it while the import is still running.
+     *
+     * @param file     the schematic file; must not be null
+     * @param origin   where the schematic's minimum corner is placed; must not be null
+     * @param progress notified after every imported layer; can be null
+     * @return a future completing with the group once the whole file has been imported
+     */
+    public CompletableFuture<PacketBlockGroup> load(@NonNull Path file, @NonNull Location origin, @Nullable SchematicProgress progress) {
+        return loadInto(manager.createGroup(new HashMap<>()), file, origin, progress);
+    }
+
+    /**
+     * Streams the schematic into an existing group. Each imported layer is sent to the group's
+     * current viewers as soon as it has been added.
+     *
+     * @param group    the group to add the schematic's blocks to; must not be null
+     * @param file     the schematic file; must not be null
+     * @param origin   where the schematic's minimum corner is placed; must not be null
+     * @param progress notified after every imported layer; can be null
+     * @return a future completing with the group once the whole file has been imported
+     */
+    public CompletableFuture<PacketBlockGroup> loadInto(@NonNull PacketBlockGroup group, @NonNull Path file,
+                                                        @NonNull Location origin, @Nullable SchematicProgress progress) {
+        CompletableFuture<PacketBlockGroup> future = new CompletableFuture<>();
+
+        if (origin.getWorld() == null) {
+            future.completeExceptionally(new IllegalArgumentException("Schematic origin must have a world"));
+            return future;
+        }
+
+        Location base = origin.toBlockLocation();
+
+        manager.getPlugin().getFoliaLib().getScheduler().runAsync(task -> {
+            try (NbtInput input = new NbtInput(Files.newInputStream(file))) {
+                LayerSink sink = new LayerSink(group, base, progress);
+
+                if (file.getFileName().toString().endsWith(".litematic")) {
+                    readLitematic(input, sink);
+                } else {
+                    readSponge(input, sink);
+                }
+
+                sink.flush();
+                future.complete(group);
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+
+        return future;
+    }
+
+    private void readSponge(@NonNull NbtInput input, @NonNull LayerSink sink) throws IOException {
+        if (input.readType() != NbtInput.COMPOUND) {
+            throw new IOException("Not a Sponge schematic");
+        }
+
+        input.readName();
+
+        SpongeState state = new SpongeState();
+        readSpongeCompound(input, state, sink);
+
+        if (state.deferred != null) {
+            if (!state.isReady()) {
+                throw new IOException("Sponge schematic is missing its palette or dimensions");
+            }
+
+            decodeSponge(new DataInputStream(new ByteArrayInputStream(state.deferred)), state.deferred.length, state, sink);
+        }
+    }
+
+    private void readSpongeCompound(@NonNull NbtInput input, @NonNull SpongeState state, @NonNull LayerSink sink) throws IOException {
+        byte type;
+
+        while ((type = input.readType()) != NbtInput.END) {
+            String name = input.readName();
+
+            if (type == NbtInput.COMPOUND && (name.equals("Schematic") || name.equals("Blocks"))) {
+                readSpongeCompound(input, state, sink);
+            } else if (name.equals("Width")) {
+                state.width = input.readIntegral(type) & 0xFFFF;
+            } else if (name.equals("Height")) {
+                state.height = input.readIntegral(type) & 0xFFFF;
+            } else if (name.equals("Length")) {
+                state.length = input.readIntegral(type) & 0xFFFF;
+            } else if (type == NbtInput.COMPOUND && name.equals("Palette")) {
+                state.palette = readSpongePalette(input);
+            } else if (type == NbtInput.BYTE_ARRAY && (name.equals("BlockData") || name.equals("Data"))) {
+                int length = input.readInt();
+
+                if (state.isReady()) {
+                    decodeSponge(input.raw(), length, state, sink);
+                    continue;
+                }
+
+                state.deferred = new byte[length];
+                input.raw().readFully(state.deferred);
+            } else {
+                input.skip(type);
+            }
+        }
+    }
+
+    private BlockData[] readSpongePalette(@NonNull NbtInput input) throws IOException {
+        Map<Integer, BlockData> entries = new HashMap<>();
+        int max = -1;
+        byte type;
+
+        while ((type = input.readType()) != NbtInput.END) {
+            String state = input.readName();
+            int id = input.readIntegral(type);
+
+            entries.put(id, parseBlockData(state));
+            max = Math.max(max, id);
+        }
+
+        BlockData[] palette = new BlockData[max + 1];
+        entries.forEach((id, blockData) -> palette[id] = blockData);
+
+        return palette;
+    }
+
+    private void decodeSponge(@NonNull DataInput input, int length, @NonNull SpongeState state, @NonNull LayerSink sink) throws IOException {
+        int width = state.width;
+        int depth = state.length;
+        long volume = (long) width * state.height * depth;
+
+        sink.addTotal(volume);
+
+        int remaining = length;
+        long index = 0;
+        int x = 0;
+        int y = 0;
+        int z = 0;
+
+        while (remaining > 0 && index < volume) {
+            int value = 0;
+            int shift = 0;
+            byte current;
+
+            do {
+                current = input.readByte();
+                remaining--;
+
+                value |= (current & 0x7F) << shift;
+                shift += 7;
+            } while ((current & 0x80) != 0 && remaining > 0);
+
+            sink.accept(x, y, z, value < state.palette.length ? state.palette[value] : null);
+            index++;
+
+            if (++x == width) {
+                x = 0;
+
+                if (++z == depth) {
+                    z = 0;
+                    y++;
+                }
+            }
+        }
+
+        skipFully(input, remaining);
+    }
+
+    private void readLitematic(@NonNull NbtInput input, @NonNull LayerSink sink) throws IOException {
+        if (input.readType() != NbtInput.COMPOUND) {
+            throw new IOException("Not a Litematica schematic");
+        }
+
+        input.readName();
+
+        byte type;
+
+        while ((type = input.readType()) != NbtInput.END) {
+            String name = input.readName();
+
+            if (type != NbtInput.COMPOUND || !name.equals("Regions")) {
+                input.skip(type);
+                continue;
+            }
+
+            byte regionType;
+
+            while ((regionType = input.readType()) != NbtInput.END) {
+                input.readName();
+
+                if (regionType != NbtInput.COMPOUND) {
+                    input.skip(regionType);
+                    continue;
+                }
+
+                readLitematicRegion(input, sink);
+            }
+        }
+    }
+
+    private void readLitematicRegion(@NonNull NbtInput input, @NonNull LayerSink sink) throws IOException {
+        LitematicRegion region = new LitematicRegion();
+        byte type;
+
+        while ((type = input.readType()) != NbtInput.END) {
+            String name = input.readName();
+
+            if (type == NbtInput.COMPOUND && name.equals("Position")) {
+                region.position = readVector(input);
+            } else if (type == NbtInput.COMPOUND && name.equals("Size")) {
+                region.size = readVector(input);
+            } else if (type == NbtInput.LIST && name.equals("BlockStatePalette")) {
+                region.palette = readLitematicPalette(input);
+            } else if (type == NbtInput.LONG_ARRAY && name.equals("BlockStates")) {
+                int length = input.readInt();
+
+                if (region.isReady()) {
+                    decodeLitematic(input.raw(), length, region, sink);
+                    continue;
+                }
+
+                region.deferred = new byte[length * 8];
+                input.raw().readFully(region.deferred);
+            } else {
+                input.skip(type);
+            }
+        }
+
+        if (region.deferred != null) {
+            if (!region.isReady()) {
+                throw new IOException("Litematica region is missing its palette or size");
+            }
+
+            decodeLitematic(new DataInputStream(new ByteArrayInputStream(region.deferred)), region.deferred.length / 8, region, sink);
+        }
+    }
+
+    private int[] readVector(@NonNull NbtInput input) throws IOException {
+        int[] vector = new int[3];
+        byte type;
+
+        while ((type = input.readType()) != NbtInput.END) {
+            String name = input.readName();
+
+            switch (name) {
+                case "x" -> vector[0] = input.readIntegral(type);
+                case "y" -> vector[1] = input.readIntegral(type);
+                case "z" -> vector[2] = input.readIntegral(type);
+                default -> input.skip(type);
+            }
+        }
+
+        return vector;
+    }
+
+    private BlockData[] readLitematicPalette(@NonNull NbtInput input) throws IOException {
+        byte elementType = input.readType();
+        int length = input.readInt();
+
+        if (elementType != NbtInput.COMPOUND) {
+            for (int i = 0; i < length; i++) {
+                input.skip(elementType);
+            }
+
+            return new BlockData[0];
+        }
+
+        BlockData[] palette = new BlockData[length];
+
+        for (int i = 0; i < length; i++) {
+            String blockName = "minecraft:air";
+            StringJoiner properties = new StringJoiner(",", "[", "]").setEmptyValue("");
+            byte type;
+
+            while ((type = input.readType()) != NbtInput.END) {
+                String name = input.readName();
+
+                if (type == NbtInput.STRING && name.equals("Name")) {
+                    blockName = input.readString();
+                } else if (type == NbtInput.COMPOUND && name.equals("Properties")) {
+                    byte propertyType;
+
+                    while ((propertyType = input.readType()) != NbtInput.END) {
+                        String property = input.readName();
+
+                        if (propertyType != NbtInput.STRING) {
+                            input.skip(propertyType);
+                            continue;
+                        }
+
+                        properties.add(property + "=" + input.readString());
+                    }
+                } else {
+                    input.skip(type);
+                }
+            }
+
+            palette[i] = parseBlockData(blockName + properties);
+        }
+
+        return palette;
+    }
+
+    private void decodeLitematic(@NonNull DataInput input, int longCount, @NonNull LitematicRegion region, @NonNull LayerSink sink) throws IOException {
+        int sizeX = Math.abs(region.size[0]);
+        int sizeY = Math.abs(region.size[1]);
+        int sizeZ = Math.abs(region.size[2]);
+
+        int minX = region.position[0] + (region.size[0] < 0 ? region.size[0] + 1 : 0);
+        int minY = region.position[1] + (region.size[1] < 0 ? region.size[1] + 1 : 0);
+        int minZ = region.position[2] + (region.size[2] < 0 ? region.size[2] + 1 : 0);
+
+        long volume = (long) sizeX * sizeY * sizeZ;
+        sink.addTotal(volume);
+
+        int bits = Math.max(2, 32 - Integer.numberOfLeadingZeros(Math.max(1, region.palette.length - 1)));
+        long mask = (1L << bits) - 1;
+
+        int longsRead = 0;
+        long current = 0;
+        int available = 0;
+
+        int x = 0;
+        int y = 0;
+        int z = 0;
+
+        for (long index = 0; index < volume; index++) {
+            long value;
+
+            if (available >= bits) {
+                value = current & mask;
+                current >>>= bits;
+                available -= bits;
+            } else {
+                if (longsRead >= longCount) {
+                    break;
+                }
+
+                long next = input.readLong();
+                longsRead++;
+
+                value = (current | (next << available)) & mask;
+                current = next >>> (bits - available);
+                available = 64 - (bits - available);
+            }
+
+            sink.accept(minX + x, minY + y, minZ + z, value < region.palette.length ? region.palette[(int) value] : null);
+
+            if (++x == sizeX) {
+                x = 0;
+
+                if (++z == sizeZ) {
+                    z = 0;
+                    y++;
+                }
+            }
+        }
+
+        skipFully(input, (longCount - longsRead) * 8L);
+    }
+
+    private static void skipFully(@NonNull DataInput input, long length) throws IOException {
+        while (length > 0) {
+            int skipped = input.skipBytes((int) Math.min(length, Integer.MAX_VALUE));
+
+            if (skipped <= 0) {
+                input.readByte();
+                skipped = 1;
+            }
+
+            length -= skipped;
+        }
+    }
+
+    private @Nullable BlockData parseBlockData(@NonNull String state) {
+        try {
+            return Bukkit.createBlockData(state);
+        } catch (IllegalArgumentException e) {
+            manager.getPlugin().getLogger().log(Level.WARNING, "Skipping unknown block state in schematic: " + state);
+            return null;
+        }
+    }
+
+    private static final class SpongeState {
+
+        private int width = -1;
+        private int height = -1;
+        private int length = -1;
+        private BlockData[] palette;
+        private byte[] deferred;
+
+        private boolean isReady() {
+            return width >= 0 && height >= 0 && length >= 0 && palette != null;
+        }
+
+    }
+
+    private static final class LitematicRegion {
+
+        private int[] position;
+        private int[] size;
+        private BlockData[] palette;
+        private byte[] deferred;
+
+        private boolean isReady() {
+            return position != null && size != null && palette != null;
+        }
+
+    }
+
+    /**
+     * Collects decoded blocks into layers of one section height and hands each finished layer to the
+     * group on the next tick, waiting for it to be applied before decoding continues.
+     */
+    private final class LayerSink {
+
+        private final PacketBlockGroup group;
+        private final World world;
+        private final int originX;
+        private final int originY;
+        private final int originZ;
+        private final @Nullable SchematicProgress progress;
+
+        private Map<Location, BlockData> layer = new HashMap<>();
+        private int layerSection = Integer.MIN_VALUE;
+
+        private long processed;
+        private long total;
+
+        private LayerSink(@NonNull PacketBlockGroup group, @NonNull Location origin, @Nullable SchematicProgress progress) {
+            this.group = group;
+            this.world = origin.getWorld();
+            this.originX = origin.getBlockX();
+            this.originY = origin.getBlockY();
+            this.originZ = origin.getBlockZ();
+            this.progress = progress;
+        }
+
+        private void addTotal(long volume) {
+            total += volume;
+        }
+
+        private void accept(int x, int y, int z, @Nullable BlockData blockData) {
+            processed++;
+
+            if (blockData == null || blockData.getMaterial().isAir()) {
+                return;
+            }
+
+            int worldY = originY + y;
+
+            if (worldY >> 4 != layerSection || layer.size() >= MAX_LAYER_SIZE) {
+                flush();
+                layerSection = worldY >> 4;
+            }
+
+            layer.put(new Location(world, originX + x, worldY, originZ + z), blockData);
+        }
+
+        private void flush() {
+            if (!layer.isEmpty()) {
+                Map<Location, BlockData> blocks = layer;
+                layer = new HashMap<>();
+
+                CompletableFuture<Void> applied = new CompletableFuture<>();
+
+                manager.getPlugin().getFoliaLib().getScheduler().runNextTick(task -> {
+                    try {
+                        manager.addBlocksToGroup(group, blocks, true);
+                        applied.complete(null);
+                    } catch (Throwable e) {
+                        applied.completeExceptionally(e);
+                    }
+                });
+
+                applied.join();
+            }
+
+            if (progress != null) {
+                progress.onProgress(processed, total);
+            }
+        }
+
+    }
+
+}
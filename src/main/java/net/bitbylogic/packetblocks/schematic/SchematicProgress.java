@@ -0,0 +1,17 @@
+package net.bitbylogic.packetblocks.schematic;
+
+/**
+ * Receives progress updates while a schematic is imported or exported.
+ */
+@FunctionalInterface
+public interface SchematicProgress {
+
+    /**
+     * Called after each batch of blocks has been processed, from the thread doing the work.
+     *
+     * @param processedBlocks the number of blocks processed so far, air included
+     * @param totalBlocks     the number of blocks known so far; may grow for schematics with several regions
+     */
+    void onProgress(long processedBlocks, long totalBlocks);
+
+}
@@ -0,0 +1,358 @@
+package net.bitbylogic.packetblocks.storage;
+
+import lombok.NonNull;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Binary encoding of the packet blocks stored for a single chunk.
+ * <p>
+ * A payload starts with a format version and a palette of block data strings, followed by every
+ * holder record. Blocks and per-viewer overrides reference the palette by index, so a chunk full of
+ * the same few block states only stores each state string once.
+ * <p>
+ * Version 2 added the group generation to every holder record. Version 1 payloads are still read,
+ * with every record at generation 0.
+ */
+final class ChunkCodec {
+
+    static final int FORMAT_VERSION = 2;
+
+    static final byte TYPE_BLOCK = 0;
+    static final byte TYPE_GROUP = 1;
+
+    private static final byte FLAG_ADD_VIEWER_ON_JOIN = 1;
+    private static final byte FLAG_GLOBAL_BREAK_ANIMATION = 1 << 1;
+
+    private static final byte META_STRING = 0;
+    private static final byte META_INT = 1;
+    private static final byte META_LONG = 2;
+    private static final byte META_DOUBLE = 3;
+    private static final byte META_FLOAT = 4;
+    private static final byte META_BOOLEAN = 5;
+    private static final byte META_UUID = 6;
+
+    private ChunkCodec() {
+    }
+
+    /**
+     * A holder's state restricted to the blocks it has in one chunk.
+     *
+     * @param type     {@link #TYPE_BLOCK} or {@link #TYPE_GROUP}
+     * @param groupId    the stable id of the group this record belongs to, or 0 for single blocks
+     * @param generation the generation of the group when the record was written, or 0 for single blocks
+     * @param blocks     the blocks of the holder within the chunk
+     * @param viewers    the viewers worth persisting
+     */
+    record StoredHolder(byte type, long groupId, int generation, int breakSpeed, boolean addViewerOnJoin, boolean globalBreakAnimation,
+                        int breakAnimationRadius, Map<String, Object> metadata, Map<Location, BlockData> blocks,
+                        List<StoredViewer> viewers) {
+
+    }
+
+    /**
+     * A viewer of a stored holder.
+     *
+     * @param overrides the blocks within the chunk for which the viewer sees different data than the holder's default
+     */
+    record StoredViewer(UUID uuid, int breakSpeed, Map<String, Object> metadata, Map<Location, BlockData> overrides) {
+
+    }
+
+    static byte[] encode(@NonNull List<StoredHolder> holders) throws IOException {
+        Map<BlockData, Integer> palette = new LinkedHashMap<>();
+
+        ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream();
+        DataOutputStream body = new DataOutputStream(bodyBytes);
+
+        body.writeInt(holders.size());
+
+        for (StoredHolder holder : holders) {
+            body.writeByte(holder.type());
+            body.writeLong(holder.groupId());
+            body.writeInt(holder.generation());
+            body.writeInt(holder.breakSpeed());
+            body.writeByte((holder.addViewerOnJoin() ? FLAG_ADD_VIEWER_ON_JOIN : 0)
+                    | (holder.globalBreakAnimation() ? FLAG_GLOBAL_BREAK_ANIMATION : 0));
+            body.writeInt(holder.breakAnimationRadius());
+
+            writeMetadata(body, holder.metadata());
+            writeBlocks(body, holder.blocks(), palette);
+
+            body.writeInt(holder.viewers().size());
+
+            for (StoredViewer viewer : holder.viewers()) {
+                body.writeLong(viewer.uuid().getMostSignificantBits());
+                body.writeLong(viewer.uuid().getLeastSignificantBits());
+                body.writeInt(viewer.breakSpeed());
+
+                writeMetadata(body, viewer.metadata());
+                writeBlocks(body, viewer.overrides(), palette);
+            }
+        }
+
+        body.flush();
+
+        ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream(bodyBytes.size() + palette.size() * 32 + 8);
+        DataOutputStream payload = new DataOutputStream(payloadBytes);
+
+        payload.writeInt(FORMAT_VERSION);
+        payload.writeInt(palette.size());
+
+        for (BlockData blockData : palette.keySet()) {
+            writeString(payload, blockData.getAsString());
+        }
+
+        bodyBytes.writeTo(payload);
+        payload.flush();
+
+        return payloadBytes.toByteArray();
+    }
+
+    static List<StoredHolder> decode(@NonNull ByteBuffer buffer, @NonNull World world) throws IOException {
+        ByteBuffer input = buffer.duplicate();
+        int version = input.getInt();
+
+        if (version < 1 || version > FORMAT_VERSION) {
+            throw new IOException("Unsupported packet block chunk format: " + version);
+        }
+
+        BlockData[] palette = new BlockData[input.getInt()];
+
+        for (int i = 0; i < palette.length; i++) {
+            palette[i] = Bukkit.createBlockData(readString(input));
+        }
+
+        int holderCount = input.getInt();
+        List<StoredHolder> holders = new ArrayList<>(holderCount);
+
+        for (int i = 0; i < holderCount; i++) {
+            byte type = input.get();
+            long groupId = input.getLong();
+            int generation = version >= 2 ? input.getInt() : 0;
+            int breakSpeed = input.getInt();
+            byte flags = input.get();
+            int breakAnimationRadius = input.getInt();
+
+            Map<String, Object> metadata = readMetadata(input);
+            Map<Location, BlockData> blocks = readBlocks(input, world, palette);
+
+            int viewerCount = input.getInt();
+            List<StoredViewer> viewers = new ArrayList<>(viewerCount);
+
+            for (int j = 0; j < viewerCount; j++) {
+                UUID uuid = new UUID(input.getLong(), input.getLong());
+                int viewerBreakSpeed = input.getInt();
+
+                viewers.add(new StoredViewer(uuid, viewerBreakSpeed, readMetadata(input), readBlocks(input, world, palette)));
+            }
+
+            holders.add(new StoredHolder(type, groupId, generation, breakSpeed,
+                    (flags & FLAG_ADD_VIEWER_ON_JOIN) != 0, (flags & FLAG_GLOBAL_BREAK_ANIMATION) != 0,
+                    breakAnimationRadius, metadata, blocks, viewers));
+        }
+
+        return holders;
+    }
+
+    /**
+     * Collects the ids of the groups a payload has records for, without decoding any block data.
+     *
+     * @param buffer   the chunk's payload; must not be null
+     * @param groupIds receives the group ids; must not be null
+     * @throws IOException if the payload has an unsupported format
+     */
+    static void readGroupIds(@NonNull ByteBuffer buffer, @NonNull Collection<Long> groupIds) throws IOException {
+        ByteBuffer input = buffer.duplicate();
+        int version = input.getInt();
+
+        if (version < 1 || version > FORMAT_VERSION) {
+            throw new IOException("Unsupported packet block chunk format: " + version);
+        }
+
+        int paletteSize = input.getInt();
+
+        for (int i = 0; i < paletteSize; i++) {
+            skipString(input);
+        }
+
+        int holderCount = input.getInt();
+
+        for (int i = 0; i < holderCount; i++) {
+            byte type = input.get();
+            long groupId = input.getLong();
+
+            if (type == TYPE_GROUP) {
+                groupIds.add(groupId);
+            }
+
+            input.position(input.position() + (version >= 2 ? 4 : 0) + 4 + 1 + 4);
+
+            skipMetadata(input);
+            skipBlocks(input);
+
+            int viewerCount = input.getInt();
+
+            for (int j = 0; j < viewerCount; j++) {
+                input.position(input.position() + 16 + 4);
+
+                skipMetadata(input);
+                skipBlocks(input);
+            }
+        }
+    }
+
+    /**
+     * Checks whether a metadata value can be persisted. Values of any other type are skipped on save.
+     *
+     * @param value the metadata value to check
+     * @return true if the value has a binary encoding
+     */
+    static boolean isStorable(Object value) {
+        return value instanceof String || value instanceof Integer || value instanceof Long || value instanceof Double
+                || value instanceof Float || value instanceof Boolean || value instanceof UUID;
+    }
+
+    private static void writeBlocks(@NonNull DataOutputStream output, @NonNull Map<Location, BlockData> blocks,
+                                    @NonNull Map<BlockData, Integer> palette) throws IOException {
+        output.writeInt(blocks.size());
+
+        for (Map.Entry<Location, BlockData> entry : blocks.entrySet()) {
+            Location location = entry.getKey();
+
+            output.writeInt(location.getBlockX());
+            output.writeInt(location.getBlockY());
+            output.writeInt(location.getBlockZ());
+            output.writeInt(palette.computeIfAbsent(entry.getValue(), data -> palette.size()));
+        }
+    }
+
+    private static Map<Location, BlockData> readBlocks(@NonNull ByteBuffer input, @NonNull World world, BlockData[] palette) {
+        int count = input.getInt();
+        Map<Location, BlockData> blocks = new LinkedHashMap<>(count);
+
+        for (int i = 0; i < count; i++) {
+            Location location = new Location(world, input.getInt(), input.getInt(), input.getInt());
+            blocks.put(location, palette[input.getInt()]);
+        }
+
+        return blocks;
+    }
+
+    private static void writeMetadata(@NonNull DataOutputStream output, @NonNull Map<String, Object> metadata) throws IOException {
+        output.writeInt(metadata.size());
+
+        for (Map.Entry<String, Object> entry : metadata.entrySet()) {
+            writeString(output, entry.getKey());
+            Object value = entry.getValue();
+
+            if (value instanceof String string) {
+                output.writeByte(META_STRING);
+                writeString(output, string);
+            } else if (value instanceof Integer integer) {
+                output.writeByte(META_INT);
+                output.writeInt(integer);
+            } else if (value instanceof Long longValue) {
+                output.writeByte(META_LONG);
+                output.writeLong(longValue);
+            } else if (value instanceof Double doubleValue) {
+                output.writeByte(META_DOUBLE);
+                output.writeDouble(doubleValue);
+            } else if (value instanceof Float floatValue) {
+                output.writeByte(META_FLOAT);
+                output.writeFloat(floatValue);
+            } else if (value instanceof Boolean booleanValue) {
+                output.writeByte(META_BOOLEAN);
+                output.writeBoolean(booleanValue);
+            } else if (value instanceof UUID uuid) {
+                output.writeByte(META_UUID);
+                output.writeLong(uuid.getMostSignificantBits());
+                output.writeLong(uuid.getLeastSignificantBits());
+            } else {
+                throw new IOException("Unsupported metadata type for key " + entry.getKey() + ": " + value.getClass().getName());
+            }
+        }
+    }
+
+    private static Map<String, Object> readMetadata(@NonNull ByteBuffer input) throws IOException {
+        int count = input.getInt();
+
+        if (count == 0) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, Object> metadata = new HashMap<>(count);
+
+        for (int i = 0; i < count; i++) {
+            String key = readString(input);
+            byte type = input.get();
+
+            Object value = switch (type) {
+                case META_STRING -> readString(input);
+                case META_INT -> input.getInt();
+                case META_LONG -> input.getLong();
+                case META_DOUBLE -> input.getDouble();
+                case META_FLOAT -> input.getFloat();
+                case META_BOOLEAN -> input.get() != 0;
+                case META_UUID -> new UUID(input.getLong(), input.getLong());
+                default -> throw new IOException("Unknown metadata type " + type + " for key " + key);
+            };
+
+            metadata.put(key, value);
+        }
+
+        return metadata;
+    }
+
+    private static void skipBlocks(@NonNull ByteBuffer input) {
+        int count = input.getInt();
+        input.position(input.position() + count * 16);
+    }
+
+    private static void skipMetadata(@NonNull ByteBuffer input) throws IOException {
+        int count = input.getInt();
+
+        for (int i = 0; i < count; i++) {
+            skipString(input);
+            byte type = input.get();
+
+            switch (type) {
+                case META_STRING -> skipString(input);
+                case META_INT, META_FLOAT -> input.position(input.position() + 4);
+                case META_LONG, META_DOUBLE -> input.position(input.position() + 8);
+                case META_BOOLEAN -> input.position(input.position() + 1);
+                case META_UUID -> input.position(input.position() + 16);
+                default -> throw new IOException("Unknown metadata type " + type);
+            }
+        }
+    }
+
+    private static void skipString(@NonNull ByteBuffer input) {
+        int length = input.getInt();
+        input.position(input.position() + length);
+    }
+
+    private static void writeString(@NonNull DataOutputStream output, @NonNull String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(@NonNull ByteBuffer input) {
+        byte[] bytes = new byte[input.getInt()];
+        input.get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,169 @@
+package net.bitbylogic.packetblocks.storage;
+
+import lombok.NonNull;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * A single change recorded in the {@link PacketBlockJournal}.
+ * <p>
+ * Every entry carries the positions it touches, so replaying it can load the affected chunks from the
+ * last snapshot before applying the change. Entries are idempotent: replaying one that is already part
+ * of the snapshot leaves the snapshot unchanged.
+ *
+ * @param type       the kind of change
+ * @param groupId    the stable id of the affected group, or 0 for single blocks
+ * @param blocks     the affected positions with their new data, or null data for removed positions
+ * @param generation the group's new generation, only set for {@link #SET_GROUP_GENERATION}
+ */
+record JournalEntry(byte type, long groupId, Map<Location, BlockData> blocks, int generation) {
+
+    static final byte CREATE_BLOCK = 0;
+    static final byte REMOVE_BLOCK = 1;
+    static final byte SET_BLOCK_DATA = 2;
+    static final byte CREATE_GROUP = 3;
+    static final byte ADD_GROUP_BLOCKS = 4;
+    static final byte REMOVE_GROUP_BLOCKS = 5;
+    static final byte REMOVE_GROUP = 6;
+    static final byte REPLACE_GROUP = 7;
+    static final byte SET_GROUP_GENERATION = 8;
+
+    JournalEntry(byte type, long groupId, @NonNull Map<Location, BlockData> blocks) {
+        this(type, groupId, blocks, 0);
+    }
+
+    static JournalEntry of(byte type, long groupId, @NonNull Location location, @Nullable BlockData blockData) {
+        Map<Location, BlockData> blocks = new LinkedHashMap<>(1);
+        blocks.put(location, blockData);
+
+        return new JournalEntry(type, groupId, blocks);
+    }
+
+    byte[] encode() throws IOException {
+        List<String> worlds = new ArrayList<>(1);
+        Map<BlockData, Integer> palette = new LinkedHashMap<>();
+
+        ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream(16 + blocks.size() * 16);
+        DataOutputStream body = new DataOutputStream(bodyBytes);
+
+        body.writeInt(blocks.size());
+
+        for (Map.Entry<Location, BlockData> entry : blocks.entrySet()) {
+            Location location = entry.getKey();
+            String worldName = location.getWorld().getName();
+            int worldIndex = worlds.indexOf(worldName);
+
+            if (worldIndex == -1) {
+                worldIndex = worlds.size();
+                worlds.add(worldName);
+            }
+
+            body.writeInt(worldIndex);
+            body.writeInt(location.getBlockX());
+            body.writeInt(location.getBlockY());
+            body.writeInt(location.getBlockZ());
+            body.writeInt(entry.getValue() == null ? -1 : palette.computeIfAbsent(entry.getValue(), data -> palette.size()));
+        }
+
+        body.flush();
+
+        ByteArrayOutputStream entryBytes = new ByteArrayOutputStream(bodyBytes.size() + 64);
+        DataOutputStream output = new DataOutputStream(entryBytes);
+
+        output.writeByte(type);
+        output.writeLong(groupId);
+
+        output.writeInt(worlds.size());
+
+        for (String world : worlds) {
+            writeString(output, world);
+        }
+
+        output.writeInt(palette.size());
+
+        for (BlockData blockData : palette.keySet()) {
+            writeString(output, blockData.getAsString());
+        }
+
+        bodyBytes.writeTo(output);
+
+        if (type == SET_GROUP_GENERATION) {
+            output.writeInt(generation);
+        }
+
+        output.flush();
+
+        return entryBytes.toByteArray();
+    }
+
+    /**
+     * Decodes an entry written by {@link #encode()}.
+     *
+     * @param input the entry's bytes; must not be null
+     * @return the decoded entry, or null if it references a world that is not loaded
+     */
+    static @Nullable JournalEntry decode(@NonNull ByteBuffer input) {
+        byte type = input.get();
+        long groupId = input.getLong();
+
+        World[] worlds = new World[input.getInt()];
+
+        for (int i = 0; i < worlds.length; i++) {
+            worlds[i] = Bukkit.getWorld(readString(input));
+        }
+
+        BlockData[] palette = new BlockData[input.getInt()];
+
+        for (int i = 0; i < palette.length; i++) {
+            palette[i] = Bukkit.createBlockData(readString(input));
+        }
+
+        int count = input.getInt();
+        Map<Location, BlockData> blocks = new LinkedHashMap<>(count);
+
+        for (int i = 0; i < count; i++) {
+            World world = worlds[input.getInt()];
+            Location location = new Location(world, input.getInt(), input.getInt(), input.getInt());
+            int paletteIndex = input.getInt();
+
+            if (world == null) {
+                continue;
+            }
+
+            blocks.put(location, paletteIndex == -1 ? null : palette[paletteIndex]);
+        }
+
+        int generation = type == SET_GROUP_GENERATION ? input.getInt() : 0;
+
+        if (blocks.isEmpty() && count > 0) {
+            return null;
+        }
+
+        return new JournalEntry(type, groupId, blocks, generation);
+    }
+
+    private static void writeString(@NonNull DataOutputStream output, @NonNull String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(@NonNull ByteBuffer input) {
+        byte[] bytes = new byte[input.getInt()];
+        input.get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+}
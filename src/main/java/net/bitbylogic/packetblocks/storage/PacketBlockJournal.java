@@ -0,0 +1,272 @@
+package net.bitbylogic.packetblocks.storage;
+
+import lombok.NonNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of the changes made since the last snapshot.
+ * <p>
+ * Callers only encode their entry and hand it to a queue. A single background thread drains the
+ * queue and writes everything that accumulated since its last pass in one batch followed by a single
+ * {@link FileChannel#force(boolean)}, so the cost of syncing is shared by every entry in the batch and
+ * region threads never touch the disk.
+ * <p>
+ * The journal is split into numbered segments. Taking a snapshot {@link #rotate() rotates} to a new
+ * segment, and once the snapshot is written the segments before it are {@link #deleteBefore(long) deleted}.
+ * Each entry is framed with its length and a CRC32, so a torn write at the end of a segment after a
+ * crash is detected and replay stops there.
+ */
+class PacketBlockJournal {
+
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int MAX_BATCH = 4096;
+
+    private static final Object STOP = new Object();
+
+    private final Path directory;
+    private final Logger logger;
+
+    private final LinkedBlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+    private final AtomicLong nextSegment;
+    private final Thread thread;
+
+    private @Nullable FileChannel channel;
+
+    PacketBlockJournal(@NonNull Path directory, @NonNull Logger logger) throws IOException {
+        this.directory = directory;
+        this.logger = logger;
+
+        Files.createDirectories(directory);
+
+        List<Long> segments = getSegments();
+        this.nextSegment = new AtomicLong(segments.isEmpty() ? 0 : segments.getLast() + 1);
+
+        openSegment(nextSegment.getAndIncrement());
+
+        this.thread = new Thread(this::run, "PacketBlocks Journal Writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Queues an entry to be written. Never blocks.
+     *
+     * @param entry the encoded entry; must not be null
+     */
+    void append(byte[] entry) {
+        queue.add(entry);
+    }
+
+    /**
+     * Starts a new segment. Entries appended before this call end up in earlier segments, entries
+     * appended after it in the returned segment or later ones.
+     *
+     * @return the id of the new segment
+     */
+    long rotate() {
+        long segment = nextSegment.getAndIncrement();
+        queue.add(new Rotation(segment));
+        return segment;
+    }
+
+    /**
+     * Deletes every segment with an id lower than the given one. Segments that are still being written
+     * to are never deleted, since {@link #rotate()} always moves writing to a higher id first.
+     *
+     * @param segment the first segment to keep
+     */
+    void deleteBefore(long segment) {
+        try {
+            for (long existing : getSegments()) {
+                if (existing < segment) {
+                    Files.deleteIfExists(getSegmentPath(existing));
+                }
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Unable to delete old packet block journal segments", e);
+        }
+    }
+
+    /**
+     * Reads every intact entry of every segment in order. Must only be called before anything is
+     * appended to the journal.
+     *
+     * @param consumer receives each entry's bytes; must not be null
+     * @return the number of entries read
+     */
+    int replay(@NonNull Consumer<ByteBuffer> consumer) throws IOException {
+        int entries = 0;
+
+        for (long segment : getSegments()) {
+            Path path = getSegmentPath(segment);
+
+            try (FileChannel segmentChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+                if (segmentChannel.size() == 0) {
+                    continue;
+                }
+
+                MappedByteBuffer buffer = segmentChannel.map(FileChannel.MapMode.READ_ONLY, 0, segmentChannel.size());
+                CRC32 crc = new CRC32();
+
+                while (buffer.remaining() >= 8) {
+                    int length = buffer.getInt();
+                    int checksum = buffer.getInt();
+
+                    if (length < 0 || length > buffer.remaining()) {
+                        logger.warning("Truncated packet block journal entry in " + path + ", ignoring the rest of the segment");
+                        break;
+                    }
+
+                    ByteBuffer entry = buffer.slice(buffer.position(), length);
+                    buffer.position(buffer.position() + length);
+
+                    crc.reset();
+                    crc.update(entry.duplicate());
+
+                    if ((int) crc.getValue() != checksum) {
+                        logger.warning("Corrupt packet block journal entry in " + path + ", ignoring the rest of the segment");
+                        break;
+                    }
+
+                    consumer.accept(entry);
+                    entries++;
+                }
+            }
+        }
+
+        return entries;
+    }
+
+    /**
+     * Writes everything still queued and stops the writer thread.
+     */
+    void close() {
+        queue.add(STOP);
+
+        try {
+            thread.join(30_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        List<Object> batch = new ArrayList<>();
+        CRC32 crc = new CRC32();
+
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+
+            queue.drainTo(batch, MAX_BATCH - 1);
+
+            boolean stop = false;
+
+            try {
+                for (Object item : batch) {
+                    if (item == STOP) {
+                        stop = true;
+                        break;
+                    }
+
+                    if (item instanceof Rotation rotation) {
+                        openSegment(rotation.segment());
+                        continue;
+                    }
+
+                    byte[] entry = (byte[]) item;
+
+                    crc.reset();
+                    crc.update(entry);
+
+                    ByteBuffer frame = ByteBuffer.allocate(8 + entry.length);
+                    frame.putInt(entry.length).putInt((int) crc.getValue()).put(entry).flip();
+
+                    while (frame.hasRemaining()) {
+                        channel.write(frame);
+                    }
+                }
+
+                channel.force(false);
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Unable to write packet block journal", e);
+            }
+
+            batch.clear();
+
+            if (stop) {
+                break;
+            }
+        }
+
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Unable to close packet block journal", e);
+        }
+    }
+
+    private void openSegment(long segment) throws IOException {
+        if (channel != null) {
+            channel.force(false);
+            channel.close();
+        }
+
+        channel = FileChannel.open(getSegmentPath(segment), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private List<Long> getSegments() throws IOException {
+        List<Long> segments = new ArrayList<>();
+
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(path -> {
+                String name = path.getFileName().toString();
+
+                if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+                    return;
+                }
+
+                try {
+                    segments.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+                } catch (NumberFormatException ignored) {
+                }
+            });
+        }
+
+        segments.sort(null);
+        return segments;
+    }
+
+    private Path getSegmentPath(long segment) {
+        return directory.resolve(SEGMENT_PREFIX + String.format("%016d", segment) + SEGMENT_SUFFIX);
+    }
+
+    private record Rotation(long segment) {
+
+    }
+
+}
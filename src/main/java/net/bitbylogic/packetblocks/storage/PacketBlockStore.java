@@ -0,0 +1,1491 @@
+package net.bitbylogic.packetblocks.storage;
+
+import com.tcoded.folialib.FoliaLib;
+import lombok.Getter;
+import lombok.NonNull;
+import net.bitbylogic.packetblocks.block.PacketBlock;
+import net.bitbylogic.packetblocks.block.PacketBlockHolder;
+import net.bitbylogic.packetblocks.block.PacketBlockManager;
+import net.bitbylogic.packetblocks.block.WorldPartition;
+import net.bitbylogic.packetblocks.group.PacketBlockGroup;
+import net.bitbylogic.packetblocks.storage.ChunkCodec.StoredHolder;
+import net.bitbylogic.packetblocks.storage.ChunkCodec.StoredViewer;
+import net.bitbylogic.packetblocks.util.BlockChangeBatch;
+import net.bitbylogic.packetblocks.util.BlockPositions;
+import net.bitbylogic.packetblocks.viewer.PacketBlockViewer;
+import net.bitbylogic.packetblocks.viewer.impl.GroupPacketBlockViewer;
+import net.bitbylogic.packetblocks.viewer.impl.SinglePacketBlockViewer;
+import net.bitbylogic.utils.location.WorldPosition;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.UnaryOperator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Persists the {@link PacketBlock}s and {@link PacketBlockGroup}s of a {@link PacketBlockManager} to disk.
+ * <p>
+ * Blocks are stored per chunk in region files of 32x32 chunks, one directory per world. Nothing is read
+ * on startup: a chunk is only decoded and registered with the manager the first time it is queried or
+ * its CHUNK_DATA is sent, so startup time and heap usage depend on the chunks players actually visit
+ * rather than on the total number of stored blocks.
+ * <p>
+ * Which chunks have stored blocks is read from the offset table of each region file, so only those
+ * chunks are ever loaded and the load state of a region is a fixed size bitmap, however many of its
+ * chunks players explore. A world's region files and load state are dropped when it unloads, see
+ * {@link #unloadWorld(String, Collection)}.
+ * <p>
+ * Groups spanning several chunks are stored as one record per chunk sharing a stable group id. The
+ * first chunk that is loaded creates the group and every other chunk adds its blocks to it.
+ * <p>
+ * Moving a group or replacing its data bumps the group's generation. Records written before that
+ * describe the group's old shape, so records of an older generation in chunks that were not loaded at
+ * the time are skipped when those chunks load, and disappear with the chunk's next save.
+ * <p>
+ * Holder properties, metadata of primitive, {@link String} and {@link UUID} types, viewers and their
+ * per-viewer block data, break speed and metadata are persisted. View conditions and suppliers are
+ * code and have to be registered again by the owning plugin. {@link net.bitbylogic.packetblocks.group.PacketBlockInstance}s
+ * are not persisted, as they are cheap to recreate from their template. Viewers of holders that add
+ * viewers on join are only persisted when they have overrides, since joining adds them again.
+ * <p>
+ * Viewers are removed from their holders when their player quits. Their persisted state is kept
+ * here instead, see {@link #releaseViewer}, so it is still saved and is given back on the player's
+ * next join. Stored viewers of players that are offline when their chunk loads are kept the same way.
+ * <p>
+ * Between snapshots, block and group creation, removal, group membership changes and data replaced
+ * for all viewers are written to a {@link PacketBlockJournal} in the background. Moved and replaced
+ * groups only journal the positions that changed. After a crash the
+ * journal is replayed on top of the last snapshot by {@link #replayJournal()}. Viewer and metadata
+ * changes are only captured by snapshots.
+ */
+public class PacketBlockStore {
+
+    private static final String REMOVED_GROUPS_FILE = "removed-groups.dat";
+    private static final String GROUP_GENERATIONS_FILE = "group-generations.dat";
+    private static final int LOCK_STRIPES = 64;
+
+    private final PacketBlockManager manager;
+    private final Logger logger;
+
+    @Getter
+    private final Path directory;
+
+    /**
+     * The opened regions of every world, by world name and {@link BlockPositions#chunkKey(int, int)}
+     * of the region coordinates.
+     */
+    private final Map<String, Map<Long, RegionChunks>> worlds = new ConcurrentHashMap<>();
+    private final Object[] loadLocks = new Object[LOCK_STRIPES];
+
+    private final Map<PacketBlockGroup, Long> groupIds = Collections.synchronizedMap(new IdentityHashMap<>());
+    private final Map<Long, PacketBlockGroup> groupsById = new ConcurrentHashMap<>();
+    private final Set<Long> removedGroups = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The current generation of every group that has been moved or had its data replaced.
+     */
+    private final Map<Long, Integer> groupGenerations = new ConcurrentHashMap<>();
+
+    /**
+     * The persisted state of viewers whose players are offline, by holder and player, with overrides
+     * across every loaded chunk of the holder. Guarded by itself, along with {@link #offlineHolders}.
+     */
+    private final Map<PacketBlockHolder<?, ?>, Map<UUID, StoredViewer>> offlineViewers = new IdentityHashMap<>();
+
+    /**
+     * The holders each offline player has state in {@link #offlineViewers} for.
+     */
+    private final Map<UUID, Set<PacketBlockHolder<?, ?>>> offlineHolders = new HashMap<>();
+
+    /**
+     * The group ids referenced by each region file on disk, scanned when first needed and again after
+     * every write to the region. Only used on the writer thread.
+     */
+    private final Map<RegionKey, Set<Long>> regionGroups = new HashMap<>();
+
+    private final PacketBlockJournal journal;
+    private final ThreadLocal<Boolean> journalSuppressed = ThreadLocal.withInitial(() -> false);
+
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "PacketBlocks Store Writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public PacketBlockStore(@NonNull PacketBlockManager manager, @NonNull Path directory, @NonNull Logger logger) throws IOException {
+        this.manager = manager;
+        this.directory = directory;
+        this.logger = logger;
+        this.journal = new PacketBlockJournal(directory.resolve("journal"), logger);
+
+        for (int i = 0; i < loadLocks.length; i++) {
+            loadLocks[i] = new Object();
+        }
+
+        readRemovedGroups();
+        readGroupGenerations();
+    }
+
+    /**
+     * Checks whether the stored blocks of a chunk have been loaded into the manager. Chunks with
+     * nothing stored count as loaded.
+     *
+     * @param worldName the name of the chunk's world; must not be null
+     * @param chunkX    the chunk X coordinate
+     * @param chunkZ    the chunk Z coordinate
+     * @return true if the chunk has been loaded
+     */
+    public boolean isLoaded(@NonNull String worldName, int chunkX, int chunkZ) {
+        return !getRegion(worldName, chunkX >> 5, chunkZ >> 5).needsLoading(RegionFile.index(chunkX, chunkZ));
+    }
+
+    /**
+     * Loads the chunk containing the given location. See {@link #ensureLoaded(World, int, int)}.
+     *
+     * @param location the location whose chunk should be loaded; must not be null
+     */
+    public void ensureLoaded(@NonNull Location location) {
+        World world = location.getWorld();
+
+        if (world == null) {
+            return;
+        }
+
+        ensureLoaded(world, location.getBlockX() >> 4, location.getBlockZ() >> 4);
+    }
+
+    /**
+     * Decodes the stored blocks of a chunk and registers them with the manager, unless that already
+     * happened or nothing is stored for it. Safe to call from any thread: concurrent callers for the
+     * same chunk wait until the first one has finished, and calls made by the loading thread itself
+     * return immediately. Chunks without stored blocks return without locking or allocating once
+     * their region has been opened.
+     * <p>
+     * Registering blocks only touches the manager's index, so it happens on the calling thread, which
+     * is often a netty thread sending the chunk. Online players are added as viewers later, on their
+     * own schedulers, see {@link #addOnlineViewers(World, List)}.
+     *
+     * @param world  the chunk's world; must not be null
+     * @param chunkX the chunk X coordinate
+     * @param chunkZ the chunk Z coordinate
+     */
+    public void ensureLoaded(@NonNull World world, int chunkX, int chunkZ) {
+        RegionChunks region = getRegion(world.getName(), chunkX >> 5, chunkZ >> 5);
+        int index = RegionFile.index(chunkX, chunkZ);
+
+        if (!region.needsLoading(index)) {
+            return;
+        }
+
+        synchronized (loadLocks[index % LOCK_STRIPES]) {
+            if (!region.needsLoading(index) || RegionChunks.set(region.loading, index)) {
+                return;
+            }
+
+            boolean suppressed = journalSuppressed.get();
+            journalSuppressed.set(true);
+
+            try {
+                load(region.file, world, chunkX, chunkZ);
+            } catch (IOException | RuntimeException e) {
+                RegionChunks.set(region.failed, index);
+                logger.log(Level.SEVERE, "Unable to load packet blocks for chunk " + chunkX + ", " + chunkZ + " of "
+                        + world.getName() + ", it will not be saved", e);
+            } finally {
+                journalSuppressed.set(suppressed);
+                RegionChunks.set(region.loaded, index);
+                RegionChunks.clear(region.loading, index);
+            }
+        }
+    }
+
+    private void load(@NonNull RegionFile file, @NonNull World world, int chunkX, int chunkZ) throws IOException {
+        ByteBuffer payload = file.read(chunkX, chunkZ);
+
+        if (payload == null) {
+            return;
+        }
+
+        List<StoredHolder> holders = ChunkCodec.decode(payload, world);
+        List<PacketBlockHolder<?, ?>> joinHolders = new ArrayList<>();
+        Map<UUID, Player> onlinePlayers = new HashMap<>();
+
+        if (holders.stream().anyMatch(holder -> !holder.viewers().isEmpty())) {
+            Bukkit.getOnlinePlayers().forEach(player -> onlinePlayers.put(player.getUniqueId(), player));
+        }
+
+        Set<UUID> offline = new HashSet<>();
+
+        for (StoredHolder holder : holders) {
+            if (holder.type() == ChunkCodec.TYPE_GROUP) {
+                PacketBlockGroup group = restoreGroup(holder, onlinePlayers, offline);
+
+                if (group != null && group.isAddViewerOnJoin()) {
+                    joinHolders.add(group);
+                }
+                continue;
+            }
+
+            holder.blocks().forEach((location, blockData) -> {
+                PacketBlock block = restoreBlock(holder, location, blockData, onlinePlayers, offline);
+
+                if (block != null && block.isAddViewerOnJoin()) {
+                    joinHolders.add(block);
+                }
+            });
+        }
+
+        addOnlineViewers(world, joinHolders);
+        restoreJoinedViewers(offline);
+    }
+
+    /**
+     * Hands kept viewers back to players that joined while their viewers were being kept offline,
+     * after the join already restored their other viewers.
+     */
+    private void restoreJoinedViewers(@NonNull Set<UUID> offline) {
+        if (offline.isEmpty()) {
+            return;
+        }
+
+        FoliaLib foliaLib = manager.getPlugin().getFoliaLib();
+
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            if (offline.contains(player.getUniqueId())) {
+                foliaLib.getScheduler().runAtEntity(player, task -> restoreOfflineViewers(player));
+            }
+        }
+    }
+
+    private @Nullable PacketBlock restoreBlock(@NonNull StoredHolder holder, @NonNull Location location, @NonNull BlockData blockData,
+                                               @NonNull Map<UUID, Player> onlinePlayers, @NonNull Set<UUID> offline) {
+        PacketBlock block = manager.createBlock(location, blockData);
+
+        if (block == null) {
+            return null;
+        }
+
+        applyProperties(block, holder);
+
+        for (StoredViewer storedViewer : holder.viewers()) {
+            if (onlinePlayers.containsKey(storedViewer.uuid())) {
+                restoreBlockViewer(block, storedViewer);
+                continue;
+            }
+
+            keepOffline(block, storedViewer);
+            offline.add(storedViewer.uuid());
+        }
+
+        return block;
+    }
+
+    private void restoreBlockViewer(@NonNull PacketBlock block, @NonNull StoredViewer storedViewer) {
+        SinglePacketBlockViewer viewer = restoreViewer(block, storedViewer);
+        BlockData override = storedViewer.overrides().get(block.getLocation());
+
+        if (override != null) {
+            viewer.setData(override);
+            viewer.setDataSupplier(null);
+        }
+    }
+
+    private @Nullable PacketBlockGroup restoreGroup(@NonNull StoredHolder holder, @NonNull Map<UUID, Player> onlinePlayers,
+                                                    @NonNull Set<UUID> offline) {
+        if (removedGroups.contains(holder.groupId()) || isStale(holder)) {
+            return null;
+        }
+
+        boolean[] created = new boolean[1];
+
+        // Chunks of the same group can be loaded by several threads at once, so the group is created
+        // and registered atomically under its id, and blocks are only ever added while holding it.
+        PacketBlockGroup group = groupsById.computeIfAbsent(holder.groupId(), id -> {
+            PacketBlockGroup restored = manager.createGroup(holder.blocks());
+            groupIds.put(restored, id);
+            applyProperties(restored, holder);
+
+            created[0] = true;
+            return restored;
+        });
+
+        synchronized (group) {
+            if (!created[0]) {
+                if (isStale(holder)) {
+                    return null;
+                }
+
+                manager.addBlocksToGroup(group, holder.blocks(), false);
+                holder.metadata().forEach(group::addMetadata);
+            }
+
+            if (holder.generation() > 0) {
+                groupGenerations.merge(holder.groupId(), holder.generation(), Math::max);
+            }
+
+            for (StoredViewer storedViewer : holder.viewers()) {
+                if (onlinePlayers.containsKey(storedViewer.uuid())) {
+                    restoreGroupViewer(group, storedViewer);
+                    continue;
+                }
+
+                keepOffline(group, storedViewer);
+                offline.add(storedViewer.uuid());
+            }
+        }
+
+        return group;
+    }
+
+    private boolean isStale(@NonNull StoredHolder holder) {
+        return holder.generation() < groupGenerations.getOrDefault(holder.groupId(), 0);
+    }
+
+    private void restoreGroupViewer(@NonNull PacketBlockGroup group, @NonNull StoredViewer storedViewer) {
+        GroupPacketBlockViewer viewer = restoreViewer(group, storedViewer);
+
+        if (storedViewer.overrides().isEmpty()) {
+            return;
+        }
+
+        if (viewer.getSuppliedData() == group.getData()) {
+            viewer.setData(new ConcurrentHashMap<>(group.getData()));
+            viewer.setDataSupplier(null);
+        }
+
+        Map<WorldPosition, BlockData> data = viewer.getSuppliedData();
+
+        storedViewer.overrides().forEach((location, blockData) -> {
+            WorldPosition position = WorldPosition.ofBlock(location);
+
+            if (group.getData().containsKey(position)) {
+                data.put(position, blockData);
+            }
+        });
+    }
+
+    private void applyProperties(@NonNull PacketBlockHolder<?, ?> block, @NonNull StoredHolder holder) {
+        block.setBreakSpeed(holder.breakSpeed());
+        block.setAddViewerOnJoin(holder.addViewerOnJoin());
+        block.setGlobalBreakAnimation(holder.globalBreakAnimation());
+        block.setBreakAnimationRadius(holder.breakAnimationRadius());
+
+        holder.metadata().forEach(block::addMetadata);
+    }
+
+    private <T, V extends PacketBlockViewer<T>> V restoreViewer(@NonNull PacketBlockHolder<T, V> block, @NonNull StoredViewer storedViewer) {
+        V viewer = block.restoreViewer(storedViewer.uuid());
+
+        viewer.setBreakSpeed(storedViewer.breakSpeed());
+        storedViewer.metadata().forEach(viewer::addMetadata);
+
+        return viewer;
+    }
+
+    /**
+     * Holders that add viewers on join were not around when the players in their world joined,
+     * so those players are added here.
+     * <p>
+     * Loads often run on netty threads, while adding a viewer reads the player and runs the holder's
+     * view conditions, so each online player is handled on their own scheduler. By then the chunk may
+     * already have been sent without the holder, so players who become viewers are sent the holder's
+     * blocks in every chunk they already have.
+     */
+    private void addOnlineViewers(@NonNull World world, @NonNull List<PacketBlockHolder<?, ?>> holders) {
+        if (holders.isEmpty()) {
+            return;
+        }
+
+        FoliaLib foliaLib = manager.getPlugin().getFoliaLib();
+
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            foliaLib.getScheduler().runAtEntity(player, task -> {
+                if (!player.isOnline() || !player.getWorld().getName().equals(world.getName())) {
+                    return;
+                }
+
+                for (PacketBlockHolder<?, ?> holder : holders) {
+                    if (holder.isViewer(player) || holder.attemptAddViewer(player, false).isEmpty()) {
+                        continue;
+                    }
+
+                    sendSentBlocks(holder, player);
+                }
+            });
+        }
+    }
+
+    private static void sendSentBlocks(@NonNull PacketBlockHolder<?, ?> holder, @NonNull Player player) {
+        BlockChangeBatch changes = new BlockChangeBatch();
+
+        if (holder instanceof PacketBlock block) {
+            Location location = block.getLocation();
+
+            if (isChunkSent(player, location)) {
+                changes.add(location, block.getData(player));
+            }
+        } else if (holder instanceof PacketBlockGroup group) {
+            group.getData(player).forEach((position, blockData) -> {
+                Location location = group.getCachedLocations().get(position);
+
+                if (location != null && isChunkSent(player, location)) {
+                    changes.add(location, blockData);
+                }
+            });
+        }
+
+        changes.markResolved().send(player, holder.getUser(player));
+    }
+
+    private static boolean isChunkSent(@NonNull Player player, @NonNull Location location) {
+        return player.isChunkSent(BlockPositions.chunkKey(location.getBlockX() >> 4, location.getBlockZ() >> 4));
+    }
+
+    /**
+     * Keeps the persisted state of a viewer whose player is going offline, so it is saved with the
+     * holder's chunks and handed back by {@link #restoreOfflineViewers(Player)}. Viewers that would
+     * not be persisted are not kept. Must be called before the viewer is removed from the holder.
+     *
+     * @param holder the holder the player views; must not be null
+     * @param uuid   the unique id of the player; must not be null
+     */
+    public void releaseViewer(@NonNull PacketBlockHolder<?, ?> holder, @NonNull UUID uuid) {
+        if (holder instanceof PacketBlock block) {
+            SinglePacketBlockViewer viewer = block.getViewers().get(uuid);
+
+            if (viewer != null) {
+                keepOffline(block, storedViewer(block, uuid, viewer.getBreakSpeed(),
+                        storableMetadata(viewer.getAllMetadata()), blockOverrides(block, viewer)));
+            }
+        } else if (holder instanceof PacketBlockGroup group) {
+            GroupPacketBlockViewer viewer = group.getViewers().get(uuid);
+
+            if (viewer != null) {
+                keepOffline(group, storedViewer(group, uuid, viewer.getBreakSpeed(),
+                        storableMetadata(viewer.getAllMetadata()), groupOverrides(group, viewer, getGroupBlocks(group))));
+            }
+        }
+    }
+
+    /**
+     * Adds a joining player back as a viewer of every holder whose viewer state was kept while they
+     * were offline, and sends them those holders in chunks they already have. Must be called on the
+     * player's thread.
+     *
+     * @param player the player that joined; must not be null
+     */
+    public void restoreOfflineViewers(@NonNull Player player) {
+        UUID uuid = player.getUniqueId();
+        Map<PacketBlockHolder<?, ?>, StoredViewer> restored = new IdentityHashMap<>();
+
+        synchronized (offlineViewers) {
+            Set<PacketBlockHolder<?, ?>> holders = offlineHolders.remove(uuid);
+
+            if (holders == null) {
+                return;
+            }
+
+            for (PacketBlockHolder<?, ?> holder : holders) {
+                Map<UUID, StoredViewer> viewers = offlineViewers.get(holder);
+                StoredViewer storedViewer = viewers == null ? null : viewers.remove(uuid);
+
+                if (viewers != null && viewers.isEmpty()) {
+                    offlineViewers.remove(holder);
+                }
+
+                if (storedViewer != null) {
+                    restored.put(holder, storedViewer);
+                }
+            }
+        }
+
+        restored.forEach((holder, storedViewer) -> {
+            if (holder instanceof PacketBlock block) {
+                restoreBlockViewer(block, storedViewer);
+            } else if (holder instanceof PacketBlockGroup group) {
+                restoreGroupViewer(group, storedViewer);
+            }
+
+            sendSentBlocks(holder, player);
+        });
+    }
+
+    /**
+     * Moves the kept overrides of offline viewers along with a group that was moved or rotated.
+     *
+     * @param group          the transformed group; must not be null
+     * @param locationMapper maps each previous block location to its new location, or null if the block is gone; must not be null
+     * @param dataMapper     maps each block's data to its data after the transform; must not be null
+     */
+    public void relocateOfflineViewers(@NonNull PacketBlockGroup group, @NonNull UnaryOperator<Location> locationMapper,
+                                       @NonNull UnaryOperator<BlockData> dataMapper) {
+        synchronized (offlineViewers) {
+            Map<UUID, StoredViewer> viewers = offlineViewers.get(group);
+
+            if (viewers == null) {
+                return;
+            }
+
+            viewers.replaceAll((uuid, storedViewer) -> {
+                Map<Location, BlockData> overrides = new HashMap<>(storedViewer.overrides().size());
+
+                storedViewer.overrides().forEach((location, blockData) -> {
+                    Location target = locationMapper.apply(location);
+
+                    if (target != null) {
+                        overrides.put(target, dataMapper.apply(blockData));
+                    }
+                });
+
+                return new StoredViewer(uuid, storedViewer.breakSpeed(), storedViewer.metadata(), overrides);
+            });
+        }
+    }
+
+    private void keepOffline(@NonNull PacketBlockHolder<?, ?> holder, @Nullable StoredViewer storedViewer) {
+        if (storedViewer == null) {
+            return;
+        }
+
+        synchronized (offlineViewers) {
+            // A group's records are loaded chunk by chunk, so its overrides are merged.
+            offlineViewers.computeIfAbsent(holder, k -> new HashMap<>()).merge(storedViewer.uuid(), storedViewer, (kept, added) -> {
+                Map<Location, BlockData> overrides = new HashMap<>(kept.overrides());
+                overrides.putAll(added.overrides());
+
+                return new StoredViewer(added.uuid(), added.breakSpeed(), added.metadata(), overrides);
+            });
+
+            offlineHolders.computeIfAbsent(storedViewer.uuid(), k -> Collections.newSetFromMap(new IdentityHashMap<>())).add(holder);
+        }
+    }
+
+    private void forgetOfflineViewers(@NonNull PacketBlockHolder<?, ?> holder) {
+        synchronized (offlineViewers) {
+            Map<UUID, StoredViewer> viewers = offlineViewers.remove(holder);
+
+            if (viewers == null) {
+                return;
+            }
+
+            viewers.keySet().forEach(uuid -> offlineHolders.computeIfPresent(uuid, (k, holders) -> {
+                holders.remove(holder);
+                return holders.isEmpty() ? null : holders;
+            }));
+        }
+    }
+
+    /**
+     * Replays the journal written since the last snapshot, then writes a new snapshot and drops the
+     * replayed segments. Must be called once, after the store has been set on the manager and before
+     * anything else modifies the manager.
+     *
+     * @return the number of replayed entries
+     * @throws IOException if the journal could not be read
+     */
+    public int replayJournal() throws IOException {
+        journalSuppressed.set(true);
+
+        int entries;
+
+        try {
+            entries = journal.replay(buffer -> {
+                try {
+                    JournalEntry entry = JournalEntry.decode(buffer);
+
+                    if (entry != null) {
+                        apply(entry);
+                    }
+                } catch (RuntimeException e) {
+                    logger.log(Level.WARNING, "Unable to replay packet block journal entry", e);
+                }
+            });
+        } finally {
+            journalSuppressed.set(false);
+        }
+
+        if (entries > 0) {
+            save().join();
+        }
+
+        return entries;
+    }
+
+    private void apply(@NonNull JournalEntry entry) {
+        Map<Location, BlockData> blocks = entry.blocks();
+        blocks.keySet().forEach(this::ensureLoaded);
+
+        switch (entry.type()) {
+            case JournalEntry.CREATE_BLOCK -> blocks.forEach(manager::createBlock);
+            case JournalEntry.SET_BLOCK_DATA -> blocks.forEach((location, blockData) -> {
+                if (manager.getBlock(location).orElse(null) instanceof PacketBlock block) {
+                    block.setDataForAll(blockData);
+                }
+            });
+            case JournalEntry.REMOVE_BLOCK -> blocks.keySet().forEach(location -> {
+                if (manager.getBlock(location).orElse(null) instanceof PacketBlock block) {
+                    manager.removeBlock(block);
+                }
+            });
+            case JournalEntry.CREATE_GROUP, JournalEntry.ADD_GROUP_BLOCKS, JournalEntry.REPLACE_GROUP -> {
+                PacketBlockGroup group = groupsById.get(entry.groupId());
+
+                if (group == null) {
+                    registerGroup(manager.createGroup(blocks), entry.groupId());
+                    return;
+                }
+
+                if (entry.type() == JournalEntry.REPLACE_GROUP) {
+                    List<Location> removed = new ArrayList<>();
+
+                    group.getCachedLocations().values().forEach(location -> {
+                        if (!blocks.containsKey(location)) {
+                            removed.add(location);
+                        }
+                    });
+
+                    manager.removeBlocksFromGroup(group, removed);
+                }
+
+                manager.addBlocksToGroup(group, blocks, false);
+            }
+            case JournalEntry.REMOVE_GROUP_BLOCKS -> {
+                PacketBlockGroup group = groupsById.get(entry.groupId());
+
+                if (group != null) {
+                    manager.removeBlocksFromGroup(group, new ArrayList<>(blocks.keySet()));
+                }
+            }
+            case JournalEntry.SET_GROUP_GENERATION -> groupGenerations.merge(entry.groupId(), entry.generation(), Math::max);
+            case JournalEntry.REMOVE_GROUP -> {
+                PacketBlockGroup group = groupsById.get(entry.groupId());
+
+                if (group != null) {
+                    manager.removeBlock(group);
+                    return;
+                }
+
+                removedGroups.add(entry.groupId());
+            }
+            default -> logger.warning("Unknown packet block journal entry type " + entry.type());
+        }
+    }
+
+    /**
+     * Journals the creation of a single block and starts tracking changes to its data.
+     *
+     * @param block the created block; must not be null
+     */
+    public void recordBlockCreated(@NonNull PacketBlock block) {
+        block.getDataHandler().setDataListener((previous, data) ->
+                append(JournalEntry.of(JournalEntry.SET_BLOCK_DATA, 0, block.getLocation(), data)));
+
+        append(JournalEntry.of(JournalEntry.CREATE_BLOCK, 0, block.getLocation(), block.getData()));
+    }
+
+    /**
+     * Journals the removal of a single block.
+     *
+     * @param block the removed block; must not be null
+     */
+    public void recordBlockRemoved(@NonNull PacketBlock block) {
+        forgetOfflineViewers(block);
+        append(JournalEntry.of(JournalEntry.REMOVE_BLOCK, 0, block.getLocation(), null));
+    }
+
+    /**
+     * Journals the creation of a group and starts tracking changes to its data.
+     *
+     * @param group the created group; must not be null
+     */
+    public void recordGroupCreated(@NonNull PacketBlockGroup group) {
+        group.getDataHandler().setDataListener((previous, data) ->
+                recordGroupChanged(group, group.getCachedLocations(), previous));
+
+        if (journalSuppressed.get()) {
+            return;
+        }
+
+        append(new JournalEntry(JournalEntry.CREATE_GROUP, getGroupId(group), getGroupBlocks(group)));
+    }
+
+    /**
+     * Journals blocks being added to a group, or existing blocks of the group changing their data.
+     *
+     * @param group  the group the blocks were added to; must not be null
+     * @param blocks the added blocks; must not be null
+     */
+    public void recordGroupBlocksAdded(@NonNull PacketBlockGroup group, @NonNull Map<Location, BlockData> blocks) {
+        if (journalSuppressed.get()) {
+            return;
+        }
+
+        append(new JournalEntry(JournalEntry.ADD_GROUP_BLOCKS, getGroupId(group), new LinkedHashMap<>(blocks)));
+    }
+
+    /**
+     * Journals blocks being removed from a group.
+     *
+     * @param group     the group the blocks were removed from; must not be null
+     * @param locations the removed locations; must not be null
+     */
+    public void recordGroupBlocksRemoved(@NonNull PacketBlockGroup group, @NonNull Collection<Location> locations) {
+        if (journalSuppressed.get()) {
+            return;
+        }
+
+        Map<Location, BlockData> blocks = new LinkedHashMap<>(locations.size());
+        locations.forEach(location -> blocks.put(location, null));
+
+        append(new JournalEntry(JournalEntry.REMOVE_GROUP_BLOCKS, getGroupId(group), blocks));
+    }
+
+    /**
+     * Journals a group that was moved or had its data replaced, and bumps its generation so the
+     * records of the group in chunks that are not loaded are no longer restored.
+     * <p>
+     * Only vacated positions and positions whose data changed are journaled. If the group's data was
+     * changed in place, so the previous data is no longer known, its full contents are journaled.
+     *
+     * @param group             the changed group; must not be null
+     * @param previousLocations the group's block locations before the change; must not be null
+     * @param previousData      the group's data before the change; must not be null
+     */
+    public void recordGroupChanged(@NonNull PacketBlockGroup group, @NonNull Map<WorldPosition, Location> previousLocations,
+                                   @NonNull Map<WorldPosition, BlockData> previousData) {
+        if (journalSuppressed.get()) {
+            return;
+        }
+
+        long id = getGroupId(group);
+        int generation;
+
+        synchronized (group) {
+            generation = groupGenerations.merge(id, 1, Integer::sum);
+        }
+
+        // Replaying the generation first loads every chunk the group was in, like it was when it changed.
+        Map<Location, BlockData> chunks = new LinkedHashMap<>();
+        Set<ChunkKey> seen = new HashSet<>();
+
+        previousLocations.values().forEach(location -> {
+            if (seen.add(ChunkKey.of(location))) {
+                chunks.put(location, null);
+            }
+        });
+
+        append(new JournalEntry(JournalEntry.SET_GROUP_GENERATION, id, chunks, generation));
+
+        Map<WorldPosition, BlockData> data = group.getData();
+
+        if (previousData == data) {
+            append(new JournalEntry(JournalEntry.REPLACE_GROUP, id, getGroupBlocks(group)));
+            return;
+        }
+
+        Map<Location, BlockData> removed = new LinkedHashMap<>();
+        Map<Location, BlockData> changed = new LinkedHashMap<>();
+
+        previousData.keySet().forEach(position -> {
+            Location location = previousLocations.get(position);
+
+            if (location != null && !data.containsKey(position)) {
+                removed.put(location, null);
+            }
+        });
+
+        data.forEach((position, blockData) -> {
+            Location location = group.getCachedLocations().get(position);
+
+            if (location != null && !blockData.equals(previousData.get(position))) {
+                changed.put(location, blockData);
+            }
+        });
+
+        if (!removed.isEmpty()) {
+            append(new JournalEntry(JournalEntry.REMOVE_GROUP_BLOCKS, id, removed));
+        }
+
+        if (!changed.isEmpty()) {
+            append(new JournalEntry(JournalEntry.ADD_GROUP_BLOCKS, id, changed));
+        }
+    }
+
+    /**
+     * Journals the removal of a group and records its id, so the parts of it stored in chunks that
+     * have not been loaded are not brought back when those chunks load. The id is forgotten on a save
+     * once no region file references it any more.
+     *
+     * @param group the removed group; must not be null
+     */
+    public void recordGroupRemoved(@NonNull PacketBlockGroup group) {
+        forgetOfflineViewers(group);
+
+        Long id = groupIds.remove(group);
+
+        if (id == null) {
+            return;
+        }
+
+        groupsById.remove(id, group);
+        groupGenerations.remove(id);
+        removedGroups.add(id);
+
+        Map<Location, BlockData> blocks = new LinkedHashMap<>();
+        group.getCachedLocations().values().forEach(location -> blocks.put(location, null));
+
+        append(new JournalEntry(JournalEntry.REMOVE_GROUP, id, blocks));
+    }
+
+    private void append(@NonNull JournalEntry entry) {
+        if (journalSuppressed.get()) {
+            return;
+        }
+
+        try {
+            journal.append(entry.encode());
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Unable to journal packet block change", e);
+        }
+    }
+
+    private static Map<Location, BlockData> getGroupBlocks(@NonNull PacketBlockGroup group) {
+        Map<Location, BlockData> blocks = new LinkedHashMap<>(group.getData().size());
+
+        group.getData().forEach((position, blockData) -> {
+            Location location = group.getCachedLocations().get(position);
+
+            if (location != null) {
+                blocks.put(location, blockData);
+            }
+        });
+
+        return blocks;
+    }
+
+    private long getGroupId(@NonNull PacketBlockGroup group) {
+        return groupIds.computeIfAbsent(group, k -> {
+            long id;
+
+            do {
+                id = ThreadLocalRandom.current().nextLong();
+            } while (id == 0 || groupsById.putIfAbsent(id, group) != null);
+
+            return id;
+        });
+    }
+
+    private void registerGroup(@NonNull PacketBlockGroup group, long id) {
+        groupsById.put(id, group);
+        groupIds.put(group, id);
+    }
+
+    /**
+     * Snapshots every loaded chunk, writes the chunks whose contents changed to disk and compacts
+     * the journal by dropping every segment the snapshot covers.
+     * <p>
+     * The snapshot is taken on the calling thread, which should be the thread that mutates the
+     * manager, while encoding and file I/O happen on a dedicated writer thread. Chunks that failed
+     * to load are never written, so a corrupt payload is kept for inspection rather than overwritten.
+     *
+     * @return a future completing once everything has been written
+     */
+    public CompletableFuture<Void> save() {
+        long segment = journal.rotate();
+
+        Map<ChunkKey, List<StoredHolder>> snapshot = snapshot();
+        snapshot.keySet().removeIf(key -> getRegion(key.worldName(), key.x() >> 5, key.z() >> 5).isFailed(RegionFile.index(key.x(), key.z())));
+
+        Set<ChunkKey> cleared = loadedStoredChunks();
+        cleared.removeAll(snapshot.keySet());
+
+        Set<Long> removed = new HashSet<>(removedGroups);
+        Map<Long, Integer> generations = new HashMap<>(groupGenerations);
+
+        return CompletableFuture.runAsync(() -> {
+            Map<RegionKey, Map<Integer, byte[]>> regionPayloads = new HashMap<>();
+
+            snapshot.forEach((key, holders) -> {
+                try {
+                    regionPayloads.computeIfAbsent(key.region(), k -> new HashMap<>())
+                            .put(RegionFile.index(key.x(), key.z()), ChunkCodec.encode(holders));
+                } catch (IOException e) {
+                    logger.log(Level.SEVERE, "Unable to encode packet blocks for chunk " + key, e);
+                }
+            });
+
+            cleared.forEach(key -> regionPayloads.computeIfAbsent(key.region(), k -> new HashMap<>())
+                    .put(RegionFile.index(key.x(), key.z()), new byte[0]));
+
+            regionPayloads.forEach((regionKey, payloads) -> {
+                RegionChunks region = getOpenRegion(regionKey);
+
+                if (region != null && region.file == null) {
+                    return;
+                }
+
+                regionGroups.remove(regionKey);
+
+                try {
+                    if (region == null) {
+                        // The world was unloaded after the snapshot, so nothing loads from this file any more.
+                        new RegionFile(regionPath(regionKey)).write(payloads);
+                        return;
+                    }
+
+                    // Chunks written here are loaded already, mark them before the file says they are stored.
+                    payloads.forEach((index, payload) -> {
+                        if (payload.length > 0) {
+                            RegionChunks.set(region.loaded, index);
+                        }
+                    });
+
+                    region.file.write(payloads);
+                } catch (IOException e) {
+                    logger.log(Level.SEVERE, "Unable to write packet block region " + regionKey, e);
+                }
+            });
+
+            removed.removeAll(pruneRemovedGroups(removed));
+            writeRemovedGroups(removed);
+            writeGroupGenerations(generations);
+            journal.deleteBefore(segment);
+        }, writer);
+    }
+
+    /**
+     * Forgets a world that is being unloaded, once the manager has dropped its partition: its region
+     * files and chunk load state, and the group ids and kept offline viewers of the given holders. The
+     * world's chunks are read from disk again if it is loaded again.
+     * <p>
+     * Nothing of the world is saved after this, so {@link #save()} should be called first. Writes
+     * that save already queued still complete.
+     *
+     * @param worldName the name of the world being unloaded; must not be null
+     * @param holders   the holders that were only in that world; must not be null
+     */
+    public void unloadWorld(@NonNull String worldName, @NonNull Collection<PacketBlockHolder<?, ?>> holders) {
+        for (PacketBlockHolder<?, ?> holder : holders) {
+            if (holder instanceof PacketBlockGroup group) {
+                Long id = groupIds.remove(group);
+
+                if (id != null) {
+                    groupsById.remove(id, group);
+                }
+            }
+
+            forgetOfflineViewers(holder);
+        }
+
+        worlds.remove(worldName);
+    }
+
+    /**
+     * Waits for pending writes and stops the writer threads.
+     */
+    public void close() {
+        journal.close();
+        writer.shutdown();
+
+        try {
+            if (!writer.awaitTermination(30, TimeUnit.SECONDS)) {
+                logger.warning("Timed out waiting for packet block writes to finish");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Map<ChunkKey, List<StoredHolder>> snapshot() {
+        Map<ChunkKey, List<PacketBlock>> blocks = new HashMap<>();
+        Map<ChunkKey, Map<PacketBlockGroup, Map<Location, BlockData>>> groups = new HashMap<>();
+
+        for (WorldPartition partition : manager.getPartitions().values()) {
+            partition.getBlockLocations().values().forEach(chunkBlocks -> new ArrayList<>(chunkBlocks.entrySet()).forEach(entry -> {
+                WorldPosition position = entry.getKey();
+                PacketBlockHolder<?, ?> holder = entry.getValue();
+
+                if (holder instanceof PacketBlock singleBlock) {
+                    blocks.computeIfAbsent(ChunkKey.of(singleBlock.getLocation()), k -> new ArrayList<>()).add(singleBlock);
+                    return;
+                }
+
+                if (!(holder instanceof PacketBlockGroup group)) {
+                    return;
+                }
+
+                Location location = group.getCachedLocations().get(position);
+                BlockData blockData = group.getData().get(position);
+
+                if (location == null || blockData == null) {
+                    return;
+                }
+
+                groups.computeIfAbsent(ChunkKey.of(location), k -> new IdentityHashMap<>())
+                        .computeIfAbsent(group, k -> new LinkedHashMap<>())
+                        .put(location, blockData);
+            }));
+        }
+
+        Map<ChunkKey, List<StoredHolder>> snapshot = new HashMap<>();
+
+        blocks.forEach((key, chunkBlocks) -> {
+            List<StoredHolder> holders = snapshot.computeIfAbsent(key, k -> new ArrayList<>());
+
+            for (PacketBlock block : chunkBlocks) {
+                holders.add(snapshotBlock(block));
+            }
+        });
+
+        groups.forEach((key, chunkGroups) -> {
+            List<StoredHolder> holders = snapshot.computeIfAbsent(key, k -> new ArrayList<>());
+            chunkGroups.forEach((group, groupBlocks) -> holders.add(snapshotGroup(group, groupBlocks)));
+        });
+
+        return snapshot;
+    }
+
+    private StoredHolder snapshotBlock(@NonNull PacketBlock block) {
+        Location location = block.getLocation();
+        BlockData defaultData = block.getData();
+        List<StoredViewer> viewers = new ArrayList<>();
+
+        block.getViewers().forEach((uuid, viewer) -> addViewer(viewers, storedViewer(block, uuid, viewer.getBreakSpeed(),
+                storableMetadata(viewer.getAllMetadata()), blockOverrides(block, viewer))));
+
+        addOfflineViewers(block, Map.of(location, defaultData), viewers);
+
+        return new StoredHolder(ChunkCodec.TYPE_BLOCK, 0, 0, block.getBreakSpeed(), block.isAddViewerOnJoin(),
+                block.isGlobalBreakAnimation(), block.getBreakAnimationRadius(), storableMetadata(block.getAllMetadata()),
+                Map.of(location, defaultData), viewers);
+    }
+
+    private StoredHolder snapshotGroup(@NonNull PacketBlockGroup group, @NonNull Map<Location, BlockData> blocks) {
+        long id = getGroupId(group);
+
+        List<StoredViewer> viewers = new ArrayList<>();
+
+        group.getViewers().forEach((uuid, viewer) -> addViewer(viewers, storedViewer(group, uuid, viewer.getBreakSpeed(),
+                storableMetadata(viewer.getAllMetadata()), groupOverrides(group, viewer, blocks))));
+
+        addOfflineViewers(group, blocks, viewers);
+
+        return new StoredHolder(ChunkCodec.TYPE_GROUP, id, groupGenerations.getOrDefault(id, 0), group.getBreakSpeed(), group.isAddViewerOnJoin(),
+                group.isGlobalBreakAnimation(), group.getBreakAnimationRadius(), storableMetadata(group.getAllMetadata()),
+                blocks, viewers);
+    }
+
+    /**
+     * Adds the kept state of the holder's offline viewers, restricted to the given blocks.
+     */
+    private void addOfflineViewers(@NonNull PacketBlockHolder<?, ?> holder, @NonNull Map<Location, BlockData> blocks,
+                                   @NonNull List<StoredViewer> viewers) {
+        synchronized (offlineViewers) {
+            Map<UUID, StoredViewer> kept = offlineViewers.get(holder);
+
+            if (kept == null) {
+                return;
+            }
+
+            kept.forEach((uuid, storedViewer) -> {
+                if (holder.getViewers().containsKey(uuid)) {
+                    return;
+                }
+
+                Map<Location, BlockData> overrides = new HashMap<>();
+
+                storedViewer.overrides().forEach((location, blockData) -> {
+                    BlockData defaultData = blocks.get(location);
+
+                    if (defaultData != null && !defaultData.equals(blockData)) {
+                        overrides.put(location, blockData);
+                    }
+                });
+
+                addViewer(viewers, storedViewer(holder, uuid, storedViewer.breakSpeed(), storedViewer.metadata(), overrides));
+            });
+        }
+    }
+
+    private static Map<Location, BlockData> blockOverrides(@NonNull PacketBlock block, @NonNull SinglePacketBlockViewer viewer) {
+        BlockData data = viewer.getSuppliedData();
+        return data == null || data.equals(block.getData()) ? Collections.emptyMap() : Map.of(block.getLocation(), data);
+    }
+
+    private static Map<Location, BlockData> groupOverrides(@NonNull PacketBlockGroup group, @NonNull GroupPacketBlockViewer viewer,
+                                                           @NonNull Map<Location, BlockData> blocks) {
+        Map<WorldPosition, BlockData> data = viewer.getSuppliedData();
+        Map<Location, BlockData> overrides = new HashMap<>();
+
+        if (data != null && data != group.getData()) {
+            blocks.forEach((location, blockData) -> {
+                BlockData viewerData = data.get(WorldPosition.ofBlock(location));
+
+                if (viewerData != null && !viewerData.equals(blockData)) {
+                    overrides.put(location, viewerData);
+                }
+            });
+        }
+
+        return overrides;
+    }
+
+    /**
+     * Creates the stored state of a viewer, or returns null if the viewer is not worth persisting.
+     */
+    private static @Nullable StoredViewer storedViewer(@NonNull PacketBlockHolder<?, ?> holder, @NonNull UUID uuid, int breakSpeed,
+                                                       @NonNull Map<String, Object> metadata, @NonNull Map<Location, BlockData> overrides) {
+        if (holder.isAddViewerOnJoin() && overrides.isEmpty() && metadata.isEmpty() && breakSpeed == holder.getBreakSpeed()) {
+            return null;
+        }
+
+        return new StoredViewer(uuid, breakSpeed, metadata, overrides);
+    }
+
+    private static void addViewer(@NonNull List<StoredViewer> viewers, @Nullable StoredViewer storedViewer) {
+        if (storedViewer != null) {
+            viewers.add(storedViewer);
+        }
+    }
+
+    private static Map<String, Object> storableMetadata(@NonNull Map<String, Object> metadata) {
+        if (metadata.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, Object> storable = new HashMap<>(metadata.size());
+
+        metadata.forEach((key, value) -> {
+            if (ChunkCodec.isStorable(value)) {
+                storable.put(key, value);
+            }
+        });
+
+        return storable;
+    }
+
+    /**
+     * Collects the chunks that were loaded from a stored payload and did not fail to load. These are
+     * the chunks whose payload a save clears when nothing is left in them.
+     */
+    private Set<ChunkKey> loadedStoredChunks() {
+        Set<ChunkKey> chunks = new HashSet<>();
+
+        worlds.forEach((worldName, regions) -> regions.values().forEach(region -> {
+            for (int i = 0; i < RegionFile.CHUNKS; i++) {
+                if (region.isLoadedFromFile(i)) {
+                    chunks.add(new ChunkKey(worldName, region.key.x() * 32 + (i & 31), region.key.z() * 32 + (i >> 5)));
+                }
+            }
+        }));
+
+        return chunks;
+    }
+
+    private RegionChunks getRegion(@NonNull String worldName, int regionX, int regionZ) {
+        Map<Long, RegionChunks> regions = worlds.get(worldName);
+
+        if (regions == null) {
+            regions = worlds.computeIfAbsent(worldName, k -> new ConcurrentHashMap<>());
+        }
+
+        long key = BlockPositions.chunkKey(regionX, regionZ);
+        RegionChunks region = regions.get(key);
+
+        if (region != null) {
+            return region;
+        }
+
+        return regions.computeIfAbsent(key, k -> openRegion(new RegionKey(worldName, regionX, regionZ)));
+    }
+
+    private RegionChunks openRegion(@NonNull RegionKey key) {
+        try {
+            return new RegionChunks(key, new RegionFile(regionPath(key)));
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Unable to open packet block region " + key + ", its chunks will not be loaded or saved", e);
+            return new RegionChunks(key, null);
+        }
+    }
+
+    /**
+     * Retrieves the file of a region for scanning, without opening it for loading if its world does
+     * not have it open already.
+     */
+    private RegionFile getRegionFile(@NonNull RegionKey key) throws IOException {
+        RegionChunks region = getOpenRegion(key);
+
+        if (region != null && region.file != null) {
+            return region.file;
+        }
+
+        return new RegionFile(regionPath(key));
+    }
+
+    private @Nullable RegionChunks getOpenRegion(@NonNull RegionKey key) {
+        Map<Long, RegionChunks> regions = worlds.get(key.worldName());
+        return regions == null ? null : regions.get(BlockPositions.chunkKey(key.x(), key.z()));
+    }
+
+    private Path regionPath(@NonNull RegionKey key) {
+        return directory.resolve(key.worldName()).resolve("r." + key.x() + "." + key.z() + ".pbr");
+    }
+
+    /**
+     * Forgets the removed groups that no region file references any more. A chunk stops referencing a
+     * removed group once it has been loaded and saved again, since removed groups are not restored.
+     * Must be called on the writer thread, after the regions of a save have been written.
+     *
+     * @param removed the ids of the removed groups; must not be null
+     * @return the ids that were forgotten, empty if the regions could not be scanned
+     */
+    private Set<Long> pruneRemovedGroups(@NonNull Set<Long> removed) {
+        if (removed.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        Set<Long> unreferenced = new HashSet<>(removed);
+
+        try {
+            for (RegionKey key : listRegions()) {
+                Set<Long> referenced = regionGroups.get(key);
+
+                if (referenced == null) {
+                    referenced = new HashSet<>();
+
+                    for (ByteBuffer payload : getRegionFile(key).readAll()) {
+                        ChunkCodec.readGroupIds(payload, referenced);
+                    }
+
+                    regionGroups.put(key, referenced);
+                }
+
+                unreferenced.removeAll(referenced);
+
+                if (unreferenced.isEmpty()) {
+                    return Collections.emptySet();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.WARNING, "Unable to scan packet block regions for removed groups", e);
+            return Collections.emptySet();
+        }
+
+        removedGroups.removeAll(unreferenced);
+        return unreferenced;
+    }
+
+    private List<RegionKey> listRegions() throws IOException {
+        List<RegionKey> keys = new ArrayList<>();
+
+        if (!Files.isDirectory(directory)) {
+            return keys;
+        }
+
+        try (Stream<Path> worlds = Files.list(directory)) {
+            for (Path worldDirectory : (Iterable<Path>) worlds::iterator) {
+                if (!Files.isDirectory(worldDirectory)) {
+                    continue;
+                }
+
+                try (Stream<Path> files = Files.list(worldDirectory)) {
+                    files.forEach(path -> {
+                        String[] parts = path.getFileName().toString().split("\\.");
+
+                        if (parts.length != 4 || !parts[0].equals("r") || !parts[3].equals("pbr")) {
+                            return;
+                        }
+
+                        try {
+                            keys.add(new RegionKey(worldDirectory.getFileName().toString(), Integer.parseInt(parts[1]), Integer.parseInt(parts[2])));
+                        } catch (NumberFormatException ignored) {
+                        }
+                    });
+                }
+            }
+        }
+
+        return keys;
+    }
+
+    private void readRemovedGroups() {
+        Path path = directory.resolve(REMOVED_GROUPS_FILE);
+
+        if (!Files.exists(path)) {
+            return;
+        }
+
+        try (InputStream fileInput = Files.newInputStream(path);
+             DataInputStream input = new DataInputStream(fileInput)) {
+            int count = input.readInt();
+
+            for (int i = 0; i < count; i++) {
+                removedGroups.add(input.readLong());
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Unable to read removed packet block groups", e);
+        }
+    }
+
+    private void writeRemovedGroups(@NonNull Set<Long> removed) {
+        Path path = directory.resolve(REMOVED_GROUPS_FILE);
+
+        try {
+            if (removed.isEmpty()) {
+                Files.deleteIfExists(path);
+                return;
+            }
+
+            Files.createDirectories(directory);
+
+            try (OutputStream fileOutput = Files.newOutputStream(path);
+                 DataOutputStream output = new DataOutputStream(fileOutput)) {
+                output.writeInt(removed.size());
+
+                for (long id : removed) {
+                    output.writeLong(id);
+                }
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Unable to write removed packet block groups", e);
+        }
+    }
+
+    private void readGroupGenerations() {
+        Path path = directory.resolve(GROUP_GENERATIONS_FILE);
+
+        if (!Files.exists(path)) {
+            return;
+        }
+
+        try (InputStream fileInput = Files.newInputStream(path);
+             DataInputStream input = new DataInputStream(fileInput)) {
+            int count = input.readInt();
+
+            for (int i = 0; i < count; i++) {
+                groupGenerations.put(input.readLong(), input.readInt());
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Unable to read packet block group generations", e);
+        }
+    }
+
+    private void writeGroupGenerations(@NonNull Map<Long, Integer> generations) {
+        Path path = directory.resolve(GROUP_GENERATIONS_FILE);
+
+        try {
+            if (generations.isEmpty()) {
+                Files.deleteIfExists(path);
+                return;
+            }
+
+            Files.createDirectories(directory);
+
+            try (OutputStream fileOutput = Files.newOutputStream(path);
+                 DataOutputStream output = new DataOutputStream(fileOutput)) {
+                output.writeInt(generations.size());
+
+                for (Map.Entry<Long, Integer> entry : generations.entrySet()) {
+                    output.writeLong(entry.getKey());
+                    output.writeInt(entry.getValue());
+                }
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Unable to write packet block group generations", e);
+        }
+    }
+
+    record ChunkKey(String worldName, int x, int z) {
+
+        static ChunkKey of(@NonNull Location location) {
+            return new ChunkKey(location.getWorld().getName(), location.getBlockX() >> 4, location.getBlockZ() >> 4);
+        }
+
+        RegionKey region() {
+            return new RegionKey(worldName, x >> 5, z >> 5);
+        }
+
+    }
+
+    record RegionKey(String worldName, int x, int z) {
+
+    }
+
+    /**
+     * An opened region file with the load state of its chunks, one bit per chunk index. Only chunks
+     * the file has a payload for are ever loaded.
+     */
+    private static final class RegionChunks {
+
+        private static final int WORDS = RegionFile.CHUNKS / Long.SIZE;
+
+        private final RegionKey key;
+
+        /**
+         * The region's file, or null if it could not be opened. Nothing is loaded from or saved to
+         * such a region, so the file is kept for inspection.
+         */
+        private final @Nullable RegionFile file;
+
+        private final AtomicLongArray loaded = new AtomicLongArray(WORDS);
+        private final AtomicLongArray loading = new AtomicLongArray(WORDS);
+        private final AtomicLongArray failed = new AtomicLongArray(WORDS);
+
+        private RegionChunks(@NonNull RegionKey key, @Nullable RegionFile file) {
+            this.key = key;
+            this.file = file;
+        }
+
+        boolean needsLoading(int index) {
+            return file != null && file.isStored(index) && !isSet(loaded, index);
+        }
+
+        boolean isFailed(int index) {
+            return file == null || isSet(failed, index);
+        }
+
+        boolean isLoadedFromFile(int index) {
+            return file != null && file.isStored(index) && isSet(loaded, index) && !isSet(failed, index);
+        }
+
+        static boolean isSet(@NonNull AtomicLongArray bits, int index) {
+            return (bits.get(index >> 6) & 1L << index) != 0;
+        }
+
+        /**
+         * Sets a bit, returning whether it was set already.
+         */
+        static boolean set(@NonNull AtomicLongArray bits, int index) {
+            long bit = 1L << index;
+            return (bits.getAndAccumulate(index >> 6, bit, (word, mask) -> word | mask) & bit) != 0;
+        }
+
+        static void clear(@NonNull AtomicLongArray bits, int index) {
+            bits.getAndAccumulate(index >> 6, ~(1L << index), (word, mask) -> word & mask);
+        }
+
+    }
+
+}
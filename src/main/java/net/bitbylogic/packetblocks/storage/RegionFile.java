@@ -0,0 +1,269 @@
+package net.bitbylogic.packetblocks.storage;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A single region file holding the stored packet blocks of a 32x32 area of chunks.
+ * <p>
+ * The file starts with a magic number followed by an offset table of {@value #CHUNKS} entries, one
+ * {@code (offset, length)} pair of ints per chunk. Chunk payloads follow the table back to back. A
+ * length of zero means the chunk has nothing stored.
+ * <p>
+ * The offset table is kept in memory, so checking whether a chunk has anything stored never touches
+ * the file. Payloads are copied into heap buffers owned by the caller, and no channel or mapping is
+ * held open between calls. Writes rewrite the file into a temporary file which atomically replaces the
+ * original, which works on every platform since nothing keeps the original open or mapped.
+ */
+class RegionFile {
+
+    static final int MAGIC = 0x50425231;
+    static final int CHUNKS = 32 * 32;
+    static final int HEADER_SIZE = 4 + CHUNKS * 8;
+
+    private static final int[] EMPTY_TABLE = new int[CHUNKS * 2];
+
+    @Getter
+    private final Path path;
+
+    /**
+     * The offset and length of every chunk's payload, interleaved. Replaced as a whole after every
+     * write, so it can be read without holding the lock.
+     */
+    private volatile int[] table;
+
+    RegionFile(@NonNull Path path) throws IOException {
+        this.path = path;
+        this.table = readTable();
+    }
+
+    private int[] readTable() throws IOException {
+        if (!Files.exists(path)) {
+            return EMPTY_TABLE;
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+
+            if (size < HEADER_SIZE) {
+                throw new IOException("Invalid packet block region file: " + path);
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(channel, header, 0);
+            header.flip();
+
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Invalid packet block region file: " + path);
+            }
+
+            int[] table = new int[CHUNKS * 2];
+
+            for (int i = 0; i < table.length; i += 2) {
+                int offset = header.getInt();
+                int length = header.getInt();
+
+                if (length < 0 || length > 0 && (offset < HEADER_SIZE || offset + (long) length > size)) {
+                    throw new IOException("Invalid packet block region file: " + path);
+                }
+
+                table[i] = offset;
+                table[i + 1] = length;
+            }
+
+            return table;
+        }
+    }
+
+    static int index(int chunkX, int chunkZ) {
+        return (chunkX & 31) + (chunkZ & 31) * 32;
+    }
+
+    /**
+     * Checks whether a payload is stored for a chunk, without touching the file.
+     *
+     * @param index the chunk's {@link #index(int, int)}
+     * @return true if the chunk has a stored payload
+     */
+    boolean isStored(int index) {
+        return table[index * 2 + 1] > 0;
+    }
+
+    /**
+     * Retrieves the stored payload of a chunk.
+     *
+     * @param chunkX the chunk X coordinate
+     * @param chunkZ the chunk Z coordinate
+     * @return a copy of the chunk's payload, or null if nothing is stored for it
+     * @throws IOException if the file could not be read
+     */
+    synchronized @Nullable ByteBuffer read(int chunkX, int chunkZ) throws IOException {
+        int index = index(chunkX, chunkZ);
+
+        if (!isStored(index)) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return read(channel, table, index);
+        }
+    }
+
+    /**
+     * Retrieves the stored payload of every chunk that has one.
+     *
+     * @return copies of the stored payloads, in index order
+     * @throws IOException if the file could not be read
+     */
+    synchronized List<ByteBuffer> readAll() throws IOException {
+        List<ByteBuffer> payloads = new ArrayList<>();
+        int[] table = this.table;
+
+        if (table == EMPTY_TABLE) {
+            return payloads;
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            for (int i = 0; i < CHUNKS; i++) {
+                if (table[i * 2 + 1] > 0) {
+                    payloads.add(read(channel, table, i));
+                }
+            }
+        }
+
+        return payloads;
+    }
+
+    /**
+     * Replaces the payloads of the given chunks, keeping every other chunk as is. An empty payload
+     * clears the chunk. The file is only rewritten if at least one payload actually changed.
+     *
+     * @param payloads the new payloads keyed by {@link #index(int, int)}; must not be null
+     * @return true if the file was rewritten
+     * @throws IOException if the file could not be written
+     */
+    synchronized boolean write(@NonNull Map<Integer, byte[]> payloads) throws IOException {
+        int[] current = table;
+        int[] written = new int[CHUNKS * 2];
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+
+        try (FileChannel source = current == EMPTY_TABLE ? null : FileChannel.open(path, StandardOpenOption.READ)) {
+            boolean changed = false;
+
+            for (Map.Entry<Integer, byte[]> entry : payloads.entrySet()) {
+                if (!matches(source, current, entry.getKey(), entry.getValue())) {
+                    changed = true;
+                    break;
+                }
+            }
+
+            if (!changed) {
+                return false;
+            }
+
+            int offset = HEADER_SIZE;
+
+            for (int i = 0; i < CHUNKS; i++) {
+                byte[] payload = payloads.get(i);
+                int length = payload == null ? current[i * 2 + 1] : payload.length;
+
+                written[i * 2] = length == 0 ? 0 : offset;
+                written[i * 2 + 1] = length;
+                offset += length;
+            }
+
+            if (offset == HEADER_SIZE) {
+                written = EMPTY_TABLE;
+            } else {
+                Files.createDirectories(path.getParent());
+
+                try (FileChannel target = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC);
+
+                    for (int value : written) {
+                        header.putInt(value);
+                    }
+
+                    writeFully(target, header.flip());
+
+                    for (int i = 0; i < CHUNKS; i++) {
+                        byte[] payload = payloads.get(i);
+
+                        if (payload != null) {
+                            writeFully(target, ByteBuffer.wrap(payload));
+                        } else if (current[i * 2 + 1] > 0) {
+                            transferFully(source, current[i * 2], current[i * 2 + 1], target);
+                        }
+                    }
+                }
+            }
+        }
+
+        if (written == EMPTY_TABLE) {
+            Files.deleteIfExists(path);
+        } else {
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        table = written;
+        return true;
+    }
+
+    private static boolean matches(@Nullable FileChannel source, int[] table, int index, byte[] payload) throws IOException {
+        int length = table[index * 2 + 1];
+
+        if (length != payload.length) {
+            return false;
+        }
+
+        return length == 0 || source != null && read(source, table, index).equals(ByteBuffer.wrap(payload));
+    }
+
+    private static ByteBuffer read(@NonNull FileChannel channel, int[] table, int index) throws IOException {
+        ByteBuffer payload = ByteBuffer.allocate(table[index * 2 + 1]);
+        readFully(channel, payload, table[index * 2]);
+        return payload.flip();
+    }
+
+    private static void readFully(@NonNull FileChannel channel, @NonNull ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of packet block region file");
+            }
+        }
+    }
+
+    private static void writeFully(@NonNull FileChannel channel, @NonNull ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void transferFully(@NonNull FileChannel source, long position, long length, @NonNull FileChannel target) throws IOException {
+        while (length > 0) {
+            long transferred = source.transferTo(position, length, target);
+
+            if (transferred <= 0) {
+                throw new EOFException("Unexpected end of packet block region file");
+            }
+
+            position += transferred;
+            length -= transferred;
+        }
+    }
+
+}
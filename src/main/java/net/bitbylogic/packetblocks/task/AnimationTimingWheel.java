@@ -0,0 +1,128 @@
+package net.bitbylogic.packetblocks.task;
+
+import lombok.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * A hashed timing wheel of {@link BlockAnimationContext}s keyed by the tick of their next stage change.
+ * <p>
+ * The wheel itself is owned by the single thread that calls {@link #tick(Consumer, Consumer)}. Other threads
+ * hand new contexts over through {@link #submit(BlockAnimationContext)} and cancelled ones through
+ * {@link #remove(BlockAnimationContext)}, which only touch lock-free queues, so producers never block the
+ * ticking thread and never observe partially updated buckets.
+ */
+public class AnimationTimingWheel {
+
+    private final Queue<BlockAnimationContext> pending = new ConcurrentLinkedQueue<>();
+    private final Queue<BlockAnimationContext> removed = new ConcurrentLinkedQueue<>();
+    private final List<ArrayDeque<BlockAnimationContext>> buckets;
+    private final int mask;
+
+    private volatile long currentTick;
+
+    public AnimationTimingWheel(int size) {
+        int bucketCount = Integer.highestOneBit(Math.max(2, size - 1) << 1);
+
+        this.buckets = new ArrayList<>(bucketCount);
+        this.mask = bucketCount - 1;
+
+        for (int i = 0; i < bucketCount; i++) {
+            buckets.add(new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * Hands a new context over to the wheel. The context will be processed on the next tick.
+     * Safe to call from any thread.
+     *
+     * @param context the context to add; must not be null
+     */
+    public void submit(@NonNull BlockAnimationContext context) {
+        pending.add(context);
+    }
+
+    /**
+     * Cancels a context and hands it back to the ticking thread, which passes it to the removal consumer
+     * on the next tick. Anything sent for the context on the ticking thread is therefore sent before its
+     * removal is handled. Safe to call from any thread.
+     *
+     * @param context the context to remove; must not be null
+     */
+    public void remove(@NonNull BlockAnimationContext context) {
+        context.setCancelled(true);
+        removed.add(context);
+    }
+
+    /**
+     * Schedules a context to be processed again at the given tick. Must only be called from the
+     * ticking thread, typically from within the consumer passed to {@link #tick(Consumer)}.
+     *
+     * @param context the context to schedule; must not be null
+     * @param tick    the tick to process the context on; clamped to the next tick if it is in the past
+     */
+    public void schedule(@NonNull BlockAnimationContext context, long tick) {
+        long deadline = Math.max(tick, currentTick + 1);
+
+        context.setDeadline(deadline);
+        buckets.get((int) (deadline & mask)).add(context);
+    }
+
+    /**
+     * Advances the wheel by one tick. Every context removed since the last tick is passed to the
+     * removal consumer first, then every context whose deadline has been reached is passed to the
+     * expiry consumer. Cancelled contexts are dropped without being passed on as expired.
+     *
+     * @param expired the consumer receiving due contexts; must not be null
+     * @param removal the consumer receiving removed contexts; must not be null
+     */
+    public void tick(@NonNull Consumer<BlockAnimationContext> expired, @NonNull Consumer<BlockAnimationContext> removal) {
+        long tick = ++currentTick;
+
+        BlockAnimationContext cancelled;
+
+        while ((cancelled = removed.poll()) != null) {
+            removal.accept(cancelled);
+        }
+
+        BlockAnimationContext submitted;
+
+        while ((submitted = pending.poll()) != null) {
+            submitted.setStartTick(tick - 1);
+            submitted.setDeadline(tick);
+            buckets.get((int) (tick & mask)).add(submitted);
+        }
+
+        int index = (int) (tick & mask);
+        ArrayDeque<BlockAnimationContext> bucket = buckets.get(index);
+
+        if (bucket.isEmpty()) {
+            return;
+        }
+
+        buckets.set(index, new ArrayDeque<>());
+
+        for (BlockAnimationContext context : bucket) {
+            if (context.isCancelled()) {
+                continue;
+            }
+
+            if (context.getDeadline() > tick) {
+                buckets.get(index).add(context);
+                continue;
+            }
+
+            expired.accept(context);
+        }
+    }
+
+    public long getCurrentTick() {
+        return currentTick;
+    }
+
+}
@@ -1,22 +1,45 @@
 package net.bitbylogic.packetblocks.task;
 
+import com.github.retrooper.packetevents.protocol.player.User;
+import com.github.retrooper.packetevents.util.Vector3i;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.Setter;
-import net.bitbylogic.packetblocks.block.PacketBlock;
 import net.bitbylogic.packetblocks.block.PacketBlockHolder;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.Nullable;
 
 @Getter
 @Setter
 public class BlockAnimationContext {
 
+    private final Player player;
     private final PacketBlockHolder<?, ?> block;
+    private final int breakSpeed;
+
+    private final Vector3i[] positions;
+    private final int[] animationIds;
+    private final long chunkKey;
+
+    private @Nullable User user;
 
     private int stage = -1;
     private int ticksTaken = 0;
 
-    public BlockAnimationContext(@NonNull PacketBlockHolder<?, ?> block) {
+    private long startTick;
+    private long deadline;
+
+    private volatile boolean cancelled;
+    private volatile boolean playerDeparted;
+
+    public BlockAnimationContext(@NonNull Player player, @NonNull PacketBlockHolder<?, ?> block, int breakSpeed,
+                                 @NonNull Vector3i[] positions, @NonNull int[] animationIds, long chunkKey) {
+        this.player = player;
         this.block = block;
+        this.breakSpeed = breakSpeed;
+        this.positions = positions;
+        this.animationIds = animationIds;
+        this.chunkKey = chunkKey;
     }
 
 }
@@ -1,138 +1,366 @@
 package net.bitbylogic.packetblocks.task;
 
 import com.github.retrooper.packetevents.PacketEvents;
+import com.github.retrooper.packetevents.protocol.player.User;
 import com.github.retrooper.packetevents.protocol.potion.PotionTypes;
 import com.github.retrooper.packetevents.util.Vector3i;
 import com.github.retrooper.packetevents.wrapper.play.server.WrapperPlayServerBlockBreakAnimation;
 import com.github.retrooper.packetevents.wrapper.play.server.WrapperPlayServerEntityEffect;
 import com.github.retrooper.packetevents.wrapper.play.server.WrapperPlayServerRemoveEntityEffect;
-import com.tcoded.folialib.wrapper.task.WrappedTask;
+import com.tcoded.folialib.FoliaLib;
+import lombok.NonNull;
 import net.bitbylogic.packetblocks.block.PacketBlock;
 import net.bitbylogic.packetblocks.block.PacketBlockHolder;
 import net.bitbylogic.packetblocks.group.PacketBlockGroup;
+import net.bitbylogic.packetblocks.group.PacketBlockInstance;
+import net.bitbylogic.packetblocks.metrics.jfr.AnimationTickEvent;
+import net.bitbylogic.packetblocks.util.BlockPositions;
+import net.bitbylogic.packetblocks.util.BreakTimes;
+import net.bitbylogic.packetblocks.util.PacketBlockUtil;
 import net.bitbylogic.utils.location.WorldPosition;
-import org.bukkit.Bukkit;
 import org.bukkit.Location;
+import org.bukkit.block.data.BlockData;
 import org.bukkit.entity.Player;
-import org.bukkit.scheduler.BukkitRunnable;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Drives the break animation of packet blocks that use a custom break speed.
+ * <p>
+ * Active breaks are spread over a fixed number of shards, each with its own {@link AnimationTimingWheel}
+ * and its own async timer. A context is only visited on the ticks where its stage changes, so the work
+ * done per tick scales with stage transitions rather than with the number of players digging.
+ * <p>
+ * Entries are added and removed from entity scheduler threads and processed on the shard timers.
+ * The only state shared between them is a {@link ConcurrentHashMap} of active contexts and each
+ * wheel's lock-free submission and removal queues. Every break stage, including the final clear of a
+ * removed entry, is sent from the shard that owns the entry, so a clear can never be overtaken by a
+ * stage that was still being sent. Processing only sends packets, so shards do not need to be tied to
+ * a region thread.
+ */
+public class PacketBlockAnimationTask {
+
+    private static final int WHEEL_SIZE = 64;
+
+    private final Map<UUID, BlockAnimationContext> activeBreaks = new ConcurrentHashMap<>();
+    private final AnimationTimingWheel[] shards;
+
+    public PacketBlockAnimationTask() {
+        this(Math.max(1, Math.min(8, Runtime.getRuntime().availableProcessors() / 2)));
+    }
 
-public class PacketBlockAnimationTask implements Runnable {
+    public PacketBlockAnimationTask(int shardCount) {
+        this.shards = new AnimationTimingWheel[Math.max(1, shardCount)];
 
-    private final Map<Player, BlockAnimationContext> blockMap = new HashMap<>();
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new AnimationTimingWheel(WHEEL_SIZE);
+        }
+    }
 
-    @Override
-    public void run() {
-        for (Map.Entry<Player, BlockAnimationContext> entry : blockMap.entrySet()) {
-            Player player = entry.getKey();
-            BlockAnimationContext context = entry.getValue();
-            PacketBlockHolder<?, ?> packetBlock = context.getBlock();
+    /**
+     * Starts one async timer per shard.
+     *
+     * @param foliaLib the scheduler to run the shard timers on; must not be null
+     */
+    public void start(@NonNull FoliaLib foliaLib) {
+        for (int i = 0; i < shards.length; i++) {
+            int shardIndex = i;
+            AnimationTimingWheel shard = shards[i];
+
+            foliaLib.getScheduler().runTimerAsync(() -> tickShard(shardIndex, shard), 1, 1);
+        }
+    }
 
-            int breakSpeed = packetBlock.getBreakSpeed(player);
-            int ticksTaken = context.getTicksTaken();
-            context.setTicksTaken(ticksTaken + 1);
+    private void tickShard(int shardIndex, @NonNull AnimationTimingWheel shard) {
+        AnimationTickEvent tickEvent = new AnimationTickEvent();
+        tickEvent.begin();
 
-            float progress = (float) context.getTicksTaken() / (float) breakSpeed;
+        int[] counts = new int[2];
 
-            if (breakSpeed <= 0 || progress >= 1f) {
-                sendFinishBreak(player, packetBlock);
-                continue;
+        shard.tick(context -> {
+            counts[0]++;
+
+            if (process(shard, context)) {
+                counts[1]++;
             }
+        }, this::clear);
 
-            int stage = (int) (progress * 10f);
+        if (counts[0] == 0) {
+            return;
+        }
 
-            if (stage == context.getStage()) {
-                continue;
-            }
+        tickEvent.end();
 
-            if (packetBlock.isGlobalBreakAnimation()) {
-                sendAnimationToAllViewers(packetBlock, stage);
-            } else {
-                sendAnimation(player, packetBlock, stage);
-            }
+        if (tickEvent.shouldCommit()) {
+            tickEvent.setShard(shardIndex);
+            tickEvent.setProcessed(counts[0]);
+            tickEvent.setStagesSent(counts[1]);
+            tickEvent.commit();
+        }
+    }
+
+    /**
+     * Clears the animation of a removed context. Runs on the shard that owns the context, after any
+     * stage it was still sending.
+     */
+    private void clear(@NonNull BlockAnimationContext context) {
+        if (context.isPlayerDeparted()) {
+            sendToOtherViewers(context, -1);
+            return;
+        }
 
+        sendAnimation(context, -1);
+    }
+
+    /**
+     * Advances a due context and reschedules it for its next stage.
+     *
+     * @return whether a stage was sent to the context's receivers
+     */
+    private boolean process(@NonNull AnimationTimingWheel shard, @NonNull BlockAnimationContext context) {
+        int breakSpeed = context.getBreakSpeed();
+        int ticksTaken = (int) (shard.getCurrentTick() - context.getStartTick());
+        context.setTicksTaken(ticksTaken);
+
+        if (breakSpeed <= 0 || ticksTaken >= breakSpeed) {
+            sendAnimation(context, -1);
+            return true;
+        }
+
+        int stage = (int) (ticksTaken * 10L / breakSpeed);
+        boolean stageChanged = stage != context.getStage();
+
+        if (stageChanged) {
+            sendAnimation(context, stage);
             context.setStage(stage);
         }
+
+        int nextStageTicks = stage + 1 >= 10 ? breakSpeed : (int) (((stage + 1) * (long) breakSpeed + 9) / 10);
+        shard.schedule(context, context.getStartTick() + Math.max(nextStageTicks, ticksTaken + 1));
+        return stageChanged;
     }
 
     public void addEntry(Player player, PacketBlockHolder<?, ?> block) {
+        addEntry(player, block, null);
+    }
+
+    /**
+     * Starts animating a break for the given player. Only the dug block is animated, unless the holder
+     * has a break animation radius, in which case every block of the holder within that radius is
+     * animated as well.
+     * <p>
+     * This must be called from the player's entity thread, as it resolves the player's break speed
+     * and the holder's positions.
+     *
+     * @param player the player digging the block
+     * @param block  the holder being dug
+     * @param target the position of the dug block, taken from the dig packet; null animates every block of the holder
+     */
+    public void addEntry(Player player, PacketBlockHolder<?, ?> block, @Nullable Vector3i target) {
         WrapperPlayServerEntityEffect effectPacket = new WrapperPlayServerEntityEffect(player.getEntityId(), PotionTypes.MINING_FATIGUE,
                 127, Integer.MAX_VALUE, (byte) 1);
 
         PacketEvents.getAPI().getPlayerManager().sendPacket(player, effectPacket);
 
-        blockMap.put(player, new BlockAnimationContext(block));
+        List<Vector3i> positions = resolvePositions(player, block, target);
+        int[] animationIds = new int[positions.size()];
+
+        for (int i = 0; i < animationIds.length; i++) {
+            Vector3i position = positions.get(i);
+
+            animationIds[i] = i == 0 ? player.getEntityId()
+                    : Objects.hash(player.getEntityId(), position.getX(), position.getY(), position.getZ()) | Integer.MIN_VALUE;
+        }
+
+        Vector3i chunkSource = target != null ? target : positions.isEmpty() ? new Vector3i(0, 0, 0) : positions.getFirst();
+        long chunkKey = BlockPositions.chunkKey(chunkSource.getX() >> 4, chunkSource.getZ() >> 4);
+
+        BlockAnimationContext context = new BlockAnimationContext(player, block, resolveBreakSpeed(player, block, target),
+                positions.toArray(new Vector3i[0]), animationIds, chunkKey);
+        context.setUser(PacketEvents.getAPI().getPlayerManager().getUser(player));
+        BlockAnimationContext previous = activeBreaks.put(player.getUniqueId(), context);
+
+        AnimationTimingWheel shard = getShard(player.getUniqueId());
+
+        if (previous != null) {
+            shard.remove(previous);
+        }
+
+        shard.submit(context);
     }
 
     public void removeEntry(Player player) {
-        BlockAnimationContext context = blockMap.remove(player);
+        BlockAnimationContext context = activeBreaks.remove(player.getUniqueId());
 
         if (context == null) return;
 
-        PacketBlockHolder<?, ?> block = context.getBlock();
-
-        sendFinishBreak(player, block);
+        getShard(player.getUniqueId()).remove(context);
 
         WrapperPlayServerRemoveEntityEffect removeEffect = new WrapperPlayServerRemoveEntityEffect(player.getEntityId(), PotionTypes.MINING_FATIGUE);
 
         PacketEvents.getAPI().getPlayerManager().sendPacket(player, removeEffect);
     }
 
-    private void sendAnimation(Player player, PacketBlockHolder<?, ?> block, int stage) {
-        if(block instanceof PacketBlock singleBlock) {
-            Location blockLocation = singleBlock.getLocation();
-            Vector3i position = new Vector3i(blockLocation.getBlockX(), blockLocation.getBlockY(), blockLocation.getBlockZ());
+    /**
+     * Stops the break of a player that disconnected. Other viewers of a global break animation have
+     * the animation cleared; nothing is sent to the departed player.
+     *
+     * @param uuid the unique id of the player; must not be null
+     */
+    public void forgetPlayer(@NonNull UUID uuid) {
+        BlockAnimationContext context = activeBreaks.remove(uuid);
 
-            WrapperPlayServerBlockBreakAnimation animation = new WrapperPlayServerBlockBreakAnimation(player.getEntityId(), position, (byte) stage);
-            PacketEvents.getAPI().getPlayerManager().sendPacket(player, animation);
+        if (context == null) {
             return;
         }
 
-        if(!(block instanceof PacketBlockGroup group)) {
-            return;
+        context.setPlayerDeparted(true);
+        getShard(uuid).remove(context);
+    }
+
+    public int getActiveEntries() {
+        return activeBreaks.size();
+    }
+
+    private AnimationTimingWheel getShard(@NonNull UUID uuid) {
+        return shards[Math.floorMod(uuid.hashCode(), shards.length)];
+    }
+
+    private int resolveBreakSpeed(@NonNull Player player, @NonNull PacketBlockHolder<?, ?> block, @Nullable Vector3i target) {
+        int breakSpeed = block.getBreakSpeed(player);
+
+        if (breakSpeed != BreakTimes.VANILLA_BREAK_SPEED) {
+            return breakSpeed;
+        }
+
+        Location location = target == null ? null : new Location(player.getWorld(), target.getX(), target.getY(), target.getZ());
+        BlockData blockData = location == null ? null : PacketBlockUtil.getHolderData(block, player, location);
+
+        return blockData == null ? -1 : BreakTimes.getBreakTicks(player, blockData);
+    }
+
+    private List<Vector3i> resolvePositions(@NonNull Player player, @NonNull PacketBlockHolder<?, ?> block, @Nullable Vector3i target) {
+        List<Vector3i> positions = new ArrayList<>();
+
+        if (block instanceof PacketBlock singleBlock) {
+            Location blockLocation = singleBlock.getLocation();
+            positions.add(new Vector3i(blockLocation.getBlockX(), blockLocation.getBlockY(), blockLocation.getBlockZ()));
+            return positions;
+        }
+
+        int radius = block.getBreakAnimationRadius();
+
+        if (target != null) {
+            positions.add(target);
+
+            if (radius <= 0) {
+                return positions;
+            }
+        }
+
+        long radiusSquared = (long) radius * radius;
+
+        if (block instanceof PacketBlockInstance instance) {
+            instance.forEachBlock(player, (x, y, z, blockData) -> {
+                if (target != null && (isTarget(target, x, y, z) || distanceSquared(target, x, y, z) > radiusSquared)) {
+                    return;
+                }
+
+                positions.add(new Vector3i(x, y, z));
+            });
+
+            return positions;
+        }
+
+        if (!(block instanceof PacketBlockGroup group)) {
+            return positions;
         }
 
         for (WorldPosition worldPosition : group.getData().keySet()) {
             Location blockLocation = group.getCachedLocations().get(worldPosition);
-            Vector3i position = new Vector3i(blockLocation.getBlockX(), blockLocation.getBlockY(), blockLocation.getBlockZ());
 
-            WrapperPlayServerBlockBreakAnimation animation = new WrapperPlayServerBlockBreakAnimation(player.getEntityId(), position, (byte) stage);
-            PacketEvents.getAPI().getPlayerManager().sendPacket(player, animation);
-        }
-    }
+            if (blockLocation == null) {
+                continue;
+            }
 
-    private void sendAnimationToAllViewers(PacketBlockHolder<?, ?> block, int stage) {
-        Iterator<UUID> it = block.getViewers().keySet().iterator();
+            int x = blockLocation.getBlockX();
+            int y = blockLocation.getBlockY();
+            int z = blockLocation.getBlockZ();
 
-        while (it.hasNext()) {
-            Player viewer = Bukkit.getPlayer(it.next());
-            if (viewer == null) {
-                it.remove();
+            if (target != null && (isTarget(target, x, y, z) || distanceSquared(target, x, y, z) > radiusSquared)) {
                 continue;
             }
 
-            sendAnimation(viewer, block, stage);
+            positions.add(new Vector3i(x, y, z));
         }
+
+        return positions;
     }
 
-    private void sendFinishBreak(Player player, PacketBlockHolder<?, ?> block) {
-        sendAnimation(player, block, -1);
+    private static boolean isTarget(@NonNull Vector3i target, int x, int y, int z) {
+        return target.getX() == x && target.getY() == y && target.getZ() == z;
+    }
 
-        if (block.isGlobalBreakAnimation()) {
-            Iterator<UUID> it = block.getViewers().keySet().iterator();
+    private static long distanceSquared(@NonNull Vector3i target, int x, int y, int z) {
+        long dx = target.getX() - x;
+        long dy = target.getY() - y;
+        long dz = target.getZ() - z;
 
-            while (it.hasNext()) {
-                Player viewer = Bukkit.getPlayer(it.next());
-                if (viewer == null) {
-                    it.remove();
-                    continue;
-                }
-                sendAnimation(viewer, block, -1);
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * Sends the given stage for every animated position of the context. When the holder uses a
+     * global break animation, every viewer that has the dug chunk loaded receives it as well.
+     * Each receiving player gets all of their packets written in a single flushed batch, through the
+     * PacketEvents user cached on the context or on the viewer's {@link net.bitbylogic.packetblocks.viewer.ViewerHandle}.
+     */
+    private void sendAnimation(@NonNull BlockAnimationContext context, int stage) {
+        writeAnimation(context.getUser(), context, stage);
+        sendToOtherViewers(context, stage);
+    }
+
+    private void sendToOtherViewers(@NonNull BlockAnimationContext context, int stage) {
+        Player player = context.getPlayer();
+        PacketBlockHolder<?, ?> block = context.getBlock();
+
+        if (!block.isGlobalBreakAnimation()) {
+            return;
+        }
+
+        block.getViewers().forEach((uuid, viewer) -> {
+            Player receiver = viewer.getHandle().resolve(uuid);
+
+            if (receiver == null || receiver == player || receiver.getWorld() != player.getWorld()) {
+                return;
+            }
+
+            if (!receiver.isChunkSent(context.getChunkKey())) {
+                return;
             }
+
+            writeAnimation(viewer.getHandle().getUser(receiver), context, stage);
+        });
+    }
+
+    private void writeAnimation(@Nullable User user, @NonNull BlockAnimationContext context, int stage) {
+        if (user == null) {
+            return;
         }
+
+        Vector3i[] positions = context.getPositions();
+        int[] animationIds = context.getAnimationIds();
+
+        for (int i = 0; i < positions.length; i++) {
+            user.writePacket(new WrapperPlayServerBlockBreakAnimation(animationIds[i], positions[i], (byte) stage));
+        }
+
+        user.flushPackets();
     }
 }
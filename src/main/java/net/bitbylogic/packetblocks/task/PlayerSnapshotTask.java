@@ -0,0 +1,85 @@
+package net.bitbylogic.packetblocks.task;
+
+import lombok.NonNull;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps a snapshot of the player state that packet adapters need, so netty threads never read the
+ * live player or their world.
+ * <p>
+ * Snapshots only change when the player's world does, so they are updated by the listener on join,
+ * respawn, teleport and world change rather than polled. Snapshots are immutable and published
+ * through a {@link ConcurrentHashMap}, so a netty thread always sees a complete snapshot.
+ */
+public class PlayerSnapshotTask {
+
+    private final Map<UUID, PlayerSnapshot> snapshots = new ConcurrentHashMap<>();
+
+    /**
+     * Snapshots the player's current state. Must be called from the player's thread.
+     *
+     * @param player the player to snapshot; must not be null
+     */
+    public void update(@NonNull Player player) {
+        update(player.getUniqueId(), player.getWorld());
+    }
+
+    /**
+     * Snapshots the world a player is in or about to be in, such as the destination of a teleport.
+     * Nothing is allocated if the player's snapshot already has that world.
+     *
+     * @param uuid  the unique id of the player; must not be null
+     * @param world the player's world; must not be null
+     */
+    public void update(@NonNull UUID uuid, @NonNull World world) {
+        PlayerSnapshot snapshot = snapshots.get(uuid);
+
+        if (snapshot != null && snapshot.world() == world) {
+            return;
+        }
+
+        snapshots.put(uuid, new PlayerSnapshot(world));
+    }
+
+    /**
+     * Drops a player's snapshot.
+     *
+     * @param uuid the unique id of the player; must not be null
+     */
+    public void forget(@NonNull UUID uuid) {
+        snapshots.remove(uuid);
+    }
+
+    /**
+     * Safe to call from any thread.
+     *
+     * @param uuid the unique id of the player; must not be null
+     * @return the player's latest snapshot, or null if the player is not tracked
+     */
+    public @Nullable PlayerSnapshot get(@NonNull UUID uuid) {
+        return snapshots.get(uuid);
+    }
+
+    /**
+     * @return the number of players being tracked
+     */
+    public int getTrackedPlayers() {
+        return snapshots.size();
+    }
+
+    /**
+     * The state of a player as of their last world change.
+     *
+     * @param world the world the player is in
+     */
+    public record PlayerSnapshot(@NonNull World world) {
+
+    }
+
+}
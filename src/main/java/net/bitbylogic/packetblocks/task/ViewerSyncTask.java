@@ -0,0 +1,299 @@
+package net.bitbylogic.packetblocks.task;
+
+import com.tcoded.folialib.FoliaLib;
+import lombok.Getter;
+import lombok.NonNull;
+import net.bitbylogic.packetblocks.block.PacketBlock;
+import net.bitbylogic.packetblocks.block.PacketBlockHolder;
+import net.bitbylogic.packetblocks.block.PacketBlockManager;
+import net.bitbylogic.packetblocks.block.WorldPartition;
+import net.bitbylogic.packetblocks.group.PacketBlockGroup;
+import net.bitbylogic.packetblocks.group.PacketBlockInstance;
+import net.bitbylogic.packetblocks.metrics.PacketBlockMetrics;
+import net.bitbylogic.packetblocks.util.BlockChangeBatch;
+import net.bitbylogic.packetblocks.util.BlockPositions;
+import net.bitbylogic.utils.location.WorldPosition;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Adds players to the packet blocks that are shown on join when they join, respawn or change worlds,
+ * without sending every block of the world in one burst.
+ * <p>
+ * A sync is {@link #prepare prepared} on the player's thread from the join index of the player's
+ * world, {@link Sync#order ordered} nearest-first off the main thread, and then {@link #deliver delivered}
+ * on the player's scheduler in per-tick budgets of block changes. Blocks in chunks that are not loaded
+ * yet are not sent: those chunks reach the client after the player became a viewer, so the chunk
+ * overlay covers them.
+ * <p>
+ * Starting a new sync for a player cancels the one still in progress.
+ */
+public class ViewerSyncTask {
+
+    private final PacketBlockManager manager;
+    private final int blocksPerTick;
+
+    private final Map<UUID, Sync> pending = new ConcurrentHashMap<>();
+
+    /**
+     * @param manager       the manager whose join indexes are synced; must not be null
+     * @param blocksPerTick the number of block changes sent to a player per tick, at least one holder
+     *                      is processed per tick regardless
+     */
+    public ViewerSyncTask(@NonNull PacketBlockManager manager, int blocksPerTick) {
+        this.manager = manager;
+        this.blocksPerTick = Math.max(1, blocksPerTick);
+    }
+
+    /**
+     * Syncs the player with the packet blocks of their current world that are shown on join. Must be
+     * called from the player's thread.
+     *
+     * @param player the player to sync; must not be null
+     */
+    public void sync(@NonNull Player player) {
+        Sync sync = prepare(player);
+
+        if (sync == null) {
+            return;
+        }
+
+        FoliaLib foliaLib = manager.getPlugin().getFoliaLib();
+
+        foliaLib.getScheduler().runAsync(task -> {
+            sync.order();
+            foliaLib.getScheduler().runAtEntity(player, deliverTask -> deliverUntilDone(foliaLib, player, sync));
+        });
+    }
+
+    /**
+     * Cancels the sync in progress for a player, if any.
+     *
+     * @param uuid the unique id of the player; must not be null
+     */
+    public void cancel(@NonNull UUID uuid) {
+        Sync sync = pending.remove(uuid);
+
+        if (sync != null) {
+            sync.cancelled = true;
+        }
+    }
+
+    /**
+     * Snapshots the holders shown on join in the player's world and the player's position, and
+     * registers the sync as the player's pending one. Must be called from the player's thread.
+     *
+     * @param player the player to sync; must not be null
+     * @return the prepared sync, or null if nothing in the player's world is shown on join
+     */
+    public @Nullable Sync prepare(@NonNull Player player) {
+        cancel(player.getUniqueId());
+
+        WorldPartition partition = manager.getPartition(player.getWorld());
+
+        if (partition == null || partition.getJoinHolders().isEmpty()) {
+            return null;
+        }
+
+        Sync sync = new Sync(player.getUniqueId(), partition, player.getLocation(), new ArrayList<>(partition.getJoinHolders()));
+        pending.put(player.getUniqueId(), sync);
+
+        return sync;
+    }
+
+    /**
+     * Adds the player to the next holders of an ordered sync until this tick's budget of block changes
+     * is used, and sends the player those changes. Must be called from the player's thread.
+     *
+     * @param player the player being synced; must not be null
+     * @param sync   the ordered sync; must not be null
+     * @return true once the sync is done or no longer applies
+     */
+    public boolean deliver(@NonNull Player player, @NonNull Sync sync) {
+        World world = player.getWorld();
+
+        if (sync.cancelled || !player.isOnline() || !world.getName().equals(sync.partition.getWorldName())) {
+            pending.remove(player.getUniqueId(), sync);
+            return true;
+        }
+
+        BlockChangeBatch changes = new BlockChangeBatch();
+        Map<Long, Boolean> loadedChunks = new HashMap<>();
+
+        while (sync.next < sync.holders.size() && changes.size() < blocksPerTick) {
+            PacketBlockHolder<?, ?> holder = sync.holders.get(sync.next++);
+
+            if (!sync.partition.getJoinHolders().contains(holder) || holder.isViewer(player)) {
+                continue;
+            }
+
+            if (holder.attemptAddViewer(player, false).isEmpty()) {
+                continue;
+            }
+
+            collectChanges(holder, player, world, loadedChunks, changes);
+        }
+
+        if (!changes.isEmpty()) {
+            changes.markResolved().send(player);
+            PacketBlockMetrics.get().recordUpdate(player);
+        }
+
+        if (sync.next < sync.holders.size()) {
+            return false;
+        }
+
+        pending.remove(player.getUniqueId(), sync);
+        return true;
+    }
+
+    /**
+     * @return the number of players with a sync in progress
+     */
+    public int getPendingSyncs() {
+        return pending.size();
+    }
+
+    private void deliverUntilDone(@NonNull FoliaLib foliaLib, @NonNull Player player, @NonNull Sync sync) {
+        if (deliver(player, sync)) {
+            return;
+        }
+
+        foliaLib.getScheduler().runAtEntityLater(player, () -> deliverUntilDone(foliaLib, player, sync), 1);
+    }
+
+    private static void collectChanges(@NonNull PacketBlockHolder<?, ?> holder, @NonNull Player player, @NonNull World world,
+                                       @NonNull Map<Long, Boolean> loadedChunks, @NonNull BlockChangeBatch changes) {
+        if (holder instanceof PacketBlock singleBlock) {
+            Location location = singleBlock.getLocation();
+
+            if (isChunkLoaded(world, location.getBlockX() >> 4, location.getBlockZ() >> 4, loadedChunks)) {
+                changes.add(location, singleBlock.getData(player));
+            }
+            return;
+        }
+
+        if (holder instanceof PacketBlockInstance instance) {
+            instance.forEachBlock(player, (x, y, z, blockData) -> {
+                if (isChunkLoaded(world, x >> 4, z >> 4, loadedChunks)) {
+                    changes.add(x, y, z, blockData);
+                }
+            });
+            return;
+        }
+
+        if (!(holder instanceof PacketBlockGroup group)) {
+            return;
+        }
+
+        Map<WorldPosition, BlockData> data = group.getData(player);
+
+        for (Map.Entry<WorldPosition, BlockData> entry : data.entrySet()) {
+            Location location = group.getCachedLocations().get(entry.getKey());
+
+            if (location != null && entry.getKey().worldName().equals(world.getName())
+                    && isChunkLoaded(world, location.getBlockX() >> 4, location.getBlockZ() >> 4, loadedChunks)) {
+                changes.add(location, entry.getValue());
+            }
+        }
+    }
+
+    private static boolean isChunkLoaded(@NonNull World world, int chunkX, int chunkZ, @NonNull Map<Long, Boolean> loadedChunks) {
+        return loadedChunks.computeIfAbsent(BlockPositions.chunkKey(chunkX, chunkZ), key -> world.isChunkLoaded(chunkX, chunkZ));
+    }
+
+    /**
+     * A player's pending sync with the holders shown on join in one world.
+     */
+    public static final class Sync {
+
+        @Getter
+        private final UUID playerId;
+        private final WorldPartition partition;
+        private final double x;
+        private final double y;
+        private final double z;
+
+        private List<PacketBlockHolder<?, ?>> holders;
+        private int next;
+        private volatile boolean cancelled;
+
+        private Sync(@NonNull UUID playerId, @NonNull WorldPartition partition, @NonNull Location location, @NonNull List<PacketBlockHolder<?, ?>> holders) {
+            this.playerId = playerId;
+            this.partition = partition;
+            this.x = location.getX();
+            this.y = location.getY();
+            this.z = location.getZ();
+            this.holders = holders;
+        }
+
+        /**
+         * Orders the holders by the squared distance from the player to their nearest block. Safe to
+         * call off the main thread, before the sync is delivered.
+         */
+        public void order() {
+            List<Ranked> ranked = new ArrayList<>(holders.size());
+
+            for (PacketBlockHolder<?, ?> holder : holders) {
+                ranked.add(new Ranked(holder, distanceSquared(holder)));
+            }
+
+            ranked.sort(Comparator.comparingDouble(Ranked::distanceSquared));
+
+            List<PacketBlockHolder<?, ?>> ordered = new ArrayList<>(ranked.size());
+            ranked.forEach(entry -> ordered.add(entry.holder()));
+
+            holders = ordered;
+        }
+
+        /**
+         * @return the number of holders left to deliver
+         */
+        public int getRemaining() {
+            return holders.size() - next;
+        }
+
+        private double distanceSquared(@NonNull PacketBlockHolder<?, ?> holder) {
+            if (holder instanceof PacketBlock singleBlock) {
+                return distanceTo(singleBlock.getLocation());
+            }
+
+            if (holder instanceof PacketBlockInstance instance) {
+                return distanceTo(instance.getOrigin());
+            }
+
+            if (!(holder instanceof PacketBlockGroup group)) {
+                return Double.MAX_VALUE;
+            }
+
+            double nearest = Double.MAX_VALUE;
+
+            for (Location location : group.getCachedLocations().values()) {
+                if (location.getWorld() != null && location.getWorld().getName().equals(partition.getWorldName())) {
+                    nearest = Math.min(nearest, distanceTo(location));
+                }
+            }
+
+            return nearest;
+        }
+
+        private double distanceTo(@NonNull Location location) {
+            double dx = location.getX() - x;
+            double dy = location.getY() - y;
+            double dz = location.getZ() - z;
+
+            return dx * dx + dy * dy + dz * dz;
+        }
+
+        private record Ranked(PacketBlockHolder<?, ?> holder, double distanceSquared) {
+        }
+
+    }
+
+}
@@ -0,0 +1,204 @@
+package net.bitbylogic.packetblocks.util;
+
+import com.github.retrooper.packetevents.PacketEvents;
+import com.github.retrooper.packetevents.protocol.player.ClientVersion;
+import com.github.retrooper.packetevents.protocol.player.User;
+import com.github.retrooper.packetevents.protocol.world.states.WrappedBlockState;
+import com.github.retrooper.packetevents.util.Vector3i;
+import com.github.retrooper.packetevents.wrapper.PacketWrapper;
+import com.github.retrooper.packetevents.wrapper.play.server.WrapperPlayServerBlockChange;
+import com.github.retrooper.packetevents.wrapper.play.server.WrapperPlayServerMultiBlockChange;
+import lombok.NonNull;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.BlockState;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Collects block changes for a player and sends them as PacketEvents block change
+ * packets, without creating a Bukkit {@link BlockState} per block.
+ * <p>
+ * Changes are grouped by chunk section: a section with a single change is sent as a block change,
+ * any other section as one multi block change. Every packet is written to the player's {@link User}
+ * and flushed once, so they still pass through PacketEvents listeners, unless the batch is
+ * {@link #markResolved() marked as resolved}. Block data is encoded through a global id cache, so
+ * each distinct block state is only looked up by string once.
+ * <p>
+ * Players PacketEvents does not know, such as fake players, are sent the same changes through
+ * {@link Player#sendBlockChanges}.
+ */
+public class BlockChangeBatch {
+
+    private static final Map<BlockData, Integer> GLOBAL_IDS = new ConcurrentHashMap<>();
+
+    private final List<Change> changes = new ArrayList<>();
+    private boolean resolved;
+
+    /**
+     * Returns the server's global id of the given block data, caching it.
+     *
+     * @param blockData the block data to encode; must not be null
+     * @return the global id of the block data
+     */
+    public static int getGlobalId(@NonNull BlockData blockData) {
+        Integer cached = GLOBAL_IDS.get(blockData);
+
+        if (cached != null) {
+            return cached;
+        }
+
+        ClientVersion version = PacketEvents.getAPI().getServerManager().getVersion().toClientVersion();
+        int globalId = WrappedBlockState.getByString(version, blockData.getAsString()).getGlobalId();
+
+        // Block data is mutable, so the cache keeps its own copy as the key.
+        GLOBAL_IDS.putIfAbsent(blockData.clone(), globalId);
+        return globalId;
+    }
+
+    /**
+     * Adds a block change.
+     *
+     * @param x         the block X coordinate
+     * @param y         the block Y coordinate
+     * @param z         the block Z coordinate
+     * @param blockData the block data to show; must not be null
+     * @return this batch
+     */
+    public BlockChangeBatch add(int x, int y, int z, @NonNull BlockData blockData) {
+        changes.add(new Change(x, y, z, blockData));
+        return this;
+    }
+
+    /**
+     * Adds a block change.
+     *
+     * @param location  the location of the block; must not be null
+     * @param blockData the block data to show; must not be null
+     * @return this batch
+     */
+    public BlockChangeBatch add(@NonNull Location location, @NonNull BlockData blockData) {
+        return add(location.getBlockX(), location.getBlockY(), location.getBlockZ(), blockData);
+    }
+
+    /**
+     * Adds a change resetting a block to what the server has at its location.
+     *
+     * @param location the location of the block; must not be null
+     * @return this batch
+     */
+    public BlockChangeBatch addReal(@NonNull Location location) {
+        return add(location, location.getBlock().getBlockData());
+    }
+
+    /**
+     * Adds every change of another batch.
+     *
+     * @param other the batch to copy the changes of; must not be null
+     * @return this batch
+     */
+    public BlockChangeBatch addAll(@NonNull BlockChangeBatch other) {
+        changes.addAll(other.changes);
+        return this;
+    }
+
+    /**
+     * Marks the changes as already holding the data the player sees at each block. Such batches are
+     * written silently, skipping PacketEvents listeners, so the plugin's own block update adapter does
+     * not look every block up again. Batches resetting blocks to the real world are not resolved, as
+     * another packet block may have to be shown in their place.
+     *
+     * @return this batch
+     */
+    public BlockChangeBatch markResolved() {
+        resolved = true;
+        return this;
+    }
+
+    /**
+     * @return the number of changes in this batch
+     */
+    public int size() {
+        return changes.size();
+    }
+
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    /**
+     * Sends the changes to the player, looking up their PacketEvents user.
+     *
+     * @param player the player to send the changes to; must not be null
+     */
+    public void send(@NonNull Player player) {
+        send(player, PacketBlockUtil.getUser(player));
+    }
+
+    /**
+     * Sends the changes to the player through the given user, or through Bukkit if there is none.
+     * Changes are sent by position only, so the player's world is used for the Bukkit fallback.
+     *
+     * @param player the player to send the changes to; must not be null
+     * @param user   the player's PacketEvents user, or null to send through Bukkit
+     */
+    public void send(@NonNull Player player, @Nullable User user) {
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        if (user == null) {
+            World world = player.getWorld();
+            List<BlockState> states = new ArrayList<>(changes.size());
+            changes.forEach(change -> states.add(change.blockData().createBlockState().copy(new Location(world, change.x(), change.y(), change.z()))));
+
+            player.sendBlockChanges(states);
+            return;
+        }
+
+        Map<Long, List<Change>> sections = new LinkedHashMap<>();
+
+        for (Change change : changes) {
+            sections.computeIfAbsent(BlockPositions.pack(change.x() >> 4, change.y() >> 4, change.z() >> 4), key -> new ArrayList<>()).add(change);
+        }
+
+        for (List<Change> section : sections.values()) {
+            Change first = section.getFirst();
+
+            if (section.size() == 1) {
+                write(user, new WrapperPlayServerBlockChange(new Vector3i(first.x(), first.y(), first.z()), getGlobalId(first.blockData())));
+                continue;
+            }
+
+            WrapperPlayServerMultiBlockChange.EncodedBlock[] blocks = new WrapperPlayServerMultiBlockChange.EncodedBlock[section.size()];
+
+            for (int i = 0; i < blocks.length; i++) {
+                Change change = section.get(i);
+                blocks[i] = new WrapperPlayServerMultiBlockChange.EncodedBlock(getGlobalId(change.blockData()), change.x(), change.y(), change.z());
+            }
+
+            write(user, new WrapperPlayServerMultiBlockChange(new Vector3i(first.x() >> 4, first.y() >> 4, first.z() >> 4), false, blocks));
+        }
+
+        user.flushPackets();
+    }
+
+    private void write(@NonNull User user, @NonNull PacketWrapper<?> packet) {
+        if (resolved) {
+            user.writePacketSilently(packet);
+        } else {
+            user.writePacket(packet);
+        }
+    }
+
+    private record Change(int x, int y, int z, BlockData blockData) {
+    }
+
+}
@@ -0,0 +1,50 @@
+package net.bitbylogic.packetblocks.util;
+
+public class BlockPositions {
+
+    /**
+     * Packs block coordinates into a single long using the same layout as vanilla's
+     * {@code BlockPos#asLong}: 26 bits for X, 26 bits for Z and 12 bits for Y.
+     *
+     * @param x the block X coordinate
+     * @param y the block Y coordinate
+     * @param z the block Z coordinate
+     * @return the packed position
+     */
+    public static long pack(int x, int y, int z) {
+        return ((long) (x & 0x3FFFFFF) << 38) | ((long) (z & 0x3FFFFFF) << 12) | (y & 0xFFF);
+    }
+
+    public static int unpackX(long packed) {
+        return (int) (packed >> 38);
+    }
+
+    public static int unpackY(long packed) {
+        return (int) (packed << 52 >> 52);
+    }
+
+    public static int unpackZ(long packed) {
+        return (int) (packed << 26 >> 38);
+    }
+
+    /**
+     * Packs chunk coordinates into a single long using the same layout as Paper's
+     * {@code Chunk#getChunkKey}.
+     *
+     * @param chunkX the chunk X coordinate
+     * @param chunkZ the chunk Z coordinate
+     * @return the packed chunk key
+     */
+    public static long chunkKey(int chunkX, int chunkZ) {
+        return (long) chunkX & 0xFFFFFFFFL | ((long) chunkZ & 0xFFFFFFFFL) << 32;
+    }
+
+    public static int chunkKeyX(long chunkKey) {
+        return (int) chunkKey;
+    }
+
+    public static int chunkKeyZ(long chunkKey) {
+        return (int) (chunkKey >>> 32);
+    }
+
+}
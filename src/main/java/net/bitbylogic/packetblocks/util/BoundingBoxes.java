@@ -15,6 +15,7 @@ import org.bukkit.util.Vector;
 
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -23,6 +24,10 @@ import java.util.logging.Level;
 
 public class BoundingBoxes {
 
+    /**
+     * An access-ordered LRU, so even reads reorder it; it is only touched while holding its lock,
+     * as shapes are looked up from region threads as well as the main thread.
+     */
     private static final Map<String, List<BoundingBox>> CACHE = new LinkedHashMap<>(500, 0.75f, true) {
 
         @Override
@@ -32,7 +37,7 @@ public class BoundingBoxes {
 
     };
 
-    private static JsonObject BOUNDING_BOXES;
+    private static volatile JsonObject BOUNDING_BOXES;
 
     public static void init(@NonNull PacketBlocks plugin) {
         try (InputStream in = plugin.getResource("bounding_boxes.json")) {
@@ -41,12 +46,25 @@ public class BoundingBoxes {
                 return;
             }
 
-            BOUNDING_BOXES = JsonParser.parseReader(new InputStreamReader(in)).getAsJsonObject();
+            init(new InputStreamReader(in));
         } catch (Exception e) {
             plugin.getLogger().log(Level.SEVERE, "Unable to load block state bounding boxes.", e);
         }
     }
 
+    /**
+     * Loads the block state bounding boxes from the given JSON, replacing any that were loaded before.
+     *
+     * @param reader the reader to parse the bounding boxes from; must not be null
+     */
+    public static void init(@NonNull Reader reader) {
+        BOUNDING_BOXES = JsonParser.parseReader(reader).getAsJsonObject();
+
+        synchronized (CACHE) {
+            CACHE.clear();
+        }
+    }
+
     /**
      * Retrieves a list of bounding boxes associated with the given block data.
      * The method fetches cached bounding boxes if available, otherwise parses
@@ -58,7 +76,11 @@ public class BoundingBoxes {
     public static List<BoundingBox> getBoxes(@NonNull BlockData blockData) {
         String key = blockData.getAsString();
 
-        List<BoundingBox> cached = CACHE.get(key);
+        List<BoundingBox> cached;
+
+        synchronized (CACHE) {
+            cached = CACHE.get(key);
+        }
 
         if (cached != null) {
             return cached;
@@ -84,7 +106,9 @@ public class BoundingBoxes {
             boxes.add(new BoundingBox(minX, minY, minZ, maxX, maxY, maxZ));
         }
 
-        CACHE.put(key, boxes);
+        synchronized (CACHE) {
+            CACHE.put(key, boxes);
+        }
 
         return boxes;
     }
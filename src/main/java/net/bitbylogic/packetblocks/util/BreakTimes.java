@@ -0,0 +1,191 @@
+package net.bitbylogic.packetblocks.util;
+
+import lombok.NonNull;
+import org.bukkit.Material;
+import org.bukkit.attribute.Attribute;
+import org.bukkit.attribute.AttributeInstance;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.potion.PotionEffect;
+import org.bukkit.potion.PotionEffectType;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class BreakTimes {
+
+    /**
+     * Break speed value that tells the animation task to compute the break time the same way
+     * vanilla does, based on the block, the held tool and the player's effects and attributes.
+     */
+    public static final int VANILLA_BREAK_SPEED = -2;
+
+    private static final int MAX_BREAK_TICKS = 4096;
+
+    /**
+     * Hardness only depends on the material, so this is bounded by the number of materials.
+     */
+    private static final Map<Material, Float> HARDNESS = new ConcurrentHashMap<>();
+
+    /**
+     * An access-ordered LRU, only touched while holding its lock, as digs are timed on every
+     * player's entity thread.
+     */
+    private static final Map<BreakKey, Integer> BREAK_TICKS = new LinkedHashMap<>(256, 0.75f, true) {
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<BreakKey, Integer> eldest) {
+            return size() > MAX_BREAK_TICKS;
+        }
+
+    };
+
+    /**
+     * Retrieves the hardness of the given block data from a per-material cache.
+     * Safe to call from any thread.
+     *
+     * @param blockData the block data to look up; must not be null
+     * @return the block's hardness, or -1 if the block is unbreakable
+     */
+    public static float getHardness(@NonNull BlockData blockData) {
+        return HARDNESS.computeIfAbsent(blockData.getMaterial(), Material::getHardness);
+    }
+
+    /**
+     * Computes how many ticks it takes the given player to break the given block data, following
+     * vanilla's dig speed formula: tool speed, correct tool, mining efficiency, haste, mining fatigue,
+     * the block break speed attribute, the underwater penalty and the airborne penalty.
+     * <p>
+     * Results are cached per combination of block data, held item type and the player's modifiers, so
+     * repeated digs only pay for building the lookup key. Tools with a tool component of their own mine
+     * differently from their item type, so their break times are computed every time. This reads the
+     * player's inventory, effects and attributes, so it must be called from the player's entity thread.
+     *
+     * @param player    the player breaking the block; must not be null
+     * @param blockData the block data being broken; must not be null
+     * @return the number of ticks the break takes, 0 for an instant break, or -1 if the block is unbreakable
+     */
+    public static int getBreakTicks(@NonNull Player player, @NonNull BlockData blockData) {
+        ItemStack tool = player.getInventory().getItemInMainHand();
+
+        PotionEffect haste = player.getPotionEffect(PotionEffectType.HASTE);
+        PotionEffect conduitPower = player.getPotionEffect(PotionEffectType.CONDUIT_POWER);
+        PotionEffect miningFatigue = player.getPotionEffect(PotionEffectType.MINING_FATIGUE);
+
+        int hasteLevel = Math.max(haste == null ? 0 : haste.getAmplifier() + 1, conduitPower == null ? 0 : conduitPower.getAmplifier() + 1);
+        int fatigueLevel = miningFatigue == null ? 0 : miningFatigue.getAmplifier() + 1;
+
+        BreakKey key = new BreakKey(
+                blockData,
+                tool.getType(),
+                (float) getAttribute(player, Attribute.MINING_EFFICIENCY, 0),
+                hasteLevel,
+                fatigueLevel,
+                (float) getAttribute(player, Attribute.BLOCK_BREAK_SPEED, 1),
+                player.isUnderWater() ? (float) getAttribute(player, Attribute.SUBMERGED_MINING_SPEED, 0.2) : 1f,
+                player.isOnGround()
+        );
+
+        if (hasCustomTool(tool)) {
+            return computeBreakTicks(key, tool);
+        }
+
+        Integer cached;
+
+        synchronized (BREAK_TICKS) {
+            cached = BREAK_TICKS.get(key);
+        }
+
+        if (cached != null) {
+            return cached;
+        }
+
+        int ticks = computeBreakTicks(key, tool);
+
+        // Block data is mutable, so the cache keeps its own copy in the key.
+        synchronized (BREAK_TICKS) {
+            BREAK_TICKS.put(key.withBlockData(blockData.clone()), ticks);
+        }
+
+        return ticks;
+    }
+
+    private static boolean hasCustomTool(@NonNull ItemStack tool) {
+        if (!tool.hasItemMeta()) {
+            return false;
+        }
+
+        ItemMeta meta = tool.getItemMeta();
+        return meta != null && meta.hasTool();
+    }
+
+    private static int computeBreakTicks(@NonNull BreakKey key, @NonNull ItemStack tool) {
+        BlockData blockData = key.blockData();
+        float hardness = getHardness(blockData);
+
+        if (hardness < 0) {
+            return -1;
+        }
+
+        if (hardness == 0) {
+            return 0;
+        }
+
+        float speed = blockData.getDestroySpeed(tool, false);
+
+        if (speed > 1f) {
+            speed += key.miningEfficiency();
+        }
+
+        if (key.hasteLevel() > 0) {
+            speed *= 1f + key.hasteLevel() * 0.2f;
+        }
+
+        if (key.fatigueLevel() > 0) {
+            speed *= switch (key.fatigueLevel()) {
+                case 1 -> 0.3f;
+                case 2 -> 0.09f;
+                case 3 -> 0.0027f;
+                default -> 8.1E-4f;
+            };
+        }
+
+        speed *= key.blockBreakSpeed();
+        speed *= key.submergedSpeed();
+
+        if (!key.onGround()) {
+            speed /= 5f;
+        }
+
+        boolean correctTool = !blockData.requiresCorrectToolForDrops() || blockData.isPreferredTool(tool);
+        float progressPerTick = speed / hardness / (correctTool ? 30f : 100f);
+
+        if (progressPerTick >= 1f) {
+            return 0;
+        }
+
+        if (progressPerTick <= 0f) {
+            return -1;
+        }
+
+        return (int) Math.ceil(1f / progressPerTick);
+    }
+
+    private static double getAttribute(@NonNull Player player, @NonNull Attribute attribute, double fallback) {
+        AttributeInstance instance = player.getAttribute(attribute);
+        return instance == null ? fallback : instance.getValue();
+    }
+
+    private record BreakKey(BlockData blockData, Material tool, float miningEfficiency, int hasteLevel,
+                            int fatigueLevel, float blockBreakSpeed, float submergedSpeed, boolean onGround) {
+
+        BreakKey withBlockData(@NonNull BlockData blockData) {
+            return new BreakKey(blockData, tool, miningEfficiency, hasteLevel, fatigueLevel, blockBreakSpeed, submergedSpeed, onGround);
+        }
+
+    }
+
+}
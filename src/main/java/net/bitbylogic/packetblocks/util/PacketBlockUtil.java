@@ -1,11 +1,16 @@
 package net.bitbylogic.packetblocks.util;
 
+import com.github.retrooper.packetevents.PacketEvents;
+import com.github.retrooper.packetevents.PacketEventsAPI;
+import com.github.retrooper.packetevents.protocol.player.User;
 import lombok.NonNull;
 import net.bitbylogic.packetblocks.PacketBlocks;
 import net.bitbylogic.packetblocks.block.PacketBlock;
 import net.bitbylogic.packetblocks.block.PacketBlockHolder;
 import net.bitbylogic.packetblocks.block.PacketBlockManager;
 import net.bitbylogic.packetblocks.group.PacketBlockGroup;
+import net.bitbylogic.packetblocks.group.PacketBlockInstance;
+import net.bitbylogic.packetblocks.metrics.jfr.RayTraceEvent;
 import org.bukkit.FluidCollisionMode;
 import org.bukkit.Location;
 import org.bukkit.Material;
@@ -21,6 +26,42 @@ import java.util.Optional;
 
 public class PacketBlockUtil {
 
+    /**
+     * Resolves the block data a holder shows to the given player at a location, without
+     * looking the holder up in the {@link PacketBlockManager} again.
+     *
+     * @param holder   the holder to read from; must not be null
+     * @param player   the player to resolve the data for; can be null to use the default data
+     * @param location the location of the block; must not be null
+     * @return the block data at the location, or null if the holder has no block there
+     */
+    public static @Nullable BlockData getHolderData(@NonNull PacketBlockHolder<?, ?> holder, @Nullable Player player, @NonNull Location location) {
+        if (holder instanceof PacketBlock packetBlock) {
+            return packetBlock.getData(player);
+        }
+
+        if (holder instanceof PacketBlockGroup group) {
+            return group.getDataAt(player, location).orElse(null);
+        }
+
+        if (holder instanceof PacketBlockInstance instance) {
+            return instance.getDataAt(player, location).orElse(null);
+        }
+
+        return null;
+    }
+
+    /**
+     * Looks up the PacketEvents user of a player.
+     *
+     * @param player the player to look up; must not be null
+     * @return the player's user, or null if PacketEvents is not running or does not know the player
+     */
+    public static @Nullable User getUser(@NonNull Player player) {
+        PacketEventsAPI<?> api = PacketEvents.getAPI();
+        return api == null ? null : api.getPlayerManager().getUser(player);
+    }
+
     public static BlockData getBlockData(@Nullable Player player, @NonNull Location location) {
         if(location.getWorld() == null) {
             return Material.AIR.createBlockData();
@@ -48,6 +89,10 @@ public class PacketBlockUtil {
             return optionalData.get();
         }
 
+        if(packetBlockHolder instanceof PacketBlockInstance instance) {
+            return instance.getDataAt(player, location).orElseGet(() -> location.getBlock().getBlockData());
+        }
+
         return location.getBlock().getBlockData();
     }
 
@@ -88,6 +133,10 @@ public class PacketBlockUtil {
             return optionalData.get().getMaterial();
         }
 
+        if(packetBlockHolder instanceof PacketBlockInstance instance) {
+            return instance.getDataAt(player, location).map(BlockData::getMaterial).orElseGet(() -> location.getBlock().getType());
+        }
+
         return location.getBlock().getType();
     }
 
@@ -100,8 +149,40 @@ public class PacketBlockUtil {
      * @return a RayTraceResult containing information about the hit block and location, or null if no block was hit
      */
     public static RayTraceResult rayTrace(Player player, double range) {
-        PacketBlockManager blockManager = PacketBlocks.getInstance().getBlockManager();
+        return rayTrace(PacketBlocks.getInstance().getBlockManager(), player, range);
+    }
+
+    /**
+     * Performs a ray trace from the player's eye location along their current direction up to the specified range,
+     * resolving packet blocks through the given manager. See {@link #rayTrace(Player, double)}.
+     *
+     * @param blockManager the manager to look packet blocks up in; must not be null
+     * @param player the player from whose perspective the ray trace is performed
+     * @param range the maximum distance the ray trace will travel
+     * @return a RayTraceResult containing information about the hit block and location, or null if no block was hit
+     */
+    public static RayTraceResult rayTrace(@NonNull PacketBlockManager blockManager, Player player, double range) {
+        RayTraceEvent rayTraceEvent = new RayTraceEvent();
+        rayTraceEvent.begin();
 
+        RayTraceResult result = traceBlocks(blockManager, player, range);
+
+        rayTraceEvent.end();
+
+        if (rayTraceEvent.shouldCommit()) {
+            Block hitBlock = result == null ? null : result.getHitBlock();
+
+            rayTraceEvent.setPlayer(player.getName());
+            rayTraceEvent.setRange(range);
+            rayTraceEvent.setHit(hitBlock != null);
+            rayTraceEvent.setPacketBlockHit(hitBlock != null && blockManager.getBlock(hitBlock.getLocation()).isPresent());
+            rayTraceEvent.commit();
+        }
+
+        return result;
+    }
+
+    private static RayTraceResult traceBlocks(@NonNull PacketBlockManager blockManager, Player player, double range) {
         Location eye = player.isSneaking() ? player.getEyeLocation().clone().add(0, 0.25, 0) : player.getEyeLocation();
         Vector direction = eye.getDirection().normalize();
 
@@ -141,12 +222,16 @@ public class PacketBlockUtil {
                 return new RayTraceResult(boxResult.getHitPosition(), block, boxResult.getHitBlockFace());
             }
 
-            if (!(packetBlock instanceof PacketBlockGroup group)) {
+            Optional<BlockData> optionalBlockData;
+
+            if (packetBlock instanceof PacketBlockInstance instance) {
+                optionalBlockData = instance.getDataAt(player, block.getLocation());
+            } else if (packetBlock instanceof PacketBlockGroup group) {
+                optionalBlockData = group.getDataAt(player, block.getLocation());
+            } else {
                 continue;
             }
 
-            Optional<BlockData> optionalBlockData = group.getDataAt(player, block.getLocation());
-
             if (optionalBlockData.isEmpty()) {
                 continue;
             }
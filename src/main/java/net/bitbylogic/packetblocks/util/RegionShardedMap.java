@@ -0,0 +1,228 @@
+package net.bitbylogic.packetblocks.util;
+
+import lombok.NonNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * A concurrent map of the chunks of one world, keyed by {@link BlockPositions#chunkKey(int, int)},
+ * that keeps every Folia region section in its own shard.
+ * <p>
+ * Folia groups chunks into sections of {@code 2^SECTION_SHIFT} by {@code 2^SECTION_SHIFT} chunks and
+ * a region always owns whole sections. Giving each section its own {@link ConcurrentHashMap} means
+ * region threads writing to their own chunks never share a table, a resize or a size counter with
+ * other regions. Only creating a section's shard touches the shared shard table.
+ * <p>
+ * Lookups of a single chunk cost one extra hash lookup. World-wide iteration walks every shard and is
+ * weakly consistent, like iterating a {@link ConcurrentHashMap}. Empty shards are kept, as a region
+ * that emptied a section is likely to fill it again.
+ *
+ * @param <V> the type of the values
+ */
+public class RegionShardedMap<V> extends AbstractMap<Long, V> implements ConcurrentMap<Long, V> {
+
+    /**
+     * Chunks per section side as a power of two, matching Folia's default region grid exponent.
+     */
+    public static final int SECTION_SHIFT = 4;
+
+    private final ConcurrentHashMap<Long, ConcurrentHashMap<Long, V>> shards = new ConcurrentHashMap<>();
+    private final Set<Entry<Long, V>> entrySet = new EntrySet();
+
+    /**
+     * @return the number of section shards, including empty ones
+     */
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    @Override
+    public int size() {
+        long size = 0;
+
+        for (ConcurrentHashMap<Long, V> shard : shards.values()) {
+            size += shard.size();
+        }
+
+        return (int) Math.min(Integer.MAX_VALUE, size);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (ConcurrentHashMap<Long, V> shard : shards.values()) {
+            if (!shard.isEmpty()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        ConcurrentHashMap<Long, V> shard = find(key);
+        return shard != null && shard.containsKey(key);
+    }
+
+    @Override
+    public V get(Object key) {
+        ConcurrentHashMap<Long, V> shard = find(key);
+        return shard == null ? null : shard.get(key);
+    }
+
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        V value = get(key);
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public V put(@NonNull Long key, @NonNull V value) {
+        return shard(key).put(key, value);
+    }
+
+    @Override
+    public V putIfAbsent(@NonNull Long key, @NonNull V value) {
+        return shard(key).putIfAbsent(key, value);
+    }
+
+    @Override
+    public V remove(Object key) {
+        ConcurrentHashMap<Long, V> shard = find(key);
+        return shard == null ? null : shard.remove(key);
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        ConcurrentHashMap<Long, V> shard = find(key);
+        return shard != null && shard.remove(key, value);
+    }
+
+    @Override
+    public boolean replace(@NonNull Long key, @NonNull V oldValue, @NonNull V newValue) {
+        ConcurrentHashMap<Long, V> shard = find(key);
+        return shard != null && shard.replace(key, oldValue, newValue);
+    }
+
+    @Override
+    public V replace(@NonNull Long key, @NonNull V value) {
+        ConcurrentHashMap<Long, V> shard = find(key);
+        return shard == null ? null : shard.replace(key, value);
+    }
+
+    @Override
+    public V computeIfAbsent(@NonNull Long key, @NonNull Function<? super Long, ? extends V> mappingFunction) {
+        ConcurrentHashMap<Long, V> shard = shard(key);
+        V value = shard.get(key);
+
+        return value != null ? value : shard.computeIfAbsent(key, mappingFunction);
+    }
+
+    @Override
+    public V computeIfPresent(@NonNull Long key, @NonNull BiFunction<? super Long, ? super V, ? extends V> remappingFunction) {
+        ConcurrentHashMap<Long, V> shard = find(key);
+        return shard == null ? null : shard.computeIfPresent(key, remappingFunction);
+    }
+
+    @Override
+    public V compute(@NonNull Long key, @NonNull BiFunction<? super Long, ? super V, ? extends V> remappingFunction) {
+        return shard(key).compute(key, remappingFunction);
+    }
+
+    @Override
+    public V merge(@NonNull Long key, @NonNull V value, @NonNull BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        return shard(key).merge(key, value, remappingFunction);
+    }
+
+    @Override
+    public void forEach(@NonNull BiConsumer<? super Long, ? super V> action) {
+        for (ConcurrentHashMap<Long, V> shard : shards.values()) {
+            shard.forEach(action);
+        }
+    }
+
+    @Override
+    public void clear() {
+        shards.clear();
+    }
+
+    @Override
+    public Set<Entry<Long, V>> entrySet() {
+        return entrySet;
+    }
+
+    private ConcurrentHashMap<Long, V> shard(@NonNull Long key) {
+        return shards.computeIfAbsent(sectionKey(key), section -> new ConcurrentHashMap<>());
+    }
+
+    private @Nullable ConcurrentHashMap<Long, V> find(Object key) {
+        return key instanceof Long chunkKey ? shards.get(sectionKey(chunkKey)) : null;
+    }
+
+    private static long sectionKey(long chunkKey) {
+        return BlockPositions.chunkKey(BlockPositions.chunkKeyX(chunkKey) >> SECTION_SHIFT, BlockPositions.chunkKeyZ(chunkKey) >> SECTION_SHIFT);
+    }
+
+    private final class EntrySet extends AbstractSet<Entry<Long, V>> {
+
+        @Override
+        public Iterator<Entry<Long, V>> iterator() {
+            Iterator<ConcurrentHashMap<Long, V>> shardIterator = shards.values().iterator();
+
+            return new Iterator<>() {
+                private Iterator<Entry<Long, V>> current = Collections.emptyIterator();
+
+                @Override
+                public boolean hasNext() {
+                    while (!current.hasNext() && shardIterator.hasNext()) {
+                        current = shardIterator.next().entrySet().iterator();
+                    }
+
+                    return current.hasNext();
+                }
+
+                @Override
+                public Entry<Long, V> next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+
+                    return current.next();
+                }
+
+                @Override
+                public void remove() {
+                    current.remove();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return RegionShardedMap.this.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof Entry<?, ?> entry && Objects.equals(get(entry.getKey()), entry.getValue()) && entry.getValue() != null;
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            return o instanceof Entry<?, ?> entry && RegionShardedMap.this.remove(entry.getKey(), entry.getValue());
+        }
+
+        @Override
+        public void clear() {
+            RegionShardedMap.this.clear();
+        }
+
+    }
+
+}
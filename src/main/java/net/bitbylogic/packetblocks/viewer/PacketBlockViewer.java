@@ -15,6 +15,7 @@ import java.util.function.Supplier;
 public class PacketBlockViewer<T> implements MetadataHolder {
 
     private final MetadataHandler metadataHandler = new MetadataHandler();
+    private final ViewerHandle handle = new ViewerHandle();
 
     private T data;
     private Supplier<T> dataSupplier;
@@ -0,0 +1,101 @@
+package net.bitbylogic.packetblocks.viewer;
+
+import com.github.retrooper.packetevents.protocol.player.User;
+import lombok.NonNull;
+import net.bitbylogic.packetblocks.util.PacketBlockUtil;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.ref.WeakReference;
+import java.util.UUID;
+
+/**
+ * Caches the live {@link Player} and PacketEvents {@link User} of a viewer, so fan-out loops do not
+ * look every viewer up by unique id.
+ * <p>
+ * Both are held weakly and the player is only returned while it is online, so a handle never keeps a
+ * disconnected player alive or hands it out. A player object lasts for one connection, so the cached
+ * user is dropped whenever a different player is bound. Viewers restored without an online player,
+ * or whose player reconnected, are resolved through {@link Bukkit#getPlayer(UUID)} once and bound.
+ */
+public class ViewerHandle {
+
+    private volatile @Nullable WeakReference<Player> player;
+    private volatile @Nullable WeakReference<User> user;
+
+    /**
+     * Binds the viewer to an online player.
+     *
+     * @param player the player viewing the holder; must not be null
+     */
+    public void bind(@NonNull Player player) {
+        WeakReference<Player> current = this.player;
+
+        if (current != null && current.get() == player) {
+            return;
+        }
+
+        this.user = null;
+        this.player = new WeakReference<>(player);
+    }
+
+    /**
+     * Drops the cached player and user, for viewers that were removed.
+     */
+    public void clear() {
+        this.player = null;
+        this.user = null;
+    }
+
+    /**
+     * Returns the viewer's player if they are online, binding the current player object if the cached
+     * one is missing or belongs to an earlier connection.
+     *
+     * @param uuid the unique id of the viewer; must not be null
+     * @return the online player, or null if the viewer is offline
+     */
+    public @Nullable Player resolve(@NonNull UUID uuid) {
+        WeakReference<Player> current = this.player;
+        Player cached = current == null ? null : current.get();
+
+        if (cached != null && cached.isOnline()) {
+            return cached;
+        }
+
+        Player online = Bukkit.getPlayer(uuid);
+
+        if (online == null) {
+            clear();
+            return null;
+        }
+
+        bind(online);
+        return online;
+    }
+
+    /**
+     * Returns the PacketEvents user of the viewer's player, caching it for the player's connection.
+     *
+     * @param player the viewer's online player, as returned by {@link #resolve(UUID)}; must not be null
+     * @return the player's user, or null if PacketEvents is not running or does not know the player
+     */
+    public @Nullable User getUser(@NonNull Player player) {
+        WeakReference<Player> current = this.player;
+        WeakReference<User> cachedUser = this.user;
+        User cached = cachedUser == null ? null : cachedUser.get();
+
+        if (cached != null && current != null && current.get() == player) {
+            return cached;
+        }
+
+        User resolved = PacketBlockUtil.getUser(player);
+
+        if (resolved != null && current != null && current.get() == player) {
+            this.user = new WeakReference<>(resolved);
+        }
+
+        return resolved;
+    }
+
+}
@@ -1,22 +1,41 @@
 package net.bitbylogic.packetblocks.viewer;
 
+import com.github.retrooper.packetevents.protocol.player.User;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 import net.bitbylogic.packetblocks.block.PacketBlockPlayerData;
+import net.bitbylogic.packetblocks.metadata.MetadataKey;
+import net.bitbylogic.packetblocks.util.PacketBlockUtil;
 import org.bukkit.entity.Player;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 
+/**
+ * Tracks the viewers of a packet block holder.
+ * <p>
+ * Viewers are added and removed from main and region threads while PacketEvents' netty threads look
+ * them up for every packet, so they are kept in a {@link ConcurrentHashMap}: lookups never block and
+ * iteration never throws {@link java.util.ConcurrentModificationException}. View conditions are
+ * rarely changed and read on every join, so they are a copy-on-write set.
+ * <p>
+ * Every addition and removal is reported to the {@link ViewerListener}, which the manager uses to
+ * keep a reverse index of the holders each player views. Each viewer caches its live player in a
+ * {@link ViewerHandle}, so fan-out loops skip the global player lookup.
+ */
 @RequiredArgsConstructor
 public class ViewerHandler<V, T extends PacketBlockViewer<V>> {
 
-    private final Set<Predicate<Player>> viewConditions = new HashSet<>();
-    private final HashMap<UUID, T> viewers = new HashMap<>();
+    private final Set<Predicate<Player>> viewConditions = new CopyOnWriteArraySet<>();
+    private final Map<UUID, T> viewers = new ConcurrentHashMap<>();
 
     private final Function<Player, V> playerDataSupplier;
 
@@ -25,6 +44,9 @@ public class ViewerHandler<V, T extends PacketBlockViewer<V>> {
 
     private final Supplier<T> dataSupplier;
 
+    @Setter
+    private @Nullable ViewerListener viewerListener;
+
     protected Map<UUID, T> getViewers() {
         return Collections.unmodifiableMap(viewers);
     }
@@ -83,7 +105,8 @@ public class ViewerHandler<V, T extends PacketBlockViewer<V>> {
         }
 
         T data = dataSupplier.get();
-        viewers.put(player.getUniqueId(), data);
+        data.getHandle().bind(player);
+        putViewer(player.getUniqueId(), data);
 
         if(sendUpdate) {
             updateConsumer.accept(player);
@@ -101,7 +124,36 @@ public class ViewerHandler<V, T extends PacketBlockViewer<V>> {
      */
     protected T addViewer(@NonNull Player player) {
         T data = dataSupplier.get();
-        viewers.put(player.getUniqueId(), data);
+        data.getHandle().bind(player);
+        putViewer(player.getUniqueId(), data);
+        return data;
+    }
+
+    /**
+     * Registers a viewer by their unique id without requiring them to be online. Intended for
+     * restoring persisted viewers; no updates are sent.
+     *
+     * @param uuid The unique id of the viewer to restore. Must not be null.
+     * @return The existing viewer data if the viewer was already present, otherwise the newly created data.
+     */
+    protected T restoreViewer(@NonNull UUID uuid) {
+        T existing = viewers.get(uuid);
+
+        if (existing != null) {
+            return existing;
+        }
+
+        T data = dataSupplier.get();
+        T previous = viewers.putIfAbsent(uuid, data);
+
+        if (previous != null) {
+            return previous;
+        }
+
+        if (viewerListener != null) {
+            viewerListener.viewerAdded(uuid);
+        }
+
         return data;
     }
 
@@ -128,14 +180,69 @@ public class ViewerHandler<V, T extends PacketBlockViewer<V>> {
      * @param player the player to be removed from the viewers list; must not be null
      */
     protected void removeViewer(@NonNull Player player) {
-        if(!viewers.containsKey(player.getUniqueId())) {
+        if(!forgetViewer(player.getUniqueId())) {
             return;
         }
 
-        viewers.remove(player.getUniqueId());
         removeConsumer.accept(player);
     }
 
+    /**
+     * Removes a viewer by their unique id without sending them anything, for players that are no
+     * longer online.
+     *
+     * @param uuid the unique id of the viewer to remove; must not be null
+     * @return true if the player was a viewer
+     */
+    protected boolean forgetViewer(@NonNull UUID uuid) {
+        T viewer = viewers.remove(uuid);
+
+        if (viewer == null) {
+            return false;
+        }
+
+        viewer.getHandle().clear();
+
+        if (viewerListener != null) {
+            viewerListener.viewerRemoved(uuid);
+        }
+
+        return true;
+    }
+
+    /**
+     * Runs the given action for every viewer that is online, using each viewer's cached
+     * {@link ViewerHandle} rather than looking the player up by unique id. Offline viewers are skipped.
+     *
+     * @param action the action to run with each online player and their viewer data; must not be null
+     */
+    protected void forEachOnlineViewer(@NonNull BiConsumer<Player, T> action) {
+        viewers.forEach((uuid, viewer) -> {
+            Player player = viewer.getHandle().resolve(uuid);
+
+            if (player != null) {
+                action.accept(player, viewer);
+            }
+        });
+    }
+
+    /**
+     * Returns the PacketEvents user of a player, from their viewer handle if they are a viewer.
+     *
+     * @param player the player to look up; must not be null
+     * @return the player's user, or null if PacketEvents does not know the player
+     */
+    protected @Nullable User getUser(@NonNull Player player) {
+        T viewer = viewers.get(player.getUniqueId());
+        return viewer == null ? PacketBlockUtil.getUser(player) : viewer.getHandle().getUser(player);
+    }
+
+    private void putViewer(@NonNull UUID uuid, @NonNull T data) {
+        if (viewers.put(uuid, data) == null && viewerListener != null) {
+            viewerListener.viewerAdded(uuid);
+        }
+    }
+
     /**
      * Adds a viewing condition to the list of conditions if it is not already present.
      *
@@ -207,4 +314,59 @@ public class ViewerHandler<V, T extends PacketBlockViewer<V>> {
         return getViewer(player).map(playerData -> playerData.getMetadata(key)).orElse(fallback);
     }
 
+    /**
+     * Adds a typed metadata entry to the specific player's {@link PacketBlockPlayerData}, if the player is a viewer.
+     *
+     * @param player The player whose metadata is being updated. Must not be null.
+     * @param key    The key for the metadata entry. Must not be null.
+     * @param value  The value associated with the specified key. Must not be null.
+     */
+    protected <M> void addMetadata(@NonNull Player player, @NonNull MetadataKey<M> key, @NonNull M value) {
+        T viewer = viewers.get(player.getUniqueId());
+
+        if (viewer != null) {
+            viewer.addMetadata(key, value);
+        }
+    }
+
+    /**
+     * Removes the typed metadata entry for the given player, if the player is a viewer of this PacketBlock.
+     *
+     * @param player The player whose associated metadata is to be removed. Must not be null.
+     * @param key    The key of the metadata to be removed. Must not be null.
+     */
+    protected void removeMetadata(@NonNull Player player, @NonNull MetadataKey<?> key) {
+        T viewer = viewers.get(player.getUniqueId());
+
+        if (viewer != null) {
+            viewer.removeMetadata(key);
+        }
+    }
+
+    /**
+     * Checks if the specified player has a value stored under the given key within this Packet Block.
+     *
+     * @param player The player whose metadata association is to be checked. Must not be null.
+     * @param key    The key of the metadata to check. Must not be null.
+     * @return True if the specified player has a value stored under the key, otherwise false.
+     */
+    protected boolean hasMetadata(@NonNull Player player, @NonNull MetadataKey<?> key) {
+        T viewer = viewers.get(player.getUniqueId());
+        return viewer != null && viewer.hasMetadata(key);
+    }
+
+    /**
+     * Retrieves the value stored under the given key for a specified player. If the player is not a viewer
+     * or nothing is stored under the key, the fallback value will be returned.
+     *
+     * @param player   the player whose metadata is to be retrieved; must not be null
+     * @param key      the key of the metadata to retrieve; must not be null
+     * @param fallback the value to return if no associated metadata is found; can be null
+     * @return the stored value, or the fallback value if no metadata is found
+     */
+    protected <M> M getMetadata(@NonNull Player player, @NonNull MetadataKey<M> key, @Nullable M fallback) {
+        T viewer = viewers.get(player.getUniqueId());
+        return viewer == null ? fallback : viewer.getMetadata(key, fallback);
+    }
+
 }
@@ -1,13 +1,16 @@
 package net.bitbylogic.packetblocks.viewer;
 
+import com.github.retrooper.packetevents.protocol.player.User;
 import lombok.NonNull;
 import net.bitbylogic.packetblocks.block.PacketBlockPlayerData;
+import net.bitbylogic.packetblocks.metadata.MetadataKey;
 import org.bukkit.entity.Player;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.BiConsumer;
 import java.util.function.Predicate;
 
 public interface ViewerHolder<V, T extends PacketBlockViewer<V>> {
@@ -77,6 +80,17 @@ public interface ViewerHolder<V, T extends PacketBlockViewer<V>> {
         return getViewerHandler().addViewer(player);
     }
 
+    /**
+     * Registers a viewer by their unique id without requiring them to be online. Intended for
+     * restoring persisted viewers; no updates are sent.
+     *
+     * @param uuid The unique id of the viewer to restore. Must not be null.
+     * @return The existing viewer data if the viewer was already present, otherwise the newly created data.
+     */
+    default T restoreViewer(@NonNull UUID uuid) {
+        return getViewerHandler().restoreViewer(uuid);
+    }
+
     /**
      * Adds the specified player as a viewer to this Packet Block if they are not already added
      * and updates their block state to reflect the current state of the Packet Block.
@@ -110,6 +124,37 @@ public interface ViewerHolder<V, T extends PacketBlockViewer<V>> {
         getViewerHandler().removeViewer(player);
     }
 
+    /**
+     * Runs the given action for every viewer that is online, skipping offline viewers. Players are
+     * taken from each viewer's cached {@link ViewerHandle} instead of being looked up by unique id.
+     *
+     * @param action the action to run with each online player and their viewer data; must not be null
+     */
+    default void forEachOnlineViewer(@NonNull BiConsumer<Player, T> action) {
+        getViewerHandler().forEachOnlineViewer(action);
+    }
+
+    /**
+     * Returns the PacketEvents user of a player, from their cached viewer handle if they are a viewer.
+     *
+     * @param player the player to look up; must not be null
+     * @return the player's user, or null if PacketEvents does not know the player
+     */
+    default @Nullable User getUser(@NonNull Player player) {
+        return getViewerHandler().getUser(player);
+    }
+
+    /**
+     * Removes a viewer by their unique id without sending them anything, for players that are no
+     * longer online.
+     *
+     * @param uuid the unique id of the viewer to remove; must not be null
+     * @return true if the player was a viewer
+     */
+    default boolean forgetViewer(@NonNull UUID uuid) {
+        return getViewerHandler().forgetViewer(uuid);
+    }
+
     /**
      * Adds a metadata key-value pair to the specific player's {@link PacketBlockPlayerData}, if the player is a viewer.
      *
@@ -167,4 +212,60 @@ public interface ViewerHolder<V, T extends PacketBlockViewer<V>> {
         return getViewerHandler().getMetadataAs(player, key, fallback);
     }
 
+    /**
+     * Adds a typed metadata entry to the specific player's {@link PacketBlockPlayerData}, if the player is a viewer.
+     *
+     * @param player The player whose metadata is being updated. Must not be null.
+     * @param key    The key for the metadata entry. Must not be null.
+     * @param value  The value associated with the specified key. Must not be null.
+     */
+    default <M> void addMetadata(@NonNull Player player, @NonNull MetadataKey<M> key, @NonNull M value) {
+        getViewerHandler().addMetadata(player, key, value);
+    }
+
+    /**
+     * Removes the typed metadata entry for the given player, if the player is a viewer of this PacketBlock.
+     *
+     * @param player The player whose associated metadata is to be removed. Must not be null.
+     * @param key    The key of the metadata to be removed. Must not be null.
+     */
+    default void removeMetadata(@NonNull Player player, @NonNull MetadataKey<?> key) {
+        getViewerHandler().removeMetadata(player, key);
+    }
+
+    /**
+     * Checks if the specified player has a value stored under the given key within this Packet Block.
+     *
+     * @param player The player whose metadata association is to be checked. Must not be null.
+     * @param key    The key of the metadata to check. Must not be null.
+     * @return True if the specified player has a value stored under the key, otherwise false.
+     */
+    default boolean hasMetadata(@NonNull Player player, @NonNull MetadataKey<?> key) {
+        return getViewerHandler().hasMetadata(player, key);
+    }
+
+    /**
+     * Retrieves the value stored under the given key for a specified player.
+     *
+     * @param player The player for whom metadata is being retrieved. Must not be null.
+     * @param key    The key identifying the metadata to be retrieved. Must not be null.
+     * @return The stored value, or null if the player is not a viewer or nothing is stored under the key.
+     */
+    default <M> @Nullable M getMetadata(@NonNull Player player, @NonNull MetadataKey<M> key) {
+        return getViewerHandler().getMetadata(player, key, null);
+    }
+
+    /**
+     * Retrieves the value stored under the given key for a specified player. If no metadata is found,
+     * a fallback value will be returned.
+     *
+     * @param player   the player whose metadata is to be retrieved; must not be null
+     * @param key      the key of the metadata to retrieve; must not be null
+     * @param fallback the value to return if no associated metadata is found; can be null
+     * @return the stored value, or the fallback value if no metadata is found
+     */
+    default <M> M getMetadata(@NonNull Player player, @NonNull MetadataKey<M> key, @Nullable M fallback) {
+        return getViewerHandler().getMetadata(player, key, fallback);
+    }
+
 }
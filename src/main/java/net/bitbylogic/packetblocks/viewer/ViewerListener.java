@@ -0,0 +1,17 @@
+package net.bitbylogic.packetblocks.viewer;
+
+import lombok.NonNull;
+
+import java.util.UUID;
+
+/**
+ * Notified by a {@link ViewerHandler} whenever a player starts or stops viewing its holder, however
+ * the viewer was added or removed.
+ */
+public interface ViewerListener {
+
+    void viewerAdded(@NonNull UUID uuid);
+
+    void viewerRemoved(@NonNull UUID uuid);
+
+}
@@ -5,14 +5,14 @@ import net.bitbylogic.packetblocks.viewer.PacketBlockViewer;
 import net.bitbylogic.utils.location.WorldPosition;
 import org.bukkit.block.data.BlockData;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Supplier;
 
 public class GroupPacketBlockViewer extends PacketBlockViewer<Map<WorldPosition, BlockData>> {
 
     public GroupPacketBlockViewer(Map<WorldPosition, BlockData> data, Supplier<Map<WorldPosition, BlockData>> dataSupplier, int breakSpeed) {
-        super(new HashMap<>(data), dataSupplier, breakSpeed);
+        super(new ConcurrentHashMap<>(data), dataSupplier, breakSpeed);
     }
 
     public void setBlockData(@NonNull WorldPosition position, @NonNull BlockData blockData) {
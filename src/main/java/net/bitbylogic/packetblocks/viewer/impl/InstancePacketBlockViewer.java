@@ -0,0 +1,14 @@
+package net.bitbylogic.packetblocks.viewer.impl;
+
+import net.bitbylogic.packetblocks.group.PacketBlockTemplate;
+import net.bitbylogic.packetblocks.viewer.PacketBlockViewer;
+
+import java.util.function.Supplier;
+
+public class InstancePacketBlockViewer extends PacketBlockViewer<PacketBlockTemplate> {
+
+    public InstancePacketBlockViewer(PacketBlockTemplate data, Supplier<PacketBlockTemplate> dataSupplier, int breakSpeed) {
+        super(data, dataSupplier, breakSpeed);
+    }
+
+}
@@ -0,0 +1,133 @@
+package net.bitbylogic.packetblocks;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Just enough of a Bukkit server for testing code that creates block data from strings and looks
+ * worlds up by name, without starting a server.
+ * <p>
+ * Worlds and block data are proxies: worlds only know their name, and block data only knows its
+ * state string, which it is compared by.
+ */
+public final class TestBukkit {
+
+    private static final Map<String, World> WORLDS = new ConcurrentHashMap<>();
+    private static final Map<String, BlockData> BLOCK_DATA = new ConcurrentHashMap<>();
+
+    private TestBukkit() {
+    }
+
+    /**
+     * Installs the test server unless a server is already set.
+     */
+    public static synchronized void install() {
+        if (Bukkit.getServer() != null) {
+            return;
+        }
+
+        Logger logger = Logger.getLogger("TestBukkit");
+
+        Server server = proxy(Server.class, (proxy, method, args) -> switch (method.getName()) {
+            case "createBlockData" -> args != null && args.length == 1 && args[0] instanceof String state ? blockData(state) : null;
+            case "getWorld" -> args != null && args.length == 1 && args[0] instanceof String name ? WORLDS.get(name) : null;
+            case "getLogger" -> logger;
+            default -> objectMethod(proxy, method, args, "TestServer");
+        });
+
+        try {
+            Field field = Bukkit.class.getDeclaredField("server");
+            field.setAccessible(true);
+            field.set(null, server);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to install the test server", e);
+        }
+    }
+
+    /**
+     * Retrieves the world with the given name, creating it if it does not exist yet.
+     */
+    public static World world(String name) {
+        return WORLDS.computeIfAbsent(name, key -> proxy(World.class, (proxy, method, args) ->
+                method.getName().equals("getName") ? key : objectMethod(proxy, method, args, "World{" + key + "}")));
+    }
+
+    /**
+     * Removes the world with the given name, so the server no longer finds it by name.
+     */
+    public static void unload(String name) {
+        WORLDS.remove(name);
+    }
+
+    /**
+     * Retrieves block data for the given state string. Equal states give equal block data.
+     */
+    public static BlockData blockData(String state) {
+        return BLOCK_DATA.computeIfAbsent(state, key -> proxy(BlockData.class, (proxy, method, args) -> switch (method.getName()) {
+            case "getAsString" -> key;
+            case "clone" -> proxy;
+            default -> objectMethod(proxy, method, args, key);
+        }));
+    }
+
+    private static Object objectMethod(Object proxy, Method method, Object[] args, String name) {
+        return switch (method.getName()) {
+            case "equals" -> proxy == args[0];
+            case "hashCode" -> System.identityHashCode(proxy);
+            case "toString" -> name;
+            default -> defaultValue(method.getReturnType());
+        };
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (!type.isPrimitive() || type == void.class) {
+            return null;
+        }
+
+        if (type == boolean.class) {
+            return false;
+        }
+
+        if (type == char.class) {
+            return '\0';
+        }
+
+        if (type == long.class) {
+            return 0L;
+        }
+
+        if (type == float.class) {
+            return 0f;
+        }
+
+        if (type == double.class) {
+            return 0d;
+        }
+
+        if (type == byte.class) {
+            return (byte) 0;
+        }
+
+        if (type == short.class) {
+            return (short) 0;
+        }
+
+        return 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(TestBukkit.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+}
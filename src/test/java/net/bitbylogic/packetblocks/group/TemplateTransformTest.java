@@ -0,0 +1,67 @@
+package net.bitbylogic.packetblocks.group;
+
+import net.bitbylogic.packetblocks.TestBukkit;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.block.structure.Mirror;
+import org.bukkit.block.structure.StructureRotation;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TemplateTransformTest {
+
+    @Test
+    void rotationsTurnClockwise() {
+        assertOffset(TemplateTransform.NONE, 1, 0, 1, 0);
+        assertOffset(TemplateTransform.of(StructureRotation.CLOCKWISE_90), 1, 0, 0, 1);
+        assertOffset(TemplateTransform.of(StructureRotation.CLOCKWISE_180), 1, 0, -1, 0);
+        assertOffset(TemplateTransform.of(StructureRotation.COUNTERCLOCKWISE_90), 1, 0, 0, -1);
+    }
+
+    @Test
+    void mirrorIsAppliedBeforeRotating() {
+        TemplateTransform transform = new TemplateTransform(StructureRotation.CLOCKWISE_90, Mirror.FRONT_BACK);
+
+        assertOffset(transform, 1, 0, 0, -1);
+        assertOffset(new TemplateTransform(StructureRotation.NONE, Mirror.LEFT_RIGHT), 2, 3, 2, -3);
+    }
+
+    @Test
+    void inverseUndoesEveryTransform() {
+        for (StructureRotation rotation : StructureRotation.values()) {
+            for (Mirror mirror : Mirror.values()) {
+                TemplateTransform transform = new TemplateTransform(rotation, mirror);
+
+                for (int x = -3; x <= 3; x++) {
+                    for (int z = -3; z <= 3; z++) {
+                        int placedX = transform.transformX(x, z);
+                        int placedZ = transform.transformZ(x, z);
+
+                        assertEquals(x, transform.inverseX(placedX, placedZ), transform + " x");
+                        assertEquals(z, transform.inverseZ(placedX, placedZ), transform + " z");
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void onlyNoRotationAndNoMirrorIsIdentity() {
+        assertTrue(TemplateTransform.NONE.isIdentity());
+        assertFalse(TemplateTransform.of(StructureRotation.CLOCKWISE_90).isIdentity());
+        assertFalse(new TemplateTransform(StructureRotation.NONE, Mirror.FRONT_BACK).isIdentity());
+    }
+
+    @Test
+    void identityKeepsBlockDataInstance() {
+        BlockData blockData = TestBukkit.blockData("minecraft:oak_stairs[facing=north]");
+
+        assertSame(blockData, TemplateTransform.NONE.apply(blockData));
+    }
+
+    private static void assertOffset(TemplateTransform transform, int x, int z, int expectedX, int expectedZ) {
+        assertEquals(expectedX, transform.transformX(x, z), transform + " x");
+        assertEquals(expectedZ, transform.transformZ(x, z), transform + " z");
+    }
+
+}
@@ -0,0 +1,89 @@
+package net.bitbylogic.packetblocks.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HistogramTest {
+
+    @Test
+    void smallValuesHaveABucketEach() {
+        for (int value = 0; value < 16; value++) {
+            assertEquals(value, Histogram.bucketOf(value));
+            assertEquals(value, Histogram.highestValueOf(value));
+        }
+    }
+
+    @Test
+    void bucketsCoverContiguousRanges() {
+        for (int bucket = 1; bucket < Histogram.bucketOf(Long.MAX_VALUE); bucket++) {
+            long lowest = Histogram.highestValueOf(bucket - 1) + 1;
+            long highest = Histogram.highestValueOf(bucket);
+
+            assertTrue(lowest <= highest, "bucket " + bucket);
+            assertEquals(bucket, Histogram.bucketOf(lowest), "lowest value of bucket " + bucket);
+            assertEquals(bucket, Histogram.bucketOf(highest), "highest value of bucket " + bucket);
+        }
+    }
+
+    @Test
+    void bucketErrorIsAtMostASixteenth() {
+        for (long value = 16; value < 1 << 20; value += 7) {
+            long highest = Histogram.highestValueOf(Histogram.bucketOf(value));
+
+            assertTrue(highest >= value);
+            assertTrue(highest - value <= value / 16, "value " + value);
+        }
+    }
+
+    @Test
+    void largestValueFitsInTheLastBucket() {
+        assertEquals(Long.MAX_VALUE, Histogram.highestValueOf(Histogram.bucketOf(Long.MAX_VALUE)));
+        assertDoesNotThrow(() -> new Histogram().record(Long.MAX_VALUE));
+    }
+
+    @Test
+    void snapshotReportsRecordedValues() {
+        Histogram histogram = new Histogram();
+
+        for (int value = 1; value <= 100; value++) {
+            histogram.record(value);
+        }
+
+        Histogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(100, snapshot.count());
+        assertEquals(5050, snapshot.sum());
+        assertEquals(100, snapshot.max());
+        assertEquals(50.5, snapshot.mean());
+        assertEquals(1, snapshot.percentile(0));
+        assertEquals(51, snapshot.percentile(50));
+        assertEquals(100, snapshot.percentile(100));
+    }
+
+    @Test
+    void negativeValuesAreRecordedAsZero() {
+        Histogram histogram = new Histogram();
+        histogram.record(-5);
+
+        Histogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(1, snapshot.counts()[0]);
+        assertEquals(0, snapshot.sum());
+    }
+
+    @Test
+    void resetClearsEveryValue() {
+        Histogram histogram = new Histogram();
+        histogram.record(42);
+        histogram.reset();
+
+        Histogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(0, snapshot.count());
+        assertEquals(0, snapshot.max());
+        assertEquals(0, snapshot.mean());
+        assertEquals(0, snapshot.percentile(99));
+    }
+
+}
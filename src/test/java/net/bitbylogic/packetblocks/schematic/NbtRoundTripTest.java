@@ -0,0 +1,157 @@
+package net.bitbylogic.packetblocks.schematic;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Writes a Sponge schematic with the same layout as {@link SchematicExporter} and reads it back the
+ * way {@link SchematicImporter} walks it, skipping the tags the importer does not use.
+ */
+class NbtRoundTripTest {
+
+    @Test
+    void spongeSchematicRoundTrips() throws IOException {
+        byte[] data = {0, 1, 1, 0, (byte) 0x80, 0x01};
+        byte[] schematic = writeSchematic(Map.of("minecraft:air", 0, "minecraft:stone", 1, "minecraft:glass", 128), data);
+
+        try (NbtInput input = new NbtInput(new ByteArrayInputStream(schematic))) {
+            assertEquals(NbtInput.COMPOUND, input.readType());
+            assertEquals("", input.readName());
+            assertEquals(NbtInput.COMPOUND, input.readType());
+            assertEquals("Schematic", input.readName());
+
+            Map<String, Integer> values = new HashMap<>();
+            Map<String, Integer> palette = new HashMap<>();
+            byte[] blocks = null;
+            byte type;
+
+            while ((type = input.readType()) != NbtInput.END) {
+                String name = input.readName();
+
+                if (type == NbtInput.COMPOUND && name.equals("Blocks")) {
+                    byte blockType;
+
+                    while ((blockType = input.readType()) != NbtInput.END) {
+                        String blockName = input.readName();
+
+                        if (blockType == NbtInput.COMPOUND && blockName.equals("Palette")) {
+                            byte paletteType;
+
+                            while ((paletteType = input.readType()) != NbtInput.END) {
+                                String state = input.readName();
+                                palette.put(state, input.readIntegral(paletteType));
+                            }
+                        } else if (blockType == NbtInput.BYTE_ARRAY && blockName.equals("Data")) {
+                            blocks = new byte[input.readInt()];
+                            input.raw().readFully(blocks);
+                        } else {
+                            input.skip(blockType);
+                        }
+                    }
+                } else if (type == NbtInput.SHORT || type == NbtInput.INT) {
+                    values.put(name, input.readIntegral(type));
+                } else {
+                    input.skip(type);
+                }
+            }
+
+            assertEquals(NbtInput.END, input.readType());
+
+            assertEquals(Map.of("Version", 3, "DataVersion", 4189, "Width", 5, "Height", 1, "Length", 1), values);
+            assertEquals(Map.of("minecraft:air", 0, "minecraft:stone", 1, "minecraft:glass", 128), palette);
+            assertArrayEquals(data, blocks);
+        }
+    }
+
+    @Test
+    void readIntegralWidensEveryIntegralType() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (NbtOutput output = new NbtOutput(bytes)) {
+            output.raw().writeByte(-2);
+            output.raw().writeShort(-300);
+            output.raw().writeInt(70000);
+            output.raw().writeLong(12);
+        }
+
+        try (NbtInput input = new NbtInput(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertEquals(-2, input.readIntegral(NbtInput.BYTE));
+            assertEquals(-300, input.readIntegral(NbtInput.SHORT));
+            assertEquals(70000, input.readIntegral(NbtInput.INT));
+            assertEquals(12, input.readIntegral(NbtInput.LONG));
+            assertThrows(IOException.class, () -> input.readIntegral(NbtInput.STRING));
+        }
+    }
+
+    @Test
+    void skipPassesOverNestedTags() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (NbtOutput output = new NbtOutput(bytes)) {
+            output.startCompound("outer");
+            output.writeIntArray("array", 1, 2, 3);
+            output.startCompound("inner");
+            output.writeShort("short", 1);
+            output.writeEmptyList("list", NbtInput.COMPOUND);
+            output.endCompound();
+            output.startByteArray("bytes", 3);
+            output.raw().write(new byte[]{1, 2, 3});
+            output.endCompound();
+
+            output.writeInt("after", 42);
+        }
+
+        try (NbtInput input = new NbtInput(new ByteArrayInputStream(bytes.toByteArray()))) {
+            byte type = input.readType();
+            input.readName();
+            input.skip(type);
+
+            assertEquals(NbtInput.INT, input.readType());
+            assertEquals("after", input.readName());
+            assertEquals(42, input.readInt());
+        }
+    }
+
+    private static byte[] writeSchematic(Map<String, Integer> palette, byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (NbtOutput output = new NbtOutput(bytes)) {
+            output.startCompound("");
+            output.startCompound("Schematic");
+
+            output.writeInt("Version", 3);
+            output.writeInt("DataVersion", 4189);
+            output.writeShort("Width", 5);
+            output.writeShort("Height", 1);
+            output.writeShort("Length", 1);
+            output.writeIntArray("Offset", 0, 0, 0);
+
+            output.startCompound("Blocks");
+            output.startCompound("Palette");
+
+            for (Map.Entry<String, Integer> entry : palette.entrySet()) {
+                output.writeInt(entry.getKey(), entry.getValue());
+            }
+
+            output.endCompound();
+            output.startByteArray("Data", data.length);
+            output.raw().write(data);
+
+            output.writeEmptyList("BlockEntities", NbtInput.COMPOUND);
+            output.endCompound();
+
+            output.endCompound();
+            output.endCompound();
+        }
+
+        return bytes.toByteArray();
+    }
+
+}
@@ -0,0 +1,155 @@
+package net.bitbylogic.packetblocks.storage;
+
+import net.bitbylogic.packetblocks.TestBukkit;
+import net.bitbylogic.packetblocks.storage.ChunkCodec.StoredHolder;
+import net.bitbylogic.packetblocks.storage.ChunkCodec.StoredViewer;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkCodecTest {
+
+    private static World world;
+    private static BlockData stone;
+    private static BlockData glass;
+
+    @BeforeAll
+    static void setUp() {
+        TestBukkit.install();
+
+        world = TestBukkit.world("world");
+        stone = TestBukkit.blockData("minecraft:stone");
+        glass = TestBukkit.blockData("minecraft:glass");
+    }
+
+    @Test
+    void decodeReturnsEncodedHolders() throws IOException {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("string", "value");
+        metadata.put("int", 1);
+        metadata.put("long", 2L);
+        metadata.put("double", 3.5);
+        metadata.put("float", 4.5f);
+        metadata.put("boolean", true);
+        metadata.put("uuid", UUID.randomUUID());
+
+        StoredViewer viewer = new StoredViewer(UUID.randomUUID(), 20, Map.of("seen", true),
+                Map.of(location(1, 64, 2), glass));
+
+        StoredHolder block = new StoredHolder(ChunkCodec.TYPE_BLOCK, 0, 0, -1, true, false, 0,
+                metadata, Map.of(location(1, 64, 2), stone), List.of(viewer));
+
+        Map<Location, BlockData> groupBlocks = new LinkedHashMap<>();
+        groupBlocks.put(location(3, 64, 3), stone);
+        groupBlocks.put(location(3, 65, 3), stone);
+        groupBlocks.put(location(4, 64, 3), glass);
+
+        StoredHolder group = new StoredHolder(ChunkCodec.TYPE_GROUP, 42, 3, 10, false, true, 16,
+                Map.of(), groupBlocks, List.of());
+
+        List<StoredHolder> decoded = ChunkCodec.decode(ByteBuffer.wrap(ChunkCodec.encode(List.of(block, group))), world);
+
+        assertEquals(List.of(block, group), decoded);
+    }
+
+    @Test
+    void paletteStoresEachStateOnce() throws IOException {
+        Map<Location, BlockData> blocks = new LinkedHashMap<>();
+
+        for (int i = 0; i < 100; i++) {
+            blocks.put(location(i % 16, 64 + i / 16, 0), stone);
+        }
+
+        byte[] payload = ChunkCodec.encode(List.of(new StoredHolder(ChunkCodec.TYPE_GROUP, 1, 0, -1, false, false, 0,
+                Map.of(), blocks, List.of())));
+
+        ByteBuffer input = ByteBuffer.wrap(payload);
+
+        assertEquals(ChunkCodec.FORMAT_VERSION, input.getInt());
+        assertEquals(1, input.getInt());
+    }
+
+    @Test
+    void readGroupIdsSkipsBlocksAndViewers() throws IOException {
+        StoredViewer viewer = new StoredViewer(UUID.randomUUID(), -1, Map.of("name", "value"),
+                Map.of(location(0, 64, 0), glass));
+
+        List<StoredHolder> holders = List.of(
+                new StoredHolder(ChunkCodec.TYPE_BLOCK, 0, 0, -1, false, false, 0, Map.of("key", 1L),
+                        Map.of(location(0, 64, 0), stone), List.of(viewer)),
+                new StoredHolder(ChunkCodec.TYPE_GROUP, 7, 1, -1, false, false, 0, Map.of(),
+                        Map.of(location(1, 64, 0), stone), List.of(viewer)),
+                new StoredHolder(ChunkCodec.TYPE_GROUP, 9, 0, -1, false, false, 0, Map.of("uuid", UUID.randomUUID()),
+                        Map.of(location(2, 64, 0), glass), List.of())
+        );
+
+        List<Long> groupIds = new ArrayList<>();
+        ChunkCodec.readGroupIds(ByteBuffer.wrap(ChunkCodec.encode(holders)), groupIds);
+
+        assertEquals(List.of(7L, 9L), groupIds);
+    }
+
+    @Test
+    void readsVersionOnePayloadsAtGenerationZero() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+
+        output.writeInt(1);
+        output.writeInt(0);
+        output.writeInt(1);
+
+        output.writeByte(ChunkCodec.TYPE_GROUP);
+        output.writeLong(5);
+        output.writeInt(-1);
+        output.writeByte(0);
+        output.writeInt(0);
+        output.writeInt(0);
+        output.writeInt(0);
+        output.writeInt(0);
+
+        ByteBuffer payload = ByteBuffer.wrap(bytes.toByteArray());
+        List<StoredHolder> holders = ChunkCodec.decode(payload, world);
+
+        assertEquals(1, holders.size());
+        assertEquals(5, holders.getFirst().groupId());
+        assertEquals(0, holders.getFirst().generation());
+
+        List<Long> groupIds = new ArrayList<>();
+        ChunkCodec.readGroupIds(payload, groupIds);
+
+        assertEquals(List.of(5L), groupIds);
+    }
+
+    @Test
+    void rejectsUnknownFormatVersions() {
+        ByteBuffer payload = ByteBuffer.allocate(4).putInt(0, ChunkCodec.FORMAT_VERSION + 1);
+
+        assertThrows(IOException.class, () -> ChunkCodec.decode(payload, world));
+        assertThrows(IOException.class, () -> ChunkCodec.readGroupIds(payload, new ArrayList<>()));
+    }
+
+    @Test
+    void onlyPrimitivesStringsAndUuidsAreStorable() {
+        assertTrue(ChunkCodec.isStorable("value"));
+        assertTrue(ChunkCodec.isStorable(1));
+        assertTrue(ChunkCodec.isStorable(UUID.randomUUID()));
+        assertFalse(ChunkCodec.isStorable(new Object()));
+        assertFalse(ChunkCodec.isStorable(List.of()));
+        assertFalse(ChunkCodec.isStorable(null));
+    }
+
+    private static Location location(int x, int y, int z) {
+        return new Location(world, x, y, z);
+    }
+
+}
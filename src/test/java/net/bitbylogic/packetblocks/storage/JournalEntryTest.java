@@ -0,0 +1,79 @@
+package net.bitbylogic.packetblocks.storage;
+
+import net.bitbylogic.packetblocks.TestBukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournalEntryTest {
+
+    private static World world;
+    private static World nether;
+    private static BlockData stone;
+
+    @BeforeAll
+    static void setUp() {
+        TestBukkit.install();
+
+        world = TestBukkit.world("world");
+        nether = TestBukkit.world("world_nether");
+        stone = TestBukkit.blockData("minecraft:stone");
+    }
+
+    @Test
+    void decodeReturnsEncodedEntry() throws IOException {
+        Map<Location, BlockData> blocks = new LinkedHashMap<>();
+        blocks.put(new Location(world, 1, 64, 1), stone);
+        blocks.put(new Location(nether, -5, 30, 8), null);
+        blocks.put(new Location(world, 2, 64, 1), stone);
+
+        JournalEntry entry = new JournalEntry(JournalEntry.ADD_GROUP_BLOCKS, 12, blocks);
+
+        assertEquals(entry, JournalEntry.decode(ByteBuffer.wrap(entry.encode())));
+    }
+
+    @Test
+    void generationIsOnlyEncodedForGenerationEntries() throws IOException {
+        Map<Location, BlockData> chunks = JournalEntry.of(JournalEntry.SET_GROUP_GENERATION, 3,
+                new Location(world, 0, 64, 0), null).blocks();
+
+        JournalEntry generation = new JournalEntry(JournalEntry.SET_GROUP_GENERATION, 3, chunks, 7);
+
+        assertEquals(7, JournalEntry.decode(ByteBuffer.wrap(generation.encode())).generation());
+
+        JournalEntry removal = new JournalEntry(JournalEntry.REMOVE_GROUP_BLOCKS, 3, chunks, 7);
+        ByteBuffer encoded = ByteBuffer.wrap(removal.encode());
+
+        assertEquals(0, JournalEntry.decode(encoded).generation());
+        assertFalse(encoded.hasRemaining());
+    }
+
+    @Test
+    void ofCreatesSingleBlockEntry() {
+        Location location = new Location(world, 4, 70, 4);
+        JournalEntry entry = JournalEntry.of(JournalEntry.CREATE_BLOCK, 0, location, stone);
+
+        assertEquals(Map.of(location, stone), entry.blocks());
+        assertEquals(0, entry.generation());
+    }
+
+    @Test
+    void entriesOfUnloadedWorldsAreDropped() throws IOException {
+        World unloaded = TestBukkit.world("unloaded");
+        byte[] encoded = JournalEntry.of(JournalEntry.CREATE_BLOCK, 0, new Location(unloaded, 0, 64, 0), stone).encode();
+
+        TestBukkit.unload("unloaded");
+
+        assertNull(JournalEntry.decode(ByteBuffer.wrap(encoded)));
+    }
+
+}
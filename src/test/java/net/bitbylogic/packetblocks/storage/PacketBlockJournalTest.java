@@ -0,0 +1,130 @@
+package net.bitbylogic.packetblocks.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PacketBlockJournalTest {
+
+    private static final Logger LOGGER = Logger.getLogger(PacketBlockJournalTest.class.getName());
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replayReturnsAppendedEntriesInOrder() throws IOException {
+        PacketBlockJournal journal = new PacketBlockJournal(directory, LOGGER);
+
+        journal.append(new byte[]{1});
+        journal.append(new byte[]{2, 2});
+        journal.append(new byte[]{3, 3, 3});
+        journal.close();
+
+        assertEquals(List.of(List.of((byte) 1), List.of((byte) 2, (byte) 2), List.of((byte) 3, (byte) 3, (byte) 3)), replay());
+    }
+
+    @Test
+    void replayContinuesAcrossRotatedSegments() throws IOException {
+        PacketBlockJournal journal = new PacketBlockJournal(directory, LOGGER);
+
+        journal.append(new byte[]{1});
+        journal.rotate();
+        journal.append(new byte[]{2});
+        journal.close();
+
+        assertEquals(List.of(List.of((byte) 1), List.of((byte) 2)), replay());
+    }
+
+    @Test
+    void deleteBeforeDropsSegmentsCoveredBySnapshot() throws IOException {
+        PacketBlockJournal journal = new PacketBlockJournal(directory, LOGGER);
+
+        journal.append(new byte[]{1});
+        long segment = journal.rotate();
+        journal.append(new byte[]{2});
+        journal.close();
+
+        journal.deleteBefore(segment);
+
+        assertEquals(List.of(List.of((byte) 2)), replay());
+    }
+
+    @Test
+    void tornEntryStopsReplayOfItsSegment() throws IOException {
+        PacketBlockJournal journal = new PacketBlockJournal(directory, LOGGER);
+
+        journal.append(new byte[]{1});
+        journal.close();
+
+        // A frame announcing more bytes than were written, as left behind by a crash mid-write.
+        ByteBuffer torn = ByteBuffer.allocate(11).putInt(100).putInt(0).put(new byte[]{9, 9, 9});
+        Files.write(lastSegment(), torn.array(), StandardOpenOption.APPEND);
+
+        assertEquals(List.of(List.of((byte) 1)), replay());
+    }
+
+    @Test
+    void corruptEntryStopsReplayOfItsSegment() throws IOException {
+        PacketBlockJournal journal = new PacketBlockJournal(directory, LOGGER);
+
+        journal.append(new byte[]{1});
+        journal.append(new byte[]{2});
+        journal.close();
+
+        Path segment = lastSegment();
+        byte[] bytes = Files.readAllBytes(segment);
+        bytes[bytes.length - 1] ^= 0x7F;
+        Files.write(segment, bytes);
+
+        assertEquals(List.of(List.of((byte) 1)), replay());
+    }
+
+    private List<List<Byte>> replay() throws IOException {
+        PacketBlockJournal journal = new PacketBlockJournal(directory, LOGGER);
+        List<List<Byte>> entries = new ArrayList<>();
+
+        try {
+            int count = journal.replay(buffer -> {
+                List<Byte> entry = new ArrayList<>();
+
+                while (buffer.hasRemaining()) {
+                    entry.add(buffer.get());
+                }
+
+                entries.add(entry);
+            });
+
+            assertEquals(entries.size(), count);
+        } finally {
+            journal.close();
+        }
+
+        return entries;
+    }
+
+    private Path lastSegment() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                        try {
+                            return Files.size(path) > 0;
+                        } catch (IOException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    })
+                    .max(Path::compareTo)
+                    .orElseThrow();
+        }
+    }
+
+}
@@ -0,0 +1,150 @@
+package net.bitbylogic.packetblocks.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RegionFileTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void indexWrapsChunkCoordinatesIntoTheRegion() {
+        assertEquals(0, RegionFile.index(0, 0));
+        assertEquals(RegionFile.index(31, 31), RegionFile.index(-1, -1));
+        assertEquals(RegionFile.index(1, 2), RegionFile.index(33, 66));
+        assertEquals(RegionFile.CHUNKS - 1, RegionFile.index(31, 31));
+    }
+
+    @Test
+    void missingFileHasNoPayloads() throws IOException {
+        RegionFile region = new RegionFile(directory.resolve("r.0.0.pbr"));
+
+        assertNull(region.read(0, 0));
+        assertTrue(region.readAll().isEmpty());
+    }
+
+    @Test
+    void writtenPayloadsSurviveReopening() throws IOException {
+        Path path = directory.resolve("world").resolve("r.0.0.pbr");
+        RegionFile region = new RegionFile(path);
+
+        Map<Integer, byte[]> payloads = new HashMap<>();
+        payloads.put(RegionFile.index(1, 2), new byte[]{1, 2, 3});
+        payloads.put(RegionFile.index(5, 5), new byte[]{4});
+
+        assertTrue(region.write(payloads));
+
+        RegionFile reopened = new RegionFile(path);
+
+        assertEquals(ByteBuffer.wrap(new byte[]{1, 2, 3}), reopened.read(1, 2));
+        assertEquals(ByteBuffer.wrap(new byte[]{4}), reopened.read(5, 5));
+        assertNull(reopened.read(0, 0));
+    }
+
+    @Test
+    void writeKeepsChunksThatAreNotRewritten() throws IOException {
+        RegionFile region = new RegionFile(directory.resolve("r.0.0.pbr"));
+
+        region.write(Map.of(RegionFile.index(0, 0), new byte[]{1}));
+        region.write(Map.of(RegionFile.index(1, 0), new byte[]{2}));
+
+        assertEquals(ByteBuffer.wrap(new byte[]{1}), region.read(0, 0));
+        assertEquals(ByteBuffer.wrap(new byte[]{2}), region.read(1, 0));
+    }
+
+    @Test
+    void unchangedPayloadsAreNotRewritten() throws IOException {
+        RegionFile region = new RegionFile(directory.resolve("r.0.0.pbr"));
+
+        assertTrue(region.write(Map.of(RegionFile.index(3, 4), new byte[]{7, 8})));
+        assertFalse(region.write(Map.of(RegionFile.index(3, 4), new byte[]{7, 8})));
+    }
+
+    @Test
+    void clearingTheLastChunkDeletesTheFile() throws IOException {
+        Path path = directory.resolve("r.0.0.pbr");
+        RegionFile region = new RegionFile(path);
+
+        region.write(Map.of(RegionFile.index(0, 0), new byte[]{1}));
+        assertTrue(Files.exists(path));
+
+        assertTrue(region.write(Map.of(RegionFile.index(0, 0), new byte[0])));
+        assertFalse(Files.exists(path));
+        assertNull(region.read(0, 0));
+    }
+
+    @Test
+    void readAllReturnsPayloadsInIndexOrder() throws IOException {
+        RegionFile region = new RegionFile(directory.resolve("r.0.0.pbr"));
+
+        Map<Integer, byte[]> payloads = new HashMap<>();
+        payloads.put(RegionFile.index(2, 0), new byte[]{2});
+        payloads.put(RegionFile.index(0, 0), new byte[]{0});
+        payloads.put(RegionFile.index(0, 1), new byte[]{32});
+
+        region.write(payloads);
+
+        List<ByteBuffer> all = region.readAll();
+
+        assertEquals(List.of(ByteBuffer.wrap(new byte[]{0}), ByteBuffer.wrap(new byte[]{2}), ByteBuffer.wrap(new byte[]{32})), all);
+    }
+
+    @Test
+    void payloadsReadBeforeAWriteStayValid() throws IOException {
+        RegionFile region = new RegionFile(directory.resolve("r.0.0.pbr"));
+
+        region.write(Map.of(RegionFile.index(0, 0), new byte[]{1, 2}));
+        ByteBuffer before = region.read(0, 0);
+
+        region.write(Map.of(RegionFile.index(0, 0), new byte[]{3, 4, 5}));
+
+        assertEquals(ByteBuffer.wrap(new byte[]{1, 2}), before);
+        assertEquals(ByteBuffer.wrap(new byte[]{3, 4, 5}), region.read(0, 0));
+    }
+
+    @Test
+    void storedChunksFollowTheOffsetTable() throws IOException {
+        Path path = directory.resolve("r.0.0.pbr");
+        RegionFile region = new RegionFile(path);
+
+        region.write(Map.of(RegionFile.index(2, 3), new byte[]{1}));
+
+        assertTrue(region.isStored(RegionFile.index(2, 3)));
+        assertFalse(region.isStored(RegionFile.index(3, 2)));
+        assertTrue(new RegionFile(path).isStored(RegionFile.index(2, 3)));
+
+        region.write(Map.of(RegionFile.index(2, 3), new byte[0]));
+
+        assertFalse(region.isStored(RegionFile.index(2, 3)));
+    }
+
+    @Test
+    void rejectsTablesPointingPastTheEndOfTheFile() throws IOException {
+        Path path = directory.resolve("r.0.0.pbr");
+        ByteBuffer header = ByteBuffer.allocate(RegionFile.HEADER_SIZE).putInt(RegionFile.MAGIC);
+        header.putInt(RegionFile.HEADER_SIZE).putInt(16);
+        Files.write(path, header.array());
+
+        assertThrows(IOException.class, () -> new RegionFile(path));
+    }
+
+    @Test
+    void rejectsFilesWithoutTheMagicNumber() throws IOException {
+        Path path = directory.resolve("r.0.0.pbr");
+        Files.write(path, new byte[RegionFile.HEADER_SIZE]);
+
+        assertThrows(IOException.class, () -> new RegionFile(path));
+    }
+
+}
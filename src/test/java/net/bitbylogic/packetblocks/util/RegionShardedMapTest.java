@@ -0,0 +1,129 @@
+package net.bitbylogic.packetblocks.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RegionShardedMapTest {
+
+    private static final int SECTION = 1 << RegionShardedMap.SECTION_SHIFT;
+
+    @Test
+    void chunksOfOneSectionShareAShard() {
+        RegionShardedMap<String> map = new RegionShardedMap<>();
+
+        for (int x = 0; x < SECTION; x++) {
+            for (int z = 0; z < SECTION; z++) {
+                map.put(key(x, z), x + "," + z);
+            }
+        }
+
+        assertEquals(1, map.getShardCount());
+        assertEquals(SECTION * SECTION, map.size());
+    }
+
+    @Test
+    void negativeChunksGetTheirOwnSections() {
+        RegionShardedMap<String> map = new RegionShardedMap<>();
+
+        map.put(key(0, 0), "origin");
+        map.put(key(-1, 0), "west");
+        map.put(key(0, -1), "north");
+        map.put(key(-SECTION, -SECTION), "north west");
+
+        assertEquals(4, map.getShardCount());
+        assertEquals("west", map.get(key(-1, 0)));
+        assertEquals("north west", map.get(key(-SECTION, -SECTION)));
+    }
+
+    @Test
+    void behavesLikeAMap() {
+        RegionShardedMap<Integer> map = new RegionShardedMap<>();
+        Map<Long, Integer> expected = new HashMap<>();
+
+        for (int x = -40; x < 40; x += 3) {
+            for (int z = -40; z < 40; z += 5) {
+                long key = key(x, z);
+
+                map.put(key, x * z);
+                expected.put(key, x * z);
+            }
+        }
+
+        assertEquals(expected, map);
+        assertEquals(expected.size(), map.entrySet().size());
+
+        long removed = key(-1, 0);
+
+        assertEquals(expected.remove(removed), map.remove(removed));
+        assertNull(map.get(removed));
+        assertFalse(map.containsKey(removed));
+        assertEquals(expected, map);
+    }
+
+    @Test
+    void atomicOperationsOnlyTouchTheirShard() {
+        RegionShardedMap<Integer> map = new RegionShardedMap<>();
+        long key = key(100, -100);
+
+        assertEquals(1, map.computeIfAbsent(key, ignored -> 1));
+        assertEquals(1, map.computeIfAbsent(key, ignored -> 2));
+        assertEquals(1, map.putIfAbsent(key, 3));
+        assertTrue(map.replace(key, 1, 4));
+        assertEquals(5, map.merge(key, 1, Integer::sum));
+        assertNull(map.computeIfPresent(key, (ignored, value) -> null));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    void missingAndForeignKeysAreAbsent() {
+        RegionShardedMap<String> map = new RegionShardedMap<>();
+        map.put(key(1, 1), "value");
+
+        assertNull(map.get(key(1000, 1000)));
+        assertNull(map.get("not a key"));
+        assertEquals("fallback", map.getOrDefault(key(2, 2), "fallback"));
+        assertFalse(map.containsKey(1));
+    }
+
+    @Test
+    void iteratorRemovesFromEveryShard() {
+        RegionShardedMap<Integer> map = new RegionShardedMap<>();
+
+        for (int x = -64; x < 64; x += 8) {
+            map.put(key(x, x), x);
+        }
+
+        Iterator<Map.Entry<Long, Integer>> iterator = map.entrySet().iterator();
+
+        while (iterator.hasNext()) {
+            if (iterator.next().getValue() % 16 == 0) {
+                iterator.remove();
+            }
+        }
+
+        assertEquals(8, map.size());
+        map.values().forEach(value -> assertNotEquals(0, value % 16));
+    }
+
+    @Test
+    void clearDropsEveryShard() {
+        RegionShardedMap<String> map = new RegionShardedMap<>();
+        map.put(key(0, 0), "a");
+        map.put(key(SECTION * 4, 0), "b");
+
+        map.clear();
+
+        assertTrue(map.isEmpty());
+        assertEquals(0, map.getShardCount());
+    }
+
+    private static long key(int chunkX, int chunkZ) {
+        return BlockPositions.chunkKey(chunkX, chunkZ);
+    }
+
+}